@@ -0,0 +1,217 @@
+package com.cs.rag.cache;
+
+import cn.hutool.crypto.SecureUtil;
+import com.cs.rag.config.EmbeddingCacheProperties;
+import com.cs.rag.utils.TextNormalizer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 带缓存的查询向量模型（装饰器）
+ *
+ * <p>对 {@link EmbeddingModel#embed(String)} 做两级缓存，使重复问题跳过 Ollama 向量化调用：</p>
+ * <ul>
+ *   <li>L1：进程内 Caffeine 缓存，按字节数加权淘汰</li>
+ *   <li>L2：可选的 Redis 缓存，多实例共享</li>
+ * </ul>
+ *
+ * <p>缓存键 = 嵌入模型名称 + 归一化后的查询文本，
+ * 修改 spring.ai.ollama.embedding.model 后旧缓存自然失效。
+ * 文档入库等批量向量化请求直接透传给底层模型。</p>
+ *
+ * <p>缓存中的向量不直接交给调用方：返回副本，调用方修改返回的数组不会影响缓存。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    /** Redis 缓存键前缀 */
+    private static final String REDIS_KEY_PREFIX = "rag:embedding:";
+
+    /** 单个缓存条目的固定开销估算（对象头、引用等） */
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    private final EmbeddingModel delegate;
+
+    private final String modelName;
+
+    private final EmbeddingCacheProperties properties;
+
+    /** Redis 模板，未启用 L2 时为 null */
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final Cache<String, float[]> localCache;
+
+    private final LongAdder redisHits = new LongAdder();
+
+    private final LongAdder redisMisses = new LongAdder();
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, String modelName,
+                                 EmbeddingCacheProperties properties,
+                                 RedisTemplate<String, Object> redisTemplate) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.localCache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxWeightBytes())
+                .weigher((String key, float[] value) -> key.length() * 2 + value.length * 4 + ENTRY_OVERHEAD_BYTES)
+                .expireAfterAccess(properties.getExpireAfterAccess())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 查询文本向量化（带缓存）
+     *
+     * @param text 查询文本
+     * @return 向量（调用方独占的副本）
+     */
+    @Override
+    public float[] embed(String text) {
+        String key = modelName + ":" + TextNormalizer.normalize(text);
+
+        float[] embedding = localCache.getIfPresent(key);
+        if (embedding != null) {
+            log.debug("查询向量缓存命中(L1): model={}", modelName);
+            return embedding.clone();
+        }
+
+        embedding = getFromRedis(key);
+        if (embedding != null) {
+            log.debug("查询向量缓存命中(L2): model={}", modelName);
+            localCache.put(key, embedding);
+            return embedding.clone();
+        }
+
+        embedding = delegate.embed(text);
+        localCache.put(key, embedding.clone());
+        putToRedis(key, embedding);
+        return embedding;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return delegate.call(request);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return delegate.embed(document);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    // ==================== 统计信息 ====================
+
+    /**
+     * 本地缓存（L1）统计：命中、未命中、淘汰次数
+     *
+     * @return Caffeine 缓存统计
+     */
+    public CacheStats localStats() {
+        return localCache.stats();
+    }
+
+    /**
+     * 本地缓存（L1）当前条目数
+     */
+    public long localSize() {
+        return localCache.estimatedSize();
+    }
+
+    /**
+     * Redis 二级缓存（L2）命中次数
+     */
+    public long redisHitCount() {
+        return redisHits.sum();
+    }
+
+    /**
+     * Redis 二级缓存（L2）未命中次数
+     */
+    public long redisMissCount() {
+        return redisMisses.sum();
+    }
+
+    /**
+     * 清空本地缓存（L1）
+     */
+    public void invalidateAll() {
+        localCache.invalidateAll();
+    }
+
+    // ==================== Redis 二级缓存 ====================
+
+    private float[] getFromRedis(String key) {
+        if (redisTemplate == null) {
+            return null;
+        }
+        try {
+            Object value = redisTemplate.opsForValue().get(redisKey(key));
+            if (value == null) {
+                redisMisses.increment();
+                return null;
+            }
+            redisHits.increment();
+            return decode(value.toString());
+        } catch (Exception e) {
+            // Redis 不可用时降级为仅使用本地缓存
+            log.warn("读取Redis查询向量缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void putToRedis(String key, float[] embedding) {
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(redisKey(key), encode(embedding), properties.getRedisTtl());
+        } catch (Exception e) {
+            log.warn("写入Redis查询向量缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Redis 键使用文本摘要，避免长问题产生超长 key
+     */
+    private String redisKey(String key) {
+        String digest = SecureUtil.sha256(key);
+        return REDIS_KEY_PREFIX + modelName + ":" + digest;
+    }
+
+    private static String encode(float[] embedding) {
+        ByteBuffer buffer = ByteBuffer.allocate(embedding.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (float v : embedding) {
+            buffer.putFloat(v);
+        }
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    private static float[] decode(String value) {
+        ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(value.getBytes(StandardCharsets.US_ASCII)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        float[] embedding = new float[buffer.remaining() / 4];
+        buffer.asFloatBuffer().get(embedding);
+        return embedding;
+    }
+}
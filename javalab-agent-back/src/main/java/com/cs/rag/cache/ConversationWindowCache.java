@@ -0,0 +1,266 @@
+package com.cs.rag.cache;
+
+import com.cs.rag.config.ConversationWindowProperties;
+import com.cs.rag.entity.ChatMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * 会话热窗口缓存
+ *
+ * <p>每轮对话都要读取会话最近的N条消息作为上下文。启用后每个会话最近的消息按时间正序保存在一个 Redis 列表中：
+ * 保存消息时追加到列表尾部并裁剪到 size 条，读取时整表取回，不再查询数据库。</p>
+ *
+ * <p>一致性：</p>
+ * <ul>
+ *   <li>追加只作用于已存在的列表，同时递增该会话的版本号；列表不存在时不创建，避免只含部分消息的窗口</li>
+ *   <li>未命中时先读取版本号再查询数据库，回填脚本仅在版本号未变且列表仍不存在时写入，
+ *       查询期间有新消息追加时放弃回填，不会用旧的查询结果覆盖</li>
+ *   <li>追加时刷新过期时间，会话空闲超过 idleTtl 后缓存自动删除</li>
+ *   <li>Redis 不可用时降级为查询数据库</li>
+ * </ul>
+ *
+ * <p>列表键与版本号键使用相同的 hash tag，Redis Cluster 下落在同一槽位，可在同一脚本中操作。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+public class ConversationWindowCache {
+
+    /** Redis 列表键前缀 */
+    private static final String REDIS_KEY_PREFIX = "rag:conversation:window:";
+
+    /** 版本号键后缀 */
+    private static final String REDIS_VERSION_SUFFIX = ":version";
+
+    /**
+     * 追加消息：KEYS[1] 列表，KEYS[2] 版本号；ARGV[1] 消息，ARGV[2] 窗口大小，ARGV[3] 过期毫秒数
+     */
+    private static final RedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('INCR', KEYS[2]) "
+                    + "redis.call('PEXPIRE', KEYS[2], ARGV[3]) "
+                    + "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end "
+                    + "redis.call('RPUSH', KEYS[1], ARGV[1]) "
+                    + "redis.call('LTRIM', KEYS[1], -tonumber(ARGV[2]), -1) "
+                    + "redis.call('PEXPIRE', KEYS[1], ARGV[3]) "
+                    + "return 1",
+            Long.class);
+
+    /**
+     * 回填窗口：KEYS[1] 列表，KEYS[2] 版本号；ARGV[1] 查询前的版本号，ARGV[2] 窗口大小，ARGV[3] 过期毫秒数，
+     * ARGV[4..] 按时间正序的消息
+     */
+    private static final RedisScript<Long> FILL_SCRIPT = new DefaultRedisScript<>(
+            "local version = redis.call('GET', KEYS[2]) or '0' "
+                    + "if version ~= ARGV[1] or redis.call('EXISTS', KEYS[1]) == 1 then return 0 end "
+                    + "for i = 4, #ARGV do redis.call('RPUSH', KEYS[1], ARGV[i]) end "
+                    + "redis.call('LTRIM', KEYS[1], -tonumber(ARGV[2]), -1) "
+                    + "redis.call('PEXPIRE', KEYS[1], ARGV[3]) "
+                    + "return 1",
+            Long.class);
+
+    private final ConversationWindowProperties properties;
+
+    /** Redis 模板，未启用时为 null */
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder fills = new LongAdder();
+
+    private final LongAdder fillSkips = new LongAdder();
+
+    public ConversationWindowCache(ConversationWindowProperties properties,
+                                   RedisTemplate<String, Object> redisTemplate,
+                                   ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean isEnabled() {
+        return redisTemplate != null;
+    }
+
+    /**
+     * 获取会话最近的消息：命中时直接返回，未命中时由 loader 查询数据库并回填
+     *
+     * @param sessionId 会话ID
+     * @param userId 用户ID（缓存中的消息同样按用户校验）
+     * @param limit 获取消息条数
+     * @param loader 查询数据库，参数为获取条数，返回时间倒序的消息
+     * @return 最近的消息（时间倒序）
+     */
+    public List<ChatMessage> recentMessages(String sessionId, Long userId, int limit,
+                                            IntFunction<List<ChatMessage>> loader) {
+        if (redisTemplate == null || limit > properties.getSize()) {
+            return loader.apply(limit);
+        }
+        String key = redisKey(sessionId);
+        String version;
+        try {
+            List<Object> values = redisTemplate.opsForList().range(key, 0, -1);
+            if (values != null && !values.isEmpty()) {
+                List<ChatMessage> cached = decode(values, userId, limit);
+                if (cached != null) {
+                    hits.increment();
+                    return cached;
+                }
+                // 无法解析（消息格式变化等），删除后按未命中处理
+                redisTemplate.delete(key);
+            }
+            misses.increment();
+            Object current = redisTemplate.opsForValue().get(key + REDIS_VERSION_SUFFIX);
+            version = current != null ? current.toString() : "0";
+        } catch (Exception e) {
+            errors.increment();
+            log.warn("读取会话热窗口失败，查询数据库: sessionId={}, error={}", sessionId, e.getMessage());
+            return loader.apply(limit);
+        }
+
+        List<ChatMessage> loaded = loader.apply(properties.getSize());
+        fill(key, version, loaded);
+        return loaded.size() > limit ? new ArrayList<>(loaded.subList(0, limit)) : loaded;
+    }
+
+    /**
+     * 消息保存后追加到会话窗口（窗口未缓存时只递增版本号）
+     *
+     * @param message 已保存的消息
+     */
+    public void append(ChatMessage message) {
+        if (redisTemplate == null) {
+            return;
+        }
+        String key = redisKey(message.getSessionId());
+        try {
+            redisTemplate.execute(APPEND_SCRIPT, List.of(key, key + REDIS_VERSION_SUFFIX),
+                    encode(message), String.valueOf(properties.getSize()), idleTtlMillis());
+        } catch (Exception e) {
+            // 追加失败时窗口已缺少该消息，删除后下次读取从数据库回填
+            errors.increment();
+            log.warn("追加会话热窗口失败: sessionId={}, error={}", message.getSessionId(), e.getMessage());
+            evict(message.getSessionId());
+        }
+    }
+
+    /**
+     * 删除会话窗口
+     *
+     * @param sessionId 会话ID
+     */
+    public void evict(String sessionId) {
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.delete(redisKey(sessionId));
+        } catch (Exception e) {
+            log.warn("删除会话热窗口失败: sessionId={}, error={}", sessionId, e.getMessage());
+        }
+    }
+
+    // ==================== 统计信息 ====================
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long errorCount() {
+        return errors.sum();
+    }
+
+    public long fillCount() {
+        return fills.sum();
+    }
+
+    /**
+     * 查询期间有新消息追加而放弃的回填次数
+     */
+    public long fillSkipCount() {
+        return fillSkips.sum();
+    }
+
+    /**
+     * 回填窗口：数据库结果为时间倒序，按时间正序写入列表
+     */
+    private void fill(String key, String version, List<ChatMessage> newestFirst) {
+        if (newestFirst.isEmpty()) {
+            return;
+        }
+        try {
+            List<Object> args = new ArrayList<>(newestFirst.size() + 3);
+            args.add(version);
+            args.add(String.valueOf(properties.getSize()));
+            args.add(idleTtlMillis());
+            for (int i = newestFirst.size() - 1; i >= 0; i--) {
+                args.add(encode(newestFirst.get(i)));
+            }
+            Long filled = redisTemplate.execute(FILL_SCRIPT, List.of(key, key + REDIS_VERSION_SUFFIX), args.toArray());
+            if (filled != null && filled == 1L) {
+                fills.increment();
+            } else {
+                fillSkips.increment();
+            }
+        } catch (Exception e) {
+            errors.increment();
+            log.warn("回填会话热窗口失败: key={}, error={}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * 解析列表（时间正序），返回最近 limit 条（时间倒序）；存在无法解析的消息时返回null
+     */
+    private List<ChatMessage> decode(List<Object> values, Long userId, int limit) {
+        List<ChatMessage> messages = new ArrayList<>(Math.min(limit, values.size()));
+        for (int i = values.size() - 1; i >= 0 && messages.size() < limit; i--) {
+            ChatMessage message;
+            try {
+                message = objectMapper.readValue(values.get(i).toString(), ChatMessage.class);
+            } catch (JsonProcessingException e) {
+                log.warn("解析会话热窗口消息失败: {}", e.getMessage());
+                return null;
+            }
+            if (Objects.equals(message.getUserId(), userId)) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    private String encode(ChatMessage message) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(message);
+    }
+
+    private String idleTtlMillis() {
+        return String.valueOf(properties.getIdleTtl().toMillis());
+    }
+
+    /**
+     * hash tag 使列表键与版本号键落在同一槽位
+     */
+    private static String redisKey(String sessionId) {
+        return REDIS_KEY_PREFIX + "{" + sessionId + "}";
+    }
+}
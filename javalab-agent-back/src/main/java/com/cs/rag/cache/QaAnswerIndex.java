@@ -0,0 +1,153 @@
+package com.cs.rag.cache;
+
+import com.cs.rag.config.FaqFastPathProperties;
+import com.cs.rag.event.KnowledgeChangedEvent;
+import com.cs.rag.utils.QaDocumentSplitter;
+import com.cs.rag.utils.TextNormalizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * QA对答案索引（FAQ 快速通道）
+ *
+ * <p>将知识库中所有 content_type=qa_pair 的文档按归一化后的问题建立内存哈希索引，
+ * 用户问题与已存问题完全一致，或检索第一名为相似度极高的QA对时，直接返回存储的答案。</p>
+ *
+ * <p>索引在应用启动、文件入库和文件删除后整体重建，查询时无锁读取。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class QaAnswerIndex {
+
+    private static final String LOAD_SQL = "SELECT content, metadata->>'" + QaDocumentSplitter.METADATA_QUESTION
+            + "' AS question FROM vector_store WHERE metadata->>'" + QaDocumentSplitter.METADATA_CONTENT_TYPE
+            + "' = '" + QaDocumentSplitter.CONTENT_TYPE_QA_PAIR + "'";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final FaqFastPathProperties properties;
+
+    /** 归一化问题 -> 答案，重建时整体替换 */
+    private volatile Map<String, String> answers = Collections.emptyMap();
+
+    private final LongAdder exactHits = new LongAdder();
+
+    private final LongAdder similarityHits = new LongAdder();
+
+    public QaAnswerIndex(JdbcTemplate jdbcTemplate, FaqFastPathProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+    }
+
+    /**
+     * 按问题精确查找答案
+     *
+     * @param question 用户问题
+     * @return 答案，未命中时返回null
+     */
+    public String findByQuestion(String question) {
+        String answer = answers.get(TextNormalizer.normalize(question));
+        if (answer != null) {
+            exactHits.increment();
+        }
+        return answer;
+    }
+
+    /**
+     * 根据检索结果判断是否为决定性QA命中
+     *
+     * @param ragDocuments 检索结果（按相似度降序）
+     * @return 答案，未命中时返回null
+     */
+    public String findByDocuments(List<Document> ragDocuments) {
+        if (ragDocuments.isEmpty()) {
+            return null;
+        }
+        Document top = ragDocuments.get(0);
+        Object contentType = top.getMetadata().get(QaDocumentSplitter.METADATA_CONTENT_TYPE);
+        if (!QaDocumentSplitter.CONTENT_TYPE_QA_PAIR.equals(contentType)
+                || top.getScore() == null
+                || top.getScore() < properties.getSimilarityThreshold()) {
+            return null;
+        }
+        String answer = QaDocumentSplitter.extractAnswer(top.getText());
+        if (answer != null) {
+            similarityHits.increment();
+        }
+        return answer;
+    }
+
+    /**
+     * 从向量表重建索引
+     */
+    public synchronized void rebuild() {
+        long startTime = System.currentTimeMillis();
+        Map<String, String> rebuilt = new HashMap<>();
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            String question = rs.getString("question");
+            String answer = QaDocumentSplitter.extractAnswer(rs.getString("content"));
+            if (question != null && answer != null) {
+                rebuilt.putIfAbsent(TextNormalizer.normalize(question), answer);
+            }
+        });
+        answers = Collections.unmodifiableMap(rebuilt);
+        log.info("QA答案索引重建完成: {}条, 耗时{}ms", rebuilt.size(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 应用启动后加载索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (properties.isEnabled()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 知识库变更后重建索引（事务提交后执行，非事务场景直接执行）
+     *
+     * @param event 知识库变更事件
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onKnowledgeChanged(KnowledgeChangedEvent event) {
+        if (properties.isEnabled()) {
+            rebuild();
+        }
+    }
+
+    // ==================== 统计信息 ====================
+
+    /**
+     * 快速通道直接服务的对话轮数（即节省的LLM调用次数）
+     */
+    public long servedCount() {
+        return exactHits.sum() + similarityHits.sum();
+    }
+
+    public long exactHitCount() {
+        return exactHits.sum();
+    }
+
+    public long similarityHitCount() {
+        return similarityHits.sum();
+    }
+
+    public int size() {
+        return answers.size();
+    }
+}
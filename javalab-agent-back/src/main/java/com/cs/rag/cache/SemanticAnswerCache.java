@@ -0,0 +1,188 @@
+package com.cs.rag.cache;
+
+import com.cs.rag.config.AnswerCacheProperties;
+import com.cs.rag.event.KnowledgeChangedEvent;
+import com.cs.rag.utils.VectorUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 语义答案缓存
+ *
+ * <p>缓存键由两部分组成：</p>
+ * <ol>
+ *   <li>检索命中的文档ID集合（精确匹配，作为分桶键）</li>
+ *   <li>查询向量（桶内按余弦相似度匹配，超过阈值即视为近似重复问题）</li>
+ * </ol>
+ *
+ * <p>命中后直接复用已生成的答案，跳过LLM生成。
+ * 知识库发生变更（上传/删除文件）时整体失效。</p>
+ *
+ * <p>桶内答案列表不可变，写入时在 compute 中整体替换：桶的有效期随最近一次写入刷新，
+ * 每个答案按自身写入时间单独过期，不会因桶内第一个答案到期而被一起淘汰。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class SemanticAnswerCache {
+
+    private final AnswerCacheProperties properties;
+
+    /** 文档ID集合 -> 该检索结果下的答案列表（不可变，按写入时间正序） */
+    private final Cache<String, List<Entry>> buckets;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    public SemanticAnswerCache(AnswerCacheProperties properties) {
+        this.properties = properties;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxBuckets())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+    }
+
+    /**
+     * 查找近似问题的缓存答案
+     *
+     * @param queryEmbedding 查询向量
+     * @param documentIds 检索命中的文档ID集合
+     * @return 缓存的答案，未命中时返回null
+     */
+    public String lookup(float[] queryEmbedding, Collection<String> documentIds) {
+        List<Entry> bucket = buckets.getIfPresent(bucketKey(documentIds));
+        if (bucket == null) {
+            misses.increment();
+            return null;
+        }
+
+        float[] query = VectorUtils.normalize(queryEmbedding);
+        long expireBefore = System.currentTimeMillis() - properties.getTtl().toMillis();
+        Entry best = null;
+        double bestScore = properties.getSimilarityThreshold();
+        for (Entry entry : bucket) {
+            if (entry.createdAt < expireBefore) {
+                continue;
+            }
+            double score = VectorUtils.dot(query, entry.embedding);
+            if (score >= bestScore) {
+                best = entry;
+                bestScore = score;
+            }
+        }
+
+        if (best == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        log.info("语义答案缓存命中: 相似度={}, 文档数={}", bestScore, documentIds.size());
+        return best.answer;
+    }
+
+    /**
+     * 写入答案缓存
+     *
+     * @param queryEmbedding 查询向量
+     * @param documentIds 检索命中的文档ID集合
+     * @param answer LLM生成的完整答案
+     */
+    public void put(float[] queryEmbedding, Collection<String> documentIds, String answer) {
+        if (answer == null || answer.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expireBefore = now - properties.getTtl().toMillis();
+        Entry added = new Entry(VectorUtils.normalize(queryEmbedding), answer, now);
+        // 替换整个桶而不是原地追加，使桶的有效期从本次写入重新计算
+        buckets.asMap().compute(bucketKey(documentIds), (key, bucket) -> {
+            List<Entry> result = new ArrayList<>(bucket != null ? bucket.size() + 1 : 1);
+            if (bucket != null) {
+                for (Entry entry : bucket) {
+                    if (entry.createdAt >= expireBefore) {
+                        result.add(entry);
+                    }
+                }
+            }
+            result.add(added);
+            // 超出容量时淘汰最早写入的答案
+            int overflow = result.size() - properties.getMaxEntriesPerBucket();
+            return List.copyOf(overflow > 0 ? result.subList(overflow, result.size()) : result);
+        });
+    }
+
+    /**
+     * 清空全部答案缓存
+     */
+    public void invalidateAll() {
+        buckets.invalidateAll();
+        invalidations.increment();
+    }
+
+    /**
+     * 知识库变更后清空答案缓存（事务提交后执行，非事务场景直接执行）
+     *
+     * @param event 知识库变更事件
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onKnowledgeChanged(KnowledgeChangedEvent event) {
+        invalidateAll();
+        log.info("知识库已变更，清空语义答案缓存: 新增{}条, 删除{}条",
+                event.getAddedVectorIds().size(), event.getDeletedVectorIds().size());
+    }
+
+    // ==================== 统计信息 ====================
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long invalidationCount() {
+        return invalidations.sum();
+    }
+
+    public long bucketCount() {
+        return buckets.estimatedSize();
+    }
+
+    /**
+     * 文档ID排序后拼接，保证与检索返回顺序无关
+     */
+    private static String bucketKey(Collection<String> documentIds) {
+        return String.join(",", new TreeSet<>(documentIds));
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static class Entry {
+        /** 单位化后的查询向量，点积即余弦相似度 */
+        private final float[] embedding;
+        private final String answer;
+        private final long createdAt;
+
+        Entry(float[] embedding, String answer, long createdAt) {
+            this.embedding = embedding;
+            this.answer = answer;
+            this.createdAt = createdAt;
+        }
+    }
+}
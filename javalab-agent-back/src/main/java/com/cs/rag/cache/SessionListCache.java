@@ -0,0 +1,259 @@
+package com.cs.rag.cache;
+
+import com.cs.rag.config.SessionListCacheProperties;
+import com.cs.rag.entity.ChatSession;
+import com.cs.rag.mapper.ChatSessionMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * 会话列表首页缓存
+ *
+ * <p>侧边栏每次刷新都查询用户最近活动的会话，而会话列表只在新建会话、发送消息、删除会话时变化。
+ * 缓存每个用户按 (updatedAt, id) 倒序的前 pageSize + 1 个会话（多出的一个用于判断是否还有下一页），
+ * 上述三种写入发生后按数据库返回的结果就地调整缓存，常见情况下获取会话列表不查询数据库。</p>
+ *
+ * <p>缓存条目不可变，更新时在 Caffeine 的 compute 中整体替换：与同一用户的加载互斥，
+ * 加载期间提交的写入会在加载完成后应用到新条目上，不会被加载结果覆盖。
+ * 缓存的会话不足一页且数据库中还有更多会话时（删除导致），直接失效，下次读取重新加载。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class SessionListCache {
+
+    /** 与 selectPageByUserId 的排序一致：更新时间倒序，时间相同时按ID倒序 */
+    public static final Comparator<ChatSession> MOST_RECENT_FIRST = Comparator
+            .comparing(ChatSession::getUpdatedAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(ChatSession::getId, Comparator.reverseOrder());
+
+    private final SessionListCacheProperties properties;
+
+    private final ChatSessionMapper chatSessionMapper;
+
+    /** 用户ID -> 会话列表首页 */
+    private final Cache<Long, FirstPage> pages;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder updates = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    public SessionListCache(SessionListCacheProperties properties, ChatSessionMapper chatSessionMapper) {
+        this.properties = properties;
+        this.chatSessionMapper = chatSessionMapper;
+        this.pages = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxUsers())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+    }
+
+    /**
+     * 获取用户最近活动的会话
+     *
+     * @param userId 用户ID
+     * @param limit 获取会话数
+     * @return 会话列表 (按更新时间倒序)，不超过 limit 个
+     */
+    public List<ChatSession> firstPage(Long userId, int limit) {
+        if (!properties.isEnabled() || limit > capacity()) {
+            return chatSessionMapper.selectPageByUserId(userId, null, null, limit);
+        }
+        FirstPage page = pages.getIfPresent(userId);
+        if (page != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            page = pages.get(userId, this::load);
+        }
+        return page.sessions.size() > limit ? page.sessions.subList(0, limit) : page.sessions;
+    }
+
+    /**
+     * 新建会话后插入到缓存首页
+     *
+     * @param session 新建的会话（需包含数据库生成的更新时间）
+     */
+    public void onCreated(ChatSession session) {
+        if (session.getUpdatedAt() == null) {
+            invalidate(session.getUserId());
+            return;
+        }
+        onTouched(Collections.singletonList(session));
+    }
+
+    /**
+     * 会话更新时间变化后调整缓存中的位置
+     *
+     * @param sessions 更新后的会话（数据库 RETURNING 结果）
+     */
+    public void onTouched(Collection<ChatSession> sessions) {
+        for (ChatSession session : sessions) {
+            if (session == null || session.getUserId() == null) {
+                continue;
+            }
+            update(session.getUserId(), page -> page.upsert(snapshot(session), capacity()));
+        }
+    }
+
+    /**
+     * 会话删除后从缓存首页移除
+     *
+     * @param userId 用户ID
+     * @param sessionId 会话ID
+     */
+    public void onDeleted(Long userId, String sessionId) {
+        update(userId, page -> page.remove(sessionId));
+    }
+
+    /**
+     * 失效指定用户的缓存首页
+     *
+     * @param userId 用户ID
+     */
+    public void invalidate(Long userId) {
+        if (userId != null && pages.asMap().remove(userId) != null) {
+            invalidations.increment();
+        }
+    }
+
+    // ==================== 统计信息 ====================
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long updateCount() {
+        return updates.sum();
+    }
+
+    public long invalidationCount() {
+        return invalidations.sum();
+    }
+
+    public long size() {
+        return pages.estimatedSize();
+    }
+
+    /**
+     * 缓存的会话数：一页加一个，用于判断是否还有下一页
+     */
+    private int capacity() {
+        return properties.getPageSize() + 1;
+    }
+
+    /**
+     * 多查询一条判断数据库中是否还有缓存之外的会话
+     */
+    private FirstPage load(Long userId) {
+        List<ChatSession> sessions = chatSessionMapper.selectPageByUserId(userId, null, null, capacity() + 1);
+        boolean complete = sessions.size() <= capacity();
+        List<ChatSession> kept = complete ? sessions : sessions.subList(0, capacity());
+        log.debug("加载会话列表首页: userId={}, 会话数={}, 完整={}", userId, kept.size(), complete);
+        return new FirstPage(List.copyOf(kept), complete);
+    }
+
+    /**
+     * 就地更新已缓存的首页；结果不足一页且不完整时失效
+     */
+    private void update(Long userId, UnaryOperator<FirstPage> change) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        pages.asMap().computeIfPresent(userId, (key, page) -> {
+            FirstPage changed = change.apply(page);
+            if (!changed.complete && changed.sessions.size() < capacity()) {
+                invalidations.increment();
+                return null;
+            }
+            updates.increment();
+            return changed;
+        });
+    }
+
+    /**
+     * 缓存只保存会话列表需要的字段，与调用方持有的对象隔离
+     */
+    private static ChatSession snapshot(ChatSession session) {
+        return ChatSession.builder()
+                .id(session.getId())
+                .userId(session.getUserId())
+                .title(session.getTitle())
+                .createdAt(session.getCreatedAt())
+                .updatedAt(session.getUpdatedAt())
+                .deleted(session.getDeleted() != null ? session.getDeleted() : 0)
+                .build();
+    }
+
+    /**
+     * 用户的会话列表首页（不可变）
+     */
+    private static final class FirstPage {
+        /** 按 MOST_RECENT_FIRST 排序 */
+        private final List<ChatSession> sessions;
+        /** 数据库中是否没有缓存之外的会话 */
+        private final boolean complete;
+
+        FirstPage(List<ChatSession> sessions, boolean complete) {
+            this.sessions = sessions;
+            this.complete = complete;
+        }
+
+        /**
+         * 按新的更新时间重新放置会话；排在已知范围之外的会话不放入缓存
+         */
+        FirstPage upsert(ChatSession session, int capacity) {
+            List<ChatSession> result = new ArrayList<>(sessions.size() + 1);
+            for (ChatSession cached : sessions) {
+                if (!Objects.equals(cached.getId(), session.getId())) {
+                    result.add(cached);
+                }
+            }
+            if (session.getDeleted() != 0) {
+                return new FirstPage(List.copyOf(result), complete);
+            }
+            int index = Collections.binarySearch(result, session, MOST_RECENT_FIRST);
+            index = index >= 0 ? index : -index - 1;
+            if (index == result.size() && !complete) {
+                return new FirstPage(List.copyOf(result), false);
+            }
+            result.add(index, session);
+            boolean stillComplete = complete;
+            if (result.size() > capacity) {
+                result.remove(result.size() - 1);
+                stillComplete = false;
+            }
+            return new FirstPage(List.copyOf(result), stillComplete);
+        }
+
+        FirstPage remove(String sessionId) {
+            List<ChatSession> result = new ArrayList<>(sessions.size());
+            for (ChatSession cached : sessions) {
+                if (!Objects.equals(cached.getId(), sessionId)) {
+                    result.add(cached);
+                }
+            }
+            return new FirstPage(List.copyOf(result), complete);
+        }
+    }
+}
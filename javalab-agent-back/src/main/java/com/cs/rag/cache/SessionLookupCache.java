@@ -0,0 +1,228 @@
+package com.cs.rag.cache;
+
+import com.cs.rag.config.SessionCacheProperties;
+import com.cs.rag.entity.ChatSession;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 会话本地缓存（L1）
+ *
+ * <p>每轮对话都要按会话ID确认会话存在并读取滚动摘要。缓存会话ID到会话快照（归属用户、标题、摘要及覆盖位置），
+ * 已建立的会话在对话时不再查询数据库，归属校验也基于缓存的用户ID完成。</p>
+ *
+ * <p>写入与失效：</p>
+ * <ul>
+ *   <li>新建会话后直接写入；首次查询命中数据库后写入</li>
+ *   <li>摘要更新后就地替换本地条目</li>
+ *   <li>逻辑删除后移除本地条目</li>
+ *   <li>开启 Redis 失效广播时，摘要更新和删除同时发布到频道，其他实例收到后移除各自的条目；
+ *       发布/订阅不保证送达，条目有效期作为兜底</li>
+ * </ul>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+public class SessionLookupCache {
+
+    /** 失效广播频道 */
+    public static final String INVALIDATION_CHANNEL = "rag:session:invalidate";
+
+    /** 失效消息中实例ID与会话ID的分隔符 */
+    private static final char MESSAGE_SEPARATOR = '|';
+
+    private final SessionCacheProperties properties;
+
+    /** Redis 模板，未开启失效广播时为 null */
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    /** 本实例标识，收到自己发布的失效消息时忽略 */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /** 会话ID -> 会话快照（不可修改，返回给调用方时复制） */
+    private final Cache<String, ChatSession> sessions;
+
+    /** 每次失效或摘要更新时递增，查询期间发生变化的加载结果不写入缓存 */
+    private final AtomicLong epoch = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    private final LongAdder remoteInvalidations = new LongAdder();
+
+    public SessionLookupCache(SessionCacheProperties properties, RedisTemplate<String, Object> redisTemplate) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.sessions = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSessions())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+    }
+
+    /**
+     * 获取会话：命中时返回缓存的快照，未命中时由 loader 查询数据库并缓存
+     *
+     * @param sessionId 会话ID
+     * @param loader 查询数据库，会话不存在或已删除时返回null
+     * @return 会话副本，不存在时返回null
+     */
+    public ChatSession get(String sessionId, Function<String, ChatSession> loader) {
+        if (!properties.isEnabled()) {
+            return loader.apply(sessionId);
+        }
+        ChatSession cached = sessions.getIfPresent(sessionId);
+        if (cached != null) {
+            hits.increment();
+            return copy(cached);
+        }
+        misses.increment();
+        long loadEpoch = epoch.get();
+        ChatSession loaded = loader.apply(sessionId);
+        if (loaded == null) {
+            return null;
+        }
+        // 查询期间有失效或摘要更新时，查询结果可能已过期：写入后再次检查，发生变化则撤回本次写入
+        ChatSession snapshot = snapshot(loaded);
+        if (sessions.asMap().putIfAbsent(sessionId, snapshot) == null && epoch.get() != loadEpoch) {
+            sessions.asMap().remove(sessionId, snapshot);
+        }
+        return loaded;
+    }
+
+    /**
+     * 新建会话后写入缓存
+     *
+     * @param session 新建的会话
+     */
+    public void put(ChatSession session) {
+        if (properties.isEnabled()) {
+            sessions.put(session.getId(), snapshot(session));
+        }
+    }
+
+    /**
+     * 摘要更新后替换本地条目，并通知其他实例失效
+     *
+     * @param sessionId 会话ID
+     * @param summary 新摘要
+     * @param summaryUntil 摘要已覆盖的最后一条消息的创建时间
+     */
+    public void onSummaryUpdated(String sessionId, String summary, LocalDateTime summaryUntil) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        epoch.incrementAndGet();
+        sessions.asMap().computeIfPresent(sessionId, (id, cached) -> {
+            ChatSession updated = copy(cached);
+            updated.setSummary(summary);
+            updated.setSummaryUntil(summaryUntil);
+            return updated;
+        });
+        publish(sessionId);
+    }
+
+    /**
+     * 移除本地条目，并通知其他实例失效（会话逻辑删除后调用）
+     *
+     * @param sessionId 会话ID
+     */
+    public void invalidate(String sessionId) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        epoch.incrementAndGet();
+        sessions.invalidate(sessionId);
+        invalidations.increment();
+        publish(sessionId);
+    }
+
+    /**
+     * 处理其他实例发布的失效消息
+     *
+     * @param message 失效消息（实例ID|会话ID）
+     */
+    public void onRemoteInvalidation(String message) {
+        int separator = message.indexOf(MESSAGE_SEPARATOR);
+        if (separator < 0 || instanceId.equals(message.substring(0, separator))) {
+            return;
+        }
+        String sessionId = message.substring(separator + 1);
+        epoch.incrementAndGet();
+        sessions.invalidate(sessionId);
+        remoteInvalidations.increment();
+        log.debug("收到会话缓存失效广播: sessionId={}", sessionId);
+    }
+
+    // ==================== 统计信息 ====================
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long invalidationCount() {
+        return invalidations.sum();
+    }
+
+    public long remoteInvalidationCount() {
+        return remoteInvalidations.sum();
+    }
+
+    public long size() {
+        return sessions.estimatedSize();
+    }
+
+    private void publish(String sessionId) {
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, instanceId + MESSAGE_SEPARATOR + sessionId);
+        } catch (Exception e) {
+            // 广播失败时其他实例的条目在有效期后过期
+            log.warn("发布会话缓存失效消息失败: sessionId={}, error={}", sessionId, e.getMessage());
+        }
+    }
+
+    /**
+     * 缓存只保存对话需要的字段；更新时间随每条消息变化，不缓存
+     */
+    private static ChatSession snapshot(ChatSession session) {
+        return ChatSession.builder()
+                .id(session.getId())
+                .userId(session.getUserId())
+                .title(session.getTitle())
+                .createdAt(session.getCreatedAt())
+                .deleted(0)
+                .summary(session.getSummary())
+                .summaryUntil(session.getSummaryUntil())
+                .build();
+    }
+
+    private static ChatSession copy(ChatSession session) {
+        return ChatSession.builder()
+                .id(session.getId())
+                .userId(session.getUserId())
+                .title(session.getTitle())
+                .createdAt(session.getCreatedAt())
+                .deleted(session.getDeleted())
+                .summary(session.getSummary())
+                .summaryUntil(session.getSummaryUntil())
+                .build();
+    }
+}
@@ -0,0 +1,48 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 语义答案缓存配置属性类
+ * 从 application.yml 中读取 cs.rag.answer-cache.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.answer-cache")
+@Data
+public class AnswerCacheProperties {
+
+    /**
+     * 是否启用语义答案缓存
+     */
+    private boolean enabled = false;
+
+    /**
+     * 命中所需的最小余弦相似度
+     */
+    private double similarityThreshold = 0.95;
+
+    /**
+     * 答案缓存有效期
+     */
+    private Duration ttl = Duration.ofMinutes(30);
+
+    /**
+     * 最多缓存的检索结果集合（文档ID集合）数量
+     */
+    private long maxBuckets = 2000;
+
+    /**
+     * 每个检索结果集合下最多缓存的答案数量
+     */
+    private int maxEntriesPerBucket = 16;
+
+    /**
+     * 会话存在历史消息时是否跳过缓存（追问类问题依赖上下文，不宜复用答案）
+     */
+    private boolean skipWhenHistoryPresent = true;
+
+}
@@ -0,0 +1,46 @@
+package com.cs.rag.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 对话预处理流水线配置类
+ * 会话、历史、检索等阻塞调用在有界线程池上并发执行，不占用请求线程
+ */
+@Configuration
+@Slf4j
+public class ChatPipelineConfig {
+
+    /**
+     * 创建预处理调度器 Bean
+     *
+     * @param properties 流水线配置属性
+     * @return 并发模式下为有界弹性线程池，串行模式下为当前线程
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler chatPipelineScheduler(ChatPipelineProperties properties) {
+        log.info("开始创建对话预处理调度器，parallel: {}, threadCap: {}, queuedTaskCap: {}",
+                properties.isParallel(), properties.getThreadCap(), properties.getQueuedTaskCap());
+        if (!properties.isParallel()) {
+            return Schedulers.immediate();
+        }
+        return Schedulers.newBoundedElastic(properties.getThreadCap(), properties.getQueuedTaskCap(), "chat-pipeline");
+    }
+
+    /**
+     * 创建滚动摘要调度器 Bean
+     * 摘要生成需要调用LLM，耗时较长，与预处理线程池隔离，避免占满预处理线程
+     *
+     * @param properties 滚动摘要配置属性
+     * @return 有界弹性线程池
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler conversationSummaryScheduler(ConversationSummaryProperties properties) {
+        return Schedulers.newBoundedElastic(properties.getConcurrency(), properties.getQueuedTaskCap(),
+                "conversation-summary");
+    }
+
+}
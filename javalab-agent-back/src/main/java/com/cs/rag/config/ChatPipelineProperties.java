@@ -0,0 +1,31 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 对话预处理流水线配置属性类
+ * 从 application.yml 中读取 cs.rag.chat-pipeline.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.chat-pipeline")
+@Data
+public class ChatPipelineProperties {
+
+    /**
+     * 是否并发执行预处理阶段（会话、历史、检索），关闭后在请求线程上串行执行
+     */
+    private boolean parallel = true;
+
+    /**
+     * 预处理线程池最大线程数
+     */
+    private int threadCap = 32;
+
+    /**
+     * 线程全忙时允许排队的最大任务数
+     */
+    private int queuedTaskCap = 1000;
+
+}
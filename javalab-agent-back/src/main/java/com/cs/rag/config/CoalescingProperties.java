@@ -0,0 +1,31 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 并发请求合并配置属性类
+ * 从 application.yml 中读取 cs.rag.coalescing.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.coalescing")
+@Data
+public class CoalescingProperties {
+
+    /**
+     * 是否合并并发的相同问题（检索与LLM生成分别合并）
+     */
+    private boolean enabled = false;
+
+    /**
+     * 是否合并检索：相同问题的并发请求共享一次查询向量计算与向量检索
+     */
+    private boolean retrieval = true;
+
+    /**
+     * 是否合并LLM生成：无历史会话中，相同问题且检索结果相同的并发请求共享一次生成
+     */
+    private boolean generation = true;
+
+}
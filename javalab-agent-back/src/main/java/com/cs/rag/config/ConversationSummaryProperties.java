@@ -0,0 +1,46 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 滚动会话摘要配置属性类
+ * 从 application.yml 中读取 cs.rag.conversation-summary.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.conversation-summary")
+@Data
+public class ConversationSummaryProperties {
+
+    /**
+     * 是否启用滚动摘要，关闭后按滑动窗口发送原始历史消息（用于对比 Token 数与耗时）
+     */
+    private boolean enabled = false;
+
+    /**
+     * 按原文保留的最近问答轮数，更早的轮次合并进摘要
+     */
+    private int recentTurns = 2;
+
+    /**
+     * 摘要的最大 Token 数，超出部分截断
+     */
+    private int maxSummaryTokens = 400;
+
+    /**
+     * 每次合并的原文最大 Token 数，积压的较早轮次超出时分多次合并
+     */
+    private int maxFoldTokens = 2000;
+
+    /**
+     * 摘要生成的最大并发数
+     */
+    private int concurrency = 2;
+
+    /**
+     * 摘要生成线程全忙时允许排队的任务数，超出时跳过本次更新（下一轮回复后会补上）
+     */
+    private int queuedTaskCap = 200;
+
+}
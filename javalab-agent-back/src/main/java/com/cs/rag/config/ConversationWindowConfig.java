@@ -0,0 +1,43 @@
+package com.cs.rag.config;
+
+import com.cs.rag.cache.ConversationWindowCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * 会话热窗口缓存配置类
+ * 开启 cs.rag.conversation-window.enabled 且存在 RedisTemplate 时，最近消息从 Redis 读取
+ */
+@Configuration
+@Slf4j
+public class ConversationWindowConfig {
+
+    /**
+     * 创建会话热窗口缓存 Bean
+     *
+     * @param properties 热窗口配置属性
+     * @param redisTemplateProvider Redis 模板（可选）
+     * @param objectMapper 消息序列化
+     * @return ConversationWindowCache 实例
+     */
+    @Bean
+    public ConversationWindowCache conversationWindowCache(ConversationWindowProperties properties,
+                                                           ObjectProvider<RedisTemplate<String, Object>> redisTemplateProvider,
+                                                           ObjectMapper objectMapper) {
+        RedisTemplate<String, Object> redisTemplate = null;
+        if (properties.isEnabled()) {
+            redisTemplate = redisTemplateProvider.getIfAvailable();
+            if (redisTemplate == null) {
+                log.warn("已开启会话热窗口缓存，但未找到RedisTemplate，请检查 cs.redis.enabled 配置");
+            }
+        }
+        log.info("创建会话热窗口缓存，enabled: {}, size: {}, idleTtl: {}, redis: {}",
+                properties.isEnabled(), properties.getSize(), properties.getIdleTtl(), redisTemplate != null);
+        return new ConversationWindowCache(properties, redisTemplate, objectMapper);
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.cs.rag.config;
+
+import com.cs.rag.constant.RagConstant;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 会话热窗口缓存配置属性类
+ * 从 application.yml 中读取 cs.rag.conversation-window.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.conversation-window")
+@Data
+public class ConversationWindowProperties {
+
+    /**
+     * 是否启用：每个会话最近的消息保存在 Redis 列表中，获取滑动窗口上下文时不查询数据库（需开启 cs.redis.enabled）
+     */
+    private boolean enabled = false;
+
+    /**
+     * 每个会话保留的最近消息数，请求的窗口大于该值时直接查询数据库
+     */
+    private int size = RagConstant.MEMORY_SIZE;
+
+    /**
+     * 空闲过期时间：会话在该时间内没有新消息时删除缓存
+     */
+    private Duration idleTtl = Duration.ofMinutes(30);
+
+}
@@ -0,0 +1,59 @@
+package com.cs.rag.config;
+
+import com.cs.rag.cache.CachingEmbeddingModel;
+import com.cs.rag.ollama.OllamaBackendPool;
+import com.cs.rag.ollama.RoutingEmbeddingModel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * 查询向量缓存配置类
+ * 当 cs.rag.embedding-cache.enabled=true 时生效，
+ * 用带缓存的 EmbeddingModel 包装 Ollama 嵌入模型，PgVectorStore 检索时自动走缓存
+ */
+@Configuration
+@ConditionalOnProperty(name = "cs.rag.embedding-cache.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class EmbeddingCacheConfig {
+
+    /**
+     * 创建带缓存的嵌入模型 Bean
+     *
+     * @param ollamaEmbeddingModel Ollama 嵌入模型
+     * @param modelName 嵌入模型名称，作为缓存键命名空间
+     * @param properties 缓存配置属性
+     * @param redisTemplateProvider Redis 模板（可选）
+     * @param embeddingPoolProvider Ollama 向量实例池（启用多实例负载均衡时存在）
+     * @return CachingEmbeddingModel 实例
+     */
+    @Bean
+    @Primary
+    public CachingEmbeddingModel cachingEmbeddingModel(OllamaEmbeddingModel ollamaEmbeddingModel,
+                                                       @Value("${spring.ai.ollama.embedding.model}") String modelName,
+                                                       EmbeddingCacheProperties properties,
+                                                       ObjectProvider<RedisTemplate<String, Object>> redisTemplateProvider,
+                                                       @Qualifier("ollamaEmbeddingPool") ObjectProvider<OllamaBackendPool> embeddingPoolProvider) {
+        RedisTemplate<String, Object> redisTemplate = null;
+        if (properties.isRedisEnabled()) {
+            redisTemplate = redisTemplateProvider.getIfAvailable();
+            if (redisTemplate == null) {
+                log.warn("已开启查询向量Redis缓存，但未找到RedisTemplate，请检查 cs.redis.enabled 配置");
+            }
+        }
+        OllamaBackendPool embeddingPool = embeddingPoolProvider.getIfAvailable();
+        EmbeddingModel delegate = embeddingPool != null ? new RoutingEmbeddingModel(embeddingPool) : ollamaEmbeddingModel;
+        log.info("开始创建查询向量缓存，model: {}, maxWeightBytes: {}, redis: {}, pool: {}",
+                modelName, properties.getMaxWeightBytes(), redisTemplate != null, embeddingPool != null);
+        return new CachingEmbeddingModel(delegate, modelName, properties, redisTemplate);
+    }
+
+}
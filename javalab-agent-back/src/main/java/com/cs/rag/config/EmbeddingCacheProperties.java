@@ -0,0 +1,43 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 查询向量缓存配置属性类
+ * 从 application.yml 中读取 cs.rag.embedding-cache.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.embedding-cache")
+@Data
+public class EmbeddingCacheProperties {
+
+    /**
+     * 是否启用查询向量缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 本地缓存（L1）最大占用字节数，按 key 长度 + 向量维度估算
+     */
+    private long maxWeightBytes = 64L * 1024 * 1024;
+
+    /**
+     * 本地缓存（L1）条目在最后一次访问后的过期时间
+     */
+    private Duration expireAfterAccess = Duration.ofHours(12);
+
+    /**
+     * 是否启用 Redis 二级缓存（L2），需同时开启 cs.redis.enabled
+     */
+    private boolean redisEnabled = false;
+
+    /**
+     * Redis 二级缓存（L2）过期时间
+     */
+    private Duration redisTtl = Duration.ofDays(7);
+
+}
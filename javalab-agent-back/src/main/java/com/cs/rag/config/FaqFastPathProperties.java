@@ -0,0 +1,26 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * FAQ 快速通道配置属性类
+ * 从 application.yml 中读取 cs.rag.faq-fast-path.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.faq-fast-path")
+@Data
+public class FaqFastPathProperties {
+
+    /**
+     * 是否启用 FAQ 快速通道（命中QA对时直接返回答案，不调用LLM）
+     */
+    private boolean enabled = false;
+
+    /**
+     * 检索结果第一名为QA对且相似度不低于该值时视为决定性命中
+     */
+    private double similarityThreshold = 0.95;
+
+}
@@ -0,0 +1,43 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * LLM生成并发限制配置属性类
+ * 从 application.yml 中读取 cs.rag.generation-limiter.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.generation-limiter")
+@Data
+public class GenerationLimiterProperties {
+
+    /**
+     * 是否限制同时进行的LLM生成数量，关闭后每个请求直接调用模型
+     */
+    private boolean enabled = false;
+
+    /**
+     * 同时进行的LLM生成数量上限，对话流与后台会话摘要共用（单GPU的Ollama建议与 OLLAMA_NUM_PARALLEL 一致）
+     */
+    private int maxConcurrent = 2;
+
+    /**
+     * 排队请求数上限，超出时直接拒绝
+     */
+    private int maxQueueSize = 50;
+
+    /**
+     * 最长排队时间，超时后返回提示并结束
+     */
+    private Duration maxQueueWait = Duration.ofSeconds(120);
+
+    /**
+     * 排队位置推送间隔（位置不变时不推送）
+     */
+    private Duration positionInterval = Duration.ofSeconds(1);
+
+}
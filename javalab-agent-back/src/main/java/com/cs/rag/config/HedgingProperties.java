@@ -0,0 +1,58 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * LLM对冲请求配置属性类
+ * 从 application.yml 中读取 cs.rag.hedging.* 配置，需同时启用 cs.rag.ollama-pool 且实例数不少于2
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.hedging")
+@Data
+public class HedgingProperties {
+
+    /**
+     * 是否启用：首个片段超过对冲延迟仍未返回时，在另一个实例上发起相同请求，采用先返回片段的一方
+     */
+    private boolean enabled = false;
+
+    /**
+     * 对冲延迟取近期首片段耗时的百分位（0~100）
+     */
+    private double percentile = 95;
+
+    /**
+     * 样本不足时使用的对冲延迟
+     */
+    private Duration initialDelay = Duration.ofSeconds(3);
+
+    /**
+     * 对冲延迟下限，避免正常波动触发对冲
+     */
+    private Duration minDelay = Duration.ofMillis(300);
+
+    /**
+     * 计算百分位所需的最少样本数
+     */
+    private int minSamples = 20;
+
+    /**
+     * 首片段耗时样本窗口大小（最近N次）
+     */
+    private int windowSize = 200;
+
+    /**
+     * 对冲预算：对冲请求数不超过总请求数的该比例
+     */
+    private double maxHedgeRatio = 0.1;
+
+    /**
+     * 对冲预算允许的突发对冲数
+     */
+    private int maxBurst = 5;
+
+}
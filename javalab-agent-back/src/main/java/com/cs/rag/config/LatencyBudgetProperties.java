@@ -0,0 +1,53 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 对话延迟预算配置属性类
+ * 从 application.yml 中读取 cs.rag.latency-budget.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.latency-budget")
+@Data
+public class LatencyBudgetProperties {
+
+    /**
+     * 是否启用延迟预算，启用后各阶段超时将降级而不是阻塞整轮对话
+     */
+    private boolean enabled = false;
+
+    /**
+     * 查询向量计算的预算
+     */
+    private Duration embedding = Duration.ofMillis(1500);
+
+    /**
+     * 向量检索的预算（未启用查询向量缓存时与 embedding 合并为一个预算）
+     */
+    private Duration vectorSearch = Duration.ofMillis(1000);
+
+    /**
+     * 历史消息加载的预算，超时后按无历史上下文继续
+     */
+    private Duration history = Duration.ofMillis(500);
+
+    /**
+     * 从调用LLM到收到首个片段的预算，超时后返回提示信息并结束本轮
+     */
+    private Duration firstToken = Duration.ofSeconds(30);
+
+    /**
+     * 检索降级时可复用的最近检索结果数量
+     */
+    private long fallbackCacheSize = 1000;
+
+    /**
+     * 最近检索结果的保留时间
+     */
+    private Duration fallbackCacheTtl = Duration.ofMinutes(10);
+
+}
@@ -0,0 +1,73 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 消息异步批量写入配置属性类
+ * 从 application.yml 中读取 cs.rag.message-write-behind.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.message-write-behind")
+@Data
+public class MessageWriteBehindProperties {
+
+    /**
+     * 是否启用：消息先进入内存队列，由后台线程批量写入，会话更新时间在每个刷新窗口内合并为一次更新
+     */
+    private boolean enabled = false;
+
+    /**
+     * 持久化确认方式
+     */
+    private Durability durability = Durability.FLUSH_BEFORE_ACK;
+
+    /**
+     * 队列容量，队列已满时退回为同步直接写入
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 每批最多写入的消息数
+     */
+    private int batchSize = 200;
+
+    /**
+     * ASYNC 模式的刷新窗口：收到第一条消息后最多等待的时间，窗口内的消息合并为一批（FLUSH_BEFORE_ACK 模式不等待）
+     */
+    private Duration flushInterval = Duration.ofMillis(20);
+
+    /**
+     * FLUSH_BEFORE_ACK 模式下等待写入完成的最长时间
+     */
+    private Duration ackTimeout = Duration.ofSeconds(5);
+
+    /**
+     * ASYNC 模式下写入失败的消息重新入队的最大次数，超过后记录为失败
+     */
+    private int maxRetries = 3;
+
+    /**
+     * 有消息重新入队时，后台线程下一次写入前等待的时间
+     */
+    private Duration retryBackoff = Duration.ofMillis(500);
+
+    /**
+     * 关闭时等待写完队列的最长时间
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+    /**
+     * 持久化确认方式
+     */
+    public enum Durability {
+        /** 等待所在批次写入数据库后返回（组提交，并发请求共享一次写入） */
+        FLUSH_BEFORE_ACK,
+        /** 入队后立即返回，进程异常退出时可能丢失最近一个刷新窗口内的消息 */
+        ASYNC
+    }
+
+}
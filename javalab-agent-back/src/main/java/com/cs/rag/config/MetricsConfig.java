@@ -0,0 +1,325 @@
+package com.cs.rag.config;
+
+import com.cs.rag.cache.CachingEmbeddingModel;
+import com.cs.rag.cache.ConversationWindowCache;
+import com.cs.rag.cache.QaAnswerIndex;
+import com.cs.rag.cache.SemanticAnswerCache;
+import com.cs.rag.cache.SessionListCache;
+import com.cs.rag.cache.SessionLookupCache;
+import com.cs.rag.ollama.HedgingPolicy;
+import com.cs.rag.ollama.OllamaBackend;
+import com.cs.rag.ollama.OllamaBackendPool;
+import com.cs.rag.pipeline.ConversationSummarizer;
+import com.cs.rag.pipeline.GenerationCostTracker;
+import com.cs.rag.pipeline.GenerationLimiter;
+import com.cs.rag.pipeline.LatencyBudget;
+import com.cs.rag.pipeline.MessageWriteBehind;
+import com.cs.rag.pipeline.ModelRouter;
+import com.cs.rag.pipeline.RequestCoalescer;
+import com.cs.rag.pipeline.SseFrameCoalescer;
+import com.cs.rag.pipeline.StablePrefixWindow;
+import com.cs.rag.pipeline.StreamReplayBuffer;
+import com.cs.rag.prompt.PromptTemplateRegistry;
+import com.cs.rag.vectorstore.MirrorVectorStore;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 指标配置类
+ * 将各组件已有的 LongAdder 统计注册为 Micrometer 计数器/仪表，由 /actuator/prometheus 导出；
+ * 对话链路的分阶段耗时直方图见 ChatMetrics
+ */
+@Configuration
+@Slf4j
+public class MetricsConfig {
+
+    /**
+     * 对话管线指标：生成并发限制、生成耗时、请求合并、延迟预算降级、SSE合并、续传、前缀复用、消息异步写入
+     *
+     * @return MeterBinder 实例
+     */
+    @Bean
+    public MeterBinder chatPipelineMetrics(GenerationLimiter generationLimiter,
+                                           GenerationCostTracker generationCostTracker,
+                                           RequestCoalescer requestCoalescer,
+                                           LatencyBudget latencyBudget,
+                                           SseFrameCoalescer sseFrameCoalescer,
+                                           StreamReplayBuffer streamReplayBuffer,
+                                           StablePrefixWindow stablePrefixWindow,
+                                           MessageWriteBehind messageWriteBehind) {
+        return registry -> {
+            Gauge.builder("rag.generation.queue.depth", generationLimiter, GenerationLimiter::queueDepth)
+                    .description("排队等待生成的请求数").register(registry);
+            Gauge.builder("rag.generation.in.flight", generationLimiter, GenerationLimiter::inFlight)
+                    .description("进行中的生成数").register(registry);
+            counter(registry, "rag.generation.admission", Tags.of("result", "admitted"),
+                    generationLimiter, GenerationLimiter::admittedCount);
+            counter(registry, "rag.generation.admission", Tags.of("result", "rejected"),
+                    generationLimiter, GenerationLimiter::rejectedCount);
+            counter(registry, "rag.generation.admission", Tags.of("result", "timeout"),
+                    generationLimiter, GenerationLimiter::timeoutCount);
+            counter(registry, "rag.generation.admission", Tags.of("result", "abandoned"),
+                    generationLimiter, GenerationLimiter::abandonedCount);
+            counter(registry, "rag.generation.queue.wait.seconds", Tags.empty(),
+                    generationLimiter, limiter -> limiter.totalWaitMillis() / 1000.0);
+
+            counter(registry, "rag.generation.seconds", Tags.of("outcome", "completed"),
+                    generationCostTracker, GenerationCostTracker::completedSeconds);
+            counter(registry, "rag.generation.seconds", Tags.of("outcome", "cancelled"),
+                    generationCostTracker, GenerationCostTracker::cancelledSeconds);
+            counter(registry, "rag.generation.seconds", Tags.of("outcome", "timeout"),
+                    generationCostTracker, GenerationCostTracker::timedOutSeconds);
+            counter(registry, "rag.generation.saved.gpu.seconds", Tags.empty(),
+                    generationCostTracker, GenerationCostTracker::savedGpuSeconds);
+            Gauge.builder("rag.prompt.eval.avg.millis", generationCostTracker,
+                            GenerationCostTracker::averageFirstTurnPromptEvalMillis)
+                    .tag("turn", "first").description("平均提示词计算耗时").register(registry);
+            Gauge.builder("rag.prompt.eval.avg.millis", generationCostTracker,
+                            GenerationCostTracker::averageFollowUpPromptEvalMillis)
+                    .tag("turn", "follow_up").description("平均提示词计算耗时").register(registry);
+            Gauge.builder("rag.prompt.eval.avg.tokens", generationCostTracker,
+                            GenerationCostTracker::averageFirstTurnPromptEvalTokens)
+                    .tag("turn", "first").description("平均实际计算的提示词Token数").register(registry);
+            Gauge.builder("rag.prompt.eval.avg.tokens", generationCostTracker,
+                            GenerationCostTracker::averageFollowUpPromptEvalTokens)
+                    .tag("turn", "follow_up").description("平均实际计算的提示词Token数").register(registry);
+
+            counter(registry, "rag.coalescing.requests", Tags.of("kind", "retrieval"),
+                    requestCoalescer, RequestCoalescer::retrievalRequestCount);
+            counter(registry, "rag.coalescing.coalesced", Tags.of("kind", "retrieval"),
+                    requestCoalescer, RequestCoalescer::retrievalCoalescedCount);
+            counter(registry, "rag.coalescing.requests", Tags.of("kind", "generation"),
+                    requestCoalescer, RequestCoalescer::generationRequestCount);
+            counter(registry, "rag.coalescing.coalesced", Tags.of("kind", "generation"),
+                    requestCoalescer, RequestCoalescer::generationCoalescedCount);
+
+            for (String stage : new String[]{LatencyBudget.STAGE_EMBEDDING, LatencyBudget.STAGE_VECTOR_SEARCH,
+                    LatencyBudget.STAGE_RETRIEVAL, LatencyBudget.STAGE_HISTORY, LatencyBudget.STAGE_FIRST_TOKEN}) {
+                counter(registry, "rag.latency.budget.degradations", Tags.of("stage", stage),
+                        latencyBudget, budget -> budget.degradationCount(stage));
+            }
+            counter(registry, "rag.latency.budget.fallback.hits", Tags.empty(),
+                    latencyBudget, LatencyBudget::fallbackHitCount);
+
+            counter(registry, "rag.sse.frames", Tags.of("direction", "in"),
+                    sseFrameCoalescer, SseFrameCoalescer::framesInCount);
+            counter(registry, "rag.sse.frames", Tags.of("direction", "out"),
+                    sseFrameCoalescer, SseFrameCoalescer::framesOutCount);
+
+            Gauge.builder("rag.stream.replay.buffered", streamReplayBuffer, StreamReplayBuffer::bufferedStreams)
+                    .description("缓冲中的对话流数").register(registry);
+            counter(registry, "rag.stream.replay.opened", Tags.empty(),
+                    streamReplayBuffer, StreamReplayBuffer::openedCount);
+            counter(registry, "rag.stream.replay.resumed", Tags.of("source", "local"),
+                    streamReplayBuffer, StreamReplayBuffer::resumedCount);
+            counter(registry, "rag.stream.replay.resumed", Tags.of("source", "redis"),
+                    streamReplayBuffer, StreamReplayBuffer::redisResumedCount);
+            counter(registry, "rag.stream.replay.resume.miss", Tags.empty(),
+                    streamReplayBuffer, StreamReplayBuffer::resumeMissCount);
+            counter(registry, "rag.stream.replay.dropped", Tags.of("reason", "size"),
+                    streamReplayBuffer, StreamReplayBuffer::evictedBySizeCount);
+            counter(registry, "rag.stream.replay.dropped", Tags.of("reason", "expired"),
+                    streamReplayBuffer, StreamReplayBuffer::expiredCount);
+            counter(registry, "rag.stream.replay.frame.overflow", Tags.empty(),
+                    streamReplayBuffer, StreamReplayBuffer::frameOverflowCount);
+            counter(registry, "rag.stream.replay.grace.cancellations", Tags.empty(),
+                    streamReplayBuffer, StreamReplayBuffer::graceCancellationCount);
+
+            counter(registry, "rag.prompt.prefix.window", Tags.of("result", "reused"),
+                    stablePrefixWindow, StablePrefixWindow::reusedCount);
+            counter(registry, "rag.prompt.prefix.window", Tags.of("result", "moved"),
+                    stablePrefixWindow, StablePrefixWindow::movedCount);
+
+            Gauge.builder("rag.message.write.behind.queue.depth", messageWriteBehind, MessageWriteBehind::queueDepth)
+                    .description("等待写入的消息数").register(registry);
+            counter(registry, "rag.message.write.behind.messages", Tags.of("result", "flushed"),
+                    messageWriteBehind, MessageWriteBehind::flushedCount);
+            counter(registry, "rag.message.write.behind.messages", Tags.of("result", "failed"),
+                    messageWriteBehind, MessageWriteBehind::failureCount);
+            counter(registry, "rag.message.write.behind.messages", Tags.of("result", "retried"),
+                    messageWriteBehind, MessageWriteBehind::retryCount);
+            counter(registry, "rag.message.write.behind.messages", Tags.of("result", "overflow"),
+                    messageWriteBehind, MessageWriteBehind::overflowCount);
+            counter(registry, "rag.message.write.behind.batches", Tags.empty(),
+                    messageWriteBehind, MessageWriteBehind::batchCount);
+            counter(registry, "rag.message.write.behind.session.touches", Tags.empty(),
+                    messageWriteBehind, MessageWriteBehind::sessionTouchCount);
+            counter(registry, "rag.message.write.behind.ack.timeouts", Tags.empty(),
+                    messageWriteBehind, MessageWriteBehind::ackTimeoutCount);
+        };
+    }
+
+    /**
+     * 缓存与模型选择指标：语义答案缓存、FAQ快速通道、查询向量缓存、内存向量镜像、会话列表缓存、会话本地缓存、会话热窗口、会话摘要、模型路由、提示词模板
+     *
+     * @return MeterBinder 实例
+     */
+    @Bean
+    public MeterBinder ragCacheMetrics(SemanticAnswerCache semanticAnswerCache,
+                                       QaAnswerIndex qaAnswerIndex,
+                                       ObjectProvider<CachingEmbeddingModel> cachingEmbeddingModelProvider,
+                                       ObjectProvider<MirrorVectorStore> mirrorVectorStoreProvider,
+                                       SessionListCache sessionListCache,
+                                       SessionLookupCache sessionLookupCache,
+                                       ConversationWindowCache conversationWindowCache,
+                                       ConversationSummarizer conversationSummarizer,
+                                       ModelRouter modelRouter,
+                                       PromptTemplateRegistry promptTemplateRegistry) {
+        return registry -> {
+            counter(registry, "rag.answer.cache", Tags.of("result", "hit"),
+                    semanticAnswerCache, SemanticAnswerCache::hitCount);
+            counter(registry, "rag.answer.cache", Tags.of("result", "miss"),
+                    semanticAnswerCache, SemanticAnswerCache::missCount);
+            counter(registry, "rag.answer.cache.invalidations", Tags.empty(),
+                    semanticAnswerCache, SemanticAnswerCache::invalidationCount);
+            Gauge.builder("rag.answer.cache.buckets", semanticAnswerCache, SemanticAnswerCache::bucketCount)
+                    .register(registry);
+
+            counter(registry, "rag.faq.fast.path", Tags.of("match", "exact"),
+                    qaAnswerIndex, QaAnswerIndex::exactHitCount);
+            counter(registry, "rag.faq.fast.path", Tags.of("match", "similarity"),
+                    qaAnswerIndex, QaAnswerIndex::similarityHitCount);
+            Gauge.builder("rag.faq.index.size", qaAnswerIndex, QaAnswerIndex::size).register(registry);
+
+            CachingEmbeddingModel cachingEmbeddingModel = cachingEmbeddingModelProvider.getIfAvailable();
+            if (cachingEmbeddingModel != null) {
+                Gauge.builder("rag.embedding.cache.local.size", cachingEmbeddingModel, CachingEmbeddingModel::localSize)
+                        .register(registry);
+                counter(registry, "rag.embedding.cache.local", Tags.of("result", "hit"),
+                        cachingEmbeddingModel, model -> model.localStats().hitCount());
+                counter(registry, "rag.embedding.cache.local", Tags.of("result", "miss"),
+                        cachingEmbeddingModel, model -> model.localStats().missCount());
+                counter(registry, "rag.embedding.cache.local.evictions", Tags.empty(),
+                        cachingEmbeddingModel, model -> model.localStats().evictionCount());
+                counter(registry, "rag.embedding.cache.redis", Tags.of("result", "hit"),
+                        cachingEmbeddingModel, CachingEmbeddingModel::redisHitCount);
+                counter(registry, "rag.embedding.cache.redis", Tags.of("result", "miss"),
+                        cachingEmbeddingModel, CachingEmbeddingModel::redisMissCount);
+            }
+            MirrorVectorStore mirrorVectorStore = mirrorVectorStoreProvider.getIfAvailable();
+            if (mirrorVectorStore != null) {
+                Gauge.builder("rag.vector.mirror.documents", mirrorVectorStore, MirrorVectorStore::liveCount)
+                        .register(registry);
+            }
+
+            counter(registry, "rag.session.list.cache", Tags.of("result", "hit"),
+                    sessionListCache, SessionListCache::hitCount);
+            counter(registry, "rag.session.list.cache", Tags.of("result", "miss"),
+                    sessionListCache, SessionListCache::missCount);
+            counter(registry, "rag.session.list.cache.updates", Tags.empty(),
+                    sessionListCache, SessionListCache::updateCount);
+            counter(registry, "rag.session.list.cache.invalidations", Tags.empty(),
+                    sessionListCache, SessionListCache::invalidationCount);
+            Gauge.builder("rag.session.list.cache.users", sessionListCache, SessionListCache::size)
+                    .register(registry);
+
+            counter(registry, "rag.session.cache", Tags.of("result", "hit"),
+                    sessionLookupCache, SessionLookupCache::hitCount);
+            counter(registry, "rag.session.cache", Tags.of("result", "miss"),
+                    sessionLookupCache, SessionLookupCache::missCount);
+            counter(registry, "rag.session.cache.invalidations", Tags.of("source", "local"),
+                    sessionLookupCache, SessionLookupCache::invalidationCount);
+            counter(registry, "rag.session.cache.invalidations", Tags.of("source", "remote"),
+                    sessionLookupCache, SessionLookupCache::remoteInvalidationCount);
+            Gauge.builder("rag.session.cache.size", sessionLookupCache, SessionLookupCache::size)
+                    .register(registry);
+
+            counter(registry, "rag.conversation.window", Tags.of("result", "hit"),
+                    conversationWindowCache, ConversationWindowCache::hitCount);
+            counter(registry, "rag.conversation.window", Tags.of("result", "miss"),
+                    conversationWindowCache, ConversationWindowCache::missCount);
+            counter(registry, "rag.conversation.window", Tags.of("result", "error"),
+                    conversationWindowCache, ConversationWindowCache::errorCount);
+            counter(registry, "rag.conversation.window.fills", Tags.of("result", "filled"),
+                    conversationWindowCache, ConversationWindowCache::fillCount);
+            counter(registry, "rag.conversation.window.fills", Tags.of("result", "skipped"),
+                    conversationWindowCache, ConversationWindowCache::fillSkipCount);
+
+            counter(registry, "rag.summary.updates", Tags.of("result", "success"),
+                    conversationSummarizer, ConversationSummarizer::updateCount);
+            counter(registry, "rag.summary.updates", Tags.of("result", "failure"),
+                    conversationSummarizer, ConversationSummarizer::failureCount);
+            counter(registry, "rag.summary.updates", Tags.of("result", "skipped"),
+                    conversationSummarizer, ConversationSummarizer::skippedCount);
+            counter(registry, "rag.summary.seconds", Tags.empty(),
+                    conversationSummarizer, summarizer -> summarizer.totalSummaryMillis() / 1000.0);
+
+            counter(registry, "rag.model.routing.decisions", Tags.of("tier", "small"),
+                    modelRouter, ModelRouter::smallDecisionCount);
+            counter(registry, "rag.model.routing.decisions", Tags.of("tier", "large"),
+                    modelRouter, ModelRouter::largeDecisionCount);
+
+            Gauge.builder("rag.prompt.templates", promptTemplateRegistry, PromptTemplateRegistry::templateCount)
+                    .register(registry);
+            counter(registry, "rag.prompt.template.reloads", Tags.of("result", "success"),
+                    promptTemplateRegistry, PromptTemplateRegistry::reloadCount);
+            counter(registry, "rag.prompt.template.reloads", Tags.of("result", "failure"),
+                    promptTemplateRegistry, PromptTemplateRegistry::reloadFailureCount);
+        };
+    }
+
+    /**
+     * Ollama 实例池指标（仅 cs.rag.ollama-pool.enabled=true 时存在），按实例地址打标签；对话与向量共用实例池时只注册一次
+     *
+     * @return MeterBinder 实例
+     */
+    @Bean
+    public MeterBinder ollamaPoolMetrics(@Qualifier("ollamaChatPool") ObjectProvider<OllamaBackendPool> chatPoolProvider,
+                                         @Qualifier("ollamaEmbeddingPool") ObjectProvider<OllamaBackendPool> embeddingPoolProvider,
+                                         ObjectProvider<HedgingPolicy> hedgingPolicyProvider) {
+        return registry -> {
+            Set<OllamaBackendPool> pools = new HashSet<>();
+            for (OllamaBackendPool pool : new OllamaBackendPool[]{
+                    chatPoolProvider.getIfAvailable(), embeddingPoolProvider.getIfAvailable()}) {
+                if (pool == null || !pools.add(pool)) {
+                    continue;
+                }
+                for (OllamaBackend backend : pool.getBackends()) {
+                    Tags tags = Tags.of("pool", pool.getName(), "backend", backend.getBaseUrl());
+                    Gauge.builder("rag.ollama.in.flight", backend, OllamaBackend::inFlight)
+                            .tags(tags).register(registry);
+                    Gauge.builder("rag.ollama.circuit.open", backend,
+                                    b -> b.state(System.nanoTime()) == OllamaBackend.State.CLOSED ? 0 : 1)
+                            .tags(tags).description("实例是否处于熔断（含半开探测）").register(registry);
+                    counter(registry, "rag.ollama.requests", tags.and("outcome", "finished"),
+                            backend, OllamaBackend::requestCount);
+                    counter(registry, "rag.ollama.requests", tags.and("outcome", "failure"),
+                            backend, OllamaBackend::failureCount);
+                    counter(registry, "rag.ollama.latency.seconds", tags,
+                            backend, b -> b.totalLatencyMillis() / 1000.0);
+                    counter(registry, "rag.ollama.chunks", tags, backend, OllamaBackend::chunkCount);
+                    counter(registry, "rag.ollama.circuit.opens", tags, backend, OllamaBackend::circuitOpenCount);
+                }
+            }
+
+            HedgingPolicy hedgingPolicy = hedgingPolicyProvider.getIfAvailable();
+            if (hedgingPolicy != null) {
+                counter(registry, "rag.hedging.requests", Tags.empty(), hedgingPolicy, HedgingPolicy::requestCount);
+                counter(registry, "rag.hedging.hedged", Tags.empty(), hedgingPolicy, HedgingPolicy::hedgedCount);
+                counter(registry, "rag.hedging.wins", Tags.empty(), hedgingPolicy, HedgingPolicy::hedgeWinCount);
+                counter(registry, "rag.hedging.budget.denied", Tags.empty(),
+                        hedgingPolicy, HedgingPolicy::budgetDeniedCount);
+                counter(registry, "rag.hedging.saved.ttft.seconds", Tags.empty(),
+                        hedgingPolicy, HedgingPolicy::savedTtftSeconds);
+                Gauge.builder("rag.hedging.delay.millis", hedgingPolicy, policy -> policy.delay().toMillis())
+                        .description("当前对冲延迟").register(registry);
+            }
+        };
+    }
+
+    private static <T> void counter(MeterRegistry registry, String name, Tags tags, T obj, ToDoubleFunction<T> f) {
+        FunctionCounter.builder(name, obj, f).tags(tags).register(registry);
+    }
+}
@@ -0,0 +1,61 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 大小模型路由配置属性类
+ * 从 application.yml 中读取 cs.rag.model-routing.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.model-routing")
+@Data
+public class ModelRoutingProperties {
+
+    /**
+     * 是否启用：按问题复杂度在小模型和大模型之间路由
+     */
+    private boolean enabled = false;
+
+    /**
+     * 影子模式：只记录路由判定，所有请求仍使用大模型，用于上线前核对判定结果
+     */
+    private boolean shadow = true;
+
+    /**
+     * 小模型名称
+     */
+    private String smallModel = "qwen3:1.7b";
+
+    /**
+     * 大模型名称，为空时使用 spring.ai.ollama.chat.model
+     */
+    private String largeModel;
+
+    /**
+     * 问题字符数不超过该值才可能判定为简单问题
+     */
+    private int maxSimpleChars = 30;
+
+    /**
+     * 历史消息数超过该值时判定为复杂问题（多轮追问依赖上下文推理）
+     */
+    private int maxSimpleHistoryMessages = 2;
+
+    /**
+     * 检索到文档时，最高相似度不低于该值才判定为简单问题（知识库直接命中）；
+     * 未检索到文档的短问题（寒暄等）同样判定为简单
+     */
+    private double minSimpleTopScore = 0.85;
+
+    /**
+     * 包含这些词的问题判定为复杂问题
+     */
+    private List<String> complexKeywords = new ArrayList<>(List.of(
+            "为什么", "原理", "区别", "比较", "实现", "分析", "设计", "优化", "源码"));
+
+}
@@ -0,0 +1,153 @@
+package com.cs.rag.config;
+
+import com.cs.rag.ollama.HedgingPolicy;
+import com.cs.rag.ollama.OllamaBackend;
+import com.cs.rag.ollama.OllamaBackendPool;
+import com.cs.rag.ollama.RoutingChatModel;
+import com.cs.rag.ollama.RoutingEmbeddingModel;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.autoconfigure.ollama.OllamaChatProperties;
+import org.springframework.ai.autoconfigure.ollama.OllamaConnectionProperties;
+import org.springframework.ai.autoconfigure.ollama.OllamaEmbeddingProperties;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.List;
+
+/**
+ * Ollama 多实例负载均衡配置类
+ * 当 cs.rag.ollama-pool.enabled=true 时生效，按地址列表为每个实例创建对话/向量模型，
+ * 用路由模型替换默认的单实例模型；向量缓存开启时由缓存包装路由模型（见 EmbeddingCacheConfig）
+ */
+@Configuration
+@ConditionalOnProperty(name = "cs.rag.ollama-pool.enabled", havingValue = "true")
+@Slf4j
+public class OllamaPoolConfig {
+
+    /**
+     * 创建对话实例池 Bean（未单独配置向量实例时与向量共用）
+     *
+     * @param properties 实例池配置属性
+     * @param connectionProperties 默认 Ollama 连接配置
+     * @param chatProperties 对话模型配置
+     * @param embeddingProperties 向量模型配置
+     * @param restClientBuilderProvider RestClient 构建器
+     * @param webClientBuilderProvider WebClient 构建器
+     * @param observationRegistryProvider 观测注册表
+     * @return 对话实例池
+     */
+    @Bean
+    public OllamaBackendPool ollamaChatPool(OllamaPoolProperties properties,
+                                            OllamaConnectionProperties connectionProperties,
+                                            OllamaChatProperties chatProperties,
+                                            OllamaEmbeddingProperties embeddingProperties,
+                                            ObjectProvider<RestClient.Builder> restClientBuilderProvider,
+                                            ObjectProvider<WebClient.Builder> webClientBuilderProvider,
+                                            ObjectProvider<ObservationRegistry> observationRegistryProvider) {
+        List<String> baseUrls = properties.getChatBaseUrls().isEmpty()
+                ? List.of(connectionProperties.getBaseUrl()) : properties.getChatBaseUrls();
+        String name = properties.getEmbeddingBaseUrls().isEmpty() ? "shared" : "chat";
+        return createPool(name, baseUrls, properties, chatProperties, embeddingProperties,
+                restClientBuilderProvider, webClientBuilderProvider, observationRegistryProvider);
+    }
+
+    /**
+     * 创建向量实例池 Bean
+     *
+     * @return 配置了向量实例时为独立实例池，否则为对话实例池
+     */
+    @Bean
+    public OllamaBackendPool ollamaEmbeddingPool(@Qualifier("ollamaChatPool") OllamaBackendPool ollamaChatPool,
+                                                 OllamaPoolProperties properties,
+                                                 OllamaChatProperties chatProperties,
+                                                 OllamaEmbeddingProperties embeddingProperties,
+                                                 ObjectProvider<RestClient.Builder> restClientBuilderProvider,
+                                                 ObjectProvider<WebClient.Builder> webClientBuilderProvider,
+                                                 ObjectProvider<ObservationRegistry> observationRegistryProvider) {
+        if (properties.getEmbeddingBaseUrls().isEmpty()) {
+            return ollamaChatPool;
+        }
+        return createPool("embedding", properties.getEmbeddingBaseUrls(), properties, chatProperties, embeddingProperties,
+                restClientBuilderProvider, webClientBuilderProvider, observationRegistryProvider);
+    }
+
+    /**
+     * 创建对冲策略 Bean
+     *
+     * @param hedgingProperties 对冲配置属性
+     * @return HedgingPolicy 实例
+     */
+    @Bean
+    public HedgingPolicy hedgingPolicy(HedgingProperties hedgingProperties) {
+        return new HedgingPolicy(hedgingProperties);
+    }
+
+    /**
+     * 创建路由对话模型 Bean，替换默认的单实例对话模型
+     *
+     * @param ollamaChatPool 对话实例池
+     * @param hedgingPolicy 对冲策略
+     * @return RoutingChatModel 实例
+     */
+    @Bean
+    @Primary
+    public RoutingChatModel routingChatModel(@Qualifier("ollamaChatPool") OllamaBackendPool ollamaChatPool,
+                                             HedgingPolicy hedgingPolicy) {
+        log.info("创建路由对话模型，hedging: {}, 实例数: {}",
+                hedgingPolicy.isEnabled(), ollamaChatPool.getBackends().size());
+        return new RoutingChatModel(ollamaChatPool, hedgingPolicy);
+    }
+
+    /**
+     * 向量缓存关闭时，直接以路由向量模型替换默认的单实例向量模型
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "cs.rag.embedding-cache.enabled", havingValue = "false")
+    static class RoutingEmbeddingConfig {
+
+        @Bean
+        @Primary
+        public RoutingEmbeddingModel routingEmbeddingModel(@Qualifier("ollamaEmbeddingPool") OllamaBackendPool ollamaEmbeddingPool) {
+            return new RoutingEmbeddingModel(ollamaEmbeddingPool);
+        }
+    }
+
+    private OllamaBackendPool createPool(String name, List<String> baseUrls, OllamaPoolProperties properties,
+                                         OllamaChatProperties chatProperties,
+                                         OllamaEmbeddingProperties embeddingProperties,
+                                         ObjectProvider<RestClient.Builder> restClientBuilderProvider,
+                                         ObjectProvider<WebClient.Builder> webClientBuilderProvider,
+                                         ObjectProvider<ObservationRegistry> observationRegistryProvider) {
+        ObservationRegistry observationRegistry = observationRegistryProvider.getIfUnique(() -> ObservationRegistry.NOOP);
+        List<OllamaBackend> backends = baseUrls.stream().map(baseUrl -> {
+            OllamaApi ollamaApi = new OllamaApi(baseUrl,
+                    restClientBuilderProvider.getIfAvailable(RestClient::builder),
+                    webClientBuilderProvider.getIfAvailable(WebClient::builder));
+            OllamaChatModel chatModel = OllamaChatModel.builder()
+                    .ollamaApi(ollamaApi)
+                    .defaultOptions(chatProperties.getOptions())
+                    .observationRegistry(observationRegistry)
+                    .build();
+            OllamaEmbeddingModel embeddingModel = OllamaEmbeddingModel.builder()
+                    .ollamaApi(ollamaApi)
+                    .defaultOptions(embeddingProperties.getOptions())
+                    .observationRegistry(observationRegistry)
+                    .build();
+            return new OllamaBackend(baseUrl, chatModel, embeddingModel);
+        }).toList();
+        log.info("创建Ollama实例池[{}]，实例: {}, failureThreshold: {}, openDuration: {}ms",
+                name, baseUrls, properties.getFailureThreshold(), properties.getOpenDuration().toMillis());
+        return new OllamaBackendPool(name, backends, properties);
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ollama 多实例负载均衡配置属性类
+ * 从 application.yml 中读取 cs.rag.ollama-pool.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.ollama-pool")
+@Data
+public class OllamaPoolProperties {
+
+    /**
+     * 是否启用：对话和向量请求路由到进行中请求数最少的 Ollama 实例
+     */
+    private boolean enabled = false;
+
+    /**
+     * 对话实例地址列表，为空时使用 spring.ai.ollama.base-url
+     */
+    private List<String> chatBaseUrls = new ArrayList<>();
+
+    /**
+     * 向量实例地址列表，为空时与对话共用同一组实例（进行中请求数合并计算）
+     */
+    private List<String> embeddingBaseUrls = new ArrayList<>();
+
+    /**
+     * 连续失败次数达到该值时熔断实例
+     */
+    private int failureThreshold = 3;
+
+    /**
+     * 熔断持续时间，到期后放行一个探测请求，成功则恢复
+     */
+    private Duration openDuration = Duration.ofSeconds(30);
+
+}
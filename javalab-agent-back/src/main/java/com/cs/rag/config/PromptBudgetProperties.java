@@ -0,0 +1,41 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 提示词 Token 预算配置属性类
+ * 从 application.yml 中读取 cs.rag.prompt-budget.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.prompt-budget")
+@Data
+public class PromptBudgetProperties {
+
+    /**
+     * 是否按 Token 预算裁剪检索文档和历史消息，关闭后全部发送（仍记录 Token 数）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 整个提示词（系统提示词 + 历史 + 检索文档 + 当前问题）的 Token 上限
+     */
+    private int maxPromptTokens = 6000;
+
+    /**
+     * 为最近历史预留的 Token 数，避免检索文档占满预算后完全丢失上下文
+     */
+    private int reservedHistoryTokens = 800;
+
+    /**
+     * 文档放不下时，剩余预算不少于该值才截断放入，否则直接丢弃
+     */
+    private int minTruncatedChunkTokens = 128;
+
+    /**
+     * Token 数缓存的最大条目数（消息与文档分别计算）
+     */
+    private long tokenCacheSize = 20000;
+
+}
@@ -0,0 +1,38 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 提示词前缀复用配置属性类
+ * 从 application.yml 中读取 cs.rag.prompt-cache.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.prompt-cache")
+@Data
+public class PromptCacheProperties {
+
+    /**
+     * 是否启用：保持同一会话各轮提示词前缀稳定，使 Ollama 复用已计算的 KV 缓存
+     */
+    private boolean enabled = false;
+
+    /**
+     * 历史窗口起点每次前移的消息数（偶数，按问答对前移），越大前缀保持稳定的轮数越多，历史消息最少时越少
+     */
+    private int windowStep = 4;
+
+    /**
+     * 会话窗口起点的保留时间，建议与 spring.ai.ollama.chat.options.keep-alive 一致
+     */
+    private Duration anchorTtl = Duration.ofMinutes(30);
+
+    /**
+     * 最多记录窗口起点的会话数
+     */
+    private long maxSessions = 10000;
+
+}
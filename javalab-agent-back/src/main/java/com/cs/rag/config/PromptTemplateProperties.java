@@ -0,0 +1,33 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 提示词模板配置属性类
+ * 从 application.yml 中读取 cs.rag.prompt-templates.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.prompt-templates")
+@Data
+public class PromptTemplateProperties {
+
+    /**
+     * 外部提示词目录，其中的 *.md 覆盖 classpath:/prompts/ 下的同名模板，为空时只使用内置模板
+     */
+    private String externalDir;
+
+    /**
+     * 是否监听模板文件变化并热加载（外部目录，以及开发环境下以目录形式存在的 classpath:/prompts/）
+     */
+    private boolean hotReload = true;
+
+    /**
+     * 文件变化后等待的时间，编辑器保存时的多次事件合并为一次重载
+     */
+    private Duration reloadDelay = Duration.ofMillis(300);
+
+}
@@ -1,12 +1,20 @@
 package com.cs.rag.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+/**
+ * Redis 配置类
+ * 当 cs.redis.enabled=true 时生效（docker-compose 部署默认开启）
+ */
+@Configuration
+@ConditionalOnProperty(name = "cs.redis.enabled", havingValue = "true")
 public class RedisConfig {
 
+    @Bean
     public RedisTemplate<String, Object> redisTemplate(org.springframework.data.redis.connection.RedisConnectionFactory factory) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(factory);
@@ -0,0 +1,67 @@
+package com.cs.rag.config;
+
+import com.cs.rag.cache.SessionLookupCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 会话本地缓存配置类
+ * 开启 cs.rag.session-cache.redis-invalidation 时通过 Redis 发布/订阅在实例间广播失效
+ */
+@Configuration
+@Slf4j
+public class SessionCacheConfig {
+
+    /**
+     * 创建会话本地缓存 Bean
+     *
+     * @param properties 会话缓存配置属性
+     * @param redisTemplateProvider Redis 模板（可选）
+     * @return SessionLookupCache 实例
+     */
+    @Bean
+    public SessionLookupCache sessionLookupCache(SessionCacheProperties properties,
+                                                 ObjectProvider<RedisTemplate<String, Object>> redisTemplateProvider) {
+        RedisTemplate<String, Object> redisTemplate = null;
+        if (properties.isEnabled() && properties.isRedisInvalidation()) {
+            redisTemplate = redisTemplateProvider.getIfAvailable();
+            if (redisTemplate == null) {
+                log.warn("已开启会话缓存失效广播，但未找到RedisTemplate，请检查 cs.redis.enabled 配置");
+            }
+        }
+        log.info("创建会话本地缓存，enabled: {}, maxSessions: {}, ttl: {}, redisInvalidation: {}",
+                properties.isEnabled(), properties.getMaxSessions(), properties.getTtl(), redisTemplate != null);
+        return new SessionLookupCache(properties, redisTemplate);
+    }
+
+    /**
+     * 订阅会话缓存失效频道，移除其他实例已删除或已更新摘要的会话
+     *
+     * @param connectionFactory Redis 连接工厂
+     * @param sessionLookupCache 会话本地缓存
+     * @return RedisMessageListenerContainer 实例
+     */
+    @Bean
+    @ConditionalOnProperty(name = {"cs.redis.enabled", "cs.rag.session-cache.redis-invalidation"}, havingValue = "true")
+    public RedisMessageListenerContainer sessionInvalidationListener(RedisConnectionFactory connectionFactory,
+                                                                     SessionLookupCache sessionLookupCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> sessionLookupCache.onRemoteInvalidation(
+                        new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(SessionLookupCache.INVALIDATION_CHANNEL));
+        log.info("订阅会话缓存失效频道: {}", SessionLookupCache.INVALIDATION_CHANNEL);
+        return container;
+    }
+
+}
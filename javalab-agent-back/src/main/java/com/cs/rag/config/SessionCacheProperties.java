@@ -0,0 +1,38 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 会话本地缓存配置属性类
+ * 从 application.yml 中读取 cs.rag.session-cache.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.session-cache")
+@Data
+public class SessionCacheProperties {
+
+    /**
+     * 是否缓存会话（归属用户、摘要），对话时已有会话不再查询数据库
+     */
+    private boolean enabled = true;
+
+    /**
+     * 最多缓存的会话数
+     */
+    private long maxSessions = 10000;
+
+    /**
+     * 缓存有效期（兜底：失效广播丢失时最多在该时间后重新查询）
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * 是否通过 Redis 发布/订阅广播失效消息，多实例部署时开启（需开启 cs.redis.enabled）
+     */
+    private boolean redisInvalidation = false;
+
+}
@@ -0,0 +1,38 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 会话列表首页缓存配置属性类
+ * 从 application.yml 中读取 cs.rag.session-list-cache.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.session-list-cache")
+@Data
+public class SessionListCacheProperties {
+
+    /**
+     * 是否缓存每个用户的会话列表首页
+     */
+    private boolean enabled = true;
+
+    /**
+     * 缓存的首页会话数（请求的每页条数不超过该值时由缓存直接返回）
+     */
+    private int pageSize = 20;
+
+    /**
+     * 最多缓存的用户数
+     */
+    private long maxUsers = 10000;
+
+    /**
+     * 缓存有效期（兜底：多实例部署时其他实例的写入不会就地更新本实例缓存）
+     */
+    private Duration ttl = Duration.ofMinutes(5);
+
+}
@@ -0,0 +1,33 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * SSE写出合并配置属性类
+ * 从 application.yml 中读取 cs.rag.sse-coalescing.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.sse-coalescing")
+@Data
+public class SseCoalescingProperties {
+
+    /**
+     * 是否启用：时间窗口内的多个SSE事件在同一次写出中发送，整批刷新一次（事件本身不变）
+     */
+    private boolean enabled = false;
+
+    /**
+     * 合并时间窗口，从缓冲区收到第一个事件开始计时，到期即写出
+     */
+    private Duration window = Duration.ofMillis(30);
+
+    /**
+     * 缓冲事件的数据字符数达到该值时立即写出
+     */
+    private int maxChars = 256;
+
+}
@@ -0,0 +1,40 @@
+package com.cs.rag.config;
+
+import com.cs.rag.pipeline.StreamReplayBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * 可续传对话流配置类
+ * 创建对话流重放缓冲区，开启 cs.rag.stream-replay.redis-enabled 时同时写入 Redis
+ */
+@Configuration
+@Slf4j
+public class StreamReplayConfig {
+
+    /**
+     * 创建对话流重放缓冲区 Bean
+     *
+     * @param properties 续传配置属性
+     * @param redisTemplateProvider Redis 模板（可选）
+     * @return StreamReplayBuffer 实例
+     */
+    @Bean
+    public StreamReplayBuffer streamReplayBuffer(StreamReplayProperties properties,
+                                                 ObjectProvider<RedisTemplate<String, Object>> redisTemplateProvider) {
+        RedisTemplate<String, Object> redisTemplate = null;
+        if (properties.isEnabled() && properties.isRedisEnabled()) {
+            redisTemplate = redisTemplateProvider.getIfAvailable();
+            if (redisTemplate == null) {
+                log.warn("已开启对话流Redis缓存，但未找到RedisTemplate，请检查 cs.redis.enabled 配置");
+            }
+        }
+        log.info("创建对话流重放缓冲区，enabled: {}, maxFrames: {}, maxStreams: {}, redis: {}",
+                properties.isEnabled(), properties.getMaxFrames(), properties.getMaxStreams(), redisTemplate != null);
+        return new StreamReplayBuffer(properties, redisTemplate);
+    }
+
+}
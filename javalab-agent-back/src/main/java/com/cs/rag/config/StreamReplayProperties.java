@@ -0,0 +1,58 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 可续传对话流配置属性类
+ * 从 application.yml 中读取 cs.rag.stream-replay.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.stream-replay")
+@Data
+public class StreamReplayProperties {
+
+    /**
+     * 是否启用续传：每个片段带事件ID并缓存，断线后携带 Last-Event-ID 重连可从断点继续
+     */
+    private boolean enabled = false;
+
+    /**
+     * 单轮对话最多缓存的片段数，超出后最早的片段被淘汰，需要这些片段的续传请求失败
+     */
+    private int maxFrames = 4000;
+
+    /**
+     * 同时缓存的对话轮数上限，超出时淘汰最久未写入的
+     */
+    private long maxStreams = 1000;
+
+    /**
+     * 缓存有效期（生成结束后开始计时）
+     */
+    private Duration ttl = Duration.ofMinutes(5);
+
+    /**
+     * 客户端断开后继续生成的宽限期，期间无人重连则取消生成并保存截断回复
+     */
+    private Duration resumeGracePeriod = Duration.ofSeconds(30);
+
+    /**
+     * 是否同时写入 Redis，重连落到其他实例时也能续传（需同时开启 cs.redis.enabled）
+     */
+    private boolean redisEnabled = false;
+
+    /**
+     * 从 Redis 续传进行中的对话时的轮询间隔
+     */
+    private Duration redisPollInterval = Duration.ofMillis(300);
+
+    /**
+     * 片段批量写入 Redis 的间隔，间隔内的片段一次追加，不在生成线程上逐片段写入
+     */
+    private Duration redisFlushInterval = Duration.ofMillis(50);
+
+}
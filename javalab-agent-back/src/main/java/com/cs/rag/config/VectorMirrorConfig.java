@@ -0,0 +1,47 @@
+package com.cs.rag.config;
+
+import com.cs.rag.utils.VectorUtils;
+import com.cs.rag.vectorstore.MirrorVectorStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 进程内向量索引配置类
+ * 当 cs.rag.vector-mirror.enabled=true 时生效，
+ * 用 MirrorVectorStore 包装 PgVectorStore：检索走内存索引，写入仍以 pgvector 为准
+ */
+@Configuration
+@ConditionalOnProperty(name = "cs.rag.vector-mirror.enabled", havingValue = "true")
+@Slf4j
+public class VectorMirrorConfig {
+
+    /**
+     * 创建进程内向量存储 Bean
+     *
+     * @param pgVectorStore pgvector 向量存储（数据源）
+     * @param embeddingModel 嵌入模型（启用查询向量缓存时为带缓存的实现）
+     * @param jdbcTemplate 数据库访问模板
+     * @param properties 索引配置属性
+     * @param dimensions 向量维度
+     * @return MirrorVectorStore 实例
+     */
+    @Bean
+    @Primary
+    public MirrorVectorStore mirrorVectorStore(PgVectorStore pgVectorStore,
+                                               EmbeddingModel embeddingModel,
+                                               JdbcTemplate jdbcTemplate,
+                                               VectorMirrorProperties properties,
+                                               @Value("${spring.ai.vectorstore.pgvector.dimensions}") int dimensions) {
+        log.info("开始创建进程内向量索引，indexType: {}, dimensions: {}, simd: {}",
+                properties.getIndexType(), dimensions, VectorUtils.isSimdEnabled());
+        return new MirrorVectorStore(pgVectorStore, embeddingModel, jdbcTemplate, properties, dimensions);
+    }
+
+}
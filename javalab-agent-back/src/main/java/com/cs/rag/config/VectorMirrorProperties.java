@@ -0,0 +1,84 @@
+package com.cs.rag.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 进程内向量索引（pgvector 镜像）配置属性类
+ * 从 application.yml 中读取 cs.rag.vector-mirror.* 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "cs.rag.vector-mirror")
+@Data
+public class VectorMirrorProperties {
+
+    /**
+     * 是否启用进程内向量索引，启用后检索不再访问 pgvector
+     */
+    private boolean enabled = false;
+
+    /**
+     * 索引类型：HNSW 图索引，或 QUANTIZED 量化两阶段检索（int8 量化仅在 SIMD 可用时生效，否则改用 HNSW）
+     */
+    private IndexType indexType = IndexType.HNSW;
+
+    /**
+     * HNSW 每个节点的最大邻居数（第0层为其2倍）
+     */
+    private int m = 16;
+
+    /**
+     * 构建索引时的候选集大小
+     */
+    private int efConstruction = 200;
+
+    /**
+     * 检索时的候选集大小（实际取 max(efSearch, topK)）
+     */
+    private int efSearch = 64;
+
+    /**
+     * 启动加载时每批从数据库读取的行数
+     */
+    private int fetchSize = 500;
+
+    /**
+     * 已删除节点占比超过该值时从 pgvector 全量重建索引
+     */
+    private double compactionRatio = 0.3;
+
+    /**
+     * QUANTIZED 索引的量化方式
+     */
+    private Quantization quantization = Quantization.INT8;
+
+    /**
+     * QUANTIZED 索引粗排保留、参与全精度精排的候选数量（实际取 max(rerankCandidates, topK)）
+     */
+    private int rerankCandidates = 100;
+
+    /**
+     * 索引加载后用于评估召回率的抽样查询数，0 表示不评估
+     */
+    private int recallSampleSize = 0;
+
+    /**
+     * 索引类型
+     */
+    public enum IndexType {
+        HNSW,
+        QUANTIZED
+    }
+
+    /**
+     * 量化方式
+     */
+    public enum Quantization {
+        /** 每维1字节，对称标量量化 */
+        INT8,
+        /** 每维1比特，仅保留符号位，汉明距离粗排 */
+        BINARY
+    }
+
+}
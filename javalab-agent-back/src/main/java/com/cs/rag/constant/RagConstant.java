@@ -19,14 +19,44 @@ public class RagConstant {
     /** 对话上下文滑动窗口大小 */
     public static final int MEMORY_SIZE = 10;
     
+    /** 历史消息分页默认每页条数 */
+    public static final int HISTORY_PAGE_SIZE = 50;
+    
+    /** 历史消息分页每页最大条数 */
+    public static final int HISTORY_MAX_PAGE_SIZE = 200;
+    
+    /** 会话列表分页默认每页条数（与 cs.rag.session-list-cache.page-size 一致时首页由缓存返回） */
+    public static final int SESSION_PAGE_SIZE = 20;
+    
+    /** 会话列表分页每页最大条数 */
+    public static final int SESSION_MAX_PAGE_SIZE = 100;
+    
     // ==================== 格式常量 ====================
     
     public static final String SESSION_ID_PREFIX = "[SESSION_ID:";
     public static final String SESSION_ID_SUFFIX = "]";
+    public static final String QUEUE_POSITION_PREFIX = "[QUEUE:";
+    public static final String QUEUE_POSITION_SUFFIX = "]";
+    public static final String ERROR_PREFIX = "[ERROR] ";
     public static final String WEB_SOURCE_LABEL = "网络来源:\n";
     public static final String KNOWLEDGE_SOURCE_LABEL = "\n\n知识库来源:\n";
     
+    /** 基于知识库回答时的前缀（与系统提示词约定一致） */
+    public static final String KNOWLEDGE_ANSWER_PREFIX = "【根据知识库】：";
+
     /** 无知识库命中时的提示标签 */
     public static final String NO_KNOWLEDGE_FOUND_LABEL = "\n\n[系统提示: 知识库中未检索到相关内容，请基于通用知识回答]\n";
 
+    /** LLM首个片段超过延迟预算时返回的提示 */
+    public static final String FIRST_TOKEN_TIMEOUT_MESSAGE = "当前咨询人数较多，模型响应超时，请稍后重试。";
+
+    /** 排队超过最长等待时间时返回的提示 */
+    public static final String QUEUE_TIMEOUT_MESSAGE = "排队等待超时，请稍后重试。";
+
+    /** 续传时对话缓存已过期或不存在的提示 */
+    public static final String STREAM_EXPIRED_MESSAGE = "连接已断开且回复缓存已过期，请刷新会话查看或重新提问。";
+
+    /** 附加在系统提示词后的滚动会话摘要标签 */
+    public static final String CONVERSATION_SUMMARY_LABEL = "\n\n## 此前对话摘要\n";
+
 }
@@ -1,23 +1,32 @@
 package com.cs.rag.controller;
 
 import com.cs.rag.common.ApplicationConstant;
-import com.cs.rag.entity.ChatMessage;
 import com.cs.rag.entity.ChatSession;
+import com.cs.rag.pipeline.SseFrameCoalescer;
 import com.cs.rag.pojo.dto.ChatRequestDTO;
 import com.cs.rag.pojo.dto.DeleteSessionRequestDTO;
+import com.cs.rag.pojo.dto.HistoryPageRequestDTO;
 import com.cs.rag.pojo.dto.HistoryRequestDTO;
 import com.cs.rag.pojo.dto.SessionListRequestDTO;
+import com.cs.rag.pojo.dto.SessionPageRequestDTO;
+import com.cs.rag.pojo.vo.ChatMessagePageVO;
 import com.cs.rag.pojo.vo.ChatMessageVO;
+import com.cs.rag.pojo.vo.ChatSessionPageVO;
 import com.cs.rag.pojo.vo.ChatSessionVO;
 import com.cs.rag.service.RagService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
-import reactor.core.publisher.Flux;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -46,6 +55,14 @@ public class AiRagController {
     @Autowired
     private RagService ragService;
     
+    /** SSE写出（按时间窗口合并写出和刷新） */
+    @Autowired
+    private SseFrameCoalescer sseFrameCoalescer;
+    
+    /** 流式输出历史消息时使用的 JSON 序列化（与 Spring MVC 配置一致） */
+    @Autowired
+    private ObjectMapper objectMapper;
+    
     // ==================== 对话接口 ====================
     
     /**
@@ -54,25 +71,29 @@ public class AiRagController {
      * <p>使用POST请求体传递参数，支持更长的消息内容，更安全。
      * 支持数据库持久化和滑动窗口上下文管理。</p>
      * 
-     * <p>响应格式: 第一条消息为[SESSION_ID:xxx]，后续为LLM流式响应</p>
+     * <p>响应格式: 第一条消息为[SESSION_ID:xxx]，后续为LLM流式响应。
+     * 启用续传时每条消息带事件ID，断线后携带 Last-Event-ID 请求头重连可从断点继续。
+     * 启用写出合并时多个事件一次写出，事件内容不变。</p>
      * 
      * @param request 对话请求参数（JSON请求体）
+     * @param lastEventId 断线重连时客户端收到的最后一个事件ID
      * @return SSE流式响应，首条消息包含sessionId
      */
     @Operation(summary = "chat", description = "持久化RAG对话接口")
     @PostMapping(value = "/rag", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> chat(@RequestBody ChatRequestDTO request) {
+    public SseEmitter chat(@RequestBody ChatRequestDTO request,
+                           @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
         
         // 参数校验与默认值处理
         String message = (request.getMessage() != null) ? request.getMessage() : "你好";
         String sessionId = request.getSessionId();
         Long userId = (request.getUserId() != null) ? request.getUserId() : 1L;
         
-        log.info("持久化RAG对话请求: message={}, sessionId={}, userId={}", 
-                 message, sessionId, userId);
+        log.info("持久化RAG对话请求: message={}, sessionId={}, userId={}, lastEventId={}", 
+                 message, sessionId, userId, lastEventId);
         
         // 委托给Service层处理业务逻辑
-        return ragService.chat(message, sessionId, userId);
+        return sseFrameCoalescer.write(ragService.chatEvents(message, sessionId, userId, lastEventId));
     }
     
     // ==================== 会话管理接口 ====================
@@ -81,30 +102,57 @@ public class AiRagController {
      * 获取会话历史消息列表
      * 增加用户ID校验，确保用户只能访问自己的消息
      * 
+     * <p>响应为 JSON 数组，消息从数据库按批读取后直接写入响应流，不在内存中构建完整列表；
+     * 长会话建议使用分页接口 /rag/history/page。</p>
+     * 
+     * <p>第一批消息在请求线程中读取，会话不存在、无权限或数据库异常仍按统一错误格式返回。
+     * 之后响应已提交为 200，后续批次读取失败时只能中断连接，客户端会收到不完整的 JSON 数组，
+     * 应将解析失败视为请求失败并改用分页接口重试。</p>
+     * 
      * @param request 请求参数（JSON请求体）
      * @return 消息列表（VO），按时间正序排列，隐藏 userId 字段
      */
     @Operation(summary = "getHistory", description = "获取会话历史消息")
     @PostMapping(value = "/rag/history")
-    public List<ChatMessageVO> getHistory(
+    public ResponseEntity<StreamingResponseBody> getHistory(
             @RequestBody HistoryRequestDTO request) {
         
         String sessionId = request.getSessionId();
         Long userId = request.getUserId();
         
         log.info("获取会话历史: sessionId={}, userId={}", sessionId, userId);
-        List<ChatMessage> messages = ragService.getHistory(sessionId, userId);
+        // 在提交响应前读取第一批，早期异常交给全局异常处理
+        Iterator<ChatMessageVO> messages = ragService.openHistory(sessionId, userId);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                while (messages.hasNext()) {
+                    generator.writeObject(messages.next());
+                }
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+    
+    /**
+     * 分页获取会话历史消息（键集分页）
+     * 
+     * <p>首次请求不带游标，返回最新一页；向上翻页时传入上一页返回的 nextCursor，
+     * hasMore 为 false 时已到会话开头。</p>
+     * 
+     * @param request 请求参数（JSON请求体）
+     * @return 本页消息（按时间正序）及更早一页的游标
+     */
+    @Operation(summary = "getHistoryPage", description = "分页获取会话历史消息")
+    @PostMapping(value = "/rag/history/page")
+    public ChatMessagePageVO getHistoryPage(
+            @RequestBody HistoryPageRequestDTO request) {
         
-        // 转换为 VO，隐藏 userId 字段
-        return messages.stream()
-                .map(msg -> ChatMessageVO.builder()
-                        .id(msg.getId())
-                        .sessionId(msg.getSessionId())
-                        .role(msg.getRole())
-                        .content(msg.getContent())
-                        .createdAt(msg.getCreatedAt())
-                        .build())
-                .collect(java.util.stream.Collectors.toList());
+        log.info("分页获取会话历史: sessionId={}, userId={}, cursor={}, pageSize={}",
+                request.getSessionId(), request.getUserId(), request.getCursor(), request.getPageSize());
+        return ragService.getHistoryPage(request.getSessionId(), request.getUserId(),
+                request.getCursor(), request.getPageSize());
     }
 
     
@@ -136,6 +184,25 @@ public class AiRagController {
                 .collect(java.util.stream.Collectors.toList());
     }
     
+    /**
+     * 分页获取用户的会话列表（键集分页）
+     * 
+     * <p>首次请求不带游标，返回最近活动的一页会话（通常由缓存直接返回）；
+     * 滚动加载时传入上一页返回的 nextCursor，hasMore 为 false 时已加载全部会话。</p>
+     * 
+     * @param request 请求参数（JSON请求体）
+     * @return 本页会话（按更新时间倒序）及下一页的游标
+     */
+    @Operation(summary = "getSessionPage", description = "分页获取用户会话列表")
+    @PostMapping(value = "/rag/sessions/page")
+    public ChatSessionPageVO getSessionPage(
+            @RequestBody SessionPageRequestDTO request) {
+        
+        log.info("分页获取用户会话列表: userId={}, cursor={}, pageSize={}",
+                request.getUserId(), request.getCursor(), request.getPageSize());
+        return ragService.getSessionPage(request.getUserId(), request.getCursor(), request.getPageSize());
+    }
+    
     /**
      * 删除会话（逻辑删除）
      * 增加用户ID校验，确保用户只能删除自己的会话
@@ -65,10 +65,23 @@ public class ChatMessage {
      */
     private LocalDateTime createdAt;
     
+    /**
+     * 回复截断标记
+     * 0: 完整回复
+     * 1: 客户端断开后停止生成，保存的是部分回复
+     */
+    private Integer truncated;
+    
     /**
      * 消息角色常量定义
      */
     public static final String ROLE_USER = "user";
     public static final String ROLE_ASSISTANT = "assistant";
     public static final String ROLE_SYSTEM = "system";
+    
+    /**
+     * 回复截断标记常量定义
+     */
+    public static final int NOT_TRUNCATED = 0;
+    public static final int TRUNCATED = 1;
 }
@@ -57,4 +57,16 @@ public class ChatSession {
      * 1: 已删除
      */
     private Integer deleted;
+    
+    /**
+     * 滚动会话摘要
+     * 概括 summaryUntil 及之前的问答，对话时代替这些较早的轮次发送给LLM
+     */
+    private String summary;
+    
+    /**
+     * 摘要已覆盖的最后一条消息的创建时间
+     * 晚于该时间的消息仍按原文作为历史上下文
+     */
+    private LocalDateTime summaryUntil;
 }
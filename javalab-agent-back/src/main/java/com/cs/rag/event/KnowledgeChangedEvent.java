@@ -0,0 +1,44 @@
+package com.cs.rag.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 知识库变更事件
+ *
+ * <p>在文件入库（向量写入）或文件删除（向量删除）后发布，
+ * 依赖知识库内容的缓存与索引监听此事件进行失效或重建。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Getter
+public class KnowledgeChangedEvent extends ApplicationEvent {
+
+    /**
+     * 新增的向量ID列表
+     */
+    private final List<String> addedVectorIds;
+
+    /**
+     * 删除的向量ID列表
+     */
+    private final List<String> deletedVectorIds;
+
+    public KnowledgeChangedEvent(Object source, List<String> addedVectorIds, List<String> deletedVectorIds) {
+        super(source);
+        this.addedVectorIds = addedVectorIds != null ? addedVectorIds : Collections.emptyList();
+        this.deletedVectorIds = deletedVectorIds != null ? deletedVectorIds : Collections.emptyList();
+    }
+
+    public static KnowledgeChangedEvent added(Object source, List<String> vectorIds) {
+        return new KnowledgeChangedEvent(source, vectorIds, null);
+    }
+
+    public static KnowledgeChangedEvent deleted(Object source, List<String> vectorIds) {
+        return new KnowledgeChangedEvent(source, null, vectorIds);
+    }
+}
@@ -4,7 +4,9 @@ import com.cs.rag.common.BaseResponse;
 import com.cs.rag.common.ErrorCode;
 import com.cs.rag.common.ResultUtils;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -24,11 +26,19 @@ public class GlobalExceptionHandler {
      * 
      * @param e 业务异常
      * @param request HTTP请求对象
+     * @param response HTTP响应对象
      * @return 错误响应（JSON 或纯文本）
      */
     @ExceptionHandler(BusinessException.class)
-    public Object businessExceptionHandler(BusinessException e, HttpServletRequest request) {
-        log.error("业务异常: {}", e.getMessage(), e);
+    public Object businessExceptionHandler(BusinessException e, HttpServletRequest request,
+                                           HttpServletResponse response) {
+        if (e.getCode() == ErrorCode.TOO_MANY_REQUESTS.getCode()) {
+            // 过载拒绝属于预期情况，返回 429 便于前端与网关识别，不打印堆栈
+            log.warn("请求被拒绝: {}", e.getMessage());
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        } else {
+            log.error("业务异常: {}", e.getMessage(), e);
+        }
         
         // 检查是否是 SSE 请求，如果是则返回纯文本
         if (isEventStreamRequest(request)) {
@@ -5,6 +5,7 @@ import com.cs.rag.entity.ChatMessage;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -39,13 +40,64 @@ public interface ChatMessageMapper extends BaseMapper<ChatMessage> {
                                            @Param("limit") int limit);
     
     /**
-     * 查询指定会话的所有消息，按时间正序
-     * 增加用户ID校验，确保用户只能访问自己的消息
+     * 键集分页：查询游标之前（更早）的一页消息
+     * 
+     * <p>按 (created_at, id) 倒序，游标为上一页最早一条消息的 (created_at, id)，
+     * 由索引 idx_chat_message_session_user_time 直接定位，翻页深度不影响耗时。</p>
+     * 
+     * @param sessionId 会话ID
+     * @param userId 用户ID（用于权限校验）
+     * @param beforeCreatedAt 游标消息的创建时间，为空时从最新一条开始
+     * @param beforeId 游标消息的ID
+     * @param limit 获取消息条数
+     * @return 消息列表 (按时间倒序)
+     */
+    List<ChatMessage> selectPageBefore(@Param("sessionId") String sessionId,
+                                       @Param("userId") Long userId,
+                                       @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt,
+                                       @Param("beforeId") Long beforeId,
+                                       @Param("limit") int limit);
+    
+    /**
+     * 键集分页：查询游标之后（更晚）的一页消息，按时间正序
+     * 
+     * <p>按 (created_at, id) 正序，游标为上一批最后一条消息的 (created_at, id)，
+     * 与 selectPageBefore 使用同一索引（反向扫描）。</p>
      * 
      * @param sessionId 会话ID
      * @param userId 用户ID（用于权限校验）
+     * @param afterCreatedAt 游标消息的创建时间，为空时从第一条开始
+     * @param afterId 游标消息的ID
+     * @param limit 获取消息条数
      * @return 消息列表 (按时间正序)
      */
-    List<ChatMessage> selectBySessionId(@Param("sessionId") String sessionId,
-                                        @Param("userId") Long userId);
+    List<ChatMessage> selectPageAfter(@Param("sessionId") String sessionId,
+                                      @Param("userId") Long userId,
+                                      @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                      @Param("afterId") Long afterId,
+                                      @Param("limit") int limit);
+
+    /**
+     * 查询时间区间内的消息，按时间正序（会话摘要读取尚未合并的较早轮次）
+     * 
+     * @param sessionId 会话ID
+     * @param userId 用户ID（用于权限校验）
+     * @param afterCreatedAt 下界（不含），为空时从第一条开始
+     * @param beforeCreatedAt 上界（不含），为空时到最后一条
+     * @param limit 获取消息条数
+     * @return 消息列表 (按时间正序)
+     */
+    List<ChatMessage> selectRange(@Param("sessionId") String sessionId,
+                                  @Param("userId") Long userId,
+                                  @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                  @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt,
+                                  @Param("limit") int limit);
+
+    /**
+     * 批量插入消息（多行 INSERT）
+     * 
+     * @param messages 消息列表（id 已分配）
+     * @return 插入的行数
+     */
+    int insertBatch(@Param("messages") List<ChatMessage> messages);
 }
@@ -5,7 +5,9 @@ import com.cs.rag.entity.ChatSession;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 会话表Mapper接口
@@ -20,20 +22,52 @@ import java.util.List;
 public interface ChatSessionMapper extends BaseMapper<ChatSession> {
     
     /**
-     * 根据用户ID查询会话列表，按更新时间倒序
+     * 键集分页：查询游标之后（更早活动）的一页会话
+     * 
+     * <p>按 (updated_at, id) 倒序，游标为上一页最后一个会话的 (updated_at, id)，
+     * 由部分索引 idx_chat_session_user_active 直接定位。</p>
      * 
      * @param userId 用户ID
-     * @return 会话列表
+     * @param beforeUpdatedAt 游标会话的更新时间，为空时从最近活动的会话开始
+     * @param beforeId 游标会话的ID
+     * @param limit 获取会话数
+     * @return 会话列表 (按更新时间倒序)
      */
-    List<ChatSession> selectByUserId(@Param("userId") Long userId);
+    List<ChatSession> selectPageByUserId(@Param("userId") Long userId,
+                                         @Param("beforeUpdatedAt") LocalDateTime beforeUpdatedAt,
+                                         @Param("beforeId") String beforeId,
+                                         @Param("limit") int limit);
     
     /**
      * 更新会话的更新时间
      * 每次新增消息时调用此方法
      * 
      * @param sessionId 会话ID
+     * @return 更新后的会话（用于就地更新会话列表缓存），会话不存在时返回null
+     */
+    ChatSession updateSessionTime(@Param("sessionId") String sessionId);
+    
+    /**
+     * 批量更新会话的更新时间
+     * 消息异步批量写入时，每个刷新窗口内同一会话只更新一次，更新时间不会回退
+     * 
+     * @param touches 会话ID -> 该会话最后一条消息的时间
+     * @return 更新后的会话（用于就地更新会话列表缓存）
+     */
+    List<ChatSession> updateSessionTimes(@Param("touches") Map<String, LocalDateTime> touches);
+    
+    /**
+     * 更新滚动会话摘要
+     * 仅当新摘要覆盖的消息比已有摘要更新时写入
+     * 
+     * @param sessionId 会话ID
+     * @param summary 摘要内容
+     * @param summaryUntil 摘要已覆盖的最后一条消息的创建时间
+     * @return 影响的行数
      */
-    void updateSessionTime(@Param("sessionId") String sessionId);
+    int updateSummary(@Param("sessionId") String sessionId,
+                      @Param("summary") String summary,
+                      @Param("summaryUntil") LocalDateTime summaryUntil);
     
     /**
      * 根据ID和用户ID查询会话（带用户归属校验）
@@ -0,0 +1,193 @@
+package com.cs.rag.ollama;
+
+import com.cs.rag.config.HedgingProperties;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对冲请求策略
+ *
+ * <p>维护最近N次首片段耗时（TTFT）样本，对冲延迟取其百分位；对冲预算按请求数累积，
+ * 每个请求增加 maxHedgeRatio 个额度（上限 maxBurst），每次对冲消耗1个，限制对冲带来的额外负载。</p>
+ *
+ * <p>对冲请求先返回时，按样本中超过本次耗时的首片段耗时均值估算主请求还需等待的时间，累计为节省的首字时间。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+public class HedgingPolicy {
+
+    private final HedgingProperties properties;
+
+    private final Object lock = new Object();
+
+    /** 首片段耗时样本（毫秒），环形缓冲 */
+    private final long[] samples;
+
+    private int sampleCount;
+
+    private int samplePos;
+
+    /** 剩余对冲额度 */
+    private double budget;
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder hedged = new LongAdder();
+
+    private final LongAdder hedgeWins = new LongAdder();
+
+    private final LongAdder budgetDenied = new LongAdder();
+
+    private final LongAdder savedMillis = new LongAdder();
+
+    public HedgingPolicy(HedgingProperties properties) {
+        this.properties = properties;
+        this.samples = new long[Math.max(1, properties.getWindowSize())];
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 记录一次流式请求并累积对冲额度
+     */
+    public void onRequest() {
+        requests.increment();
+        synchronized (lock) {
+            budget = Math.min(properties.getMaxBurst(), budget + properties.getMaxHedgeRatio());
+        }
+    }
+
+    /**
+     * 当前对冲延迟：首片段耗时的百分位，样本不足时为 initialDelay
+     */
+    public Duration delay() {
+        synchronized (lock) {
+            if (sampleCount < properties.getMinSamples()) {
+                return properties.getInitialDelay();
+            }
+        }
+        return Duration.ofMillis(Math.max(ttftPercentileMillis(properties.getPercentile()), properties.getMinDelay().toMillis()));
+    }
+
+    /**
+     * 申请对冲额度
+     *
+     * @return 是否允许对冲
+     */
+    public boolean tryHedge() {
+        synchronized (lock) {
+            if (budget >= 1) {
+                budget -= 1;
+                hedged.increment();
+                return true;
+            }
+        }
+        budgetDenied.increment();
+        return false;
+    }
+
+    /**
+     * 主请求先返回首个片段
+     *
+     * @param ttftMillis 首片段耗时
+     */
+    public void recordPrimaryFirstToken(long ttftMillis) {
+        synchronized (lock) {
+            addSample(ttftMillis);
+        }
+    }
+
+    /**
+     * 对冲请求先返回首个片段
+     *
+     * <p>本次耗时同时作为主请求首片段耗时的下限计入样本，否则慢请求不断被对冲掉、
+     * 样本只剩快请求，对冲延迟会持续降低。</p>
+     *
+     * @param ttftMillis 从主请求开始到对冲请求首个片段的耗时
+     */
+    public void recordHedgeWin(long ttftMillis) {
+        hedgeWins.increment();
+        long slower = 0;
+        int count = 0;
+        synchronized (lock) {
+            for (int i = 0; i < sampleCount; i++) {
+                if (samples[i] > ttftMillis) {
+                    slower += samples[i];
+                    count++;
+                }
+            }
+            addSample(ttftMillis);
+        }
+        if (count > 0) {
+            savedMillis.add(slower / count - ttftMillis);
+        }
+    }
+
+    private void addSample(long ttftMillis) {
+        samples[samplePos] = ttftMillis;
+        samplePos = (samplePos + 1) % samples.length;
+        sampleCount = Math.min(sampleCount + 1, samples.length);
+    }
+
+    // ==================== 统计信息 ====================
+
+    public long requestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * 发起对冲的次数
+     */
+    public long hedgedCount() {
+        return hedged.sum();
+    }
+
+    /**
+     * 对冲请求先返回的次数
+     */
+    public long hedgeWinCount() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * 达到对冲延迟但因预算不足未对冲的次数
+     */
+    public long budgetDeniedCount() {
+        return budgetDenied.sum();
+    }
+
+    /**
+     * 对冲率：发起对冲的请求占比
+     */
+    public double hedgeRate() {
+        long total = requests.sum();
+        return total == 0 ? 0.0 : (double) hedged.sum() / total;
+    }
+
+    /**
+     * 估算对冲节省的首字时间（秒）
+     */
+    public double savedTtftSeconds() {
+        return savedMillis.sum() / 1000.0;
+    }
+
+    /**
+     * 主请求首片段耗时的百分位（毫秒），无样本时为0
+     */
+    public long ttftPercentileMillis(double percentile) {
+        synchronized (lock) {
+            if (sampleCount == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+    }
+}
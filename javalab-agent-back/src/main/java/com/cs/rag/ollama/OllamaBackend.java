@@ -0,0 +1,150 @@
+package com.cs.rag.ollama;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个 Ollama 实例
+ *
+ * <p>记录进行中请求数用于最少请求路由，并维护熔断状态：
+ * 连续失败达到阈值后熔断，熔断期间不再分配请求；到期后放行一个探测请求（半开），
+ * 探测成功恢复，失败则重新熔断。状态字段由 {@link OllamaBackendPool} 在锁内修改。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+public class OllamaBackend {
+
+    /** 熔断状态 */
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String baseUrl;
+
+    private final ChatModel chatModel;
+
+    private final EmbeddingModel embeddingModel;
+
+    /** 进行中请求数 */
+    int inFlight;
+
+    /** 连续失败次数 */
+    int consecutiveFailures;
+
+    /** 熔断到期时间（System.nanoTime），0 表示未熔断 */
+    long openUntil;
+
+    /** 半开状态下是否已有探测请求 */
+    boolean probing;
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder latencyMillis = new LongAdder();
+
+    private final LongAdder chunks = new LongAdder();
+
+    private final LongAdder circuitOpens = new LongAdder();
+
+    public OllamaBackend(String baseUrl, ChatModel chatModel, EmbeddingModel embeddingModel) {
+        this.baseUrl = baseUrl;
+        this.chatModel = chatModel;
+        this.embeddingModel = embeddingModel;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    ChatModel chatModel() {
+        return chatModel;
+    }
+
+    EmbeddingModel embeddingModel() {
+        return embeddingModel;
+    }
+
+    /**
+     * 当前熔断状态
+     */
+    public State state(long now) {
+        if (openUntil == 0) {
+            return State.CLOSED;
+        }
+        return now < openUntil ? State.OPEN : State.HALF_OPEN;
+    }
+
+    void onSuccess(long elapsedMillis) {
+        requests.increment();
+        latencyMillis.add(elapsedMillis);
+        if (openUntil != 0) {
+            log.info("Ollama实例探测成功，恢复路由: {}", baseUrl);
+        }
+        consecutiveFailures = 0;
+        openUntil = 0;
+        probing = false;
+    }
+
+    void onFailure(long now, Duration openDuration, int failureThreshold, Throwable error) {
+        requests.increment();
+        failures.increment();
+        consecutiveFailures++;
+        if (probing || consecutiveFailures >= failureThreshold) {
+            probing = false;
+            openUntil = now + openDuration.toNanos();
+            circuitOpens.increment();
+            log.warn("Ollama实例熔断: {}, 连续失败{}次, {}ms后探测, error={}",
+                    baseUrl, consecutiveFailures, openDuration.toMillis(), error.getMessage());
+        }
+    }
+
+    void onChunk() {
+        chunks.increment();
+    }
+
+    // ==================== 统计信息 ====================
+
+    /**
+     * 当前进行中请求数
+     */
+    public int inFlight() {
+        return inFlight;
+    }
+
+    /**
+     * 已结束的请求数（成功 + 失败，不含客户端取消）
+     */
+    public long requestCount() {
+        return requests.sum();
+    }
+
+    public long failureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * 成功请求的累计耗时（毫秒），流式请求为完整生成耗时
+     */
+    public long totalLatencyMillis() {
+        return latencyMillis.sum();
+    }
+
+    /**
+     * 流式生成输出的片段数
+     */
+    public long chunkCount() {
+        return chunks.sum();
+    }
+
+    /**
+     * 被熔断的次数
+     */
+    public long circuitOpenCount() {
+        return circuitOpens.sum();
+    }
+}
@@ -0,0 +1,161 @@
+package com.cs.rag.ollama;
+
+import com.cs.rag.common.ErrorCode;
+import com.cs.rag.config.OllamaPoolProperties;
+import com.cs.rag.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Ollama 实例池：最少进行中请求路由 + 熔断
+ *
+ * <p>每次请求选择进行中请求数最少的未熔断实例，请求数相同时轮转，避免总是落到第一个实例。
+ * 熔断到期的实例优先放行一个探测请求；无可用实例时拒绝请求。
+ * 请求失败（流式请求为输出首个片段前失败）时换一个实例重试一次，单个实例故障或探测失败不影响用户。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+public class OllamaBackendPool {
+
+    private final String name;
+
+    private final List<OllamaBackend> backends;
+
+    private final OllamaPoolProperties properties;
+
+    private final Object lock = new Object();
+
+    /** 轮转起点 */
+    private int next;
+
+    public OllamaBackendPool(String name, List<OllamaBackend> backends, OllamaPoolProperties properties) {
+        this.name = name;
+        this.backends = List.copyOf(backends);
+        this.properties = properties;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 池中的实例（用于统计）
+     */
+    public List<OllamaBackend> getBackends() {
+        return backends;
+    }
+
+    /**
+     * 选择实例并占用一个请求名额，使用完毕后必须调用 {@link #release}
+     *
+     * @param exclude 排除的实例（重试时为失败的实例），可为null
+     * @return 选中的实例
+     * @throws BusinessException 所有实例均已熔断
+     */
+    public OllamaBackend acquire(OllamaBackend exclude) {
+        long now = System.nanoTime();
+        synchronized (lock) {
+            OllamaBackend best = null;
+            OllamaBackend probe = null;
+            int size = backends.size();
+            for (int i = 0; i < size; i++) {
+                OllamaBackend backend = backends.get((next + i) % size);
+                if (backend == exclude) {
+                    continue;
+                }
+                OllamaBackend.State state = backend.state(now);
+                if (state == OllamaBackend.State.CLOSED) {
+                    if (best == null || backend.inFlight < best.inFlight) {
+                        best = backend;
+                    }
+                } else if (state == OllamaBackend.State.HALF_OPEN && !backend.probing && probe == null) {
+                    probe = backend;
+                }
+            }
+            next = (next + 1) % size;
+            // 熔断到期的实例优先放行一个探测请求，尽快恢复容量
+            OllamaBackend chosen = probe != null ? probe : best;
+            if (chosen == null) {
+                log.warn("Ollama实例池[{}]所有实例均已熔断", name);
+                throw new BusinessException(ErrorCode.API_REQUEST_ERROR, "模型服务暂时不可用，请稍后重试");
+            }
+            if (chosen == probe) {
+                probe.probing = true;
+                log.info("Ollama实例熔断到期，放行探测请求: {}", probe.getBaseUrl());
+            }
+            chosen.inFlight++;
+            return chosen;
+        }
+    }
+
+    /**
+     * 归还请求名额并记录结果
+     *
+     * @param backend 实例
+     * @param startNanos 请求开始时间
+     * @param error 失败原因，成功时为null
+     * @param cancelled 是否被取消（客户端断开），取消不计入成功或失败
+     */
+    public void release(OllamaBackend backend, long startNanos, Throwable error, boolean cancelled) {
+        long now = System.nanoTime();
+        synchronized (lock) {
+            backend.inFlight--;
+            if (cancelled) {
+                // 探测请求被取消时允许下一个请求继续探测
+                backend.probing = false;
+            } else if (error != null) {
+                backend.onFailure(now, properties.getOpenDuration(), properties.getFailureThreshold(), error);
+            } else {
+                backend.onSuccess((now - startNanos) / 1_000_000);
+            }
+        }
+    }
+
+    /**
+     * 是否可以换实例重试（池中不止一个实例）
+     */
+    public boolean canFailover() {
+        return backends.size() > 1;
+    }
+
+    /**
+     * 在选中的实例上执行同步调用，失败时换一个实例重试一次
+     *
+     * @param call 调用逻辑
+     * @return 调用结果
+     */
+    public <T> T execute(Function<OllamaBackend, T> call) {
+        OllamaBackend backend = acquire(null);
+        try {
+            return executeOn(backend, call);
+        } catch (RuntimeException e) {
+            if (!canFailover()) {
+                throw e;
+            }
+            OllamaBackend retry;
+            try {
+                retry = acquire(backend);
+            } catch (BusinessException unavailable) {
+                throw e;
+            }
+            log.warn("Ollama实例调用失败，换实例重试: {} -> {}, error={}", backend.getBaseUrl(), retry.getBaseUrl(), e.getMessage());
+            return executeOn(retry, call);
+        }
+    }
+
+    private <T> T executeOn(OllamaBackend backend, Function<OllamaBackend, T> call) {
+        long start = System.nanoTime();
+        try {
+            T result = call.apply(backend);
+            release(backend, start, null, false);
+            return result;
+        } catch (RuntimeException e) {
+            release(backend, start, e, false);
+            throw e;
+        }
+    }
+}
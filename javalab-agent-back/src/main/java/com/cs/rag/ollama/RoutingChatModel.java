@@ -0,0 +1,132 @@
+package com.cs.rag.ollama;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 多实例路由的对话模型
+ *
+ * <p>每次调用从实例池中选择进行中请求数最少的实例。流式调用在订阅时选择实例，
+ * 生成结束、出错或取消时归还名额，出错计入实例熔断统计，取消不计入。
+ * 流式调用在输出首个片段前失败时换实例重试一次，已输出片段后失败直接返回错误，避免重复内容。</p>
+ *
+ * <p>启用对冲时（见 {@link HedgingPolicy}），首个片段超过对冲延迟仍未返回则在另一个实例上发起相同请求，
+ * 采用先输出片段的一方并取消另一方，降低单个实例加载模型或卡顿造成的长尾首字延迟。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+public class RoutingChatModel implements ChatModel {
+
+    private final OllamaBackendPool pool;
+
+    /** 对冲策略，未启用对冲时为 null */
+    private final HedgingPolicy hedgingPolicy;
+
+    public RoutingChatModel(OllamaBackendPool pool, HedgingPolicy hedgingPolicy) {
+        this.pool = pool;
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        return pool.execute(backend -> backend.chatModel().call(prompt));
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        if (hedgingPolicy == null || !hedgingPolicy.isEnabled() || !pool.canFailover()) {
+            return Flux.defer(() -> streamWithFailover(pool.acquire(null), prompt));
+        }
+        return Flux.defer(() -> hedged(prompt));
+    }
+
+    /**
+     * 对冲流式调用：主请求超过对冲延迟仍无首个片段时，在另一个实例上发起相同请求，
+     * 先输出片段的一方继续，另一方被取消
+     */
+    private Flux<ChatResponse> hedged(Prompt prompt) {
+        hedgingPolicy.onRequest();
+        long start = System.nanoTime();
+        AtomicBoolean firstToken = new AtomicBoolean();
+        AtomicReference<Throwable> primaryError = new AtomicReference<>();
+        OllamaBackend primaryBackend = pool.acquire(null);
+        Flux<ChatResponse> primary = streamWithFailover(primaryBackend, prompt)
+                .doOnError(primaryError::set)
+                .doOnNext(response -> {
+                    if (firstToken.compareAndSet(false, true)) {
+                        hedgingPolicy.recordPrimaryFirstToken(elapsedMillis(start));
+                    }
+                });
+        Duration delay = hedgingPolicy.delay();
+        Flux<ChatResponse> hedge = Mono.delay(delay)
+                .filter(tick -> !firstToken.get() && hedgingPolicy.tryHedge())
+                .flatMapMany(tick -> {
+                    OllamaBackend hedgeBackend = pool.acquire(primaryBackend);
+                    log.info("首片段超过{}ms未返回，发起对冲请求: {} -> {}",
+                            delay.toMillis(), primaryBackend.getBaseUrl(), hedgeBackend.getBaseUrl());
+                    return streamOn(hedgeBackend, prompt, new AtomicBoolean());
+                })
+                .doOnNext(response -> {
+                    if (firstToken.compareAndSet(false, true)) {
+                        long ttft = elapsedMillis(start);
+                        hedgingPolicy.recordHedgeWin(ttft);
+                        log.info("对冲请求先返回首个片段: ttft={}ms", ttft);
+                    }
+                })
+                // 对冲失败（含无其他可用实例）不影响主请求
+                .onErrorResume(error -> Flux.empty());
+        // 双方都没有输出片段时，返回主请求的错误
+        return Flux.firstWithValue(primary, hedge)
+                .onErrorMap(NoSuchElementException.class,
+                        error -> primaryError.get() != null ? primaryError.get() : error);
+    }
+
+    /**
+     * 流式调用，输出首个片段前失败时换实例重试一次
+     */
+    private Flux<ChatResponse> streamWithFailover(OllamaBackend backend, Prompt prompt) {
+        AtomicBoolean emitted = new AtomicBoolean();
+        return streamOn(backend, prompt, emitted).onErrorResume(
+                error -> !emitted.get() && pool.canFailover(),
+                error -> {
+                    OllamaBackend retry = pool.acquire(backend);
+                    log.warn("Ollama实例生成失败，换实例重试: {} -> {}, error={}",
+                            backend.getBaseUrl(), retry.getBaseUrl(), error.getMessage());
+                    return streamOn(retry, prompt, emitted);
+                });
+    }
+
+    private Flux<ChatResponse> streamOn(OllamaBackend backend, Prompt prompt, AtomicBoolean emitted) {
+        long start = System.nanoTime();
+        Throwable[] error = new Throwable[1];
+        return backend.chatModel().stream(prompt)
+                .doOnNext(response -> {
+                    emitted.set(true);
+                    backend.onChunk();
+                })
+                .doOnError(e -> error[0] = e)
+                .doFinally(signal -> pool.release(backend, start, error[0], signal == SignalType.CANCEL));
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return pool.getBackends().get(0).chatModel().getDefaultOptions();
+    }
+}
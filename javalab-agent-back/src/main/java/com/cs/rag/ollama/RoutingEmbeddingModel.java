@@ -0,0 +1,33 @@
+package com.cs.rag.ollama;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.AbstractEmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+/**
+ * 多实例路由的向量模型
+ *
+ * <p>每次调用从实例池中选择进行中请求数最少的实例，失败计入实例熔断统计并换实例重试一次。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+public class RoutingEmbeddingModel extends AbstractEmbeddingModel {
+
+    private final OllamaBackendPool pool;
+
+    public RoutingEmbeddingModel(OllamaBackendPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return pool.execute(backend -> backend.embeddingModel().call(request));
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return pool.execute(backend -> backend.embeddingModel().embed(document));
+    }
+}
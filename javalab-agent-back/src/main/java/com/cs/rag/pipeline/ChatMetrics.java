@@ -0,0 +1,160 @@
+package com.cs.rag.pipeline;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RAG对话链路的 Micrometer 指标
+ *
+ * <p>各阶段耗时、首字耗时、完整生成耗时使用带直方图桶的 Timer，
+ * 在 Prometheus 中可用 histogram_quantile 计算任意分位并设置 SLO；
+ * 检索命中数和空结果为计数，生成速度（Token/秒）取 Ollama 返回的 eval-count / eval-duration。</p>
+ *
+ * <p>指标名称：</p>
+ * <ul>
+ *   <li>rag.chat.stage{stage, outcome}：会话查询/创建、保存用户消息、加载历史、查询向量、向量检索、提示词组装</li>
+ *   <li>rag.chat.first.token{model}：首字耗时</li>
+ *   <li>rag.chat.generation{model, outcome}：完整生成耗时，outcome 为 completed / cancelled / timeout / error</li>
+ *   <li>rag.chat.tokens.per.second{model}：生成速度</li>
+ *   <li>rag.retrieval.hits / rag.retrieval.empty：检索命中文档数、无命中的检索次数</li>
+ * </ul>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Component
+public class ChatMetrics {
+
+    /** 提示词组装阶段（同步执行，不在 StageTimings 中） */
+    public static final String STAGE_PROMPT_ASSEMBLY = "promptAssembly";
+
+    public static final String OUTCOME_COMPLETED = "completed";
+    public static final String OUTCOME_CANCELLED = "cancelled";
+    public static final String OUTCOME_TIMEOUT = "timeout";
+    public static final String OUTCOME_ERROR = "error";
+
+    /** Ollama 响应元数据：生成的Token数 */
+    private static final String EVAL_COUNT = "eval-count";
+
+    /** Ollama 响应元数据：生成耗时 */
+    private static final String EVAL_DURATION = "eval-duration";
+
+    private final MeterRegistry registry;
+
+    private final DistributionSummary retrievalHits;
+
+    private final Counter retrievalEmpty;
+
+    public ChatMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.retrievalHits = DistributionSummary.builder("rag.retrieval.hits")
+                .description("每次检索命中的文档数")
+                .serviceLevelObjectives(1, 2, 3, 5)
+                .register(registry);
+        this.retrievalEmpty = Counter.builder("rag.retrieval.empty")
+                .description("未命中任何文档的检索次数")
+                .register(registry);
+    }
+
+    /**
+     * 记录预处理阶段耗时
+     *
+     * @param stage 阶段名称
+     * @param nanos 耗时（纳秒）
+     * @param success 是否成功
+     */
+    public void recordStage(String stage, long nanos, boolean success) {
+        Timer.builder("rag.chat.stage")
+                .description("RAG对话预处理各阶段耗时")
+                .tag("stage", stage)
+                .tag("outcome", success ? "success" : OUTCOME_ERROR)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录检索命中数
+     *
+     * @param hits 命中的文档数
+     */
+    public void recordRetrieval(int hits) {
+        retrievalHits.record(hits);
+        if (hits == 0) {
+            retrievalEmpty.increment();
+        }
+    }
+
+    /**
+     * 记录首字耗时
+     *
+     * @param model 模型名称
+     * @param millis 首字耗时（毫秒）
+     */
+    public void recordFirstToken(String model, long millis) {
+        Timer.builder("rag.chat.first.token")
+                .description("LLM调用开始到第一个响应片段的耗时")
+                .tag("model", model)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(50))
+                .maximumExpectedValue(Duration.ofSeconds(60))
+                .register(registry)
+                .record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录完整生成耗时
+     *
+     * @param model 模型名称
+     * @param outcome 结束方式
+     * @param millis 耗时（毫秒）
+     */
+    public void recordGeneration(String model, String outcome, long millis) {
+        Timer.builder("rag.chat.generation")
+                .description("LLM完整生成耗时")
+                .tag("model", model)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(100))
+                .maximumExpectedValue(Duration.ofMinutes(5))
+                .register(registry)
+                .record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录生成速度（仅最后一个响应片段带有该元数据，其余片段忽略）
+     *
+     * @param model 模型名称
+     * @param response 流式响应片段
+     */
+    public void recordEval(String model, ChatResponse response) {
+        ChatResponseMetadata metadata = response.getMetadata();
+        if (metadata == null || !metadata.containsKey(EVAL_DURATION)) {
+            return;
+        }
+        Object count = metadata.get(EVAL_COUNT);
+        Object duration = metadata.get(EVAL_DURATION);
+        long tokens = count instanceof Number number ? number.longValue() : 0;
+        long nanos = duration instanceof Duration d ? d.toNanos()
+                : duration instanceof Number number ? number.longValue() : 0;
+        if (tokens <= 0 || nanos <= 0) {
+            return;
+        }
+        DistributionSummary.builder("rag.chat.tokens.per.second")
+                .description("LLM生成速度（Token/秒，不含提示词计算）")
+                .tag("model", model)
+                .serviceLevelObjectives(5, 10, 20, 30, 50, 80, 120)
+                .register(registry)
+                .record(tokens * 1_000_000_000.0 / nanos);
+    }
+}
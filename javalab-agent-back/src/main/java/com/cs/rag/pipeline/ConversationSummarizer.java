@@ -0,0 +1,289 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.config.ConversationSummaryProperties;
+import com.cs.rag.constant.RagConstant;
+import com.cs.rag.entity.ChatMessage;
+import com.cs.rag.entity.ChatSession;
+import com.cs.rag.service.ChatMessageService;
+import com.cs.rag.service.ChatSessionService;
+import com.cs.rag.service.PromptService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 滚动会话摘要
+ *
+ * <p>每轮回复保存后异步执行：摘要未覆盖的问答超过 recentTurns 轮时，
+ * 将较早的轮次与已有摘要一起交给LLM合并为新摘要，写回 chat_session。
+ * 对话时发送"摘要 + 最近几轮原文"，提示词大小不随会话长度增长。</p>
+ *
+ * <p>摘要与覆盖位置（summary_until）在同一条语句中更新，读取方看到的两者始终一致。
+ * 每次从 summary_until 之后按时间顺序读取待合并的轮次（不超过 maxFoldTokens），
+ * summary_until 只推进到实际合并的最后一条消息：摘要生成失败、被跳过或积压过多时，
+ * 未合并的轮次留在 summary_until 之后，下一轮回复后继续合并，不会因超出最近消息窗口而丢失。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class ConversationSummarizer {
+
+    /** 每次最多读取的待合并消息条数 */
+    private static final int MAX_FOLD_MESSAGES = 200;
+
+    /** 推理模型输出的思考过程 */
+    private static final Pattern THINK_BLOCK = Pattern.compile("(?s)<think>.*?</think>");
+
+    private final ConversationSummaryProperties properties;
+
+    private final ChatModel chatModel;
+
+    @Autowired
+    private ChatSessionService chatSessionService;
+
+    @Autowired
+    private ChatMessageService chatMessageService;
+
+    @Autowired
+    private PromptService promptService;
+
+    @Autowired
+    private TokenCounter tokenCounter;
+
+    @Autowired
+    private Scheduler conversationSummaryScheduler;
+
+    @Autowired
+    private GenerationLimiter generationLimiter;
+
+    /** 正在生成摘要的会话，同一会话同时只执行一次 */
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder updates = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder skipped = new LongAdder();
+
+    private final LongAdder summaryMillis = new LongAdder();
+
+    public ConversationSummarizer(ConversationSummaryProperties properties, ChatModel chatModel) {
+        this.properties = properties;
+        this.chatModel = chatModel;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 取摘要之后的原始消息
+     *
+     * @param session 会话（包含摘要及覆盖位置）
+     * @param recentMessages 最近消息（时间倒序）
+     * @return 未被摘要覆盖的消息（时间倒序），未启用或无摘要时原样返回
+     */
+    public List<ChatMessage> afterSummary(ChatSession session, List<ChatMessage> recentMessages) {
+        if (!properties.isEnabled() || session.getSummaryUntil() == null) {
+            return recentMessages;
+        }
+        List<ChatMessage> remaining = new ArrayList<>(recentMessages.size());
+        for (ChatMessage message : recentMessages) {
+            if (message.getCreatedAt() == null || message.getCreatedAt().isAfter(session.getSummaryUntil())) {
+                remaining.add(message);
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * 会话是否有可用的摘要
+     */
+    public boolean hasSummary(ChatSession session) {
+        return properties.isEnabled() && session.getSummary() != null && !session.getSummary().isEmpty();
+    }
+
+    /**
+     * 将摘要附加到系统提示词
+     *
+     * @param systemPrompt 系统提示词
+     * @param session 会话
+     * @return 附加摘要后的系统提示词，未启用或无摘要时原样返回
+     */
+    public String withSummary(String systemPrompt, ChatSession session) {
+        if (!hasSummary(session)) {
+            return systemPrompt;
+        }
+        return systemPrompt + RagConstant.CONVERSATION_SUMMARY_LABEL + session.getSummary();
+    }
+
+    /**
+     * AI回复保存后异步更新摘要
+     *
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     */
+    public void onAssistantReply(String sessionId, Long userId) {
+        if (!properties.isEnabled() || !inFlight.add(sessionId)) {
+            return;
+        }
+        try {
+            conversationSummaryScheduler.schedule(() -> {
+                try {
+                    update(sessionId, userId);
+                } catch (Exception e) {
+                    failures.increment();
+                    log.warn("会话摘要更新失败: sessionId={}, error={}", sessionId, e.getMessage());
+                } finally {
+                    inFlight.remove(sessionId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(sessionId);
+            skipped.increment();
+            log.warn("会话摘要任务队列已满，跳过本次更新: sessionId={}", sessionId);
+        }
+    }
+
+    /**
+     * 将超出 recentTurns 的较早轮次合并进摘要
+     */
+    private void update(String sessionId, Long userId) {
+        ChatSession session = chatSessionService.getById(sessionId);
+        if (session == null) {
+            return;
+        }
+        // 最近 recentTurns 轮按原文保留，其中最早一条消息的时间作为合并的上界
+        List<ChatMessage> recent = new ArrayList<>(afterSummary(session,
+                chatMessageService.getRecentMessages(sessionId, userId, RagConstant.MEMORY_SIZE)));
+        // 窗口未取满时已包含 summary_until 之后的全部消息
+        boolean complete = recent.size() < RagConstant.MEMORY_SIZE;
+        Collections.reverse(recent);
+        List<ChatMessage> recentPairs = pairs(recent);
+        int keepMessages = 2 * properties.getRecentTurns();
+        if (recentPairs.size() < keepMessages || complete && recentPairs.size() == keepMessages) {
+            return;
+        }
+        LocalDateTime keepFrom = keepMessages > 0
+                ? recentPairs.get(recentPairs.size() - keepMessages).getCreatedAt() : null;
+
+        // 从 summary_until 之后按时间顺序读取，包括已超出最近消息窗口的积压轮次
+        List<ChatMessage> pairs = pairs(chatMessageService.getMessagesBetween(
+                sessionId, userId, session.getSummaryUntil(), keepFrom, MAX_FOLD_MESSAGES));
+        int foldMessages = 0;
+        int foldTokens = 0;
+        while (foldMessages < pairs.size()) {
+            int pairTokens = tokenCounter.count(pairs.get(foldMessages))
+                    + tokenCounter.count(pairs.get(foldMessages + 1));
+            if (foldMessages > 0 && foldTokens + pairTokens > properties.getMaxFoldTokens()) {
+                break;
+            }
+            foldTokens += pairTokens;
+            foldMessages += 2;
+        }
+        if (foldMessages == 0) {
+            return;
+        }
+
+        StringBuilder conversation = new StringBuilder();
+        for (ChatMessage message : pairs.subList(0, foldMessages)) {
+            conversation.append(ChatMessage.ROLE_USER.equals(message.getRole()) ? "用户: " : "助手: ")
+                    .append(tokenCounter.truncate(message.getContent(), properties.getMaxFoldTokens())).append("\n");
+        }
+        String prompt = promptService.getConversationSummaryPrompt(Map.of(
+                "maxTokens", properties.getMaxSummaryTokens(),
+                "summary", session.getSummary() == null ? "（无）" : session.getSummary(),
+                "conversation", conversation.toString().trim()));
+
+        // 与对话生成共用并发名额，避免后台摘要占满模型的并行槽位
+        long startTime = System.currentTimeMillis();
+        String content = generationLimiter.call(userId,
+                () -> ChatClient.builder(chatModel).build().prompt().user(prompt).call().content());
+        if (content == null) {
+            skipped.increment();
+            log.warn("LLM生成队列已满或排队超时，跳过本次摘要更新: sessionId={}", sessionId);
+            return;
+        }
+        if (content.isBlank()) {
+            failures.increment();
+            log.warn("会话摘要为空，保留原摘要: sessionId={}", sessionId);
+            return;
+        }
+        String summary = tokenCounter.truncate(THINK_BLOCK.matcher(content).replaceAll("").trim(),
+                properties.getMaxSummaryTokens());
+        LocalDateTime summaryUntil = pairs.get(foldMessages - 1).getCreatedAt();
+        long elapsed = System.currentTimeMillis() - startTime;
+        summaryMillis.add(elapsed);
+
+        if (chatSessionService.updateSummary(sessionId, summary, summaryUntil)) {
+            updates.increment();
+            log.info("会话摘要已更新: sessionId={}, 合并{}条消息, 待合并{}条, 摘要Token数={}, 耗时{}ms",
+                    sessionId, foldMessages, pairs.size() - foldMessages, tokenCounter.count(summary), elapsed);
+        }
+    }
+
+    /**
+     * 整理为完整的问答对，跳过未配对的消息
+     *
+     * @param messages 消息（时间正序）
+     * @return 按"用户消息, AI回复"依次排列的消息（时间正序）
+     */
+    private static List<ChatMessage> pairs(List<ChatMessage> messages) {
+        List<ChatMessage> pairs = new ArrayList<>(messages.size());
+        ChatMessage userMessage = null;
+        for (ChatMessage message : messages) {
+            if (ChatMessage.ROLE_USER.equals(message.getRole())) {
+                userMessage = message;
+            } else if (ChatMessage.ROLE_ASSISTANT.equals(message.getRole()) && userMessage != null) {
+                pairs.add(userMessage);
+                pairs.add(message);
+                userMessage = null;
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * 摘要更新成功次数
+     */
+    public long updateCount() {
+        return updates.sum();
+    }
+
+    /**
+     * 摘要生成失败次数
+     */
+    public long failureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * 任务队列已满或生成名额排队失败被跳过的次数
+     */
+    public long skippedCount() {
+        return skipped.sum();
+    }
+
+    /**
+     * 摘要生成累计耗时（毫秒）
+     */
+    public long totalSummaryMillis() {
+        return summaryMillis.sum();
+    }
+}
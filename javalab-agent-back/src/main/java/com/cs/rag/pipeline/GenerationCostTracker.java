@@ -0,0 +1,205 @@
+package com.cs.rag.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LLM生成耗时统计
+ *
+ * <p>记录每次生成占用模型的时间（近似GPU时间）。客户端断开取消生成时，
+ * 按已完成生成耗时的指数滑动平均估算剩余时间，累计为取消节省的GPU时间。
+ * 首片段超时单独记录，不计入节省的时间：超时是模型排队或过载，而不是用户不再需要回复。</p>
+ *
+ * <p>同时记录 Ollama 返回的提示词计算（prompt eval）Token数和耗时，按首轮和后续轮分别累计：
+ * 后续轮的前缀（系统提示词 + 历史）命中 KV 缓存时，计算的Token数和耗时明显下降，用于对比前缀复用的效果。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class GenerationCostTracker {
+
+    /** 滑动平均的平滑系数 */
+    private static final double ALPHA = 0.1;
+
+    private final LongAdder completed = new LongAdder();
+
+    private final LongAdder cancelled = new LongAdder();
+
+    private final LongAdder timedOut = new LongAdder();
+
+    private final LongAdder completedMillis = new LongAdder();
+
+    private final LongAdder cancelledMillis = new LongAdder();
+
+    private final LongAdder timedOutMillis = new LongAdder();
+
+    private final LongAdder savedMillis = new LongAdder();
+
+    /** Ollama 响应元数据：提示词计算的Token数 */
+    private static final String PROMPT_EVAL_COUNT = "prompt-eval-count";
+
+    /** Ollama 响应元数据：提示词计算耗时 */
+    private static final String PROMPT_EVAL_DURATION = "prompt-eval-duration";
+
+    private final LongAdder firstTurnEvals = new LongAdder();
+
+    private final LongAdder firstTurnEvalTokens = new LongAdder();
+
+    private final LongAdder firstTurnEvalMillis = new LongAdder();
+
+    private final LongAdder followUpEvals = new LongAdder();
+
+    private final LongAdder followUpEvalTokens = new LongAdder();
+
+    private final LongAdder followUpEvalMillis = new LongAdder();
+
+    /** 完整生成耗时的滑动平均（毫秒），无样本时为0 */
+    private double averageMillis;
+
+    /**
+     * 记录一次完整生成
+     *
+     * @param elapsedMillis 生成耗时
+     */
+    public void recordCompleted(long elapsedMillis) {
+        completed.increment();
+        completedMillis.add(elapsedMillis);
+        synchronized (this) {
+            averageMillis = averageMillis == 0 ? elapsedMillis : ALPHA * elapsedMillis + (1 - ALPHA) * averageMillis;
+        }
+    }
+
+    /**
+     * 记录一次客户端断开取消的生成
+     *
+     * @param elapsedMillis 取消前已生成的时间
+     * @return 估算节省的时间（毫秒），尚无完整生成样本时为0
+     */
+    public long recordCancelled(long elapsedMillis) {
+        cancelled.increment();
+        cancelledMillis.add(elapsedMillis);
+        long saved;
+        synchronized (this) {
+            saved = Math.max(0, Math.round(averageMillis) - elapsedMillis);
+        }
+        savedMillis.add(saved);
+        return saved;
+    }
+
+    /**
+     * 记录一次首片段超时而结束的生成
+     *
+     * @param elapsedMillis 超时前等待的时间
+     */
+    public void recordTimedOut(long elapsedMillis) {
+        timedOut.increment();
+        timedOutMillis.add(elapsedMillis);
+    }
+
+    /**
+     * 记录提示词计算耗时（仅最后一个响应片段带有该元数据，其余片段忽略）
+     *
+     * @param response 流式响应片段
+     * @param followUp 是否为带历史的后续轮
+     * @param sessionId 会话ID
+     */
+    public void recordPromptEval(ChatResponse response, boolean followUp, String sessionId) {
+        ChatResponseMetadata metadata = response.getMetadata();
+        if (metadata == null || !metadata.containsKey(PROMPT_EVAL_DURATION)) {
+            return;
+        }
+        Object count = metadata.get(PROMPT_EVAL_COUNT);
+        Object duration = metadata.get(PROMPT_EVAL_DURATION);
+        long tokens = count instanceof Number number ? number.longValue() : 0;
+        long millis = duration instanceof Duration d ? d.toMillis()
+                : duration instanceof Number number ? number.longValue() / 1_000_000 : 0;
+        if (followUp) {
+            followUpEvals.increment();
+            followUpEvalTokens.add(tokens);
+            followUpEvalMillis.add(millis);
+        } else {
+            firstTurnEvals.increment();
+            firstTurnEvalTokens.add(tokens);
+            firstTurnEvalMillis.add(millis);
+        }
+        log.info("提示词计算: sessionId={}, 后续轮={}, 计算Token数={}, 耗时{}ms", sessionId, followUp, tokens, millis);
+    }
+
+    // ==================== 统计信息 ====================
+
+    public long completedCount() {
+        return completed.sum();
+    }
+
+    public long cancelledCount() {
+        return cancelled.sum();
+    }
+
+    public long timedOutCount() {
+        return timedOut.sum();
+    }
+
+    /**
+     * 完整生成累计占用的时间（秒）
+     */
+    public double completedSeconds() {
+        return completedMillis.sum() / 1000.0;
+    }
+
+    /**
+     * 被取消的生成在取消前累计占用的时间（秒）
+     */
+    public double cancelledSeconds() {
+        return cancelledMillis.sum() / 1000.0;
+    }
+
+    /**
+     * 首片段超时的生成在超时前累计占用的时间（秒）
+     */
+    public double timedOutSeconds() {
+        return timedOutMillis.sum() / 1000.0;
+    }
+
+    /**
+     * 客户端断开取消生成估算节省的时间（秒）
+     */
+    public double savedGpuSeconds() {
+        return savedMillis.sum() / 1000.0;
+    }
+
+    /**
+     * 首轮（无历史）平均提示词计算耗时（毫秒）
+     */
+    public double averageFirstTurnPromptEvalMillis() {
+        return average(firstTurnEvalMillis.sum(), firstTurnEvals.sum());
+    }
+
+    /**
+     * 后续轮平均提示词计算耗时（毫秒），前缀命中 KV 缓存时下降
+     */
+    public double averageFollowUpPromptEvalMillis() {
+        return average(followUpEvalMillis.sum(), followUpEvals.sum());
+    }
+
+    /**
+     * 后续轮平均实际计算的提示词Token数，前缀命中 KV 缓存的部分不计入
+     */
+    public double averageFollowUpPromptEvalTokens() {
+        return average(followUpEvalTokens.sum(), followUpEvals.sum());
+    }
+
+    public double averageFirstTurnPromptEvalTokens() {
+        return average(firstTurnEvalTokens.sum(), firstTurnEvals.sum());
+    }
+
+    private static double average(long total, long count) {
+        return count == 0 ? 0.0 : (double) total / count;
+    }
+}
@@ -0,0 +1,396 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.common.ErrorCode;
+import com.cs.rag.config.GenerationLimiterProperties;
+import com.cs.rag.constant.RagConstant;
+import com.cs.rag.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * LLM生成并发限制（舱壁）
+ *
+ * <p>同时进行的生成数量不超过 maxConcurrent，其余请求进入有界队列等待。
+ * 队列按用户轮转出队：每个有排队请求的用户轮流获得一个名额，
+ * 单个用户连续提问不会挤占其他用户。等待期间按间隔推送排队位置帧 [QUEUE:n]，
+ * 队列已满时直接拒绝，超过最长排队时间时返回提示并结束。</p>
+ *
+ * <p>名额在生成流结束、出错或客户端断开时归还并立即分配给下一个排队请求。未启用时直接透传。</p>
+ *
+ * <p>后台的同步调用（会话摘要）通过 {@link #call} 与对话共用名额和队列，
+ * 实际发往模型的并发请求数不超过 maxConcurrent。</p>
+ *
+ * <p>多个用户合并共享的生成（见 {@link RequestCoalescer}）通过 {@link #guardShared} 按合并键单独排队，
+ * 不计入发起者的轮转队列，也不受发起者排队情况的影响。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class GenerationLimiter {
+
+    private final GenerationLimiterProperties properties;
+
+    private final Object lock = new Object();
+
+    /** 正在生成的数量 */
+    private int running;
+
+    /** 排队中的请求总数 */
+    private int queued;
+
+    /** 排队通道（用户ID或共享生成的合并键） -> 该通道的排队请求（先到先出） */
+    private final Map<Object, ArrayDeque<Ticket>> waiting = new HashMap<>();
+
+    /** 有排队请求的通道，按轮转顺序排列 */
+    private final ArrayDeque<Object> turns = new ArrayDeque<>();
+
+    private final LongAdder admitted = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder timedOut = new LongAdder();
+
+    private final LongAdder abandoned = new LongAdder();
+
+    private final LongAdder totalWaitMillis = new LongAdder();
+
+    private final LongAccumulator maxWaitMillis = new LongAccumulator(Math::max, 0);
+
+    public GenerationLimiter(GenerationLimiterProperties properties) {
+        this.properties = properties;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 请求入口的快速检查：队列已满时直接拒绝，不再执行会话、检索等预处理
+     *
+     * @throws BusinessException 队列已满（TOO_MANY_REQUESTS）
+     */
+    public void checkAdmission() {
+        if (properties.isEnabled() && queueDepth() >= properties.getMaxQueueSize()) {
+            rejected.increment();
+            log.warn("LLM生成队列已满，拒绝请求: queueDepth={}", queueDepth());
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUESTS);
+        }
+    }
+
+    /**
+     * 在并发限制内执行LLM生成
+     *
+     * @param userId 用户ID（用于按用户轮转出队）
+     * @param sessionId 会话ID
+     * @param generation LLM流式生成，获得名额后才订阅
+     * @return 排队位置帧 + LLM流式响应；被拒绝或排队超时时为一条错误帧
+     */
+    public Flux<String> guard(Long userId, String sessionId, Supplier<Flux<String>> generation) {
+        return guard((Object) userId, sessionId, generation);
+    }
+
+    /**
+     * 在并发限制内执行多个请求共享的LLM生成：按合并键单独排队，不占用任一请求用户的轮转位置
+     *
+     * @param coalescingKey 合并键
+     * @param generation LLM流式生成，获得名额后才订阅
+     * @return 排队位置帧 + LLM流式响应；被拒绝或排队超时时为一条错误帧
+     */
+    public Flux<String> guardShared(String coalescingKey, Supplier<Flux<String>> generation) {
+        return guard(new SharedLane(coalescingKey), SharedLane.LABEL, generation);
+    }
+
+    private Flux<String> guard(Object lane, String sessionId, Supplier<Flux<String>> generation) {
+        if (!properties.isEnabled()) {
+            return Flux.defer(generation);
+        }
+        return Flux.defer(() -> {
+            Ticket ticket = acquire(lane);
+            if (ticket == null) {
+                rejected.increment();
+                log.warn("LLM生成队列已满，拒绝请求: sessionId={}, lane={}", sessionId, lane);
+                return Flux.just(RagConstant.ERROR_PREFIX + ErrorCode.TOO_MANY_REQUESTS.getMessage());
+            }
+            Flux<String> positions = Flux.interval(Duration.ZERO, properties.getPositionInterval())
+                    .map(tick -> position(ticket))
+                    .filter(position -> position > 0)
+                    .distinctUntilChanged()
+                    .map(position -> RagConstant.QUEUE_POSITION_PREFIX + position + RagConstant.QUEUE_POSITION_SUFFIX)
+                    .takeUntilOther(ticket.grant.asMono())
+                    .take(properties.getMaxQueueWait());
+            return Flux.concat(
+                    ticket.isGranted() ? Flux.<String>empty() : positions,
+                    Flux.defer(() -> {
+                        if (ticket.isGranted()) {
+                            return generation.get();
+                        }
+                        timedOut.increment();
+                        log.warn("LLM生成排队超时: sessionId={}, lane={}, maxQueueWait={}ms",
+                                sessionId, lane, properties.getMaxQueueWait().toMillis());
+                        return Flux.just(RagConstant.ERROR_PREFIX + RagConstant.QUEUE_TIMEOUT_MESSAGE);
+                    })
+            ).doFinally(signal -> finish(ticket));
+        });
+    }
+
+    /**
+     * 在并发限制内执行同步LLM调用，调用线程阻塞等待名额（仅用于允许阻塞的后台线程）
+     *
+     * @param userId 用户ID（与对话请求一起按用户轮转出队）
+     * @param call LLM调用，获得名额后执行
+     * @return 调用结果；队列已满或排队超时时返回null
+     */
+    public <T> T call(Long userId, Supplier<T> call) {
+        if (!properties.isEnabled()) {
+            return call.get();
+        }
+        Ticket ticket = acquire(userId);
+        if (ticket == null) {
+            rejected.increment();
+            return null;
+        }
+        try {
+            if (!ticket.isGranted()) {
+                try {
+                    ticket.grant.asMono().block(properties.getMaxQueueWait());
+                } catch (IllegalStateException e) {
+                    // 排队超时：名额可能恰好在超时时分配，以凭证状态为准
+                }
+            }
+            if (!ticket.isGranted()) {
+                timedOut.increment();
+                return null;
+            }
+            return call.get();
+        } finally {
+            finish(ticket);
+        }
+    }
+
+    // ==================== 统计信息 ====================
+
+    /**
+     * 当前排队请求数
+     */
+    public int queueDepth() {
+        synchronized (lock) {
+            return queued;
+        }
+    }
+
+    /**
+     * 当前正在生成的数量
+     */
+    public int inFlight() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    /**
+     * 获得名额的请求数（含无需排队的请求）
+     */
+    public long admittedCount() {
+        return admitted.sum();
+    }
+
+    /**
+     * 因队列已满被拒绝的请求数
+     */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * 排队超时的请求数
+     */
+    public long timeoutCount() {
+        return timedOut.sum();
+    }
+
+    /**
+     * 排队期间客户端断开的请求数
+     */
+    public long abandonedCount() {
+        return abandoned.sum();
+    }
+
+    /**
+     * 获得名额前的累计等待时间（毫秒）
+     */
+    public long totalWaitMillis() {
+        return totalWaitMillis.sum();
+    }
+
+    /**
+     * 单次最长等待时间（毫秒）
+     */
+    public long maxWaitMillis() {
+        return maxWaitMillis.get();
+    }
+
+    // ==================== 内部实现 ====================
+
+    /**
+     * 申请名额：有空闲且无人排队时直接获得，否则入队
+     *
+     * @return 排队凭证，队列已满时为null
+     */
+    private Ticket acquire(Object lane) {
+        Ticket ticket = new Ticket(lane);
+        synchronized (lock) {
+            if (running < properties.getMaxConcurrent() && queued == 0) {
+                running++;
+                ticket.granted = true;
+            } else if (queued >= properties.getMaxQueueSize()) {
+                return null;
+            } else {
+                ArrayDeque<Ticket> userQueue = waiting.computeIfAbsent(lane, key -> new ArrayDeque<>());
+                if (userQueue.isEmpty()) {
+                    turns.addLast(lane);
+                }
+                userQueue.addLast(ticket);
+                ticket.waiting = true;
+                queued++;
+            }
+        }
+        if (ticket.granted) {
+            onGranted(ticket);
+        }
+        return ticket;
+    }
+
+    /**
+     * 生成结束或放弃排队：仍在排队时移出队列，已获得名额时归还并分配给下一个请求
+     */
+    private void finish(Ticket ticket) {
+        List<Ticket> granted = new ArrayList<>();
+        synchronized (lock) {
+            if (ticket.waiting) {
+                ArrayDeque<Ticket> userQueue = waiting.get(ticket.lane);
+                userQueue.remove(ticket);
+                if (userQueue.isEmpty()) {
+                    waiting.remove(ticket.lane);
+                    turns.remove(ticket.lane);
+                }
+                ticket.waiting = false;
+                queued--;
+                if (!ticket.timedOut()) {
+                    abandoned.increment();
+                }
+            } else if (ticket.granted && !ticket.released) {
+                ticket.released = true;
+                running--;
+            }
+            while (running < properties.getMaxConcurrent() && !turns.isEmpty()) {
+                Object lane = turns.pollFirst();
+                ArrayDeque<Ticket> userQueue = waiting.get(lane);
+                Ticket next = userQueue.pollFirst();
+                if (userQueue.isEmpty()) {
+                    waiting.remove(lane);
+                } else {
+                    turns.addLast(lane);
+                }
+                next.waiting = false;
+                next.granted = true;
+                queued--;
+                running++;
+                granted.add(next);
+            }
+        }
+        // 在锁外通知，获得名额的请求会在当前线程上订阅LLM流
+        for (Ticket next : granted) {
+            onGranted(next);
+            next.grant.tryEmitValue(Boolean.TRUE);
+        }
+    }
+
+    /**
+     * 排队位置（从1开始）：按轮转规则计算排在该请求之前的请求数
+     *
+     * @return 排队位置，已获得名额或已离开队列时为0
+     */
+    private int position(Ticket ticket) {
+        synchronized (lock) {
+            if (!ticket.waiting) {
+                return 0;
+            }
+            int rank = 0;
+            for (Ticket queuedTicket : waiting.get(ticket.lane)) {
+                if (queuedTicket == ticket) {
+                    break;
+                }
+                rank++;
+            }
+            int ahead = rank;
+            boolean beforeTicketUser = true;
+            for (Object lane : turns) {
+                if (lane.equals(ticket.lane)) {
+                    beforeTicketUser = false;
+                    continue;
+                }
+                // 轮转顺序在前的用户在本请求之前可出队 rank + 1 个，在后的用户可出队 rank 个
+                ahead += Math.min(waiting.get(lane).size(), beforeTicketUser ? rank + 1 : rank);
+            }
+            return ahead + 1;
+        }
+    }
+
+    private void onGranted(Ticket ticket) {
+        long waitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ticket.enqueuedAt);
+        admitted.increment();
+        totalWaitMillis.add(waitMillis);
+        maxWaitMillis.accumulate(waitMillis);
+    }
+
+    /**
+     * 排队凭证（状态字段在 lock 内修改）
+     */
+    private final class Ticket {
+        private final Object lane;
+        private final long enqueuedAt = System.nanoTime();
+        private final Sinks.One<Boolean> grant = Sinks.one();
+        private volatile boolean granted;
+        private boolean waiting;
+        private boolean released;
+
+        Ticket(Object lane) {
+            this.lane = lane;
+        }
+
+        boolean isGranted() {
+            return granted;
+        }
+
+        boolean timedOut() {
+            return System.nanoTime() - enqueuedAt >= properties.getMaxQueueWait().toNanos();
+        }
+    }
+
+    /**
+     * 共享生成的排队通道：按合并键区分，与用户ID不会相等
+     */
+    private record SharedLane(String coalescingKey) {
+        private static final String LABEL = "coalesced";
+
+        @Override
+        public String toString() {
+            return LABEL + "@" + Integer.toHexString(coalescingKey.hashCode());
+        }
+    }
+}
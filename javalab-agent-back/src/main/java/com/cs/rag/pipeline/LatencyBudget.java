@@ -0,0 +1,221 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.config.LatencyBudgetProperties;
+import com.cs.rag.constant.RagConstant;
+import com.cs.rag.event.KnowledgeChangedEvent;
+import com.cs.rag.utils.TextNormalizer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对话延迟预算
+ *
+ * <p>为对话的各个阶段设置耗时上限，超时或失败时按阶段降级:</p>
+ * <ul>
+ *   <li>查询向量/向量检索：复用相同问题最近一次的检索结果，没有则按未命中知识库处理</li>
+ *   <li>历史消息：按无历史上下文继续</li>
+ *   <li>LLM首个片段：返回超时提示并结束本轮</li>
+ * </ul>
+ *
+ * <p>每次降级按阶段计数，用于观察高峰期的降级频率。未启用时所有方法直接透传。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class LatencyBudget {
+
+    public static final String STAGE_EMBEDDING = "embedding";
+    public static final String STAGE_VECTOR_SEARCH = "vectorSearch";
+    public static final String STAGE_RETRIEVAL = "retrieval";
+    public static final String STAGE_HISTORY = "history";
+    public static final String STAGE_FIRST_TOKEN = "firstToken";
+
+    private final LatencyBudgetProperties properties;
+
+    /** 归一化问题 -> 最近一次成功的检索结果 */
+    private final Cache<String, List<Document>> recentResults;
+
+    /** 阶段 -> 降级次数 */
+    private final Map<String, LongAdder> degradations = new ConcurrentHashMap<>();
+
+    private final LongAdder fallbackHits = new LongAdder();
+
+    public LatencyBudget(LatencyBudgetProperties properties) {
+        this.properties = properties;
+        this.recentResults = Caffeine.newBuilder()
+                .maximumSize(properties.getFallbackCacheSize())
+                .expireAfterWrite(properties.getFallbackCacheTtl())
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 为阶段设置超时，超时异常会携带阶段名称
+     *
+     * @param stage 阶段名称
+     * @param mono 阶段任务
+     * @return 带超时的阶段任务，未启用时原样返回
+     */
+    public <T> Mono<T> within(String stage, Mono<T> mono) {
+        if (!properties.isEnabled()) {
+            return mono;
+        }
+        Duration budget = budgetOf(stage);
+        return mono.timeout(budget)
+                .onErrorMap(TimeoutException.class, e -> new StageTimeoutException(stage, budget));
+    }
+
+    /**
+     * 记录成功的检索结果，供后续降级复用
+     */
+    public void rememberResults(String query, List<Document> documents) {
+        if (properties.isEnabled()) {
+            recentResults.put(TextNormalizer.normalize(query), documents);
+        }
+    }
+
+    /**
+     * 检索降级：优先复用最近的检索结果，否则返回空列表（按未命中知识库处理）
+     *
+     * @param query 用户问题
+     * @param error 超时或失败原因
+     * @return 降级后的检索结果
+     */
+    public List<Document> degradeRetrieval(String query, Throwable error) {
+        List<Document> cached = recentResults.getIfPresent(TextNormalizer.normalize(query));
+        if (cached != null) {
+            fallbackHits.increment();
+        }
+        degrade(stageOf(error, STAGE_RETRIEVAL), error, cached != null ? "复用最近检索结果" : "按未命中知识库处理");
+        return cached != null ? cached : Collections.emptyList();
+    }
+
+    /**
+     * 通用降级：记录并返回兜底值
+     *
+     * @param stage 阶段名称
+     * @param error 超时或失败原因
+     * @param fallback 兜底值
+     * @return 兜底值
+     */
+    public <T> T degrade(String stage, Throwable error, T fallback) {
+        degrade(stageOf(error, stage), error, "使用兜底值");
+        return fallback;
+    }
+
+    /**
+     * 为LLM流设置首个片段的预算，超时后返回提示信息并结束
+     *
+     * <p>超时会取消上游的LLM流，上游的取消回调无法区分超时和客户端断开，超时由 onTimeout 单独通知。</p>
+     *
+     * @param stream LLM流式响应
+     * @param sessionId 会话ID
+     * @param onTimeout 首片段超时时执行
+     * @return 带首片段超时的流，未启用时原样返回
+     */
+    public Flux<String> guardFirstToken(Flux<String> stream, String sessionId, Runnable onTimeout) {
+        if (!properties.isEnabled()) {
+            return stream;
+        }
+        return stream.timeout(Mono.delay(properties.getFirstToken()), chunk -> Mono.never())
+                .onErrorResume(TimeoutException.class, e -> {
+                    degrade(STAGE_FIRST_TOKEN, new StageTimeoutException(STAGE_FIRST_TOKEN, properties.getFirstToken()),
+                            "返回超时提示, sessionId=" + sessionId);
+                    onTimeout.run();
+                    return Flux.just(RagConstant.FIRST_TOKEN_TIMEOUT_MESSAGE);
+                });
+    }
+
+    /**
+     * 知识库变更后清空最近检索结果（事务提交后执行，非事务场景直接执行）
+     *
+     * @param event 知识库变更事件
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onKnowledgeChanged(KnowledgeChangedEvent event) {
+        recentResults.invalidateAll();
+    }
+
+    // ==================== 统计信息 ====================
+
+    /**
+     * 各阶段的降级次数
+     */
+    public Map<String, Long> degradationCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        degradations.forEach((stage, counter) -> counts.put(stage, counter.sum()));
+        return counts;
+    }
+
+    public long degradationCount(String stage) {
+        LongAdder counter = degradations.get(stage);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * 检索降级时复用到最近结果的次数
+     */
+    public long fallbackHitCount() {
+        return fallbackHits.sum();
+    }
+
+    // ==================== 内部实现 ====================
+
+    private void degrade(String stage, Throwable error, String action) {
+        degradations.computeIfAbsent(stage, key -> new LongAdder()).increment();
+        log.warn("对话阶段降级: stage={}, 原因={}, 处理={}", stage, error.getMessage(), action);
+    }
+
+    private Duration budgetOf(String stage) {
+        switch (stage) {
+            case STAGE_EMBEDDING:
+                return properties.getEmbedding();
+            case STAGE_VECTOR_SEARCH:
+                return properties.getVectorSearch();
+            case STAGE_RETRIEVAL:
+                return properties.getEmbedding().plus(properties.getVectorSearch());
+            case STAGE_HISTORY:
+                return properties.getHistory();
+            case STAGE_FIRST_TOKEN:
+                return properties.getFirstToken();
+            default:
+                throw new IllegalArgumentException("未知的对话阶段: " + stage);
+        }
+    }
+
+    private static String stageOf(Throwable error, String defaultStage) {
+        return error instanceof StageTimeoutException ? ((StageTimeoutException) error).stage : defaultStage;
+    }
+
+    /**
+     * 阶段超时异常
+     */
+    private static class StageTimeoutException extends RuntimeException {
+        private final String stage;
+
+        StageTimeoutException(String stage, Duration budget) {
+            super(stage + "超过预算" + budget.toMillis() + "ms");
+            this.stage = stage;
+        }
+    }
+}
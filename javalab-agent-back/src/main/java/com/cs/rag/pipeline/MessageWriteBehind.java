@@ -0,0 +1,507 @@
+package com.cs.rag.pipeline;
+
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.cs.rag.cache.SessionListCache;
+import com.cs.rag.config.MessageWriteBehindProperties;
+import com.cs.rag.entity.ChatMessage;
+import com.cs.rag.entity.ChatSession;
+import com.cs.rag.mapper.ChatMessageMapper;
+import com.cs.rag.mapper.ChatSessionMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 消息异步批量写入（write-behind）
+ *
+ * <p>每轮对话原本同步执行四次数据库往返：用户消息和AI回复各一次 INSERT chat_message 和一次 UPDATE chat_session.updated_at。
+ * 启用后消息进入有界内存队列，由后台线程批量写入：一批消息用一条多行 INSERT 写入，
+ * 批内同一会话的更新时间合并为一条 UPDATE ... FROM (VALUES ...) 完成。</p>
+ *
+ * <p>持久化确认方式：</p>
+ * <ul>
+ *   <li>FLUSH_BEFORE_ACK：调用方等待所在批次写入后返回。后台线程取到消息后立即写入，
+ *       写入期间到达的消息组成下一批（组提交），并发越高每批越大，低负载时不增加等待</li>
+ *   <li>ASYNC：入队后立即返回，后台线程在刷新窗口（flushInterval）内收集消息后写入；
+ *       进程异常退出时可能丢失最近一个窗口内的消息，正常关闭时会先写完队列</li>
+ * </ul>
+ *
+ * <p>尚未写入的消息按会话保存在内存中，查询最近消息时与数据库结果合并，保证写后可读（单实例内）。
+ * 队列已满时退回为同步直接写入；批量写入失败时逐条重试，定位并报告失败的消息。
+ * ASYNC 模式下调用方已经返回，逐条重试仍失败的消息重新入队，间隔 retryBackoff 后再写，
+ * 超过 maxRetries 次后记录为失败；FLUSH_BEFORE_ACK 模式下错误直接抛给等待的调用方。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class MessageWriteBehind {
+
+    /** 按时间倒序排列消息（时间相同时按ID） */
+    public static final Comparator<ChatMessage> NEWEST_FIRST = Comparator
+            .comparing(ChatMessage::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(ChatMessage::getId, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    /** 空闲时检查停止标记的间隔 */
+    private static final long IDLE_POLL_MILLIS = 200;
+
+    private final MessageWriteBehindProperties properties;
+
+    private final ChatMessageMapper chatMessageMapper;
+
+    private final ChatSessionMapper chatSessionMapper;
+
+    private final SessionListCache sessionListCache;
+
+    private final BlockingQueue<Pending> queue;
+
+    /** 会话ID -> 已入队尚未写入的消息 */
+    private final Map<String, Queue<ChatMessage>> unflushed = new ConcurrentHashMap<>();
+
+    /** 入队到写入完成的耗时 */
+    private final Timer flushLag;
+
+    private final LongAdder enqueued = new LongAdder();
+
+    private final LongAdder flushedMessages = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder sessionTouches = new LongAdder();
+
+    private final LongAdder overflows = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder retries = new LongAdder();
+
+    private final LongAdder ackTimeouts = new LongAdder();
+
+    private volatile boolean running;
+
+    private Thread flusher;
+
+    public MessageWriteBehind(MessageWriteBehindProperties properties, ChatMessageMapper chatMessageMapper,
+                              ChatSessionMapper chatSessionMapper, SessionListCache sessionListCache,
+                              MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.chatMessageMapper = chatMessageMapper;
+        this.chatSessionMapper = chatSessionMapper;
+        this.sessionListCache = sessionListCache;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+        this.flushLag = Timer.builder("rag.message.write.behind.lag")
+                .description("消息入队到写入数据库的耗时")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "message-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("消息异步批量写入已启用: durability={}, batchSize={}, flushInterval={}ms, queueCapacity={}",
+                properties.getDurability(), properties.getBatchSize(),
+                properties.getFlushInterval().toMillis(), properties.getQueueCapacity());
+    }
+
+    /**
+     * 保存消息：入队后按持久化确认方式返回，队列已满时同步直接写入
+     *
+     * @param message 消息（id 为空时在此分配）
+     */
+    public void save(ChatMessage message) {
+        if (message.getId() == null) {
+            message.setId(IdWorker.getId());
+        }
+        boolean ack = properties.getDurability() == MessageWriteBehindProperties.Durability.FLUSH_BEFORE_ACK;
+        Pending pending = new Pending(message, System.nanoTime(), ack ? new CompletableFuture<>() : null, 0);
+        unflushed.compute(message.getSessionId(), (sessionId, messages) -> {
+            Queue<ChatMessage> result = messages != null ? messages : new ConcurrentLinkedQueue<>();
+            result.add(message);
+            return result;
+        });
+        if (!running || !queue.offer(pending)) {
+            removeUnflushed(message);
+            overflows.increment();
+            log.warn("消息写入队列已满或已停止，同步写入: sessionId={}, 队列长度={}", message.getSessionId(), queue.size());
+            chatMessageMapper.insert(message);
+            ChatSession session = chatSessionMapper.updateSessionTime(message.getSessionId());
+            if (session != null) {
+                sessionListCache.onTouched(List.of(session));
+            }
+            return;
+        }
+        enqueued.increment();
+        if (ack) {
+            awaitFlush(pending);
+        }
+    }
+
+    /**
+     * 会话中已入队尚未写入的消息（时间倒序）
+     *
+     * <p>调用方应先取未写入的消息再查询数据库：期间写入完成的消息会同时出现在两者中，按ID去重即可，不会遗漏。</p>
+     *
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     * @return 未写入的消息，无时为空列表
+     */
+    public List<ChatMessage> unflushed(String sessionId, Long userId) {
+        Queue<ChatMessage> messages = unflushed.get(sessionId);
+        if (messages == null) {
+            return List.of();
+        }
+        List<ChatMessage> result = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            if (Objects.equals(message.getUserId(), userId)) {
+                result.add(message);
+            }
+        }
+        result.sort(NEWEST_FIRST);
+        return result;
+    }
+
+    /**
+     * 合并数据库查询结果与未写入的消息
+     *
+     * @param pending 未写入的消息（查询数据库前获取）
+     * @param persisted 数据库查询结果
+     * @param limit 最多返回的条数，小于0表示不限制
+     * @return 按ID去重后的消息（时间倒序）
+     */
+    public static List<ChatMessage> merge(List<ChatMessage> pending, List<ChatMessage> persisted, int limit) {
+        if (pending.isEmpty()) {
+            return persisted;
+        }
+        Set<Long> ids = new HashSet<>();
+        List<ChatMessage> merged = new ArrayList<>(pending.size() + persisted.size());
+        for (ChatMessage message : persisted) {
+            ids.add(message.getId());
+            merged.add(message);
+        }
+        for (ChatMessage message : pending) {
+            if (ids.add(message.getId())) {
+                merged.add(message);
+            }
+        }
+        merged.sort(NEWEST_FIRST);
+        return limit >= 0 && merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    /**
+     * 停止后台线程：等待其写完队列中的消息（最长 shutdownTimeout），
+     * 后台线程已退出而队列仍有消息时（如被中断）在当前线程写完
+     */
+    @PreDestroy
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            flusher.join(properties.getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            log.error("关闭超时，仍有{}条消息未写入", queue.size());
+            return;
+        }
+        int batchSize = Math.max(1, properties.getBatchSize());
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            try {
+                flush(batch);
+            } catch (RuntimeException e) {
+                log.error("关闭时消息批量写入异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // ==================== 内部实现 ====================
+
+    private void awaitFlush(Pending pending) {
+        try {
+            pending.done.get(properties.getAckTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 消息仍在队列中，稍后会写入，本次按异步处理
+            ackTimeouts.increment();
+            log.warn("等待消息写入超时，按异步处理: sessionId={}, 队列长度={}",
+                    pending.message.getSessionId(), queue.size());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 后台写入循环：停止标记置位后写完剩余消息再退出
+     */
+    private void flushLoop() {
+        boolean ack = properties.getDurability() == MessageWriteBehindProperties.Durability.FLUSH_BEFORE_ACK;
+        int batchSize = Math.max(1, properties.getBatchSize());
+        long windowNanos = ack ? 0 : properties.getFlushInterval().toNanos();
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                Pending first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (!running) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                queue.drainTo(batch, batchSize - batch.size());
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !running) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                if (flush(batch) > 0) {
+                    // 有消息重新入队：数据库可能暂时不可用，稍后再写
+                    Thread.sleep(properties.getRetryBackoff().toMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("消息批量写入异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 写入一批消息并合并更新会话时间
+     *
+     * @param batch 待写入的消息
+     * @return 写入失败后重新入队的消息数
+     */
+    private int flush(List<Pending> batch) {
+        List<ChatMessage> messages = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            messages.add(pending.message);
+        }
+
+        Map<Pending, RuntimeException> failed = new HashMap<>();
+        try {
+            chatMessageMapper.insertBatch(messages);
+        } catch (RuntimeException e) {
+            log.warn("消息批量写入失败，逐条重试: {}条, error={}", batch.size(), e.getMessage());
+            for (Pending pending : batch) {
+                try {
+                    chatMessageMapper.insert(pending.message);
+                } catch (RuntimeException single) {
+                    failed.put(pending, single);
+                }
+            }
+        }
+
+        // 批内同一会话只更新一次，取最后一条消息的时间
+        Map<String, LocalDateTime> touches = new HashMap<>();
+        for (Pending pending : batch) {
+            if (!failed.containsKey(pending)) {
+                LocalDateTime createdAt = pending.message.getCreatedAt() != null
+                        ? pending.message.getCreatedAt() : LocalDateTime.now();
+                touches.merge(pending.message.getSessionId(), createdAt, (a, b) -> a.isAfter(b) ? a : b);
+            }
+        }
+        if (!touches.isEmpty()) {
+            try {
+                List<ChatSession> touched = chatSessionMapper.updateSessionTimes(touches);
+                sessionTouches.add(touches.size());
+                sessionListCache.onTouched(touched);
+            } catch (RuntimeException e) {
+                // 更新时间只影响会话列表排序，不影响消息
+                log.warn("批量更新会话时间失败: {}个会话, error={}", touches.size(), e.getMessage());
+            }
+        }
+
+        long now = System.nanoTime();
+        int requeued = 0;
+        for (Pending pending : batch) {
+            RuntimeException error = failed.get(pending);
+            if (error != null && requeue(pending, error)) {
+                // 仍保留在未写入消息中，写后可读不受影响
+                requeued++;
+                continue;
+            }
+            removeUnflushed(pending.message);
+            if (error != null) {
+                failures.increment();
+                log.error("消息写入失败: sessionId={}, role={}, contentLength={}",
+                        pending.message.getSessionId(), pending.message.getRole(),
+                        pending.message.getContent() != null ? pending.message.getContent().length() : 0, error);
+                if (pending.done != null) {
+                    pending.done.completeExceptionally(error);
+                }
+                continue;
+            }
+            flushedMessages.increment();
+            flushLag.record(now - pending.enqueuedNanos, TimeUnit.NANOSECONDS);
+            if (pending.done != null) {
+                pending.done.complete(null);
+            }
+        }
+        batches.increment();
+        log.debug("消息批量写入: {}条, 会话{}个, 失败{}条, 重新入队{}条",
+                batch.size(), touches.size(), failed.size(), requeued);
+        return requeued;
+    }
+
+    /**
+     * ASYNC 模式下将写入失败的消息重新入队
+     *
+     * @return 已重新入队；FLUSH_BEFORE_ACK 模式、超过重试次数或队列已满时为false
+     */
+    private boolean requeue(Pending pending, RuntimeException error) {
+        if (pending.done != null || pending.attempts >= properties.getMaxRetries()) {
+            return false;
+        }
+        Pending retry = new Pending(pending.message, pending.enqueuedNanos, null, pending.attempts + 1);
+        if (!queue.offer(retry)) {
+            return false;
+        }
+        retries.increment();
+        log.warn("消息写入失败，重新入队: sessionId={}, 第{}次重试, error={}",
+                pending.message.getSessionId(), retry.attempts, error.getMessage());
+        return true;
+    }
+
+    private void removeUnflushed(ChatMessage message) {
+        unflushed.computeIfPresent(message.getSessionId(), (sessionId, messages) -> {
+            messages.remove(message);
+            return messages.isEmpty() ? null : messages;
+        });
+    }
+
+    /**
+     * 队列中的一条消息
+     */
+    private static final class Pending {
+        private final ChatMessage message;
+        private final long enqueuedNanos;
+        /** FLUSH_BEFORE_ACK 模式下写入完成的通知，ASYNC 模式为 null */
+        private final CompletableFuture<Void> done;
+        /** 已重新入队的次数 */
+        private final int attempts;
+
+        private Pending(ChatMessage message, long enqueuedNanos, CompletableFuture<Void> done, int attempts) {
+            this.message = message;
+            this.enqueuedNanos = enqueuedNanos;
+            this.done = done;
+            this.attempts = attempts;
+        }
+    }
+
+    // ==================== 统计信息 ====================
+
+    /**
+     * 队列中等待写入的消息数
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public long enqueuedCount() {
+        return enqueued.sum();
+    }
+
+    public long flushedCount() {
+        return flushedMessages.sum();
+    }
+
+    /**
+     * 批量写入次数，flushedCount / batchCount 为平均批大小
+     */
+    public long batchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * 合并后实际更新的会话时间行数（未合并时等于消息数）
+     */
+    public long sessionTouchCount() {
+        return sessionTouches.sum();
+    }
+
+    /**
+     * 队列已满退回同步写入的次数
+     */
+    public long overflowCount() {
+        return overflows.sum();
+    }
+
+    /**
+     * 重试后仍写入失败（已放弃）的消息数
+     */
+    public long failureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * 写入失败后重新入队的次数
+     */
+    public long retryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * FLUSH_BEFORE_ACK 模式下等待超时的次数
+     */
+    public long ackTimeoutCount() {
+        return ackTimeouts.sum();
+    }
+}
@@ -0,0 +1,169 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.config.ModelRoutingProperties;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 大小模型路由
+ *
+ * <p>寒暄、知识库直接命中等简单问题交给小模型，其余交给大模型。判定只使用本地可得的廉价特征：</p>
+ * <ul>
+ *   <li>包含代码（代码块、语句结尾、异常栈等）→ 复杂</li>
+ *   <li>包含"原理""区别"等分析类关键词 → 复杂</li>
+ *   <li>历史消息较多或已有滚动摘要（多轮追问）→ 复杂</li>
+ *   <li>问题较长 → 复杂</li>
+ *   <li>检索到文档但最高相似度不够高（需要综合多篇资料）→ 复杂</li>
+ *   <li>其余（短问题且未检索到文档或知识库直接命中）→ 简单</li>
+ * </ul>
+ *
+ * <p>影子模式下只记录判定结果，仍全部使用大模型。按实际使用模型的首字耗时和生成耗时由 {@link ChatMetrics} 记录。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class ModelRouter {
+
+    /** 代码特征：代码块、以 ; { } 结尾的行、常见声明关键字、异常 */
+    private static final Pattern CODE_PATTERN = Pattern.compile(
+            "```|[;{}]\\s*$|\\b(class|interface|public|private|static|void|import|return)\\s+\\w+|\\w+(Exception|Error)\\b",
+            Pattern.MULTILINE);
+
+    /** 复杂度等级 */
+    public enum Tier { SMALL, LARGE }
+
+    private final ModelRoutingProperties properties;
+
+    /** 默认（大）模型名称 */
+    private final String defaultModel;
+
+    private final LongAdder smallDecisions = new LongAdder();
+
+    private final LongAdder largeDecisions = new LongAdder();
+
+    public ModelRouter(ModelRoutingProperties properties,
+                       @Value("${spring.ai.ollama.chat.model}") String defaultModel) {
+        this.properties = properties;
+        this.defaultModel = defaultModel;
+    }
+
+    /**
+     * 判定本轮对话使用的模型
+     *
+     * @param message 用户问题
+     * @param documents 检索到的文档
+     * @param historySize 历史消息数
+     * @param summarized 是否已有滚动摘要
+     * @return 路由结果
+     */
+    public Route route(String message, List<Document> documents, int historySize, boolean summarized) {
+        String largeModel = largeModel();
+        if (!properties.isEnabled()) {
+            return new Route(Tier.LARGE, largeModel, false, List.of());
+        }
+        List<String> reasons = classify(message, documents, historySize, summarized);
+        Tier tier = reasons.isEmpty() ? Tier.SMALL : Tier.LARGE;
+        (tier == Tier.SMALL ? smallDecisions : largeDecisions).increment();
+        boolean enforced = !properties.isShadow();
+        String model = tier == Tier.SMALL && enforced ? properties.getSmallModel() : largeModel;
+        Route route = new Route(tier, model, tier == Tier.SMALL && enforced, reasons);
+        if (enforced) {
+            log.info("模型路由: tier={}, model={}, 依据={}", tier, model, reasons);
+        } else {
+            log.info("模型路由(影子模式): 判定tier={}, 依据={}, 实际使用{}", tier, reasons, model);
+        }
+        return route;
+    }
+
+    // ==================== 统计信息 ====================
+
+    /**
+     * 判定为简单问题的次数（含影子模式）
+     */
+    public long smallDecisionCount() {
+        return smallDecisions.sum();
+    }
+
+    /**
+     * 判定为复杂问题的次数（含影子模式）
+     */
+    public long largeDecisionCount() {
+        return largeDecisions.sum();
+    }
+
+    // ==================== 内部实现 ====================
+
+    private String largeModel() {
+        String largeModel = properties.getLargeModel();
+        return largeModel == null || largeModel.isBlank() ? defaultModel : largeModel;
+    }
+
+    /**
+     * 判定复杂度
+     *
+     * @return 判定为复杂的依据，为空表示简单问题
+     */
+    private List<String> classify(String message, List<Document> documents, int historySize, boolean summarized) {
+        List<String> reasons = new ArrayList<>();
+        if (CODE_PATTERN.matcher(message).find()) {
+            reasons.add("code");
+        }
+        for (String keyword : properties.getComplexKeywords()) {
+            if (message.contains(keyword)) {
+                reasons.add("keyword:" + keyword);
+                break;
+            }
+        }
+        if (summarized || historySize > properties.getMaxSimpleHistoryMessages()) {
+            reasons.add("history:" + historySize + (summarized ? "+summary" : ""));
+        }
+        if (message.length() > properties.getMaxSimpleChars()) {
+            reasons.add("length:" + message.length());
+        }
+        if (!documents.isEmpty()) {
+            double topScore = documents.stream()
+                    .map(Document::getScore)
+                    .filter(Objects::nonNull)
+                    .mapToDouble(Double::doubleValue)
+                    .max()
+                    .orElse(0.0);
+            if (topScore < properties.getMinSimpleTopScore()) {
+                reasons.add(String.format("topScore:%.2f", topScore));
+            }
+        }
+        return reasons;
+    }
+
+    /**
+     * 路由结果
+     */
+    @Getter
+    public static final class Route {
+        /** 判定的复杂度 */
+        private final Tier tier;
+        /** 实际使用的模型 */
+        private final String model;
+        /** 是否需要覆盖默认模型 */
+        private final boolean overridden;
+        /** 判定为复杂的依据 */
+        private final List<String> reasons;
+
+        Route(Tier tier, String model, boolean overridden, List<String> reasons) {
+            this.tier = tier;
+            this.model = model;
+            this.overridden = overridden;
+            this.reasons = reasons;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.config.PromptBudgetProperties;
+import com.cs.rag.constant.RagConstant;
+import com.cs.rag.entity.ChatMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 按 Token 预算组装提示词
+ *
+ * <p>优先级从高到低:</p>
+ * <ol>
+ *   <li>系统提示词与当前问题：始终保留</li>
+ *   <li>检索文档：按相似度依次放入，放不下的高排名文档截断放入，其余丢弃</li>
+ *   <li>历史问答对：从最近一轮开始按整轮放入，放不下时丢弃更早的轮次</li>
+ * </ol>
+ *
+ * <p>文档最多使用"总预算 - 历史预留"，文档未用完的部分留给历史。
+ * 最终历史按时间正序排列。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class PromptAssembler {
+
+    /** 每条消息的角色标记等模板开销（估算值） */
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    /** 文档之间的分隔符 "\n\n" */
+    private static final int DOCUMENT_SEPARATOR_TOKENS = 1;
+
+    private final TokenCounter tokenCounter;
+
+    private final PromptBudgetProperties properties;
+
+    public PromptAssembler(TokenCounter tokenCounter, PromptBudgetProperties properties) {
+        this.tokenCounter = tokenCounter;
+        this.properties = properties;
+    }
+
+    /**
+     * 组装提示词
+     *
+     * @param systemPrompt 系统提示词
+     * @param question 当前问题
+     * @param documents 检索文档（相似度降序）
+     * @param history 历史问答对（最近一轮在前，按"用户消息, AI回复"依次排列）
+     * @return 组装结果
+     */
+    public PromptAssembly assemble(String systemPrompt, String question, List<Document> documents,
+                                   List<ChatMessage> history) {
+        int fixedTokens = tokenCounter.count(systemPrompt) + tokenCounter.count(question)
+                + 2 * MESSAGE_OVERHEAD_TOKENS
+                + tokenCounter.count(documents.isEmpty()
+                ? RagConstant.NO_KNOWLEDGE_FOUND_LABEL : RagConstant.KNOWLEDGE_SOURCE_LABEL);
+
+        if (!properties.isEnabled()) {
+            int tokens = fixedTokens;
+            for (Document document : documents) {
+                tokens += tokenCounter.count(document) + DOCUMENT_SEPARATOR_TOKENS;
+            }
+            for (ChatMessage message : history) {
+                tokens += tokenCounter.count(message) + MESSAGE_OVERHEAD_TOKENS;
+            }
+            return new PromptAssembly(toAiMessages(history), documents, tokens, 0, 0, 0);
+        }
+
+        int remaining = properties.getMaxPromptTokens() - fixedTokens;
+        int historyTokens = 0;
+        for (ChatMessage message : history) {
+            historyTokens += tokenCounter.count(message) + MESSAGE_OVERHEAD_TOKENS;
+        }
+
+        // ===== 检索文档：按排名放入，高排名文档放不下时截断 =====
+        int documentBudget = remaining - Math.min(properties.getReservedHistoryTokens(), historyTokens);
+        List<Document> packedDocuments = new ArrayList<>(documents.size());
+        int documentTokens = 0;
+        int truncated = 0;
+        for (Document document : documents) {
+            int tokens = tokenCounter.count(document) + DOCUMENT_SEPARATOR_TOKENS;
+            if (tokens <= documentBudget - documentTokens) {
+                packedDocuments.add(document);
+                documentTokens += tokens;
+            } else if (truncated == 0 && documentBudget - documentTokens >= properties.getMinTruncatedChunkTokens()) {
+                String text = tokenCounter.truncate(document.getText(),
+                        documentBudget - documentTokens - DOCUMENT_SEPARATOR_TOKENS);
+                packedDocuments.add(Document.builder()
+                        .id(document.getId())
+                        .text(text)
+                        .metadata(new HashMap<>(document.getMetadata()))
+                        .score(document.getScore())
+                        .build());
+                documentTokens += tokenCounter.count(text) + DOCUMENT_SEPARATOR_TOKENS;
+                truncated++;
+            }
+        }
+        remaining -= documentTokens;
+
+        // ===== 历史问答对：从最近一轮开始按整轮放入 =====
+        List<ChatMessage> packedHistory = new ArrayList<>(history.size());
+        int packedHistoryTokens = 0;
+        for (int i = 0; i + 1 < history.size(); i += 2) {
+            int tokens = tokenCounter.count(history.get(i)) + tokenCounter.count(history.get(i + 1))
+                    + 2 * MESSAGE_OVERHEAD_TOKENS;
+            if (tokens > remaining - packedHistoryTokens) {
+                break;
+            }
+            packedHistory.add(history.get(i));
+            packedHistory.add(history.get(i + 1));
+            packedHistoryTokens += tokens;
+        }
+
+        // 转为时间正序：整轮倒序，轮内保持"用户消息, AI回复"
+        List<ChatMessage> chronological = new ArrayList<>(packedHistory.size());
+        for (int i = packedHistory.size() - 2; i >= 0; i -= 2) {
+            chronological.add(packedHistory.get(i));
+            chronological.add(packedHistory.get(i + 1));
+        }
+
+        int droppedDocuments = documents.size() - packedDocuments.size();
+        int droppedHistory = history.size() - packedHistory.size();
+        return new PromptAssembly(toAiMessages(chronological), packedDocuments,
+                fixedTokens + documentTokens + packedHistoryTokens, droppedDocuments, truncated, droppedHistory);
+    }
+
+    private static List<Message> toAiMessages(List<ChatMessage> messages) {
+        List<Message> aiMessages = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            if (ChatMessage.ROLE_USER.equals(message.getRole())) {
+                aiMessages.add(new UserMessage(message.getContent()));
+            } else {
+                aiMessages.add(new AssistantMessage(message.getContent()));
+            }
+        }
+        return aiMessages;
+    }
+
+    /**
+     * 提示词组装结果
+     */
+    public static class PromptAssembly {
+        private final List<Message> history;
+        private final List<Document> documents;
+        private final int promptTokens;
+        private final int droppedDocuments;
+        private final int truncatedDocuments;
+        private final int droppedHistoryMessages;
+
+        PromptAssembly(List<Message> history, List<Document> documents, int promptTokens,
+                       int droppedDocuments, int truncatedDocuments, int droppedHistoryMessages) {
+            this.history = Collections.unmodifiableList(history);
+            this.documents = Collections.unmodifiableList(documents);
+            this.promptTokens = promptTokens;
+            this.droppedDocuments = droppedDocuments;
+            this.truncatedDocuments = truncatedDocuments;
+            this.droppedHistoryMessages = droppedHistoryMessages;
+        }
+
+        /**
+         * 放入提示词的历史消息（时间正序）
+         */
+        public List<Message> getHistory() {
+            return history;
+        }
+
+        /**
+         * 放入提示词的检索文档（可能包含截断后的文档）
+         */
+        public List<Document> getDocuments() {
+            return documents;
+        }
+
+        /**
+         * 提示词的估算 Token 数
+         */
+        public int getPromptTokens() {
+            return promptTokens;
+        }
+
+        public int getDroppedDocuments() {
+            return droppedDocuments;
+        }
+
+        public int getTruncatedDocuments() {
+            return truncatedDocuments;
+        }
+
+        public int getDroppedHistoryMessages() {
+            return droppedHistoryMessages;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.config.CoalescingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 并发请求合并（single-flight）
+ *
+ * <p>作业发布后大量学生在几秒内提出相同问题，每个请求各自计算查询向量、检索并调用LLM。
+ * 本组件让同一时刻的相同请求只执行一次上游调用，结果多播给所有等待者:</p>
+ * <ul>
+ *   <li>检索：按归一化问题合并，等待者共享同一个检索结果</li>
+ *   <li>LLM生成：按"归一化问题 + 检索文档"合并（仅限无历史的会话），
+ *       后加入的请求先收到已生成的片段，再与首个请求同步接收后续片段</li>
+ * </ul>
+ *
+ * <p>上游结束后立即移出合并表，之后的相同问题重新执行。
+ * 共享生成的所有订阅者都断开时取消上游。未启用时直接执行上游。</p>
+ *
+ * <p>订阅数在交出共享生成时（与查找在同一个原子操作中）加一：交出后、订阅前其他请求断开，
+ * 也不会把计数减到0而取消一个仍有等待者的生成；已取消的生成不再交出，后来的请求重新开始一次生成。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class RequestCoalescer {
+
+    private final CoalescingProperties properties;
+
+    /** 归一化问题 -> 进行中的检索 */
+    private final Map<String, Mono<?>> retrievals = new ConcurrentHashMap<>();
+
+    /** 合并键 -> 进行中的生成 */
+    private final Map<String, SharedGeneration> generations = new ConcurrentHashMap<>();
+
+    private final LongAdder retrievalRequests = new LongAdder();
+
+    private final LongAdder retrievalCoalesced = new LongAdder();
+
+    private final LongAdder generationRequests = new LongAdder();
+
+    private final LongAdder generationCoalesced = new LongAdder();
+
+    public RequestCoalescer(CoalescingProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 合并相同问题的并发检索
+     *
+     * @param key 合并键（归一化问题）
+     * @param retrieval 检索任务
+     * @return 共享的检索结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> retrieval(String key, Supplier<Mono<T>> retrieval) {
+        if (!properties.isEnabled() || !properties.isRetrieval()) {
+            return Mono.defer(retrieval);
+        }
+        return Mono.defer(() -> {
+            retrievalRequests.increment();
+            AtomicBoolean leader = new AtomicBoolean();
+            Mono<?> shared = retrievals.computeIfAbsent(key, k -> {
+                leader.set(true);
+                return Mono.defer(retrieval)
+                        .doFinally(signal -> retrievals.remove(k))
+                        .cache();
+            });
+            if (!leader.get()) {
+                retrievalCoalesced.increment();
+                log.debug("合并检索请求: key={}", key);
+            }
+            return (Mono<T>) shared;
+        });
+    }
+
+    /**
+     * 是否对生成请求做合并
+     */
+    public boolean isGenerationEnabled() {
+        return properties.isEnabled() && properties.isGeneration();
+    }
+
+    /**
+     * 合并相同问题的并发生成
+     *
+     * <p>每次调用占用一个订阅名额，调用方需随即订阅一次 {@link SharedGeneration#frames()}，
+     * 订阅结束（完成、出错或取消）时归还。上游不应依赖发起请求的用户或会话，合并后由所有订阅者共享。</p>
+     *
+     * @param key 合并键，为null时不参与合并
+     * @param generation 创建上游生成流，参数为上游应追加LLM原始片段的缓冲区
+     * @return 共享生成（不参与合并时为独享）
+     */
+    public SharedGeneration generation(String key, Function<StringBuffer, Flux<String>> generation) {
+        if (key == null || !isGenerationEnabled()) {
+            SharedGeneration own = new SharedGeneration(null, generation);
+            own.join();
+            return own;
+        }
+        generationRequests.increment();
+        AtomicBoolean leader = new AtomicBoolean();
+        SharedGeneration shared = generations.compute(key, (k, existing) -> {
+            if (existing != null && existing.join()) {
+                return existing;
+            }
+            // 不存在或已全部断开取消：开始新的生成
+            leader.set(true);
+            SharedGeneration created = new SharedGeneration(k, generation);
+            created.join();
+            return created;
+        });
+        if (!leader.get()) {
+            generationCoalesced.increment();
+            log.info("合并生成请求: 当前共享订阅数={}", shared.subscribers.get());
+        }
+        return shared;
+    }
+
+    // ==================== 统计信息 ====================
+
+    public long retrievalRequestCount() {
+        return retrievalRequests.sum();
+    }
+
+    public long retrievalCoalescedCount() {
+        return retrievalCoalesced.sum();
+    }
+
+    public long generationRequestCount() {
+        return generationRequests.sum();
+    }
+
+    public long generationCoalescedCount() {
+        return generationCoalesced.sum();
+    }
+
+    /**
+     * 检索合并率：合并到已有检索的请求占比
+     */
+    public double retrievalCoalescingRatio() {
+        return ratio(retrievalCoalesced.sum(), retrievalRequests.sum());
+    }
+
+    /**
+     * 生成合并率：合并到已有生成的请求占比（分母为可合并的无历史请求）
+     */
+    public double generationCoalescingRatio() {
+        return ratio(generationCoalesced.sum(), generationRequests.sum());
+    }
+
+    private static double ratio(long coalesced, long total) {
+        return total == 0 ? 0.0 : (double) coalesced / total;
+    }
+
+    /**
+     * 共享生成
+     *
+     * <p>首个订阅者订阅时连接上游，片段写入可重放的 Sink，
+     * 每个订阅者都能收到从第一个片段开始的完整内容。</p>
+     */
+    public final class SharedGeneration {
+        /** 订阅数为该值表示已全部断开并取消，不再接受新的订阅者 */
+        private static final int CLOSED = -1;
+
+        private final String key;
+        private final Function<StringBuffer, Flux<String>> source;
+        private final StringBuffer text = new StringBuffer();
+        private final Sinks.Many<String> sink = Sinks.many().replay().all();
+        private final AtomicInteger subscribers = new AtomicInteger();
+        private final AtomicBoolean connected = new AtomicBoolean();
+        private final AtomicBoolean terminated = new AtomicBoolean();
+        private volatile Disposable upstream;
+
+        SharedGeneration(String key, Function<StringBuffer, Flux<String>> source) {
+            this.key = key;
+            this.source = source;
+        }
+
+        /**
+         * 推送给客户端的帧（LLM片段以及排队位置等控制帧）
+         */
+        public Flux<String> frames() {
+            return Flux.defer(() -> {
+                if (connected.compareAndSet(false, true)) {
+                    upstream = source.apply(text).subscribe(
+                            sink::tryEmitNext,
+                            error -> {
+                                if (terminated.compareAndSet(false, true)) {
+                                    release();
+                                    sink.tryEmitError(error);
+                                }
+                            },
+                            () -> {
+                                if (terminated.compareAndSet(false, true)) {
+                                    release();
+                                    sink.tryEmitComplete();
+                                }
+                            });
+                }
+                return sink.asFlux();
+            }).doFinally(signal -> {
+                // 减到0后再关闭：期间有新的订阅者加入时关闭失败，生成继续
+                if (subscribers.decrementAndGet() == 0 && subscribers.compareAndSet(0, CLOSED)
+                        && terminated.compareAndSet(false, true)) {
+                    // 所有订阅者都已断开，取消上游
+                    release();
+                    if (upstream != null) {
+                        upstream.dispose();
+                    }
+                    sink.tryEmitError(new CancellationException("所有订阅者已断开"));
+                }
+            });
+        }
+
+        /**
+         * LLM已生成的文本（不含控制帧），frames() 正常结束后为完整文本，取消时为部分文本
+         */
+        public String text() {
+            return text.toString();
+        }
+
+        /**
+         * 当前共享该生成的订阅者数
+         */
+        public int subscriberCount() {
+            return Math.max(0, subscribers.get());
+        }
+
+        /**
+         * 占用一个订阅名额
+         *
+         * @return 已全部断开取消时为false
+         */
+        private boolean join() {
+            while (true) {
+                int current = subscribers.get();
+                if (current == CLOSED) {
+                    return false;
+                }
+                if (subscribers.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void release() {
+            if (key != null) {
+                generations.remove(key, this);
+            }
+        }
+    }
+
+    /**
+     * 生成合并键：归一化问题 + 检索文档ID（文档不同则上下文不同，不能共享答案）
+     *
+     * @param normalizedQuestion 归一化问题
+     * @param documentIds 检索文档ID（按排名）
+     * @return 合并键
+     */
+    public static String generationKey(String normalizedQuestion, List<String> documentIds) {
+        return normalizedQuestion + "\u0000" + String.join(",", documentIds);
+    }
+}
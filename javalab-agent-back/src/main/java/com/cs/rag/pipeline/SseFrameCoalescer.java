@@ -0,0 +1,218 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.config.SseCoalescingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SSE写出合并
+ *
+ * <p>LLM每输出一个Token片段就写出一个SSE事件，Spring MVC 对每个事件单独写出并刷新，
+ * 并发流较多时系统调用和CPU开销明显。本组件在传输层合并：每个 {@link ServerSentEvent} 原样编码
+ * （编码方式与 Spring MVC 处理 Flux&lt;ServerSentEvent&gt; 返回值时相同），时间窗口内的多个事件
+ * 在同一次写出中发送，整批只刷新一次。缓冲的数据字符数达到 maxChars 或窗口到期（以先到者为准）时写出。</p>
+ *
+ * <p>事件本身不合并、不改写，事件边界和事件ID保持不变，开启与关闭时响应体逐字节一致，
+ * 区别只在于写出和刷新的次数。控制帧（[SESSION_ID:...]、[QUEUE:n]、[ERROR] 等以 "[" 开头的帧）
+ * 到达时连同缓冲立即写出，不等待窗口。</p>
+ *
+ * <p>自适应：缓冲为空且距上一个事件已超过窗口时（生成较慢，合并不会减少写出次数），事件直接写出，不增加延迟。</p>
+ *
+ * <p>每个流的事件处理和定时写出在同一个工作线程上串行执行，
+ * 阻塞的响应写出不会占用 LLM 流所在的 IO 线程。未启用时每个事件单独写出并刷新。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class SseFrameCoalescer {
+
+    /** 与 Spring MVC 处理 Flux 返回值时一致：不设置超时，由客户端断开或流结束终止 */
+    private static final long NO_TIMEOUT = -1L;
+
+    private final SseCoalescingProperties properties;
+
+    private final LongAdder framesIn = new LongAdder();
+
+    private final LongAdder framesOut = new LongAdder();
+
+    public SseFrameCoalescer(SseCoalescingProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 将事件流写出到 SSE 响应
+     *
+     * @param events 对话事件（控制帧 + LLM片段，续传时带事件ID）
+     * @return SSE 响应，事件流结束时完成，客户端断开时取消事件流
+     */
+    public SseEmitter write(Flux<ServerSentEvent<String>> events) {
+        SseEmitter emitter = new SseEmitter(NO_TIMEOUT);
+        Scheduler writer = Schedulers.single(Schedulers.boundedElastic());
+        Batching batching = new Batching(emitter, writer);
+        batching.upstream = events.publishOn(writer)
+                .subscribe(batching::onEvent, batching::onError, batching::onComplete);
+        emitter.onCompletion(batching::cancel);
+        emitter.onTimeout(batching::cancel);
+        emitter.onError(error -> batching.cancel());
+        return emitter;
+    }
+
+    // ==================== 统计信息 ====================
+
+    /**
+     * 写出的事件数
+     */
+    public long framesInCount() {
+        return framesIn.sum();
+    }
+
+    /**
+     * 实际写出（刷新）的次数
+     */
+    public long framesOutCount() {
+        return framesOut.sum();
+    }
+
+    /**
+     * 合并率：被省去的写出次数占事件数的比例
+     */
+    public double coalescingRatio() {
+        long in = framesIn.sum();
+        return in == 0 ? 0.0 : 1.0 - (double) framesOut.sum() / in;
+    }
+
+    /**
+     * 控制帧：以 "[" 开头，需要立即送达
+     */
+    private static boolean isControl(ServerSentEvent<String> event) {
+        String data = event.data();
+        return data != null && !data.isEmpty() && data.charAt(0) == '[';
+    }
+
+    /**
+     * 与 Spring MVC 将 ServerSentEvent 转为 SseEmitter 事件的方式一致（字段顺序决定编码后的字节）
+     */
+    private static SseEmitter.SseEventBuilder adapt(ServerSentEvent<String> event) {
+        SseEmitter.SseEventBuilder builder = SseEmitter.event();
+        if (event.id() != null) {
+            builder.id(event.id());
+        }
+        if (event.event() != null) {
+            builder.name(event.event());
+        }
+        if (event.data() != null) {
+            builder.data(event.data());
+        }
+        if (event.retry() != null) {
+            builder.reconnectTime(event.retry().toMillis());
+        }
+        if (event.comment() != null) {
+            builder.comment(event.comment());
+        }
+        return builder;
+    }
+
+    /**
+     * 单个流的写出状态（只在该流的写出线程上访问）
+     */
+    private final class Batching {
+        private final SseEmitter emitter;
+        private final Scheduler writer;
+        private final List<ServerSentEvent<String>> pending = new ArrayList<>();
+        private int pendingChars;
+        private long lastEventAt;
+        private Disposable flushTimer;
+        private volatile Disposable upstream;
+
+        Batching(SseEmitter emitter, Scheduler writer) {
+            this.emitter = emitter;
+            this.writer = writer;
+        }
+
+        void onEvent(ServerSentEvent<String> event) {
+            framesIn.increment();
+            long now = System.nanoTime();
+            long gap = now - lastEventAt;
+            lastEventAt = now;
+            pending.add(event);
+            pendingChars += event.data() == null ? 0 : event.data().length();
+            if (!properties.isEnabled() || isControl(event) || pendingChars >= properties.getMaxChars()
+                    || (pending.size() == 1 && gap >= properties.getWindow().toNanos())) {
+                // 未启用、控制帧、缓冲已满或生成较慢时直接写出
+                flush();
+            } else if (flushTimer == null) {
+                flushTimer = writer.schedule(this::flush, properties.getWindow().toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void onError(Throwable error) {
+            if (flush()) {
+                emitter.completeWithError(error);
+            }
+            writer.dispose();
+        }
+
+        void onComplete() {
+            if (flush()) {
+                emitter.complete();
+            }
+            writer.dispose();
+        }
+
+        /**
+         * 写出缓冲中的全部事件，整批刷新一次
+         *
+         * @return 写出成功（或无需写出）；客户端已断开时为false
+         */
+        boolean flush() {
+            if (flushTimer != null) {
+                flushTimer.dispose();
+                flushTimer = null;
+            }
+            if (pending.isEmpty()) {
+                return true;
+            }
+            Set<ResponseBodyEmitter.DataWithMediaType> batch = new LinkedHashSet<>();
+            for (ServerSentEvent<String> event : pending) {
+                batch.addAll(adapt(event).build());
+            }
+            pending.clear();
+            pendingChars = 0;
+            try {
+                emitter.send(batch);
+                framesOut.increment();
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                log.debug("SSE写出失败，取消对话流: {}", e.getMessage());
+                cancel();
+                emitter.completeWithError(e);
+                return false;
+            }
+        }
+
+        void cancel() {
+            Disposable subscription = upstream;
+            if (subscription != null) {
+                subscription.dispose();
+            }
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.config.PromptCacheProperties;
+import com.cs.rag.constant.RagConstant;
+import com.cs.rag.entity.ChatMessage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 稳定前缀的历史窗口
+ *
+ * <p>Ollama 会复用与上一次请求相同的提示词前缀对应的 KV 缓存，只计算变化的部分。
+ * 滑动窗口每轮都丢弃最早的一对消息，前缀在系统提示词之后立即改变，整段历史每轮都要重新计算。</p>
+ *
+ * <p>本组件为每个会话记录窗口起点消息：起点仍在本轮历史中时从起点开始，前缀保持不变；
+ * 起点滑出窗口后一次前移 windowStep 条消息，之后若干轮继续复用新起点。
+ * 历史消息数在 (窗口大小 - windowStep) 和窗口大小之间变化。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class StablePrefixWindow {
+
+    private final PromptCacheProperties properties;
+
+    /** 会话ID -> 窗口起点消息ID */
+    private final Cache<String, Long> anchors;
+
+    private final LongAdder reused = new LongAdder();
+
+    private final LongAdder moved = new LongAdder();
+
+    public StablePrefixWindow(PromptCacheProperties properties) {
+        this.properties = properties;
+        this.anchors = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSessions())
+                .expireAfterAccess(properties.getAnchorTtl())
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 按会话窗口起点裁剪历史
+     *
+     * @param sessionId 会话ID
+     * @param history 时间正序的完整问答对
+     * @return 从窗口起点开始的历史
+     */
+    public List<ChatMessage> apply(String sessionId, List<ChatMessage> history) {
+        if (!properties.isEnabled() || history.isEmpty()) {
+            return history;
+        }
+        Long anchor = anchors.getIfPresent(sessionId);
+        int start = -1;
+        if (anchor != null) {
+            for (int i = 0; i < history.size(); i++) {
+                if (Objects.equals(history.get(i).getId(), anchor)) {
+                    start = i;
+                    break;
+                }
+            }
+        }
+        if (start >= 0) {
+            reused.increment();
+        } else {
+            // 无起点或起点已滑出窗口：窗口已满时前移 windowStep 条，为之后几轮留出增长空间
+            int step = Math.max(2, properties.getWindowStep() - properties.getWindowStep() % 2);
+            // 滑动窗口含当前问题，完整问答对最多 MEMORY_SIZE - 2 条
+            boolean full = history.size() + 2 >= RagConstant.MEMORY_SIZE;
+            start = full ? Math.min(step, history.size() - 2) : 0;
+            start = Math.max(0, start - start % 2);
+            if (anchor != null) {
+                moved.increment();
+                log.debug("历史窗口起点前移: sessionId={}, 跳过{}条", sessionId, start);
+            }
+        }
+        anchors.put(sessionId, history.get(start).getId());
+        return start == 0 ? history : history.subList(start, history.size());
+    }
+
+    // ==================== 统计信息 ====================
+
+    /**
+     * 沿用上一轮窗口起点的次数（前缀稳定）
+     */
+    public long reusedCount() {
+        return reused.sum();
+    }
+
+    /**
+     * 窗口起点前移的次数（前缀改变）
+     */
+    public long movedCount() {
+        return moved.sum();
+    }
+}
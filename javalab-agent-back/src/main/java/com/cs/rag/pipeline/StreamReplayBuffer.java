@@ -0,0 +1,467 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.config.StreamReplayProperties;
+import com.cs.rag.constant.RagConstant;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 可续传对话流缓冲区
+ *
+ * <p>每轮对话分配一个流ID，片段按序编号并以 "流ID:序号" 作为 SSE 事件ID发送，同时写入有界的重放缓冲区。
+ * 生成由缓冲区订阅，与HTTP连接解耦：客户端断开后继续生成到缓冲区，
+ * 携带 Last-Event-ID 重连时从下一个片段继续推送，不会重新调用LLM。
+ * 断开后超过宽限期仍无人重连，才取消生成（随后按截断回复保存）。</p>
+ *
+ * <p>缓冲区按轮数（maxStreams）和生成结束后的有效期（ttl）淘汰，单轮片段数超过 maxFrames 时淘汰最早的片段。
+ * 可选写入 Redis（列表下标即片段序号），重连落到其他实例时轮询 Redis 续传。</p>
+ *
+ * <p>写入 Redis 不在生成线程上逐片段执行：片段先进入内存队列，按 redisFlushInterval 批量追加到列表，
+ * 每批一次往返；结束标记在最后一批片段之后写入，读到结束标记的续传方一定能读到全部片段。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+public class StreamReplayBuffer {
+
+    /** Redis 片段列表键前缀 */
+    private static final String REDIS_KEY_PREFIX = "rag:stream:";
+
+    /** Redis 元信息键后缀（userId、done） */
+    private static final String REDIS_META_SUFFIX = ":meta";
+
+    private static final String EVENT_ID_SEPARATOR = ":";
+
+    private final StreamReplayProperties properties;
+
+    /** Redis 模板，未启用时为 null */
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    /** 流ID -> 重放流 */
+    private final Cache<String, ReplayStream> streams;
+
+    private final LongAdder opened = new LongAdder();
+
+    private final LongAdder resumed = new LongAdder();
+
+    private final LongAdder redisResumed = new LongAdder();
+
+    private final LongAdder resumeMisses = new LongAdder();
+
+    private final LongAdder evictedBySize = new LongAdder();
+
+    private final LongAdder expired = new LongAdder();
+
+    private final LongAdder frameOverflows = new LongAdder();
+
+    private final LongAdder graceCancellations = new LongAdder();
+
+    public StreamReplayBuffer(StreamReplayProperties properties, RedisTemplate<String, Object> redisTemplate) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.streams = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxStreams())
+                .expireAfterWrite(properties.getTtl())
+                .removalListener((String id, ReplayStream stream, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE) {
+                        evictedBySize.increment();
+                    } else if (cause == RemovalCause.EXPIRED) {
+                        expired.increment();
+                    }
+                })
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 为一轮对话开启可续传流
+     *
+     * @param userId 用户ID（续传时校验）
+     * @param frames 对话帧（由缓冲区订阅，客户端断开不会立即取消）
+     * @return 带事件ID的SSE事件流
+     */
+    public Flux<ServerSentEvent<String>> open(Long userId, Flux<String> frames) {
+        ReplayStream stream = new ReplayStream(UUID.randomUUID().toString(), userId);
+        streams.put(stream.id, stream);
+        opened.increment();
+        stream.connect(frames);
+        return stream.follow(-1);
+    }
+
+    /**
+     * 按 Last-Event-ID 续传
+     *
+     * @param lastEventId 客户端收到的最后一个事件ID（流ID:序号）
+     * @param userId 用户ID
+     * @return 后续事件；无法续传时为一条错误帧
+     */
+    public Flux<ServerSentEvent<String>> resume(String lastEventId, Long userId) {
+        int separator = lastEventId.lastIndexOf(EVENT_ID_SEPARATOR);
+        long lastSeq;
+        try {
+            lastSeq = separator > 0 ? Long.parseLong(lastEventId.substring(separator + 1)) : -1;
+        } catch (NumberFormatException e) {
+            lastSeq = -1;
+        }
+        if (separator <= 0 || lastSeq < 0) {
+            return miss(lastEventId, "事件ID格式错误");
+        }
+        String streamId = lastEventId.substring(0, separator);
+
+        ReplayStream stream = streams.getIfPresent(streamId);
+        if (stream != null) {
+            if (!Objects.equals(stream.userId, userId)) {
+                return miss(lastEventId, "用户不匹配");
+            }
+            if (lastSeq + 1 < stream.firstRetainedSeq()) {
+                return miss(lastEventId, "所需片段已被淘汰");
+            }
+            resumed.increment();
+            log.info("对话流续传: streamId={}, lastSeq={}, 已生成{}个片段", streamId, lastSeq, stream.nextSeq.get());
+            return stream.follow(lastSeq);
+        }
+        if (redisTemplate != null) {
+            return resumeFromRedis(streamId, lastSeq, userId, lastEventId);
+        }
+        return miss(lastEventId, "缓存不存在或已过期");
+    }
+
+    // ==================== 统计信息 ====================
+
+    /**
+     * 当前缓存的对话轮数
+     */
+    public long bufferedStreams() {
+        return streams.estimatedSize();
+    }
+
+    public long openedCount() {
+        return opened.sum();
+    }
+
+    /**
+     * 从本地缓冲区续传成功次数
+     */
+    public long resumedCount() {
+        return resumed.sum();
+    }
+
+    /**
+     * 从 Redis 续传次数
+     */
+    public long redisResumedCount() {
+        return redisResumed.sum();
+    }
+
+    /**
+     * 无法续传的次数（过期、淘汰、用户不匹配等）
+     */
+    public long resumeMissCount() {
+        return resumeMisses.sum();
+    }
+
+    /**
+     * 因轮数上限被淘汰的对话数
+     */
+    public long evictedBySizeCount() {
+        return evictedBySize.sum();
+    }
+
+    /**
+     * 因过期被淘汰的对话数
+     */
+    public long expiredCount() {
+        return expired.sum();
+    }
+
+    /**
+     * 片段数超过 maxFrames、最早片段被淘汰的对话数
+     */
+    public long frameOverflowCount() {
+        return frameOverflows.sum();
+    }
+
+    /**
+     * 宽限期内无人重连而取消生成的次数
+     */
+    public long graceCancellationCount() {
+        return graceCancellations.sum();
+    }
+
+    // ==================== 内部实现 ====================
+
+    private Flux<ServerSentEvent<String>> miss(String lastEventId, String reason) {
+        resumeMisses.increment();
+        log.warn("对话流无法续传: lastEventId={}, 原因={}", lastEventId, reason);
+        return Flux.just(ServerSentEvent.builder(RagConstant.ERROR_PREFIX + RagConstant.STREAM_EXPIRED_MESSAGE).build());
+    }
+
+    private static ServerSentEvent<String> event(String streamId, long seq, String data) {
+        return ServerSentEvent.builder(data).id(streamId + EVENT_ID_SEPARATOR + seq).build();
+    }
+
+    /**
+     * 从 Redis 续传：按间隔读取新片段，直到生成结束且全部读完
+     */
+    private Flux<ServerSentEvent<String>> resumeFromRedis(String streamId, long lastSeq, Long userId, String lastEventId) {
+        String key = REDIS_KEY_PREFIX + streamId;
+        Map<Object, Object> meta;
+        try {
+            meta = redisTemplate.opsForHash().entries(key + REDIS_META_SUFFIX);
+        } catch (Exception e) {
+            log.warn("读取Redis对话流失败: {}", e.getMessage());
+            return miss(lastEventId, "Redis不可用");
+        }
+        if (meta == null || meta.isEmpty()) {
+            return miss(lastEventId, "缓存不存在或已过期");
+        }
+        if (!String.valueOf(userId).equals(meta.get("userId"))) {
+            return miss(lastEventId, "用户不匹配");
+        }
+        redisResumed.increment();
+        log.info("对话流从Redis续传: streamId={}, lastSeq={}", streamId, lastSeq);
+
+        // 读取位置在读取的同时前移：下一次轮询不依赖下游的消费进度，不会重复读取同一段片段
+        AtomicLong next = new AtomicLong(lastSeq + 1);
+        AtomicBoolean done = new AtomicBoolean();
+        return Flux.interval(properties.getRedisPollInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> Mono.fromCallable(() -> {
+                    // 先读结束标记再读片段，读到结束标记后的这一批一定包含全部片段
+                    boolean finished = redisTemplate.opsForHash().hasKey(key + REDIS_META_SUFFIX, "done");
+                    long start = next.get();
+                    List<Object> frames = redisTemplate.opsForList().range(key, start, -1);
+                    List<ServerSentEvent<String>> events = new ArrayList<>(frames != null ? frames.size() : 0);
+                    if (frames != null) {
+                        // 列表下标即片段序号
+                        for (int i = 0; i < frames.size(); i++) {
+                            events.add(event(streamId, start + i, String.valueOf(frames.get(i))));
+                        }
+                        next.addAndGet(frames.size());
+                    }
+                    done.set(finished);
+                    return events;
+                }).subscribeOn(Schedulers.boundedElastic()))
+                .takeUntil(events -> done.get())
+                .take(properties.getTtl())
+                .concatMapIterable(events -> events);
+    }
+
+    /**
+     * 单轮对话的重放流
+     */
+    private final class ReplayStream {
+        private final String id;
+        private final Long userId;
+        private final Sinks.Many<Frame> sink = Sinks.many().replay().limit(properties.getMaxFrames());
+        private final AtomicLong nextSeq = new AtomicLong();
+        private final AtomicInteger followers = new AtomicInteger();
+        private final AtomicBoolean terminated = new AtomicBoolean();
+        private volatile Disposable upstream;
+        private volatile boolean mirrorToRedis;
+        /** 等待写入 Redis 的片段（按序号顺序） */
+        private final ConcurrentLinkedQueue<String> redisPending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean redisFlushScheduled = new AtomicBoolean();
+        /** Redis 批量写入串行执行，与删除互斥 */
+        private final Object redisLock = new Object();
+        private volatile boolean finished;
+
+        ReplayStream(String id, Long userId) {
+            this.id = id;
+            this.userId = userId;
+        }
+
+        void connect(Flux<String> frames) {
+            mirrorToRedis = redisTemplate != null && redisWrite(() -> {
+                String metaKey = REDIS_KEY_PREFIX + id + REDIS_META_SUFFIX;
+                redisTemplate.opsForHash().put(metaKey, "userId", String.valueOf(userId));
+                redisTemplate.expire(metaKey, properties.getTtl().plus(properties.getResumeGracePeriod()));
+            });
+            upstream = frames.subscribe(this::emit,
+                    error -> {
+                        if (terminated.compareAndSet(false, true)) {
+                            finish();
+                            sink.tryEmitError(error);
+                        }
+                    },
+                    () -> {
+                        if (terminated.compareAndSet(false, true)) {
+                            finish();
+                            sink.tryEmitComplete();
+                        }
+                    });
+        }
+
+        /**
+         * 跟随推送序号大于 afterSeq 的片段
+         */
+        Flux<ServerSentEvent<String>> follow(long afterSeq) {
+            return sink.asFlux()
+                    .filter(frame -> frame.seq > afterSeq)
+                    .map(frame -> event(id, frame.seq, frame.data))
+                    .doOnSubscribe(subscription -> followers.incrementAndGet())
+                    .doFinally(signal -> {
+                        if (followers.decrementAndGet() == 0 && !terminated.get()) {
+                            scheduleGraceCancel();
+                        }
+                    });
+        }
+
+        long firstRetainedSeq() {
+            return Math.max(0, nextSeq.get() - properties.getMaxFrames());
+        }
+
+        private void emit(String data) {
+            long seq = nextSeq.getAndIncrement();
+            if (seq == properties.getMaxFrames()) {
+                frameOverflows.increment();
+                log.warn("对话流片段数超过上限，最早的片段将被淘汰: streamId={}, maxFrames={}", id, properties.getMaxFrames());
+                if (mirrorToRedis) {
+                    // Redis 中不再完整，删除后跨实例续传按缓存不存在处理
+                    stopRedisMirror();
+                }
+            }
+            if (mirrorToRedis) {
+                redisPending.add(data);
+                scheduleRedisFlush(properties.getRedisFlushInterval().toMillis());
+            }
+            sink.tryEmitNext(new Frame(seq, data));
+        }
+
+        /**
+         * 生成结束：有效期从此时开始计算，剩余片段与结束标记立即写入 Redis
+         */
+        private void finish() {
+            streams.put(id, this);
+            finished = true;
+            if (mirrorToRedis) {
+                Schedulers.boundedElastic().schedule(this::flushToRedis);
+            }
+        }
+
+        private void scheduleRedisFlush(long delayMillis) {
+            if (redisFlushScheduled.compareAndSet(false, true)) {
+                Schedulers.boundedElastic().schedule(this::flushToRedis, delayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * 将排队的片段一次追加到 Redis 列表；生成已结束时随后写入结束标记
+         */
+        private void flushToRedis() {
+            synchronized (redisLock) {
+                redisFlushScheduled.set(false);
+                if (!mirrorToRedis) {
+                    redisPending.clear();
+                    return;
+                }
+                List<Object> batch = new ArrayList<>();
+                for (String data = redisPending.poll(); data != null; data = redisPending.poll()) {
+                    batch.add(data);
+                }
+                if (!batch.isEmpty() && !redisWrite(() -> redisTemplate.opsForList().rightPushAll(REDIS_KEY_PREFIX + id, batch))) {
+                    // 写入失败后序号与列表下标不再对应，停止写入并删除
+                    stopRedisMirror();
+                    return;
+                }
+                if (finished && redisPending.isEmpty()) {
+                    redisWrite(() -> {
+                        String metaKey = REDIS_KEY_PREFIX + id + REDIS_META_SUFFIX;
+                        redisTemplate.opsForHash().put(metaKey, "done", "1");
+                        redisTemplate.expire(metaKey, properties.getTtl());
+                        redisTemplate.expire(REDIS_KEY_PREFIX + id, properties.getTtl());
+                    });
+                }
+            }
+            if (!redisPending.isEmpty()) {
+                scheduleRedisFlush(properties.getRedisFlushInterval().toMillis());
+            }
+        }
+
+        /**
+         * 停止写入 Redis 并删除已写入的片段，与批量写入互斥，删除后不会再有片段写入
+         */
+        private void stopRedisMirror() {
+            mirrorToRedis = false;
+            Schedulers.boundedElastic().schedule(() -> {
+                synchronized (redisLock) {
+                    redisPending.clear();
+                    redisWrite(() -> redisTemplate.delete(List.of(REDIS_KEY_PREFIX + id, REDIS_KEY_PREFIX + id + REDIS_META_SUFFIX)));
+                }
+            });
+        }
+
+        /**
+         * 所有客户端断开后等待宽限期，仍无人重连则取消生成
+         */
+        private void scheduleGraceCancel() {
+            Mono.delay(properties.getResumeGracePeriod()).subscribe(tick -> {
+                if (followers.get() == 0 && terminated.compareAndSet(false, true)) {
+                    graceCancellations.increment();
+                    log.info("客户端断开超过宽限期，取消生成: streamId={}, 已生成{}个片段", id, nextSeq.get());
+                    if (upstream != null) {
+                        upstream.dispose();
+                    }
+                    streams.invalidate(id);
+                    if (mirrorToRedis) {
+                        stopRedisMirror();
+                    }
+                    sink.tryEmitComplete();
+                }
+            });
+        }
+    }
+
+    /**
+     * 执行 Redis 写入，Redis 不可用时降级为仅本地缓冲
+     *
+     * @return 是否写入成功
+     */
+    private boolean redisWrite(Runnable write) {
+        try {
+            write.run();
+            return true;
+        } catch (Exception e) {
+            log.warn("写入Redis对话流失败: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 带序号的片段
+     */
+    private static final class Frame {
+        private final long seq;
+        private final String data;
+
+        Frame(long seq, String data) {
+            this.seq = seq;
+            this.data = data;
+        }
+    }
+}
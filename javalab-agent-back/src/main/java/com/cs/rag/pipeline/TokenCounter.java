@@ -0,0 +1,88 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.config.PromptBudgetProperties;
+import com.cs.rag.entity.ChatMessage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingResult;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+/**
+ * Token 计数器
+ *
+ * <p>使用与 TokenTextSplitter 相同的 cl100k_base 编码估算 Token 数。
+ * 已保存的消息和已入库的文档内容不可变，按ID缓存计数结果，避免每轮对话重复编码。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Component
+public class TokenCounter {
+
+    /** 解码截断位置落在多字节字符中间时产生的替换字符 */
+    private static final char REPLACEMENT_CHAR = '\uFFFD';
+
+    private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    /** 消息ID -> Token 数 */
+    private final Cache<Long, Integer> messageTokens;
+
+    /** 文档ID -> Token 数 */
+    private final Cache<String, Integer> documentTokens;
+
+    public TokenCounter(PromptBudgetProperties properties) {
+        this.messageTokens = Caffeine.newBuilder().maximumSize(properties.getTokenCacheSize()).build();
+        this.documentTokens = Caffeine.newBuilder().maximumSize(properties.getTokenCacheSize()).build();
+    }
+
+    /**
+     * 计算文本的 Token 数
+     */
+    public int count(String text) {
+        return text == null || text.isEmpty() ? 0 : encoding.countTokensOrdinary(text);
+    }
+
+    /**
+     * 计算已保存消息的 Token 数（按消息ID缓存）
+     */
+    public int count(ChatMessage message) {
+        if (message.getId() == null) {
+            return count(message.getContent());
+        }
+        return messageTokens.get(message.getId(), id -> count(message.getContent()));
+    }
+
+    /**
+     * 计算检索文档的 Token 数（按文档ID缓存）
+     */
+    public int count(Document document) {
+        if (document.getId() == null) {
+            return count(document.getText());
+        }
+        return documentTokens.get(document.getId(), id -> count(document.getText()));
+    }
+
+    /**
+     * 将文本截断到不超过指定 Token 数
+     *
+     * @param text 原始文本
+     * @param maxTokens 最大 Token 数
+     * @return 截断后的文本，未超出时原样返回
+     */
+    public String truncate(String text, int maxTokens) {
+        EncodingResult result = encoding.encodeOrdinary(text, maxTokens);
+        if (!result.isTruncated()) {
+            return text;
+        }
+        String truncated = encoding.decode(result.getTokens());
+        int end = truncated.length();
+        while (end > 0 && truncated.charAt(end - 1) == REPLACEMENT_CHAR) {
+            end--;
+        }
+        return truncated.substring(0, end);
+    }
+}
@@ -0,0 +1,39 @@
+package com.cs.rag.pojo.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * 分页获取会话历史消息请求体
+ * 
+ * @author caoshuai
+ * @since 1.0
+ */
+@Data
+@Schema(description = "分页获取会话历史消息请求参数")
+public class HistoryPageRequestDTO {
+    
+    /**
+     * 会话ID
+     */
+    @Schema(description = "会话ID", example = "abc123", requiredMode = Schema.RequiredMode.REQUIRED)
+    private String sessionId;
+    
+    /**
+     * 用户ID（用于权限校验）
+     */
+    @Schema(description = "用户ID", example = "1", requiredMode = Schema.RequiredMode.REQUIRED)
+    private Long userId = 1L;
+    
+    /**
+     * 分页游标：上一页返回的 nextCursor，为空时获取最新一页
+     */
+    @Schema(description = "分页游标，为空时获取最新一页")
+    private String cursor;
+    
+    /**
+     * 每页条数
+     */
+    @Schema(description = "每页条数，默认50，最大200", example = "50")
+    private Integer pageSize;
+}
@@ -0,0 +1,33 @@
+package com.cs.rag.pojo.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * 分页获取用户会话列表请求体
+ * 
+ * @author caoshuai
+ * @since 1.0
+ */
+@Data
+@Schema(description = "分页获取用户会话列表请求参数")
+public class SessionPageRequestDTO {
+    
+    /**
+     * 用户ID，默认为1
+     */
+    @Schema(description = "用户ID", example = "1", defaultValue = "1")
+    private Long userId = 1L;
+    
+    /**
+     * 分页游标：上一页返回的 nextCursor，为空时获取首页
+     */
+    @Schema(description = "分页游标，为空时获取首页")
+    private String cursor;
+    
+    /**
+     * 每页条数
+     */
+    @Schema(description = "每页条数，默认20，最大100", example = "20")
+    private Integer pageSize;
+}
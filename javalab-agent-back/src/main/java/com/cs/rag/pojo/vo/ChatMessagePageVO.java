@@ -0,0 +1,36 @@
+package com.cs.rag.pojo.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 历史消息分页视图对象
+ * 从最新消息向前翻页，每页内按时间正序排列
+ * 
+ * @author caoshuai
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessagePageVO {
+    
+    /**
+     * 本页消息（按时间正序）
+     */
+    private List<ChatMessageVO> messages;
+    
+    /**
+     * 获取更早一页的游标，没有更早的消息时为 null
+     */
+    private String nextCursor;
+    
+    /**
+     * 是否还有更早的消息
+     */
+    private boolean hasMore;
+}
@@ -43,4 +43,9 @@ public class ChatMessageVO {
      * 创建时间
      */
     private LocalDateTime createdAt;
+    
+    /**
+     * 回复截断标记（1 表示客户端断开后保存的部分回复）
+     */
+    private Integer truncated;
 }
@@ -0,0 +1,36 @@
+package com.cs.rag.pojo.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 会话列表分页视图对象
+ * 按最近活动时间倒序，从最近的会话向后翻页
+ * 
+ * @author caoshuai
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSessionPageVO {
+    
+    /**
+     * 本页会话（按更新时间倒序）
+     */
+    private List<ChatSessionVO> sessions;
+    
+    /**
+     * 获取下一页的游标，没有更多会话时为 null
+     */
+    private String nextCursor;
+    
+    /**
+     * 是否还有更多会话
+     */
+    private boolean hasMore;
+}
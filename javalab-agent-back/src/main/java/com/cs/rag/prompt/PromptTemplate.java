@@ -0,0 +1,140 @@
+package com.cs.rag.prompt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的提示词模板（不可变）
+ *
+ * <p>加载时完成预处理：去除Markdown标题行（以#开头）、描述行（以"用于"开头）和开头的空行，
+ * 并将 {name} 形式的变量拆分为文本片段与变量槽位。渲染时按槽位一次拼接，
+ * 变量值中出现的 {xxx} 不会被再次替换。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+public final class PromptTemplate {
+
+    /** 变量槽位：{变量名} */
+    private static final Pattern SLOT = Pattern.compile("\\{([A-Za-z][A-Za-z0-9_]*)}");
+
+    /** 模板名称（文件名去掉 .md） */
+    private final String name;
+
+    /** 模板来源，用于日志 */
+    private final String source;
+
+    /** 预处理后的完整文本（变量保持原样） */
+    private final String text;
+
+    /** 文本片段，比槽位多一个 */
+    private final String[] literals;
+
+    /** 变量槽位，第 i 个槽位位于 literals[i] 之后 */
+    private final String[] slots;
+
+    private PromptTemplate(String name, String source, String text, String[] literals, String[] slots) {
+        this.name = name;
+        this.source = source;
+        this.text = text;
+        this.literals = literals;
+        this.slots = slots;
+    }
+
+    /**
+     * 预处理并编译模板
+     *
+     * @param name 模板名称
+     * @param source 模板来源
+     * @param content 模板文件内容
+     * @return 编译后的模板
+     */
+    public static PromptTemplate compile(String name, String source, String content) {
+        String text = preprocess(content);
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        Matcher matcher = SLOT.matcher(text);
+        int last = 0;
+        while (matcher.find()) {
+            literals.add(text.substring(last, matcher.start()));
+            slots.add(matcher.group(1));
+            last = matcher.end();
+        }
+        literals.add(text.substring(last));
+        return new PromptTemplate(name, source, text,
+                literals.toArray(new String[0]), slots.toArray(new String[0]));
+    }
+
+    /**
+     * 去除Markdown标题行、描述行和开头的空行
+     *
+     * @param content 模板文件内容
+     * @return 纯净的提示词内容
+     */
+    private static String preprocess(String content) {
+        StringBuilder result = new StringBuilder(content.length());
+        boolean foundContent = false;
+        for (String line : content.split("\n")) {
+            String trimmedLine = line.trim();
+            // 跳过Markdown标题和描述行
+            if (trimmedLine.startsWith("#") || trimmedLine.startsWith("用于")) {
+                continue;
+            }
+            // 跳过开头的空行
+            if (!foundContent && trimmedLine.isEmpty()) {
+                continue;
+            }
+            foundContent = true;
+            result.append(line).append("\n");
+        }
+        return result.toString().trim();
+    }
+
+    /**
+     * 渲染模板
+     *
+     * @param variables 变量值，未提供的变量保持 {name} 原样
+     * @return 渲染后的提示词
+     */
+    public String render(Map<String, ?> variables) {
+        if (slots.length == 0 || variables == null || variables.isEmpty()) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length() + 256);
+        for (int i = 0; i < slots.length; i++) {
+            result.append(literals[i]);
+            Object value = variables.get(slots[i]);
+            if (value != null) {
+                result.append(value);
+            } else {
+                result.append('{').append(slots[i]).append('}');
+            }
+        }
+        return result.append(literals[slots.length]).toString();
+    }
+
+    /**
+     * 预处理后的模板文本（不替换变量）
+     */
+    public String getText() {
+        return text;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 模板中的变量名（按出现顺序，可能重复）
+     */
+    public List<String> getSlots() {
+        return List.of(slots);
+    }
+}
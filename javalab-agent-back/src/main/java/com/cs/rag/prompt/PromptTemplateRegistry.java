@@ -0,0 +1,275 @@
+package com.cs.rag.prompt;
+
+import com.cs.rag.config.PromptTemplateProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 提示词模板注册表
+ *
+ * <p>启动时加载 classpath:/prompts/ 和外部目录下的全部 *.md 模板并预编译，外部目录中的同名模板覆盖内置模板。
+ * 所有模板保存在一个不可变 Map 中，通过 volatile 引用整体替换，热路径上的查询是无锁读。</p>
+ *
+ * <p>启用热加载时由后台线程通过 {@link WatchService} 监听模板目录，文件变化后重新加载全部模板；
+ * 某个文件读取失败时保留该模板的旧版本。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class PromptTemplateRegistry {
+
+    /** 内置模板位置 */
+    private static final String CLASSPATH_DIR = "classpath:/prompts/";
+
+    /** 模板文件扩展名 */
+    private static final String SUFFIX = ".md";
+
+    private final PromptTemplateProperties properties;
+
+    /** 模板名称 -> 模板（不可变，重载时整体替换） */
+    private volatile Map<String, PromptTemplate> templates = Map.of();
+
+    private WatchService watchService;
+
+    private Thread watcher;
+
+    private final LongAdder reloads = new LongAdder();
+
+    private final LongAdder reloadFailures = new LongAdder();
+
+    public PromptTemplateRegistry(PromptTemplateProperties properties) {
+        this.properties = properties;
+        this.templates = load(Map.of());
+        log.info("提示词模板加载完成: {}", templates.keySet());
+    }
+
+    /**
+     * 获取模板
+     *
+     * @param name 模板名称（文件名去掉 .md）
+     * @return 模板，不存在时返回 null
+     */
+    public PromptTemplate get(String name) {
+        PromptTemplate template = templates.get(name);
+        if (template == null) {
+            log.error("提示词模板不存在: {}", name);
+        }
+        return template;
+    }
+
+    /**
+     * 重新加载全部模板
+     */
+    public void reload() {
+        Map<String, PromptTemplate> previous = templates;
+        templates = load(previous);
+        reloads.increment();
+        log.info("提示词模板已重新加载: {}", templates.keySet());
+    }
+
+    /**
+     * 加载内置模板和外部目录模板
+     *
+     * @param previous 当前模板，文件读取失败时沿用
+     * @return 新的模板表
+     */
+    private Map<String, PromptTemplate> load(Map<String, PromptTemplate> previous) {
+        Map<String, PromptTemplate> loaded = new HashMap<>();
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources(CLASSPATH_DIR + "*" + SUFFIX);
+            for (Resource resource : resources) {
+                String filename = resource.getFilename();
+                if (filename == null) {
+                    continue;
+                }
+                String name = filename.substring(0, filename.length() - SUFFIX.length());
+                try {
+                    loaded.put(name, PromptTemplate.compile(name, CLASSPATH_DIR + filename,
+                            resource.getContentAsString(StandardCharsets.UTF_8)));
+                } catch (IOException e) {
+                    keepPrevious(loaded, previous, name, e);
+                }
+            }
+        } catch (IOException e) {
+            reloadFailures.increment();
+            log.error("扫描内置提示词模板失败", e);
+        }
+
+        Path externalDir = externalDir();
+        if (externalDir != null) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(externalDir, "*" + SUFFIX)) {
+                for (Path file : files) {
+                    String filename = file.getFileName().toString();
+                    String name = filename.substring(0, filename.length() - SUFFIX.length());
+                    try {
+                        loaded.put(name, PromptTemplate.compile(name, file.toString(),
+                                Files.readString(file, StandardCharsets.UTF_8)));
+                    } catch (IOException e) {
+                        keepPrevious(loaded, previous, name, e);
+                    }
+                }
+            } catch (IOException e) {
+                reloadFailures.increment();
+                log.error("扫描外部提示词目录失败: {}", externalDir, e);
+            }
+        }
+        return Map.copyOf(loaded);
+    }
+
+    private void keepPrevious(Map<String, PromptTemplate> loaded, Map<String, PromptTemplate> previous,
+                              String name, IOException e) {
+        reloadFailures.increment();
+        PromptTemplate old = previous.get(name);
+        if (old != null) {
+            loaded.put(name, old);
+        }
+        log.error("读取 prompt 文件失败: {}, 保留旧版本={}", name, old != null, e);
+    }
+
+    /**
+     * 外部模板目录，未配置或不存在时返回 null
+     */
+    private Path externalDir() {
+        String dir = properties.getExternalDir();
+        if (dir == null || dir.isBlank()) {
+            return null;
+        }
+        Path path = Paths.get(dir).toAbsolutePath().normalize();
+        if (!Files.isDirectory(path)) {
+            log.warn("外部提示词目录不存在，仅使用内置模板: {}", path);
+            return null;
+        }
+        return path;
+    }
+
+    /**
+     * 启动文件监听线程：监听外部目录，以及以目录形式存在的内置模板目录（开发环境下的 target/classes/prompts）
+     */
+    @PostConstruct
+    public void startWatching() {
+        if (!properties.isHotReload()) {
+            return;
+        }
+        List<Path> dirs = new ArrayList<>();
+        try {
+            Resource classpathDir = new PathMatchingResourcePatternResolver().getResource(CLASSPATH_DIR);
+            if (classpathDir.exists() && classpathDir.isFile()) {
+                dirs.add(classpathDir.getFile().toPath());
+            }
+        } catch (IOException e) {
+            log.debug("内置提示词目录不可监听（打包运行）: {}", e.getMessage());
+        }
+        Path externalDir = externalDir();
+        if (externalDir != null) {
+            dirs.add(externalDir);
+        }
+        if (dirs.isEmpty()) {
+            return;
+        }
+        try {
+            watchService = dirs.get(0).getFileSystem().newWatchService();
+            for (Path dir : dirs) {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        } catch (IOException e) {
+            log.warn("提示词模板热加载未启用: {}", e.getMessage());
+            return;
+        }
+        watcher = new Thread(this::watch, "prompt-template-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("提示词模板热加载已启用: {}", dirs);
+    }
+
+    /**
+     * 监听循环：收到变化后等待 reloadDelay，合并期间的事件后重新加载
+     */
+    private void watch() {
+        while (true) {
+            try {
+                WatchKey key = watchService.take();
+                Thread.sleep(properties.getReloadDelay().toMillis());
+                boolean changed = false;
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        Object context = event.context();
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                                || (context instanceof Path path && path.toString().endsWith(SUFFIX))) {
+                            changed = true;
+                        }
+                    }
+                    key.reset();
+                    key = watchService.poll();
+                }
+                if (changed) {
+                    reload();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (RuntimeException e) {
+                reloadFailures.increment();
+                log.error("提示词模板重新加载失败", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stopWatching() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.debug("关闭提示词模板监听失败: {}", e.getMessage());
+        }
+        watcher.interrupt();
+    }
+
+    // ==================== 统计信息 ====================
+
+    /**
+     * 已加载的模板数
+     */
+    public int templateCount() {
+        return templates.size();
+    }
+
+    /**
+     * 热加载次数
+     */
+    public long reloadCount() {
+        return reloads.sum();
+    }
+
+    /**
+     * 模板文件读取失败次数
+     */
+    public long reloadFailureCount() {
+        return reloadFailures.sum();
+    }
+}
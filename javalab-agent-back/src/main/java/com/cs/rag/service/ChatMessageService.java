@@ -4,6 +4,8 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import com.cs.rag.entity.ChatMessage;
 import org.springframework.ai.chat.messages.Message;
 
+import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -35,21 +37,40 @@ public interface ChatMessageService extends IService<ChatMessage> {
      */
     ChatMessage saveAssistantMessage(String sessionId, Long userId, String content);
     
+    /**
+     * 保存客户端断开后截断的AI助手回复
+     * 
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     * @param content 已生成的部分内容
+     * @return 保存的消息对象（带截断标记）
+     */
+    ChatMessage saveTruncatedAssistantMessage(String sessionId, Long userId, String content);
+    
     /**
      * 滑动窗口：获取最近N条消息作为上下文
      * 
      * 滑动窗口策略说明：
-     * 1. 从数据库查询最近N条消息 (按时间倒序)
-     * 2. 将结果反转为时间正序，符合LLM对话顺序要求
+     * 1. 启用会话热窗口时从 Redis 读取最近N条消息，未命中时查询数据库并回填
+     * 2. 未启用时从数据库查询最近N条消息 (按时间倒序)
      * 3. 增加用户ID校验，确保用户只能访问自己的消息
      * 
      * @param sessionId 会话ID
      * @param userId 用户ID
      * @param limit 滑动窗口大小 (获取消息条数)
-     * @return 时间正序的消息列表
+     * @return 时间倒序的消息列表（首条为最新消息）
      */
     List<ChatMessage> getRecentMessages(String sessionId, Long userId, int limit);
     
+    /**
+     * 将最近消息整理为完整的问答对
+     * 跳过首条用户消息（即本轮问题）以及未配对的消息
+     * 
+     * @param messages 数据库消息列表
+     * @return 按"用户消息, AI回复"依次排列的消息列表，顺序与输入中问答对的顺序一致
+     */
+    List<ChatMessage> pairMessages(List<ChatMessage> messages);
+    
     /**
      * 将数据库消息列表转换为Spring AI的Message列表
      * 用于构建发送给LLM的上下文
@@ -60,12 +81,40 @@ public interface ChatMessageService extends IService<ChatMessage> {
     List<Message> convertToAiMessages(List<ChatMessage> messages);
     
     /**
-     * 获取指定会话的所有消息
-     * 增加用户ID校验，确保用户只能访问自己的消息
+     * 按时间正序逐批读取指定会话的所有消息
+     * 增加用户ID校验，确保用户只能访问自己的消息；内存中只保留一批
+     * 
+     * <p>第一批在调用时读取，数据库异常在调用方线程抛出；之后的批次在遍历时按需读取。</p>
+     * 
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     * @param batchSize 每批读取的消息条数
+     * @return 消息迭代器（按时间正序）
+     */
+    Iterator<ChatMessage> iterateMessagesBySessionId(String sessionId, Long userId, int batchSize);
+    
+    /**
+     * 键集分页：获取游标之前（更早）的一页消息
+     * 
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     * @param beforeCreatedAt 游标消息的创建时间，为空时从最新一条开始
+     * @param beforeId 游标消息的ID
+     * @param limit 获取消息条数
+     * @return 消息列表，按时间倒序
+     */
+    List<ChatMessage> getMessagesBefore(String sessionId, Long userId, LocalDateTime beforeCreatedAt, Long beforeId, int limit);
+    
+    /**
+     * 获取时间区间 (afterCreatedAt, beforeCreatedAt) 内最早的一批消息，包含尚未写入的消息
      * 
      * @param sessionId 会话ID
      * @param userId 用户ID
+     * @param afterCreatedAt 下界（不含），为空时从第一条开始
+     * @param beforeCreatedAt 上界（不含），为空时到最后一条
+     * @param limit 获取消息条数
      * @return 消息列表，按时间正序
      */
-    List<ChatMessage> getMessagesBySessionId(String sessionId, Long userId);
+    List<ChatMessage> getMessagesBetween(String sessionId, Long userId, LocalDateTime afterCreatedAt,
+                                         LocalDateTime beforeCreatedAt, int limit);
 }
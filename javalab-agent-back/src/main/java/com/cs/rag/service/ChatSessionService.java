@@ -3,6 +3,7 @@ package com.cs.rag.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.cs.rag.entity.ChatSession;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -30,6 +31,18 @@ public interface ChatSessionService extends IService<ChatSession> {
      */
     List<ChatSession> getSessionsByUserId(Long userId);
     
+    /**
+     * 键集分页获取用户的会话列表
+     * 首页（游标为空）优先从会话列表缓存读取
+     * 
+     * @param userId 用户ID
+     * @param beforeUpdatedAt 游标会话的更新时间，为空时获取首页
+     * @param beforeId 游标会话的ID
+     * @param limit 获取会话数
+     * @return 会话列表，按更新时间倒序
+     */
+    List<ChatSession> getSessionPage(Long userId, LocalDateTime beforeUpdatedAt, String beforeId, int limit);
+    
     /**
      * 更新会话的更新时间
      * 每次新增消息时调用此方法
@@ -38,6 +51,16 @@ public interface ChatSessionService extends IService<ChatSession> {
      */
     void updateSessionTime(String sessionId);
     
+    /**
+     * 更新滚动会话摘要
+     * 
+     * @param sessionId 会话ID
+     * @param summary 摘要内容
+     * @param summaryUntil 摘要已覆盖的最后一条消息的创建时间
+     * @return 是否写入（已有更新的摘要时不写入）
+     */
+    boolean updateSummary(String sessionId, String summary, LocalDateTime summaryUntil);
+    
     /**
      * 根据ID获取会话，如果不存在则创建新会话
      * 
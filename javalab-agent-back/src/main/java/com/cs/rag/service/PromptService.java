@@ -1,10 +1,12 @@
 package com.cs.rag.service;
 
+import java.util.Map;
+
 /**
  * 提示词管理服务接口
  * 
  * <p>统一管理应用程序中使用的所有提示词模板，
- * 从资源文件中加载并处理提示词内容。</p>
+ * 从资源文件中加载并预编译提示词模板，文件变化时热加载。</p>
  * 
  * <p>提示词文件存放位置: resources/prompts/</p>
  * 
@@ -22,5 +24,16 @@ public interface PromptService {
      * @return 处理后的提示词内容
      */
     String getChatDefaultPrompt();
+
+    /**
+     * 获取滚动会话摘要提示词
+     * 
+     * <p>用于将较早的问答合并进已有摘要，
+     * 模板中的 {summary}、{conversation}、{maxTokens} 由 variables 一次替换。</p>
+     * 
+     * @param variables 模板变量
+     * @return 处理后的提示词内容
+     */
+    String getConversationSummaryPrompt(Map<String, ?> variables);
 }
 
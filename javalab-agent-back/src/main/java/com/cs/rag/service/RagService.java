@@ -1,10 +1,14 @@
 package com.cs.rag.service;
 
 import com.cs.rag.constant.RagConstant;
-import com.cs.rag.entity.ChatMessage;
 import com.cs.rag.entity.ChatSession;
+import com.cs.rag.pojo.vo.ChatMessagePageVO;
+import com.cs.rag.pojo.vo.ChatMessageVO;
+import com.cs.rag.pojo.vo.ChatSessionPageVO;
+import org.springframework.http.codec.ServerSentEvent;
 import reactor.core.publisher.Flux;
 
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -46,16 +50,43 @@ public interface RagService {
      * @return 流式响应，第一条消息包含sessionId
      */
     Flux<String> chat(String message, String sessionId, Long userId);
+
+    /**
+     * 可续传的RAG对话接口
+     *
+     * <p>启用续传时每个片段带事件ID；携带 Last-Event-ID 时从断点继续推送原回复，不重新生成。
+     * 未启用时与 {@link #chat(String, String, Long)} 相同。</p>
+     *
+     * @param message 用户消息
+     * @param sessionId 会话ID，为空时创建新会话
+     * @param userId 用户ID
+     * @param lastEventId 客户端收到的最后一个事件ID，为空时开始新的对话
+     * @return SSE事件流，第一条消息包含sessionId
+     */
+    Flux<ServerSentEvent<String>> chatEvents(String message, String sessionId, Long userId, String lastEventId);
+    
+    /**
+     * 打开会话的全部历史消息
+     * 增加用户ID校验，确保用户只能访问自己的消息；按批读取，不在内存中构建完整列表
+     * 
+     * <p>第一批在调用时读取，之后的批次在遍历时按需读取。</p>
+     * 
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     * @return 消息迭代器（VO，按时间正序）
+     */
+    Iterator<ChatMessageVO> openHistory(String sessionId, Long userId);
     
     /**
-     * 获取会话的历史消息列表
-     * 增加用户ID校验，确保用户只能访问自己的消息
+     * 分页获取会话历史消息（键集分页，从最新消息向前翻页）
      * 
      * @param sessionId 会话ID
      * @param userId 用户ID
-     * @return 消息列表，按时间正序排列
+     * @param cursor 上一页返回的游标，为空时获取最新一页
+     * @param pageSize 每页条数，为空时使用默认值
+     * @return 本页消息（按时间正序）及更早一页的游标
      */
-    List<ChatMessage> getHistory(String sessionId, Long userId);
+    ChatMessagePageVO getHistoryPage(String sessionId, Long userId, String cursor, Integer pageSize);
     
     /**
      * 获取用户的所有会话列表
@@ -65,6 +96,16 @@ public interface RagService {
      */
     List<ChatSession> listSessions(Long userId);
     
+    /**
+     * 分页获取用户的会话列表（键集分页，从最近活动的会话向后翻页）
+     * 
+     * @param userId 用户ID
+     * @param cursor 上一页返回的游标，为空时获取首页
+     * @param pageSize 每页条数，为空时使用默认值
+     * @return 本页会话（按更新时间倒序）及下一页的游标
+     */
+    ChatSessionPageVO getSessionPage(Long userId, String cursor, Integer pageSize);
+    
     /**
      * 执行RAG向量检索增强
      * 
@@ -8,6 +8,7 @@ import com.cs.rag.common.BaseResponse;
 import com.cs.rag.common.ErrorCode;
 import com.cs.rag.common.ResultUtils;
 import com.cs.rag.entity.AliOssFile;
+import com.cs.rag.event.KnowledgeChangedEvent;
 import com.cs.rag.mapper.AliOssFileMapper;
 import com.cs.rag.pojo.dto.QueryFileDTO;
 import com.cs.rag.pojo.dto.FileDownloadInfo;
@@ -16,10 +17,12 @@ import com.cs.rag.utils.StorageUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -41,6 +44,9 @@ public class AliOssFileServiceImpl extends ServiceImpl<AliOssFileMapper, AliOssF
     @Autowired
     private StorageUtil storageUtil;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
 
     /**
      * 查询文件
@@ -69,11 +75,15 @@ public class AliOssFileServiceImpl extends ServiceImpl<AliOssFileMapper, AliOssF
         if (count == 0) {
             return ResultUtils.error(ErrorCode.OPERATION_ERROR, "删除失败");
         }
+        List<String> deletedVectorIds = new ArrayList<>();
         for (AliOssFile aliOssFile : aliOssFiles) {
             List<String> vectorIds = JSON.parseArray(aliOssFile.getVectorId(), String.class);
             vectorStore.delete(vectorIds);
             storageUtil.delete(aliOssFile.getUrl());
+            deletedVectorIds.addAll(vectorIds);
         }
+        // 通知依赖知识库的缓存和索引（事务提交后生效）
+        eventPublisher.publishEvent(KnowledgeChangedEvent.deleted(this, deletedVectorIds));
 
         return ResultUtils.success("成功删除"+ count + "个文件");
     }
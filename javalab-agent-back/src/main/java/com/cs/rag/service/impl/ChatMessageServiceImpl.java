@@ -1,8 +1,10 @@
 package com.cs.rag.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.cs.rag.cache.ConversationWindowCache;
 import com.cs.rag.entity.ChatMessage;
 import com.cs.rag.mapper.ChatMessageMapper;
+import com.cs.rag.pipeline.MessageWriteBehind;
 import com.cs.rag.service.ChatMessageService;
 import com.cs.rag.service.ChatSessionService;
 import lombok.extern.slf4j.Slf4j;
@@ -14,7 +16,12 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * 消息Service实现类
@@ -34,6 +41,12 @@ public class ChatMessageServiceImpl extends ServiceImpl<ChatMessageMapper, ChatM
     @Autowired
     private ChatSessionService chatSessionService;
     
+    @Autowired
+    private MessageWriteBehind messageWriteBehind;
+    
+    @Autowired
+    private ConversationWindowCache conversationWindowCache;
+    
     /**
      * 保存用户消息
      * 同时更新会话的更新时间
@@ -45,7 +58,7 @@ public class ChatMessageServiceImpl extends ServiceImpl<ChatMessageMapper, ChatM
      */
     @Override
     public ChatMessage saveUserMessage(String sessionId, Long userId, String content) {
-        return saveMessage(sessionId, userId, ChatMessage.ROLE_USER, content);
+        return saveMessage(sessionId, userId, ChatMessage.ROLE_USER, content, ChatMessage.NOT_TRUNCATED);
     }
     
     /**
@@ -59,7 +72,21 @@ public class ChatMessageServiceImpl extends ServiceImpl<ChatMessageMapper, ChatM
      */
     @Override
     public ChatMessage saveAssistantMessage(String sessionId, Long userId, String content) {
-        return saveMessage(sessionId, userId, ChatMessage.ROLE_ASSISTANT, content);
+        return saveMessage(sessionId, userId, ChatMessage.ROLE_ASSISTANT, content, ChatMessage.NOT_TRUNCATED);
+    }
+    
+    /**
+     * 保存客户端断开后截断的AI助手回复
+     * 同时更新会话的更新时间
+     * 
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     * @param content 已生成的部分内容
+     * @return 保存的消息对象（带截断标记）
+     */
+    @Override
+    public ChatMessage saveTruncatedAssistantMessage(String sessionId, Long userId, String content) {
+        return saveMessage(sessionId, userId, ChatMessage.ROLE_ASSISTANT, content, ChatMessage.TRUNCATED);
     }
     
     /**
@@ -69,9 +96,10 @@ public class ChatMessageServiceImpl extends ServiceImpl<ChatMessageMapper, ChatM
      * @param userId 用户ID
      * @param role 消息角色
      * @param content 消息内容
+     * @param truncated 回复截断标记
      * @return 保存的消息对象
      */
-    private ChatMessage saveMessage(String sessionId, Long userId, String role, String content) {
+    private ChatMessage saveMessage(String sessionId, Long userId, String role, String content, int truncated) {
         // 构建消息对象
         ChatMessage message = ChatMessage.builder()
                 .sessionId(sessionId)
@@ -79,13 +107,22 @@ public class ChatMessageServiceImpl extends ServiceImpl<ChatMessageMapper, ChatM
                 .role(role)
                 .content(content)
                 .createdAt(LocalDateTime.now())
+                .truncated(truncated)
                 .build();
         
-        // 保存到数据库
-        chatMessageMapper.insert(message);
+        if (messageWriteBehind.isEnabled()) {
+            // 异步批量写入：消息入队，会话更新时间按刷新窗口合并
+            messageWriteBehind.save(message);
+        } else {
+            // 保存到数据库
+            chatMessageMapper.insert(message);
+            
+            // 更新会话的更新时间
+            chatSessionService.updateSessionTime(sessionId);
+        }
         
-        // 更新会话的更新时间
-        chatSessionService.updateSessionTime(sessionId);
+        // 追加到会话热窗口
+        conversationWindowCache.append(message);
         
         log.debug("保存消息: sessionId={}, userId={}, role={}, contentLength={}", 
                 sessionId, userId, role, content != null ? content.length() : 0);
@@ -95,33 +132,50 @@ public class ChatMessageServiceImpl extends ServiceImpl<ChatMessageMapper, ChatM
     
     /**
      * 滑动窗口：获取最近N条消息作为上下文
+     * 启用会话热窗口时优先从 Redis 读取，未命中时查询数据库并回填
      * 
      * @param sessionId 会话ID
      * @param userId 用户ID
      * @param limit 滑动窗口大小 (获取消息条数)
-     * @return 时间正序的消息列表
+     * @return 时间倒序的消息列表
      */
     @Override
     public List<ChatMessage> getRecentMessages(String sessionId, Long userId, int limit) {
+        return conversationWindowCache.recentMessages(sessionId, userId, limit,
+                size -> loadRecentMessages(sessionId, userId, size));
+    }
+    
+    /**
+     * 从数据库获取最近N条消息，并合并尚未写入的消息
+     * 
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     * @param limit 获取消息条数
+     * @return 时间倒序的消息列表
+     */
+    private List<ChatMessage> loadRecentMessages(String sessionId, Long userId, int limit) {
+        // 先取尚未写入的消息，再查询数据库，两者合并后不会遗漏
+        List<ChatMessage> pending = messageWriteBehind.unflushed(sessionId, userId);
+
         // 从数据库获取最近N条消息 (时间倒序)，增加用户校验
         List<ChatMessage> messages = chatMessageMapper.selectRecentMessages(sessionId, userId, limit);
 
-        return messages;
+        return MessageWriteBehind.merge(pending, messages, limit);
     }
     
     /**
-     * 将数据库消息列表转换为Spring AI的Message列表
-     * 用于构建发送给LLM的上下文
+     * 将最近消息整理为完整的问答对
+     * 跳过首条用户消息（即本轮问题）以及未配对的消息
      * 
      * @param messages 数据库消息列表
-     * @return Spring AI Message列表
+     * @return 按"用户消息, AI回复"依次排列的消息列表
      */
     @Override
-    public List<Message> convertToAiMessages(List<ChatMessage> messages) {
-        List<Message> aiMessages = new ArrayList<>();
+    public List<ChatMessage> pairMessages(List<ChatMessage> messages) {
+        List<ChatMessage> pairs = new ArrayList<>();
 
-        Message aiMessageUser = null;
-        Message aiMessageAssistant = null;
+        ChatMessage userMessage = null;
+        ChatMessage assistantMessage = null;
         for (int i=0; i < messages.size(); i++) {
 
             // 跳过第一个用户消息
@@ -130,44 +184,193 @@ public class ChatMessageServiceImpl extends ServiceImpl<ChatMessageMapper, ChatM
                 continue;
             }
 
-            
-            // 根据角色类型创建对应的Spring AI Message对象
             switch (msg.getRole()) {
                 case ChatMessage.ROLE_USER:
-                    aiMessageUser = new UserMessage(msg.getContent());
+                    userMessage = msg;
                     break;
                 case ChatMessage.ROLE_ASSISTANT:
-                    aiMessageAssistant = new AssistantMessage(msg.getContent());
+                    assistantMessage = msg;
                     break;
-//                case ChatMessage.ROLE_SYSTEM:
-//                    aiMessage = new SystemMessage(msg.getContent());
-//                    break;
                 default:
                     log.warn("未知的消息角色: {}", msg.getRole());
                     continue;
             }
 
-            if (aiMessageUser != null && aiMessageAssistant != null) {
-                aiMessages.add(aiMessageUser);
-                aiMessages.add(aiMessageAssistant);
-                aiMessageUser = null;
-                aiMessageAssistant = null;
+            if (userMessage != null && assistantMessage != null) {
+                pairs.add(userMessage);
+                pairs.add(assistantMessage);
+                userMessage = null;
+                assistantMessage = null;
+            }
+        }
+
+        return pairs;
+    }
+    
+    /**
+     * 将数据库消息列表转换为Spring AI的Message列表
+     * 用于构建发送给LLM的上下文
+     * 
+     * @param messages 数据库消息列表
+     * @return Spring AI Message列表
+     */
+    @Override
+    public List<Message> convertToAiMessages(List<ChatMessage> messages) {
+        List<Message> aiMessages = new ArrayList<>();
+        for (ChatMessage msg : pairMessages(messages)) {
+            // 根据角色类型创建对应的Spring AI Message对象
+            if (ChatMessage.ROLE_USER.equals(msg.getRole())) {
+                aiMessages.add(new UserMessage(msg.getContent()));
+            } else {
+                aiMessages.add(new AssistantMessage(msg.getContent()));
             }
         }
-        
         return aiMessages;
     }
     
     /**
-     * 获取指定会话的所有消息
+     * 按时间正序逐批读取指定会话的所有消息
      * 增加用户ID校验，确保用户只能访问自己的消息
+     * 每批按 (created_at, id) 游标独立查询，不占用长事务；第一批在调用时读取
+     * 
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     * @param batchSize 每批读取的消息条数
+     * @return 消息迭代器（按时间正序）
+     */
+    @Override
+    public Iterator<ChatMessage> iterateMessagesBySessionId(String sessionId, Long userId, int batchSize) {
+        // 先取尚未写入的消息，数据库读完后补发其中未出现的（均为最新的消息）
+        List<ChatMessage> pending = messageWriteBehind.unflushed(sessionId, userId);
+        return new MessageBatches(sessionId, userId, Math.max(1, batchSize), pending);
+    }
+    
+    /**
+     * 键集分页：获取游标之前（更早）的一页消息
      * 
      * @param sessionId 会话ID
      * @param userId 用户ID
+     * @param beforeCreatedAt 游标消息的创建时间，为空时从最新一条开始
+     * @param beforeId 游标消息的ID
+     * @param limit 获取消息条数
+     * @return 消息列表，按时间倒序
+     */
+    @Override
+    public List<ChatMessage> getMessagesBefore(String sessionId, Long userId, LocalDateTime beforeCreatedAt,
+                                               Long beforeId, int limit) {
+        List<ChatMessage> pending = new ArrayList<>();
+        for (ChatMessage message : messageWriteBehind.unflushed(sessionId, userId)) {
+            if (beforeCreatedAt == null || MessageWriteBehind.NEWEST_FIRST.compare(message,
+                    ChatMessage.builder().createdAt(beforeCreatedAt).id(beforeId).build()) > 0) {
+                pending.add(message);
+            }
+        }
+        List<ChatMessage> messages = chatMessageMapper.selectPageBefore(sessionId, userId, beforeCreatedAt, beforeId, limit);
+        return MessageWriteBehind.merge(pending, messages, limit);
+    }
+    
+    /**
+     * 获取时间区间 (afterCreatedAt, beforeCreatedAt) 内最早的一批消息，包含尚未写入的消息
+     * 
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     * @param afterCreatedAt 下界（不含），为空时从第一条开始
+     * @param beforeCreatedAt 上界（不含），为空时到最后一条
+     * @param limit 获取消息条数
      * @return 消息列表，按时间正序
      */
     @Override
-    public List<ChatMessage> getMessagesBySessionId(String sessionId, Long userId) {
-        return chatMessageMapper.selectBySessionId(sessionId, userId);
+    public List<ChatMessage> getMessagesBetween(String sessionId, Long userId, LocalDateTime afterCreatedAt,
+                                                LocalDateTime beforeCreatedAt, int limit) {
+        List<ChatMessage> pending = new ArrayList<>();
+        for (ChatMessage message : messageWriteBehind.unflushed(sessionId, userId)) {
+            if ((afterCreatedAt == null || message.getCreatedAt().isAfter(afterCreatedAt))
+                    && (beforeCreatedAt == null || message.getCreatedAt().isBefore(beforeCreatedAt))) {
+                pending.add(message);
+            }
+        }
+        List<ChatMessage> messages = chatMessageMapper.selectRange(sessionId, userId, afterCreatedAt, beforeCreatedAt, limit);
+        if (pending.isEmpty()) {
+            return messages;
+        }
+        // 合并后为时间倒序，反转为正序后取最早的 limit 条
+        List<ChatMessage> merged = MessageWriteBehind.merge(pending, messages, -1);
+        Collections.reverse(merged);
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    /**
+     * 逐批读取会话消息的迭代器
+     */
+    private final class MessageBatches implements Iterator<ChatMessage> {
+        private final String sessionId;
+        private final Long userId;
+        private final int batchSize;
+        /** 未写入的消息（时间倒序） */
+        private final List<ChatMessage> pending;
+        /** 未写入的消息中已从数据库读到的 */
+        private final Set<Long> persisted = new HashSet<>();
+        private Iterator<ChatMessage> batch;
+        private boolean exhausted;
+        private ChatMessage last;
+        private int pendingIndex;
+        private ChatMessage next;
+
+        MessageBatches(String sessionId, Long userId, int batchSize, List<ChatMessage> pending) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.batchSize = batchSize;
+            this.pending = pending;
+            this.pendingIndex = pending.size() - 1;
+            loadBatch();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public ChatMessage next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ChatMessage result = next;
+            next = null;
+            return result;
+        }
+
+        private ChatMessage advance() {
+            while (true) {
+                if (batch.hasNext()) {
+                    last = batch.next();
+                    if (!pending.isEmpty()) {
+                        persisted.add(last.getId());
+                    }
+                    return last;
+                }
+                if (exhausted) {
+                    break;
+                }
+                loadBatch();
+            }
+            while (pendingIndex >= 0) {
+                ChatMessage message = pending.get(pendingIndex--);
+                if (!persisted.contains(message.getId())) {
+                    return message;
+                }
+            }
+            return null;
+        }
+
+        private void loadBatch() {
+            List<ChatMessage> messages = chatMessageMapper.selectPageAfter(sessionId, userId,
+                    last != null ? last.getCreatedAt() : null, last != null ? last.getId() : null, batchSize);
+            exhausted = messages.size() < batchSize;
+            batch = messages.iterator();
+        }
     }
 }
@@ -1,6 +1,10 @@
 package com.cs.rag.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.cs.rag.cache.ConversationWindowCache;
+import com.cs.rag.cache.SessionListCache;
+import com.cs.rag.cache.SessionLookupCache;
+import com.cs.rag.constant.RagConstant;
 import com.cs.rag.entity.ChatSession;
 import com.cs.rag.mapper.ChatSessionMapper;
 import com.cs.rag.service.ChatSessionService;
@@ -8,7 +12,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 
 /**
@@ -25,6 +32,15 @@ public class ChatSessionServiceImpl extends ServiceImpl<ChatSessionMapper, ChatS
     @Autowired
     private ChatSessionMapper chatSessionMapper;
     
+    @Autowired
+    private SessionListCache sessionListCache;
+    
+    @Autowired
+    private SessionLookupCache sessionLookupCache;
+
+    @Autowired
+    private ConversationWindowCache conversationWindowCache;
+    
     /**
      * 创建新会话
      * 生成UUID作为会话ID，设置创建时间和更新时间
@@ -46,8 +62,10 @@ public class ChatSessionServiceImpl extends ServiceImpl<ChatSessionMapper, ChatS
                 .title(title != null ? title : "新对话")
                 .build();
         
-        // 保存到数据库
+        // 保存到数据库（回填数据库生成的创建时间和更新时间）
         chatSessionMapper.insert(session);
+        sessionListCache.onCreated(session);
+        sessionLookupCache.put(session);
         log.info("创建新会话: sessionId={}, userId={}, title={}", sessionId, userId, title);
         
         return session;
@@ -55,13 +73,41 @@ public class ChatSessionServiceImpl extends ServiceImpl<ChatSessionMapper, ChatS
     
     /**
      * 获取用户的会话列表
+     * 首页由会话列表缓存返回，其余按游标逐页查询部分索引
      * 
      * @param userId 用户ID
      * @return 会话列表，按更新时间倒序
      */
     @Override
     public List<ChatSession> getSessionsByUserId(Long userId) {
-        return chatSessionMapper.selectByUserId(userId);
+        List<ChatSession> page = getSessionPage(userId, null, null, RagConstant.SESSION_PAGE_SIZE);
+        List<ChatSession> sessions = new ArrayList<>(page);
+        int limit = RagConstant.SESSION_PAGE_SIZE;
+        while (page.size() == limit) {
+            ChatSession last = page.get(page.size() - 1);
+            limit = RagConstant.SESSION_MAX_PAGE_SIZE;
+            page = chatSessionMapper.selectPageByUserId(userId, last.getUpdatedAt(), last.getId(), limit);
+            sessions.addAll(page);
+        }
+        return sessions;
+    }
+    
+    /**
+     * 键集分页获取用户的会话列表
+     * 首页由会话列表缓存返回，后续页按游标查询部分索引
+     * 
+     * @param userId 用户ID
+     * @param beforeUpdatedAt 游标会话的更新时间，为空时获取首页
+     * @param beforeId 游标会话的ID
+     * @param limit 获取会话数
+     * @return 会话列表，按更新时间倒序
+     */
+    @Override
+    public List<ChatSession> getSessionPage(Long userId, LocalDateTime beforeUpdatedAt, String beforeId, int limit) {
+        if (beforeUpdatedAt == null) {
+            return sessionListCache.firstPage(userId, limit);
+        }
+        return chatSessionMapper.selectPageByUserId(userId, beforeUpdatedAt, beforeId, limit);
     }
     
     /**
@@ -72,7 +118,28 @@ public class ChatSessionServiceImpl extends ServiceImpl<ChatSessionMapper, ChatS
      */
     @Override
     public void updateSessionTime(String sessionId) {
-        chatSessionMapper.updateSessionTime(sessionId);
+        ChatSession session = chatSessionMapper.updateSessionTime(sessionId);
+        if (session != null) {
+            sessionListCache.onTouched(List.of(session));
+        }
+    }
+    
+    /**
+     * 更新滚动会话摘要
+     * 摘要与覆盖位置在同一条语句中更新，读取方看到的两者始终一致
+     * 
+     * @param sessionId 会话ID
+     * @param summary 摘要内容
+     * @param summaryUntil 摘要已覆盖的最后一条消息的创建时间
+     * @return 是否写入（已有更新的摘要时不写入）
+     */
+    @Override
+    public boolean updateSummary(String sessionId, String summary, LocalDateTime summaryUntil) {
+        if (chatSessionMapper.updateSummary(sessionId, summary, summaryUntil) > 0) {
+            sessionLookupCache.onSummaryUpdated(sessionId, summary, summaryUntil);
+            return true;
+        }
+        return false;
     }
     
     /**
@@ -80,8 +147,8 @@ public class ChatSessionServiceImpl extends ServiceImpl<ChatSessionMapper, ChatS
      * 
      * 业务逻辑：
      * 1. 如果sessionId为空或空字符串，创建新会话
-     * 2. 如果sessionId不为空，尝试从数据库获取
-     * 3. 如果数据库中不存在，创建新会话
+     * 2. 如果sessionId不为空，先查会话本地缓存，未命中时从数据库获取
+     * 3. 如果会话不存在或不属于该用户，创建新会话
      * 
      * @param sessionId 会话ID (可为空)
      * @param userId 用户ID
@@ -96,8 +163,8 @@ public class ChatSessionServiceImpl extends ServiceImpl<ChatSessionMapper, ChatS
             return createSession(userId, title);
         }
         
-        // 尝试从数据库获取会话
-        ChatSession session = chatSessionMapper.selectById(sessionId);
+        // 尝试从会话本地缓存或数据库获取会话
+        ChatSession session = sessionLookupCache.get(sessionId, chatSessionMapper::selectById);
         
         // 如果会话不存在，创建新会话
         if (session == null) {
@@ -105,6 +172,12 @@ public class ChatSessionServiceImpl extends ServiceImpl<ChatSessionMapper, ChatS
             return createSession(userId, title);
         }
         
+        // 归属校验：不能在其他用户的会话中继续对话
+        if (!Objects.equals(session.getUserId(), userId)) {
+            log.warn("会话不属于当前用户，创建新会话: sessionId={}, userId={}", sessionId, userId);
+            return createSession(userId, title);
+        }
+        
         return session;
     }
     
@@ -133,6 +206,9 @@ public class ChatSessionServiceImpl extends ServiceImpl<ChatSessionMapper, ChatS
         int rows = chatSessionMapper.logicalDeleteWithUser(sessionId, userId);
         
         if (rows > 0) {
+            sessionListCache.onDeleted(userId, sessionId);
+            sessionLookupCache.invalidate(sessionId);
+            conversationWindowCache.evict(sessionId);
             log.info("逻辑删除会话成功: sessionId={}, userId={}", sessionId, userId);
             return true;
         } else {
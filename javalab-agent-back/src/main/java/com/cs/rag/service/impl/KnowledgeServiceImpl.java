@@ -6,6 +6,7 @@ import com.cs.rag.common.ErrorCode;
 import com.cs.rag.common.ResultUtils;
 import com.cs.rag.constant.FileMessageConstant;
 import com.cs.rag.entity.AliOssFile;
+import com.cs.rag.event.KnowledgeChangedEvent;
 import com.cs.rag.service.AliOssFileService;
 import com.cs.rag.service.KnowledgeService;
 import com.cs.rag.utils.StorageUtil;
@@ -16,6 +17,7 @@ import org.springframework.ai.reader.tika.TikaDocumentReader;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -49,6 +51,9 @@ public class KnowledgeServiceImpl implements KnowledgeService {
     @Autowired
     private AliOssFileService aliOssFileService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * 上传文件到知识库
      * 包含文档解析、分割、向量化存储、OSS上传和数据库保存
@@ -176,6 +181,9 @@ public class KnowledgeServiceImpl implements KnowledgeService {
 
         log.info("向量化存储成功，文件: {}, 向量ID数量: {}, 向量ID列表: {}",
                 originalFilename, vectorIds.size(), vectorIds);
+
+        // 通知依赖知识库的缓存和索引
+        eventPublisher.publishEvent(KnowledgeChangedEvent.added(this, vectorIds));
         return vectorIds;
     }
 
@@ -1,23 +1,65 @@
 package com.cs.rag.service.impl;
 
+import com.cs.rag.cache.CachingEmbeddingModel;
+import com.cs.rag.cache.QaAnswerIndex;
+import com.cs.rag.cache.SemanticAnswerCache;
+import com.cs.rag.common.ErrorCode;
+import com.cs.rag.config.AnswerCacheProperties;
+import com.cs.rag.config.FaqFastPathProperties;
 import com.cs.rag.constant.RagConstant;
 import com.cs.rag.entity.ChatMessage;
 import com.cs.rag.entity.ChatSession;
+import com.cs.rag.exception.BusinessException;
+import com.cs.rag.pipeline.ChatMetrics;
+import com.cs.rag.pipeline.ConversationSummarizer;
+import com.cs.rag.pipeline.GenerationCostTracker;
+import com.cs.rag.pipeline.GenerationLimiter;
+import com.cs.rag.pipeline.LatencyBudget;
+import com.cs.rag.pipeline.ModelRouter;
+import com.cs.rag.pipeline.PromptAssembler;
+import com.cs.rag.pipeline.RequestCoalescer;
+import com.cs.rag.pipeline.StablePrefixWindow;
+import com.cs.rag.pipeline.StreamReplayBuffer;
+import com.cs.rag.pojo.vo.ChatMessagePageVO;
+import com.cs.rag.pojo.vo.ChatMessageVO;
+import com.cs.rag.pojo.vo.ChatSessionPageVO;
+import com.cs.rag.pojo.vo.ChatSessionVO;
 import com.cs.rag.service.*;
+import com.cs.rag.utils.StageTimings;
+import com.cs.rag.utils.TextNormalizer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 
 /**
@@ -68,6 +110,96 @@ public class RagServiceImpl implements RagService {
     @Autowired
     private ChatMessageService chatMessageService;
 
+    /**
+     * 嵌入模型，用于语义答案缓存的查询向量（启用查询向量缓存时命中L1）
+     */
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    /**
+     * 语义答案缓存
+     */
+    @Autowired
+    private SemanticAnswerCache semanticAnswerCache;
+
+    @Autowired
+    private AnswerCacheProperties answerCacheProperties;
+
+    /**
+     * QA对答案索引（FAQ快速通道）
+     */
+    @Autowired
+    private QaAnswerIndex qaAnswerIndex;
+
+    @Autowired
+    private FaqFastPathProperties faqFastPathProperties;
+
+    /**
+     * 对话预处理调度器（会话、历史、检索等阻塞调用）
+     */
+    @Autowired
+    private Scheduler chatPipelineScheduler;
+
+    /**
+     * 对话延迟预算
+     */
+    @Autowired
+    private LatencyBudget latencyBudget;
+
+    /**
+     * 按Token预算组装提示词
+     */
+    @Autowired
+    private PromptAssembler promptAssembler;
+
+    /**
+     * 滚动会话摘要
+     */
+    @Autowired
+    private ConversationSummarizer conversationSummarizer;
+
+    /**
+     * LLM生成并发限制
+     */
+    @Autowired
+    private GenerationLimiter generationLimiter;
+
+    /**
+     * 相同问题的并发请求合并
+     */
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    /**
+     * LLM生成耗时统计（含取消节省的时间）
+     */
+    @Autowired
+    private GenerationCostTracker generationCostTracker;
+
+    /**
+     * 可续传对话流缓冲区
+     */
+    @Autowired
+    private StreamReplayBuffer streamReplayBuffer;
+
+    /**
+     * 大小模型路由
+     */
+    @Autowired
+    private ModelRouter modelRouter;
+
+    /**
+     * 稳定前缀的历史窗口（复用 Ollama KV 缓存）
+     */
+    @Autowired
+    private StablePrefixWindow stablePrefixWindow;
+
+    /**
+     * 对话链路指标
+     */
+    @Autowired
+    private ChatMetrics chatMetrics;
+
     /**
      * 构造函数注入核心依赖
      *
@@ -84,44 +216,140 @@ public class RagServiceImpl implements RagService {
     /**
      * 持久化RAG对话
      * 将会话和消息存储到数据库，支持跨请求的上下文管理
+     *
+     * <p>预处理阶段并发执行：会话确定后，保存用户消息与加载历史并发进行，
+     * RAG检索不依赖会话，与整条会话链路并发进行。首字延迟取决于最慢的阶段而非各阶段之和。</p>
      */
     @Override
     public Flux<String> chat(String message, String sessionId, Long userId) {
+        StageTimings timings = new StageTimings();
+
         // ===== Step 1: 创建/获取会话 =====
         String title = message.length() > 20 ? message.substring(0, 20) + "..." : message;
-        ChatSession session = chatSessionService.getOrCreateSession(sessionId, userId, title);
-        String finalSessionId = session.getId();
         boolean isNewSession = (sessionId == null || sessionId.trim().isEmpty());
+        Mono<ChatSession> sessionMono = stage(timings, "session", () -> {
+            ChatSession session = chatSessionService.getOrCreateSession(sessionId, userId, title);
+            log.info("会话信息: sessionId={}, isNew={}, userId={}", session.getId(), isNewSession, userId);
+            return session;
+        });
+
+        // ===== Step 2: FAQ快速通道（精确匹配），命中时跳过检索和LLM =====
+        if (faqFastPathProperties.isEnabled()) {
+            String faqAnswer = qaAnswerIndex.findByQuestion(message);
+            if (faqAnswer != null) {
+                return sessionMono.flatMapMany(session -> {
+                    log.info("FAQ快速通道命中(精确匹配): sessionId={}", session.getId());
+                    return stage(timings, "saveUserMessage",
+                            () -> chatMessageService.saveUserMessage(session.getId(), userId, message))
+                            .thenMany(replayAnswer(session.getId(), userId,
+                                    RagConstant.KNOWLEDGE_ANSWER_PREFIX + faqAnswer));
+                });
+            }
+        }
 
-        log.info("会话信息: sessionId={}, isNew={}, userId={}", finalSessionId, isNewSession, userId);
+        // 生成队列已满时直接拒绝，不再执行预处理
+        generationLimiter.checkAdmission();
+
+        // ===== Step 3: 保存用户消息、构建滑动窗口上下文（会话确定后并发执行） =====
+        Mono<ConversationContext> contextMono = sessionMono.flatMap(session -> Mono.zip(
+                stage(timings, "saveUserMessage",
+                        () -> chatMessageService.saveUserMessage(session.getId(), userId, message)),
+                loadHistory(session.getId(), userId, timings)
+        ).map(saved -> new ConversationContext(session, stablePrefixWindow.apply(session.getId(),
+                chatMessageService.pairMessages(conversationSummarizer.afterSummary(
+                        session, mergeRecentMessages(saved.getT1(), saved.getT2())))))));
+
+        // ===== Step 4: RAG向量检索（与会话链路并发执行） =====
+        Mono<List<Document>> documentsMono = retrieveAsync(message, timings);
+
+        return Mono.zip(contextMono, documentsMono)
+                .flatMapMany(prepared -> {
+                    ConversationContext context = prepared.getT1();
+                    chatMetrics.recordRetrieval(prepared.getT2().size());
+                    log.info("历史会话: 获取最近{}条消息，实际获取{}条", MEMORY_SIZE, context.getHistory().size());
+                    log.info("对话预处理完成: sessionId={}, {}", context.getSessionId(), timings);
+                    return respond(message, userId, context, prepared.getT2());
+                });
+    }
 
-        // ===== Step 2: 保存用户消息 =====
-        chatMessageService.saveUserMessage(finalSessionId, userId, message);
-        log.info("已保存用户消息: sessionId={}, userId={}", finalSessionId, userId);
+    /**
+     * 可续传的RAG对话：启用续传时由缓冲区订阅对话流，客户端断开后继续生成，重连时从断点推送
+     */
+    @Override
+    public Flux<ServerSentEvent<String>> chatEvents(String message, String sessionId, Long userId, String lastEventId) {
+        if (streamReplayBuffer.isEnabled() && lastEventId != null && !lastEventId.isBlank()) {
+            return streamReplayBuffer.resume(lastEventId, userId);
+        }
+        Flux<String> frames = chat(message, sessionId, userId);
+        if (!streamReplayBuffer.isEnabled()) {
+            return frames.map(frame -> ServerSentEvent.builder(frame).build());
+        }
+        return streamReplayBuffer.open(userId, frames);
+    }
 
-        // ===== Step 3: 构建滑动窗口上下文 =====
-        List<ChatMessage> recentMessages = chatMessageService.getRecentMessages(finalSessionId, userId, MEMORY_SIZE);
-        // 转换为DTO形式
-//        List<ChatMessageDTO> contextMessageDTOs = chatMessageService.convertToMessageDTOs(recentMessages);
-        // 同时保留AI Message用于LLM调用
-        List<Message> contextMessages = chatMessageService.convertToAiMessages(recentMessages);
-        log.info("历史会话: 获取最近{}条消息，实际获取{}条", MEMORY_SIZE, contextMessages.size());
+    /**
+     * 基于预处理结果生成回复：FAQ快速通道、语义答案缓存或LLM流式生成
+     *
+     * @param message 用户消息
+     * @param userId 用户ID
+     * @param context 会话上下文
+     * @param ragDocuments 检索到的文档列表
+     * @return 流式响应，首条消息为sessionId
+     */
+    private Flux<String> respond(String message, Long userId, ConversationContext context, List<Document> ragDocuments) {
+        String currentSessionId = context.getSessionId();
+        List<ChatMessage> history = context.getHistory();
+        // 启用滚动摘要时，摘要代替较早的轮次附加在系统提示词后
+        boolean summarized = conversationSummarizer.hasSummary(context.getSession());
+        String summarizedPrompt = conversationSummarizer.withSummary(promptService.getChatDefaultPrompt(), context.getSession());
+        // 启用前缀复用时，摘要移到本轮用户消息中，系统提示词 + 历史构成跨轮不变的前缀
+        boolean stablePrefix = stablePrefixWindow.isEnabled();
+        String systemPrompt = stablePrefix ? promptService.getChatDefaultPrompt() : summarizedPrompt;
+
+        // ===== Step 4.1: FAQ快速通道（高相似度QA对），命中时跳过LLM =====
+        if (faqFastPathProperties.isEnabled()) {
+            String faqAnswer = qaAnswerIndex.findByDocuments(ragDocuments);
+            if (faqAnswer != null) {
+                log.info("FAQ快速通道命中(高相似度): sessionId={}", currentSessionId);
+                return replayAnswer(currentSessionId, userId, RagConstant.KNOWLEDGE_ANSWER_PREFIX + faqAnswer);
+            }
+        }
 
-        // ===== Step 4: RAG消息增强 =====
-        String enhancedMessage = enhance(message);
+        // ===== Step 4.2: 语义答案缓存，近似重复问题直接复用答案 =====
+        float[] queryEmbedding = null;
+        List<String> documentIds = ragDocuments.stream().map(Document::getId).collect(Collectors.toList());
+        if (answerCacheProperties.isEnabled()
+                && (!answerCacheProperties.isSkipWhenHistoryPresent() || (history.isEmpty() && !summarized))) {
+            queryEmbedding = embeddingModel.embed(message);
+            String cachedAnswer = semanticAnswerCache.lookup(queryEmbedding, documentIds);
+            if (cachedAnswer != null) {
+                return replayAnswer(currentSessionId, userId, cachedAnswer);
+            }
+        }
+        final float[] cacheEmbedding = queryEmbedding;
+
+        // ===== Step 4.3: 按Token预算组装提示词，并进行RAG消息增强 =====
+        long assembleStart = System.nanoTime();
+        PromptAssembler.PromptAssembly assembly = promptAssembler.assemble(summarizedPrompt, message, ragDocuments, history);
+        chatMetrics.recordStage(ChatMetrics.STAGE_PROMPT_ASSEMBLY, System.nanoTime() - assembleStart, true);
+        log.info("提示词组装完成: sessionId={}, promptTokens={}, 文档{}/{}条(截断{}条), 历史{}/{}条, 摘要={}",
+                currentSessionId, assembly.getPromptTokens(),
+                assembly.getDocuments().size(), ragDocuments.size(), assembly.getTruncatedDocuments(),
+                assembly.getHistory().size(), history.size(), summarized);
+        String enhancedMessage = buildEnhancedMessage(message, assembly.getDocuments());
+        if (stablePrefix) {
+            enhancedMessage = conversationSummarizer.withSummary(enhancedMessage, context.getSession());
+        }
 
         // ===== Step 5: 构建消息列表并调用LLM =====
-        long llmStartTime = System.currentTimeMillis();
-        log.info("LLM调用开始: sessionId={}", finalSessionId);
-        
-				// 构建大模型客户端
-        ChatClient chatClient = ChatClient.builder(chatModel).build();
+        // 按问题复杂度选择模型（影子模式下只记录判定）
+        ModelRouter.Route route = modelRouter.route(message, assembly.getDocuments(), history.size(), summarized);
 
-        StringBuilder fullResponse = new StringBuilder();
-        final String currentSessionId = finalSessionId;
+        // 构建大模型客户端
+        ChatClient chatClient = ChatClient.builder(chatModel).build();
 
         // 合并历史上下文和当前消息
-        List<Message> allMessages = new ArrayList<>(contextMessages);
+        List<Message> allMessages = new ArrayList<>(assembly.getHistory());
         allMessages.add(new UserMessage(enhancedMessage));
 
 
@@ -143,43 +371,163 @@ public class RagServiceImpl implements RagService {
         }
         log.info("历史会话：\n{}", messagesLog.toString());
 
-        // 流式返回：先返回sessionId，再返回LLM响应
-        return Flux.concat(
-                // 首条消息返回sessionId供前端使用
-                Flux.just(RagConstant.SESSION_ID_PREFIX + finalSessionId + RagConstant.SESSION_ID_SUFFIX),
-
-                // LLM流式响应
-                chatClient.prompt()
-                        .system(promptService.getChatDefaultPrompt())
-                        .messages(allMessages)
+        // 无历史的会话中，相同问题且检索结果相同的并发请求共享一次生成
+        String generationKey = history.isEmpty() && !summarized
+                ? RequestCoalescer.generationKey(TextNormalizer.normalize(message), documentIds) : null;
+        // 共享生成不属于某个用户或会话：按合并键单独排队，日志中以合并键摘要标识
+        boolean shared = generationKey != null && requestCoalescer.isGenerationEnabled();
+        String generationLogId = shared
+                ? "coalesced@" + Integer.toHexString(generationKey.hashCode()) : currentSessionId;
+        Function<StringBuffer, Flux<String>> llmGeneration = fullResponse -> {
+            // LLM流式响应：启用并发限制时先排队（推送排队位置），启用延迟预算时限制首个片段的等待时间
+            Supplier<Flux<String>> llmStream = () -> {
+                long llmStartTime = System.currentTimeMillis();
+                long[] firstTokenTime = {-1};
+                log.info("LLM调用开始: sessionId={}, model={}", generationLogId, route.getModel());
+                ChatClient.ChatClientRequestSpec request = chatClient.prompt()
+                        .system(systemPrompt)
+                        .messages(allMessages);
+                if (route.isOverridden()) {
+                    request = request.options(ChatOptions.builder().model(route.getModel()).build());
+                }
+                return latencyBudget.guardFirstToken(request
                         .stream()
-                        .content()
+                        .chatResponse()
+                        // 最后一个片段带有提示词计算耗时，对比首轮与后续轮的前缀复用效果
+                        .doOnNext(response -> {
+                            generationCostTracker.recordPromptEval(
+                                    response, !assembly.getHistory().isEmpty(), generationLogId);
+                            chatMetrics.recordEval(route.getModel(), response);
+                        })
+                        .map(RagServiceImpl::responseText)
+                        .filter(text -> !text.isEmpty())
                         .doOnNext(chunk -> {
+                            if (firstTokenTime[0] < 0) {
+                                firstTokenTime[0] = System.currentTimeMillis() - llmStartTime;
+                                chatMetrics.recordFirstToken(route.getModel(), firstTokenTime[0]);
+                            }
                             // 收集响应片段
                             fullResponse.append(chunk);
                         })
                         .doOnComplete(() -> {
-                            // 流结束后保存AI回复
-                            String aiResponse = fullResponse.toString();
-                            if (!aiResponse.isEmpty()) {
-                                chatMessageService.saveAssistantMessage(currentSessionId, userId, aiResponse);
-                                long llmEndTime = System.currentTimeMillis();
-                                log.info("LLM调用完成: sessionId={}, 回复长度={}, 耗时{}ms",
-                                        currentSessionId, aiResponse.length(), llmEndTime - llmStartTime);
-                            }
+                            long llmEndTime = System.currentTimeMillis();
+                            generationCostTracker.recordCompleted(llmEndTime - llmStartTime);
+                            chatMetrics.recordGeneration(route.getModel(), ChatMetrics.OUTCOME_COMPLETED,
+                                    llmEndTime - llmStartTime);
+                            log.info("LLM调用完成: sessionId={}, model={}, promptTokens={}, 回复长度={}, 耗时{}ms",
+                                    generationLogId, route.getModel(), assembly.getPromptTokens(), fullResponse.length(),
+                                    llmEndTime - llmStartTime);
                         })
                         .doOnError(error -> {
+                            chatMetrics.recordGeneration(route.getModel(), ChatMetrics.OUTCOME_ERROR,
+                                    System.currentTimeMillis() - llmStartTime);
                             log.error("LLM调用失败: sessionId={}, error={}",
-                                    currentSessionId, error.getMessage());
+                                    generationLogId, error.getMessage());
+                        }), generationLogId, () -> {
+                            // 首片段超时：模型排队或过载，不计入取消节省的时间
+                            long elapsed = System.currentTimeMillis() - llmStartTime;
+                            chatMetrics.recordGeneration(route.getModel(), ChatMetrics.OUTCOME_TIMEOUT, elapsed);
+                            generationCostTracker.recordTimedOut(elapsed);
                         })
+                        .doOnCancel(() -> {
+                            // 客户端断开后取消订阅，Ollama 的流式请求随之关闭，停止生成
+                            long elapsed = System.currentTimeMillis() - llmStartTime;
+                            chatMetrics.recordGeneration(route.getModel(), ChatMetrics.OUTCOME_CANCELLED, elapsed);
+                            long saved = generationCostTracker.recordCancelled(elapsed);
+                            log.info("LLM生成已取消: sessionId={}, 已生成长度={}, 耗时{}ms, 预计节省{}ms",
+                                    generationLogId, fullResponse.length(), elapsed, saved);
+                        });
+            };
+            return shared ? generationLimiter.guardShared(generationKey, llmStream)
+                    : generationLimiter.guard(userId, currentSessionId, llmStream);
+        };
+
+        // 流式返回：先返回sessionId，再返回LLM响应
+        return Flux.concat(
+                // 首条消息返回sessionId供前端使用
+                Flux.just(RagConstant.SESSION_ID_PREFIX + currentSessionId + RagConstant.SESSION_ID_SUFFIX),
+
+                // 订阅时才取得共享生成：客户端在此之前断开不会占用订阅名额
+                Flux.defer(() -> {
+                    RequestCoalescer.SharedGeneration generation = requestCoalescer.generation(generationKey, llmGeneration);
+                    return generation.frames()
+                            .doOnComplete(() -> {
+                                // 流结束后保存AI回复（共享生成时每个会话各自保存一份）
+                                String aiResponse = generation.text();
+                                if (!aiResponse.isEmpty()) {
+                                    chatMessageService.saveAssistantMessage(currentSessionId, userId, aiResponse);
+                                    conversationSummarizer.onAssistantReply(currentSessionId, userId);
+                                    if (cacheEmbedding != null) {
+                                        semanticAnswerCache.put(cacheEmbedding, documentIds, aiResponse);
+                                    }
+                                }
+                            })
+                            .doOnCancel(() -> {
+                                // 客户端断开：保存已生成的部分回复并标记为截断（不写入摘要和答案缓存）
+                                String partialResponse = generation.text();
+                                if (!partialResponse.isEmpty()) {
+                                    chatMessageService.saveTruncatedAssistantMessage(currentSessionId, userId, partialResponse);
+                                    log.info("客户端断开，保存截断回复: sessionId={}, 回复长度={}",
+                                            currentSessionId, partialResponse.length());
+                                }
+                            });
+                })
         );
     }
 
     // ==================== 会话管理方法 ====================
 
     @Override
-    public List<ChatMessage> getHistory(String sessionId, Long userId) {
-        return chatMessageService.getMessagesBySessionId(sessionId, userId);
+    public Iterator<ChatMessageVO> openHistory(String sessionId, Long userId) {
+        Iterator<ChatMessage> messages = chatMessageService.iterateMessagesBySessionId(
+                sessionId, userId, RagConstant.HISTORY_MAX_PAGE_SIZE);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return messages.hasNext();
+            }
+
+            @Override
+            public ChatMessageVO next() {
+                return toMessageVO(messages.next());
+            }
+        };
+    }
+
+    @Override
+    public ChatMessagePageVO getHistoryPage(String sessionId, Long userId, String cursor, Integer pageSize) {
+        int size = pageSize == null || pageSize <= 0
+                ? RagConstant.HISTORY_PAGE_SIZE : Math.min(pageSize, RagConstant.HISTORY_MAX_PAGE_SIZE);
+        LocalDateTime beforeCreatedAt = null;
+        Long beforeId = null;
+        String[] position = decodeCursor(cursor);
+        if (position != null) {
+            try {
+                beforeCreatedAt = LocalDateTime.parse(position[0]);
+                beforeId = Long.parseLong(position[1]);
+            } catch (RuntimeException e) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "无效的分页游标");
+            }
+        }
+
+        // 多取一条判断是否还有更早的消息
+        List<ChatMessage> messages = chatMessageService.getMessagesBefore(sessionId, userId, beforeCreatedAt, beforeId, size + 1);
+        boolean hasMore = messages.size() > size;
+        List<ChatMessage> page = hasMore ? messages.subList(0, size) : messages;
+        String nextCursor = null;
+        if (hasMore) {
+            ChatMessage oldest = page.get(page.size() - 1);
+            nextCursor = encodeCursor(oldest.getCreatedAt(), String.valueOf(oldest.getId()));
+        }
+        List<ChatMessageVO> vos = new ArrayList<>(page.size());
+        for (int i = page.size() - 1; i >= 0; i--) {
+            vos.add(toMessageVO(page.get(i)));
+        }
+        return ChatMessagePageVO.builder()
+                .messages(vos)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
     }
 
     @Override
@@ -187,6 +535,47 @@ public class RagServiceImpl implements RagService {
         return chatSessionService.getSessionsByUserId(userId);
     }
 
+    @Override
+    public ChatSessionPageVO getSessionPage(Long userId, String cursor, Integer pageSize) {
+        int size = pageSize == null || pageSize <= 0
+                ? RagConstant.SESSION_PAGE_SIZE : Math.min(pageSize, RagConstant.SESSION_MAX_PAGE_SIZE);
+        LocalDateTime beforeUpdatedAt = null;
+        String beforeId = null;
+        String[] position = decodeCursor(cursor);
+        if (position != null) {
+            try {
+                beforeUpdatedAt = LocalDateTime.parse(position[0]);
+                beforeId = UUID.fromString(position[1]).toString();
+            } catch (RuntimeException e) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "无效的分页游标");
+            }
+        }
+
+        // 多取一条判断是否还有更多会话
+        List<ChatSession> sessions = chatSessionService.getSessionPage(userId, beforeUpdatedAt, beforeId, size + 1);
+        boolean hasMore = sessions.size() > size;
+        List<ChatSession> page = hasMore ? sessions.subList(0, size) : sessions;
+        String nextCursor = null;
+        if (hasMore) {
+            ChatSession last = page.get(page.size() - 1);
+            nextCursor = encodeCursor(last.getUpdatedAt(), last.getId());
+        }
+        List<ChatSessionVO> vos = new ArrayList<>(page.size());
+        for (ChatSession session : page) {
+            vos.add(ChatSessionVO.builder()
+                    .id(session.getId())
+                    .title(session.getTitle())
+                    .createdAt(session.getCreatedAt())
+                    .updatedAt(session.getUpdatedAt())
+                    .build());
+        }
+        return ChatSessionPageVO.builder()
+                .sessions(vos)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
     /**
      * 删除会话（逻辑删除）
      * 增加用户ID校验，确保用户只能删除自己的会话
@@ -211,6 +600,80 @@ public class RagServiceImpl implements RagService {
      */
     @Override
     public String enhance(String message) {
+        return buildEnhancedMessage(message, retrieveAsync(message, new StageTimings()).block());
+    }
+
+    /**
+     * 异步RAG检索，相同问题的并发请求共享一次检索（后加入的请求不记录检索阶段耗时）
+     *
+     * @param message 原始消息
+     * @param timings 本次请求的阶段耗时
+     * @return 检索到的文档列表
+     */
+    private Mono<List<Document>> retrieveAsync(String message, StageTimings timings) {
+        return requestCoalescer.retrieval(TextNormalizer.normalize(message), () -> retrieveWithBudget(message, timings));
+    }
+
+    /**
+     * 按延迟预算执行RAG检索
+     *
+     * <p>启用查询向量缓存时拆分为查询向量和向量检索两个阶段分别计时：查询向量先写入缓存，
+     * 向量检索时直接命中；未启用查询向量缓存时两者合并为一个阶段。
+     * 启用延迟预算时每个阶段分别限时，超时或失败时降级。</p>
+     *
+     * @param message 原始消息
+     * @param timings 本次请求的阶段耗时
+     * @return 检索到的文档列表
+     */
+    private Mono<List<Document>> retrieveWithBudget(String message, StageTimings timings) {
+        if (!latencyBudget.isEnabled()) {
+            if (embeddingModel instanceof CachingEmbeddingModel) {
+                return stage(timings, LatencyBudget.STAGE_EMBEDDING, () -> embeddingModel.embed(message))
+                        .then(stage(timings, LatencyBudget.STAGE_VECTOR_SEARCH, () -> retrieve(message)));
+            }
+            return stage(timings, LatencyBudget.STAGE_RETRIEVAL, () -> retrieve(message));
+        }
+        Mono<List<Document>> documents;
+        if (embeddingModel instanceof CachingEmbeddingModel) {
+            documents = latencyBudget.within(LatencyBudget.STAGE_EMBEDDING,
+                            stage(timings, LatencyBudget.STAGE_EMBEDDING, () -> embeddingModel.embed(message)))
+                    .then(latencyBudget.within(LatencyBudget.STAGE_VECTOR_SEARCH,
+                            stage(timings, LatencyBudget.STAGE_VECTOR_SEARCH, () -> retrieve(message))));
+        } else {
+            documents = latencyBudget.within(LatencyBudget.STAGE_RETRIEVAL,
+                    stage(timings, LatencyBudget.STAGE_RETRIEVAL, () -> retrieve(message)));
+        }
+        return documents
+                .doOnNext(result -> latencyBudget.rememberResults(message, result))
+                .onErrorResume(error -> Mono.fromSupplier(() -> latencyBudget.degradeRetrieval(message, error)));
+    }
+
+    /**
+     * 异步加载滑动窗口上下文，启用延迟预算时超时按无历史继续
+     *
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     * @param timings 本次请求的阶段耗时
+     * @return 最近消息（时间倒序）
+     */
+    private Mono<List<ChatMessage>> loadHistory(String sessionId, Long userId, StageTimings timings) {
+        Mono<List<ChatMessage>> history = stage(timings, LatencyBudget.STAGE_HISTORY,
+                () -> chatMessageService.getRecentMessages(sessionId, userId, MEMORY_SIZE));
+        if (!latencyBudget.isEnabled()) {
+            return history;
+        }
+        return latencyBudget.within(LatencyBudget.STAGE_HISTORY, history)
+                .onErrorResume(error -> Mono.just(
+                        latencyBudget.degrade(LatencyBudget.STAGE_HISTORY, error, Collections.<ChatMessage>emptyList())));
+    }
+
+    /**
+     * RAG向量检索
+     *
+     * @param message 原始消息
+     * @return 检索到的文档列表，未命中时为空列表
+     */
+    private List<Document> retrieve(String message) {
         long startTime = System.currentTimeMillis();
         
         // 构建检索请求
@@ -230,8 +693,19 @@ public class RagServiceImpl implements RagService {
                 ragDocuments != null ? ragDocuments.size() : 0, 
                 endTime - startTime);
 
+        return ragDocuments != null ? ragDocuments : Collections.emptyList();
+    }
+
+    /**
+     * 将检索结果附加到消息
+     *
+     * @param message 原始消息
+     * @param ragDocuments 检索到的文档列表
+     * @return 增强后的消息
+     */
+    private String buildEnhancedMessage(String message, List<Document> ragDocuments) {
         // 记录检索到的文档信息
-        if (ragDocuments != null && !ragDocuments.isEmpty()) {
+        if (!ragDocuments.isEmpty()) {
             for (int i = 0; i < ragDocuments.size(); i++) {
                 Document doc = ragDocuments.get(i);
                 String title = doc.getText().split("\n")[0];
@@ -250,4 +724,168 @@ public class RagServiceImpl implements RagService {
             return message + RagConstant.NO_KNOWLEDGE_FOUND_LABEL;
         }
     }
+
+    /**
+     * 编码键集分页游标：排序时间与ID拼接后 Base64URL 编码，对前端不透明
+     *
+     * @param time 游标记录的排序时间
+     * @param id 游标记录的ID
+     * @return 游标
+     */
+    private static String encodeCursor(LocalDateTime time, String id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((time + "_" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码键集分页游标
+     *
+     * @param cursor 游标
+     * @return [排序时间, ID]，游标为空时返回null
+     */
+    private static String[] decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf('_');
+            return new String[]{decoded.substring(0, separator), decoded.substring(separator + 1)};
+        } catch (RuntimeException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "无效的分页游标");
+        }
+    }
+
+    /**
+     * 转换为消息 VO，隐藏 userId 字段
+     *
+     * @param message 消息
+     * @return 消息 VO
+     */
+    private static ChatMessageVO toMessageVO(ChatMessage message) {
+        return ChatMessageVO.builder()
+                .id(message.getId())
+                .sessionId(message.getSessionId())
+                .role(message.getRole())
+                .content(message.getContent())
+                .createdAt(message.getCreatedAt())
+                .truncated(message.getTruncated())
+                .build();
+    }
+
+    /**
+     * 取出流式响应片段的文本
+     *
+     * @param response 流式响应片段
+     * @return 片段文本，无内容时返回空串
+     */
+    private static String responseText(ChatResponse response) {
+        if (response.getResult() == null || response.getResult().getOutput() == null) {
+            return "";
+        }
+        String text = response.getResult().getOutput().getContent();
+        return text != null ? text : "";
+    }
+
+    /**
+     * 在预处理调度器上执行阻塞阶段，并记录耗时（同时写入 rag.chat.stage 指标）
+     *
+     * <p>下游取消（如超过延迟预算）时不中断执行线程：中断可能使进行中的JDBC/HTTP调用失败并污染连接，
+     * 阶段会在后台正常结束，结果被丢弃。</p>
+     *
+     * @param timings 本次请求的阶段耗时
+     * @param name 阶段名称
+     * @param task 阶段任务（返回值不能为null）
+     * @return 阶段结果
+     */
+    private <T> Mono<T> stage(StageTimings timings, String name, Callable<T> task) {
+        return Mono.fromFuture(() -> CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                T result = timings.time(name, task);
+                success = true;
+                return result;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                chatMetrics.recordStage(name, System.nanoTime() - start, success);
+            }
+        }, chatPipelineScheduler::schedule), true);
+    }
+
+    /**
+     * 合并刚保存的用户消息与最近消息，保持与"先保存后查询"相同的窗口内容
+     *
+     * <p>两者并发执行，查询结果可能包含也可能不包含刚保存的消息：
+     * 先按ID去重，再将其作为最新一条放在首位（最近消息为时间倒序）。</p>
+     *
+     * @param saved 刚保存的用户消息
+     * @param recentMessages 最近消息（时间倒序）
+     * @return 不超过滑动窗口大小的消息列表（时间倒序）
+     */
+    private List<ChatMessage> mergeRecentMessages(ChatMessage saved, List<ChatMessage> recentMessages) {
+        List<ChatMessage> merged = new ArrayList<>(MEMORY_SIZE);
+        merged.add(saved);
+        for (ChatMessage recent : recentMessages) {
+            if (merged.size() >= MEMORY_SIZE) {
+                break;
+            }
+            if (!Objects.equals(recent.getId(), saved.getId())) {
+                merged.add(recent);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 回放缓存答案
+     * 保持与LLM流式响应相同的协议：首条消息为sessionId，随后为答案内容
+     *
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     * @param answer 缓存的答案
+     * @return 流式响应
+     */
+    private Flux<String> replayAnswer(String sessionId, Long userId, String answer) {
+        return Flux.concat(
+                Flux.just(RagConstant.SESSION_ID_PREFIX + sessionId + RagConstant.SESSION_ID_SUFFIX),
+                Flux.just(answer)
+                        .doOnComplete(() -> {
+                            chatMessageService.saveAssistantMessage(sessionId, userId, answer);
+                            conversationSummarizer.onAssistantReply(sessionId, userId);
+                        })
+        );
+    }
+
+    /**
+     * 预处理得到的会话上下文
+     */
+    private static class ConversationContext {
+        private final ChatSession session;
+        private final List<ChatMessage> history;
+
+        ConversationContext(ChatSession session, List<ChatMessage> history) {
+            this.session = session;
+            this.history = history;
+        }
+
+        String getSessionId() {
+            return session.getId();
+        }
+
+        /**
+         * 会话（包含滚动摘要）
+         */
+        ChatSession getSession() {
+            return session;
+        }
+
+        /**
+         * 历史问答对（最近一轮在前，启用滚动摘要时仅包含摘要之后的轮次）
+         */
+        List<ChatMessage> getHistory() {
+            return history;
+        }
+    }
 }
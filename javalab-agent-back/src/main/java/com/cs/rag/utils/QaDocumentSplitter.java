@@ -31,6 +31,15 @@ public class QaDocumentSplitter {
     // 答案标识
     private static final String ANSWER_PREFIX = "A:";
 
+    // QA Document 内容中的问题/答案标签
+    private static final String CONTENT_QUESTION_LABEL = "问题: ";
+    private static final String CONTENT_ANSWER_LABEL = "\n\n答案: ";
+
+    // QA Document 元数据
+    public static final String METADATA_QUESTION = "question";
+    public static final String METADATA_CONTENT_TYPE = "content_type";
+    public static final String CONTENT_TYPE_QA_PAIR = "qa_pair";
+
     /**
      * 将包含多个QA对的文档分割成独立的Document对象列表
      * 
@@ -125,7 +134,7 @@ public class QaDocumentSplitter {
      */
     private static Document createQaDocument(QaPair qaPair, Document originalDoc, int index) {
         // 构建完整的QA内容（问题+答案）
-        String qaContent = "问题: " + qaPair.getQuestion() + "\n\n答案: " + qaPair.getAnswer();
+        String qaContent = CONTENT_QUESTION_LABEL + qaPair.getQuestion() + CONTENT_ANSWER_LABEL + qaPair.getAnswer();
 
         // 创建元数据
         Map<String, Object> metadata = new HashMap<>();
@@ -137,13 +146,31 @@ public class QaDocumentSplitter {
 
         // 添加QA特定的元数据
         metadata.put("qa_index", index); // QA对的索引
-        metadata.put("question", qaPair.getQuestion()); // 单独存储问题，便于后续检索
-        metadata.put("content_type", "qa_pair"); // 标识这是一个QA对文档
+        metadata.put(METADATA_QUESTION, qaPair.getQuestion()); // 单独存储问题，便于后续检索
+        metadata.put(METADATA_CONTENT_TYPE, CONTENT_TYPE_QA_PAIR); // 标识这是一个QA对文档
 
         // 创建并返回Document对象
         return new Document(qaContent, metadata);
     }
 
+    /**
+     * 从QA Document内容中提取答案部分
+     *
+     * @param content QA Document内容（"问题: ...\n\n答案: ..."）
+     * @return 答案内容，格式不符时返回null
+     */
+    public static String extractAnswer(String content) {
+        if (content == null) {
+            return null;
+        }
+        int answerStart = content.indexOf(CONTENT_ANSWER_LABEL);
+        if (answerStart == -1) {
+            return null;
+        }
+        String answer = content.substring(answerStart + CONTENT_ANSWER_LABEL.length()).trim();
+        return answer.isEmpty() ? null : answer;
+    }
+
     /**
      * QA对内部类，用于存储问题和答案
      */
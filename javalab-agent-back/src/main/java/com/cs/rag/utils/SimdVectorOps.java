@@ -0,0 +1,72 @@
+package com.cs.rag.utils;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * @Title: SimdVectorOps
+ * @author caoshuai
+ * @date 2026/10/17
+ * @description: 基于 jdk.incubator.vector 的 SIMD 向量计算
+ *
+ *               仅在启动参数包含 --add-modules jdk.incubator.vector 时由 {@link VectorUtils} 调用，
+ *               未加载该模块时本类不会被解析
+ */
+final class SimdVectorOps {
+
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Byte> BYTE_SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    /** 与 BYTE_SPECIES 形状相同的 int 向量，通道数为其四分之一 */
+    private static final VectorSpecies<Integer> INT_SPECIES = BYTE_SPECIES.withLanes(int.class);
+
+    /** 一个 byte 向量扩宽为 int 后拆分成的部分数 */
+    private static final int PARTS = BYTE_SPECIES.length() / INT_SPECIES.length();
+
+    private SimdVectorOps() {
+    }
+
+    static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(FLOAT_SPECIES);
+        int i = 0;
+        int bound = FLOAT_SPECIES.loopBound(length);
+        for (; i < bound; i += FLOAT_SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, b, bOffset + i);
+            sum = va.fma(vb, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    /**
+     * int8 点积：同形状下 byte 向量扩宽为 int 后需要 PARTS 个 int 向量容纳，逐部分转换后相乘累加。
+     * 不依赖比首选形状更窄的向量（128 位平台上不存在 32 位形状）
+     */
+    static int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        IntVector sum = IntVector.zero(INT_SPECIES);
+        int i = 0;
+        int bound = BYTE_SPECIES.loopBound(length);
+        for (; i < bound; i += BYTE_SPECIES.length()) {
+            ByteVector va = ByteVector.fromArray(BYTE_SPECIES, a, aOffset + i);
+            ByteVector vb = ByteVector.fromArray(BYTE_SPECIES, b, bOffset + i);
+            for (int part = 0; part < PARTS; part++) {
+                IntVector ia = (IntVector) va.convertShape(VectorOperators.B2I, INT_SPECIES, part);
+                IntVector ib = (IntVector) vb.convertShape(VectorOperators.B2I, INT_SPECIES, part);
+                sum = sum.add(ia.mul(ib));
+            }
+        }
+        int result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+}
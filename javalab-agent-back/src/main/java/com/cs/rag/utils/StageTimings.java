@@ -0,0 +1,71 @@
+package com.cs.rag.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * @Title: StageTimings
+ * @author caoshuai
+ * @date 2026/10/17
+ * @description: 单次请求的分阶段耗时记录
+ *
+ *               各阶段可能在不同线程上并发执行，记录方法线程安全；
+ *               输出按阶段完成顺序排列，便于对比并发前后的总耗时
+ */
+public class StageTimings {
+
+    private final long startNanos = System.nanoTime();
+
+    private final Map<String, Long> stageMillis = new LinkedHashMap<>();
+
+    /**
+     * 执行并记录一个阶段的耗时（异常时同样记录）
+     *
+     * @param stage 阶段名称
+     * @param task 阶段任务
+     * @return 任务返回值
+     */
+    public <T> T time(String stage, Callable<T> task) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return task.call();
+        } finally {
+            record(stage, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    /**
+     * 记录阶段耗时
+     *
+     * @param stage 阶段名称
+     * @param millis 耗时（毫秒）
+     */
+    public synchronized void record(String stage, long millis) {
+        stageMillis.put(stage, millis);
+    }
+
+    /**
+     * 读取阶段耗时
+     *
+     * @param stage 阶段名称
+     * @return 耗时（毫秒），未记录时返回-1
+     */
+    public synchronized long get(String stage) {
+        return stageMillis.getOrDefault(stage, -1L);
+    }
+
+    /**
+     * 自创建以来经过的时间（毫秒）
+     */
+    public long elapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder();
+        stageMillis.forEach((stage, millis) -> builder.append(stage).append('=').append(millis).append("ms, "));
+        return builder.append("总耗时=").append(elapsedMillis()).append("ms").toString();
+    }
+}
@@ -0,0 +1,36 @@
+package com.cs.rag.utils;
+
+import java.text.Normalizer;
+
+/**
+ * @Title: TextNormalizer
+ * @author caoshuai
+ * @date 2026/10/17
+ * @description: 用户问题文本归一化工具
+ *
+ *               用于生成各类缓存/索引的查询键：
+ *               - NFKC 归一化（全角字母数字、全角空格转半角）
+ *               - 英文统一转小写
+ *               - 去除首尾空白，连续空白合并为一个空格
+ */
+public class TextNormalizer {
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * 归一化查询文本
+     *
+     * @param text 原始文本
+     * @return 归一化后的文本，输入为null时返回空字符串
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        return normalized.trim()
+                .replaceAll("\\s+", " ")
+                .toLowerCase();
+    }
+}
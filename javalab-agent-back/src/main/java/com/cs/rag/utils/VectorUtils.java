@@ -0,0 +1,173 @@
+package com.cs.rag.utils;
+
+/**
+ * @Title: VectorUtils
+ * @author caoshuai
+ * @date 2026/10/17
+ * @description: 向量计算工具类
+ *
+ *               所有方法直接操作 float[]，避免装箱开销。
+ *               启动参数包含 --add-modules jdk.incubator.vector 且启动自检通过时，批量点积走 SIMD 实现
+ */
+public class VectorUtils {
+
+    private static final boolean SIMD_ENABLED = probeSimd();
+
+    private VectorUtils() {
+    }
+
+    /**
+     * 是否启用了 SIMD 向量计算
+     */
+    public static boolean isSimdEnabled() {
+        return SIMD_ENABLED;
+    }
+
+    /**
+     * 检测 SIMD 实现是否可用：模块已加载后，再用一组小向量实际计算并与标量结果比对。
+     * 当前平台不支持所需向量形状等原因导致初始化或计算失败时，回退到标量实现
+     */
+    private static boolean probeSimd() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            int length = 67;
+            float[] fa = new float[length];
+            float[] fb = new float[length];
+            byte[] ba = new byte[length];
+            byte[] bb = new byte[length];
+            float floatExpected = 0f;
+            int intExpected = 0;
+            for (int i = 0; i < length; i++) {
+                fa[i] = i % 7 - 3;
+                fb[i] = i % 5 - 2;
+                ba[i] = (byte) (i * 37 - 128);
+                bb[i] = (byte) (127 - i * 29);
+                floatExpected += fa[i] * fb[i];
+                intExpected += ba[i] * bb[i];
+            }
+            return SimdVectorOps.dot(fa, 0, fb, 0, length) == floatExpected
+                    && SimdVectorOps.dot(ba, 0, bb, 0, length) == intExpected;
+        } catch (RuntimeException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * 计算两个向量的点积
+     *
+     * @param a 向量a
+     * @param b 向量b（维度需与a一致）
+     * @return 点积
+     */
+    public static float dot(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 计算两个向量片段的点积
+     *
+     * <p>未启用 SIMD 时使用4路独立累加器展开循环：浮点累加存在顺序依赖，单累加器无法被JIT向量化，
+     * 拆分后可充分利用流水线，大维度向量上明显快于逐项累加。</p>
+     *
+     * @param a 向量a所在数组
+     * @param aOffset a的起始下标
+     * @param b 向量b所在数组
+     * @param bOffset b的起始下标
+     * @param length 向量维度
+     * @return 点积
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        if (SIMD_ENABLED) {
+            return SimdVectorOps.dot(a, aOffset, b, bOffset, length);
+        }
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        int i = 0;
+        int bound = length & ~3;
+        for (; i < bound; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * 计算两个 int8 量化向量片段的整数点积
+     *
+     * @param a 向量a所在数组
+     * @param aOffset a的起始下标
+     * @param b 向量b所在数组
+     * @param bOffset b的起始下标
+     * @param length 向量维度
+     * @return 点积
+     */
+    public static int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        if (SIMD_ENABLED) {
+            return SimdVectorOps.dot(a, aOffset, b, bOffset, length);
+        }
+        int s0 = 0;
+        int s1 = 0;
+        int s2 = 0;
+        int s3 = 0;
+        int i = 0;
+        int bound = length & ~3;
+        for (; i < bound; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    /**
+     * 返回单位化后的向量副本，零向量原样复制
+     *
+     * @param vector 原始向量
+     * @return 单位向量
+     */
+    public static float[] normalize(float[] vector) {
+        float norm = (float) Math.sqrt(dot(vector, vector));
+        float[] result = new float[vector.length];
+        if (norm == 0f) {
+            System.arraycopy(vector, 0, result, 0, vector.length);
+            return result;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = vector[i] / norm;
+        }
+        return result;
+    }
+
+    /**
+     * 计算两个向量的余弦相似度
+     *
+     * @param a 向量a
+     * @param b 向量b
+     * @return 余弦相似度，任一向量为零向量时返回0
+     */
+    public static double cosine(float[] a, float[] b) {
+        double normA = Math.sqrt(dot(a, a));
+        double normB = Math.sqrt(dot(b, b));
+        if (normA == 0 || normB == 0) {
+            return 0;
+        }
+        return dot(a, b) / (normA * normB);
+    }
+}
@@ -0,0 +1,360 @@
+package com.cs.rag.vectorstore;
+
+import com.cs.rag.utils.VectorUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * HNSW（Hierarchical Navigable Small World）近似最近邻索引
+ *
+ * <p>实现要点:</p>
+ * <ul>
+ *   <li>向量单位化后连续存放在一个 float[] 中，相似度即点积（等价于余弦相似度）</li>
+ *   <li>邻接表使用 int[]，首元素为邻居数量，避免装箱</li>
+ *   <li>删除采用墓碑标记：节点仍参与图导航，但不出现在结果中</li>
+ * </ul>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+public class HnswIndex implements VectorIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int dimensions;
+
+    /** 非0层每个节点的最大邻居数 */
+    private final int m;
+
+    /** 第0层每个节点的最大邻居数 */
+    private final int maxM0;
+
+    private final int efConstruction;
+
+    /** 层数随机分布系数 1/ln(M) */
+    private final double levelMultiplier;
+
+    private final Random random = new Random(42);
+
+    /** 单位化向量存储区：节点 i 占用 [i * dimensions, (i + 1) * dimensions) */
+    private float[] vectors;
+
+    /** links[node][layer] = 邻接表，[0] 为邻居数量 */
+    private int[][][] links;
+
+    private boolean[] deleted;
+
+    private int size;
+
+    private int deletedCount;
+
+    private int entryPoint = -1;
+
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimensions, int m, int efConstruction) {
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.vectors = new float[INITIAL_CAPACITY * dimensions];
+        this.links = new int[INITIAL_CAPACITY][][];
+        this.deleted = new boolean[INITIAL_CAPACITY];
+    }
+
+    // ==================== 写操作 ====================
+
+    /**
+     * 插入向量
+     *
+     * @param vector 原始向量（内部会单位化）
+     * @return 节点编号
+     */
+    @Override
+    public int add(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("向量维度不匹配: 期望" + dimensions + ", 实际" + vector.length);
+        }
+        ensureCapacity(size + 1);
+        int node = size++;
+        float[] unit = VectorUtils.normalize(vector);
+        System.arraycopy(unit, 0, vectors, node * dimensions, dimensions);
+
+        int level = randomLevel();
+        links[node] = new int[level + 1][];
+        for (int layer = 0; layer <= level; layer++) {
+            links[node][layer] = new int[maxNeighbors(layer) + 1];
+        }
+
+        if (entryPoint == -1) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > level; layer--) {
+            current = greedySearch(unit, current, layer);
+        }
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            List<Candidate> candidates = searchLayer(unit, current, efConstruction, layer);
+            int[] selected = selectNeighbors(candidates, m);
+            for (int neighbor : selected) {
+                connect(node, neighbor, layer);
+                connect(neighbor, node, layer);
+            }
+            current = candidates.get(0).getNode();
+        }
+
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+        return node;
+    }
+
+    /**
+     * 标记删除节点
+     *
+     * @param node 节点编号
+     */
+    @Override
+    public void markDeleted(int node) {
+        if (node >= 0 && node < size && !deleted[node]) {
+            deleted[node] = true;
+            deletedCount++;
+        }
+    }
+
+    // ==================== 读操作 ====================
+
+    /**
+     * 近似最近邻检索
+     *
+     * @param query 查询向量（内部会单位化）
+     * @param k 返回数量
+     * @param ef 检索时的候选集大小，越大召回越高
+     * @return 按相似度降序排列的结果（不含已删除节点）
+     */
+    @Override
+    public List<Candidate> search(float[] query, int k, int ef) {
+        if (entryPoint == -1 || size == deletedCount) {
+            return new ArrayList<>();
+        }
+        float[] unit = VectorUtils.normalize(query);
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > 0; layer--) {
+            current = greedySearch(unit, current, layer);
+        }
+        List<Candidate> candidates = searchLayer(unit, current, Math.max(ef, k), 0);
+        List<Candidate> results = new ArrayList<>(k);
+        for (Candidate candidate : candidates) {
+            if (!deleted[candidate.getNode()]) {
+                results.add(candidate);
+                if (results.size() == k) {
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 读取节点的单位化向量副本
+     */
+    @Override
+    public float[] vector(int node) {
+        return Arrays.copyOfRange(vectors, node * dimensions, (node + 1) * dimensions);
+    }
+
+    @Override
+    public boolean isDeleted(int node) {
+        return deleted[node];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int liveCount() {
+        return size - deletedCount;
+    }
+
+    @Override
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    // ==================== 内部实现 ====================
+
+    /**
+     * 单层贪心搜索，返回该层上与查询最相似的节点
+     */
+    private int greedySearch(float[] query, int entry, int layer) {
+        int current = entry;
+        float currentScore = similarity(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbors = links[current][layer];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                float score = similarity(query, neighbor);
+                if (score > currentScore) {
+                    currentScore = score;
+                    current = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 单层束搜索，返回按相似度降序排列的候选集
+     */
+    private List<Candidate> searchLayer(float[] query, int entry, int ef, int layer) {
+        BitSet visited = new BitSet(size);
+        visited.set(entry);
+        Candidate first = new Candidate(entry, similarity(query, entry));
+
+        // 待扩展集合：相似度高的优先
+        PriorityQueue<Candidate> toVisit = new PriorityQueue<>(Comparator.comparingDouble(Candidate::getScore).reversed());
+        // 结果集合：堆顶为当前最差结果
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble(Candidate::getScore));
+        toVisit.add(first);
+        results.add(first);
+
+        while (!toVisit.isEmpty()) {
+            Candidate candidate = toVisit.poll();
+            if (candidate.getScore() < results.peek().getScore() && results.size() >= ef) {
+                break;
+            }
+            int[][] nodeLinks = links[candidate.getNode()];
+            if (layer >= nodeLinks.length) {
+                continue;
+            }
+            int[] neighbors = nodeLinks[layer];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float score = similarity(query, neighbor);
+                if (results.size() < ef || score > results.peek().getScore()) {
+                    Candidate next = new Candidate(neighbor, score);
+                    toVisit.add(next);
+                    results.add(next);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble(Candidate::getScore).reversed());
+        return sorted;
+    }
+
+    /**
+     * 启发式邻居选择：优先保留彼此分散的邻居，不足时用剩余候选补齐
+     *
+     * @param candidates 按相似度降序排列的候选
+     * @param maxCount 最大邻居数
+     */
+    private int[] selectNeighbors(List<Candidate> candidates, int maxCount) {
+        List<Candidate> selected = new ArrayList<>(maxCount);
+        List<Candidate> pruned = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (selected.size() >= maxCount) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate chosen : selected) {
+                if (similarity(candidate.getNode(), chosen.getNode()) > candidate.getScore()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < maxCount; i++) {
+            selected.add(pruned.get(i));
+        }
+        int[] result = new int[selected.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = selected.get(i).getNode();
+        }
+        return result;
+    }
+
+    /**
+     * 添加单向连接，超出容量时重新选择邻居
+     */
+    private void connect(int from, int to, int layer) {
+        int[] neighbors = links[from][layer];
+        int capacity = maxNeighbors(layer);
+        if (neighbors[0] < capacity) {
+            neighbors[++neighbors[0]] = to;
+            return;
+        }
+        List<Candidate> candidates = new ArrayList<>(capacity + 1);
+        for (int i = 1; i <= neighbors[0]; i++) {
+            candidates.add(new Candidate(neighbors[i], similarity(from, neighbors[i])));
+        }
+        candidates.add(new Candidate(to, similarity(from, to)));
+        candidates.sort(Comparator.comparingDouble(Candidate::getScore).reversed());
+        int[] selected = selectNeighbors(candidates, capacity);
+        neighbors[0] = selected.length;
+        System.arraycopy(selected, 0, neighbors, 1, selected.length);
+    }
+
+    private int maxNeighbors(int layer) {
+        return layer == 0 ? maxM0 : m;
+    }
+
+    private int randomLevel() {
+        double r = random.nextDouble();
+        return (int) (-Math.log(r == 0 ? Double.MIN_VALUE : r) * levelMultiplier);
+    }
+
+    @Override
+    public float similarity(float[] query, int node) {
+        return VectorUtils.dot(query, 0, vectors, node * dimensions, dimensions);
+    }
+
+    private float similarity(int a, int b) {
+        return VectorUtils.dot(vectors, a * dimensions, vectors, b * dimensions, dimensions);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= links.length) {
+            return;
+        }
+        int capacity = Math.max(required, links.length * 2);
+        // 单个 float[] 最多容纳约 20 亿个元素，超出时直接失败而不是溢出
+        vectors = Arrays.copyOf(vectors, Math.multiplyExact(capacity, dimensions));
+        links = Arrays.copyOf(links, capacity);
+        deleted = Arrays.copyOf(deleted, capacity);
+    }
+}
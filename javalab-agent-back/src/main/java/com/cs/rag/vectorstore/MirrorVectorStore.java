@@ -0,0 +1,390 @@
+package com.cs.rag.vectorstore;
+
+import com.alibaba.fastjson2.JSON;
+import com.cs.rag.config.VectorMirrorProperties;
+import com.cs.rag.constant.RagConstant;
+import com.cs.rag.utils.VectorUtils;
+import com.pgvector.PGvector;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.DocumentMetadata;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * 进程内向量存储（pgvector 只读镜像）
+ *
+ * <p>读写分离策略:</p>
+ * <ul>
+ *   <li>写操作（add/delete）先写入 pgvector（唯一数据源），提交后再同步到内存索引</li>
+ *   <li>读操作（similaritySearch）直接在内存索引中完成，不访问数据库</li>
+ *   <li>索引尚未加载完成，或请求带过滤表达式时，回退到 pgvector 检索</li>
+ * </ul>
+ *
+ * <p>内存索引可选 HNSW 图索引或量化两阶段检索，见 {@link VectorMirrorProperties.IndexType}。
+ * int8 量化粗排只有在 SIMD 可用时才快于精确检索，未启用 SIMD 时改用 HNSW。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+@Slf4j
+public class MirrorVectorStore implements VectorStore {
+
+    private static final String SELECT_COLUMNS =
+            "SELECT id::text AS id, content, metadata::text AS metadata, embedding::text AS embedding FROM vector_store";
+
+    /** 按ID回查时每批的ID数量 */
+    private static final int ID_BATCH_SIZE = 500;
+
+    private final VectorStore delegate;
+
+    private final EmbeddingModel embeddingModel;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final VectorMirrorProperties properties;
+
+    private final int dimensions;
+
+    /** 实际使用的索引类型（配置为 int8 量化但 SIMD 不可用时为 HNSW） */
+    private final VectorMirrorProperties.IndexType indexType;
+
+    /** 保护当前快照的增量写与并发读 */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** 串行化所有写操作（增量同步与全量重建） */
+    private final Object writeMonitor = new Object();
+
+    /** 当前索引快照，加载完成前为null */
+    private volatile Snapshot snapshot;
+
+    public MirrorVectorStore(VectorStore delegate, EmbeddingModel embeddingModel, JdbcTemplate jdbcTemplate,
+                             VectorMirrorProperties properties, int dimensions) {
+        this.delegate = delegate;
+        this.embeddingModel = embeddingModel;
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.dimensions = dimensions;
+        this.indexType = resolveIndexType(properties);
+    }
+
+    // ==================== VectorStore 接口 ====================
+
+    @Override
+    public void add(List<Document> documents) {
+        delegate.add(documents);
+        List<String> ids = documents.stream().map(Document::getId).collect(Collectors.toList());
+        runAfterCommit(() -> syncAdded(ids));
+    }
+
+    @Override
+    public Optional<Boolean> delete(List<String> idList) {
+        Optional<Boolean> result = delegate.delete(idList);
+        List<String> ids = new ArrayList<>(idList);
+        runAfterCommit(() -> syncDeleted(ids));
+        return result;
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        Snapshot current = snapshot;
+        if (current == null || request.hasFilterExpression()) {
+            return delegate.similaritySearch(request);
+        }
+
+        float[] query = embeddingModel.embed(request.getQuery());
+        int ef = searchEf(request.getTopK());
+
+        lock.readLock().lock();
+        try {
+            List<VectorIndex.Candidate> candidates = current.index.search(query, request.getTopK(), ef);
+            List<Document> documents = new ArrayList<>(candidates.size());
+            for (VectorIndex.Candidate candidate : candidates) {
+                if (candidate.getScore() < request.getSimilarityThreshold()) {
+                    break;
+                }
+                documents.add(current.toDocument(candidate.getNode(), candidate.getScore()));
+            }
+            return documents;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "MirrorVectorStore";
+    }
+
+    // ==================== 索引加载与同步 ====================
+
+    /**
+     * 应用启动后从 pgvector 全量加载索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reload();
+    }
+
+    /**
+     * 从 pgvector 全量重建索引，完成后原子替换当前快照
+     */
+    public void reload() {
+        synchronized (writeMonitor) {
+            long startTime = System.currentTimeMillis();
+            try {
+                Snapshot rebuilt = new Snapshot(newIndex());
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(SELECT_COLUMNS);
+                    statement.setFetchSize(properties.getFetchSize());
+                    return statement;
+                }, (ResultSet rs) -> {
+                    rebuilt.add(rs);
+                });
+                snapshot = rebuilt;
+                log.info("{}向量索引加载完成: {}条, 耗时{}ms", indexType,
+                        rebuilt.index.liveCount(), System.currentTimeMillis() - startTime);
+                if (properties.getRecallSampleSize() > 0) {
+                    reportRecall(rebuilt.index);
+                }
+            } catch (Exception e) {
+                log.error("内存向量索引加载失败，检索将回退到pgvector: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 将新写入的向量同步到内存索引
+     */
+    private void syncAdded(List<String> ids) {
+        synchronized (writeMonitor) {
+            Snapshot current = snapshot;
+            if (current == null) {
+                return;
+            }
+            try {
+                for (int from = 0; from < ids.size(); from += ID_BATCH_SIZE) {
+                    List<String> batch = ids.subList(from, Math.min(from + ID_BATCH_SIZE, ids.size()));
+                    String placeholders = String.join(",", Collections.nCopies(batch.size(), "?::uuid"));
+                    List<Row> rows = jdbcTemplate.query(SELECT_COLUMNS + " WHERE id IN (" + placeholders + ")",
+                            (rs, rowNum) -> Row.of(rs), batch.toArray());
+
+                    lock.writeLock().lock();
+                    try {
+                        for (Row row : rows) {
+                            current.remove(row.id);
+                            current.add(row);
+                        }
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+                log.info("内存向量索引新增同步完成: {}条, 当前{}条", ids.size(), current.index.liveCount());
+            } catch (Exception e) {
+                log.error("内存向量索引新增同步失败，执行全量重建: {}", e.getMessage(), e);
+                reload();
+            }
+        }
+    }
+
+    /**
+     * 将删除的向量同步到内存索引，墓碑过多时全量重建
+     */
+    private void syncDeleted(List<String> ids) {
+        synchronized (writeMonitor) {
+            Snapshot current = snapshot;
+            if (current == null) {
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                ids.forEach(current::remove);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            VectorIndex index = current.index;
+            log.info("内存向量索引删除同步完成: {}条, 当前{}条", ids.size(), index.liveCount());
+            if (index.deletedCount() > index.size() * properties.getCompactionRatio()) {
+                log.info("内存向量索引已删除节点占比过高({}/{})，执行全量重建", index.deletedCount(), index.size());
+                reload();
+            }
+        }
+    }
+
+    /**
+     * 确定实际使用的索引类型
+     *
+     * <p>int8 粗排的整数点积依赖 SIMD：标量实现下逐维转换和累加的开销超过了数据量减少的收益，
+     * 比精确检索更慢，此时改用 HNSW。二值量化使用 popcount，不依赖 SIMD。</p>
+     */
+    private static VectorMirrorProperties.IndexType resolveIndexType(VectorMirrorProperties properties) {
+        VectorMirrorProperties.IndexType configured = properties.getIndexType();
+        if (configured == VectorMirrorProperties.IndexType.QUANTIZED
+                && properties.getQuantization() == VectorMirrorProperties.Quantization.INT8
+                && !VectorUtils.isSimdEnabled()) {
+            log.warn("SIMD 不可用，int8 量化检索慢于精确检索，改用 HNSW 索引"
+                    + "（启动参数添加 --add-modules jdk.incubator.vector 后可使用量化索引）");
+            return VectorMirrorProperties.IndexType.HNSW;
+        }
+        log.info("进程内向量索引: indexType={}, quantization={}, simd={}", configured,
+                configured == VectorMirrorProperties.IndexType.QUANTIZED ? properties.getQuantization() : "-",
+                VectorUtils.isSimdEnabled());
+        return configured;
+    }
+
+    /**
+     * 按实际索引类型创建空索引
+     */
+    private VectorIndex newIndex() {
+        if (indexType == VectorMirrorProperties.IndexType.QUANTIZED) {
+            return new QuantizedIndex(dimensions, properties.getQuantization());
+        }
+        return new HnswIndex(dimensions, properties.getM(), properties.getEfConstruction());
+    }
+
+    /**
+     * 检索候选集大小：HNSW 为 efSearch，量化索引为精排候选数，均不小于 topK
+     */
+    private int searchEf(int topK) {
+        int ef = indexType == VectorMirrorProperties.IndexType.QUANTIZED
+                ? properties.getRerankCandidates()
+                : properties.getEfSearch();
+        return Math.max(ef, topK);
+    }
+
+    /**
+     * 抽样评估召回率：以索引中的向量作为查询，与全量精确检索的 Top-K 对比
+     */
+    private void reportRecall(VectorIndex index) {
+        int topK = RagConstant.TOP_K;
+        RecallReport report = RecallReport.evaluate(index, properties.getRecallSampleSize(), topK, searchEf(topK));
+        log.info("{}向量索引召回评估: {}", indexType, report);
+    }
+
+    /**
+     * 存在事务时在提交后执行，否则立即执行
+     */
+    private static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // ==================== 统计信息 ====================
+
+    /**
+     * 索引是否已加载完成
+     */
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * 索引中的有效向量数量
+     */
+    public int liveCount() {
+        Snapshot current = snapshot;
+        return current != null ? current.index.liveCount() : 0;
+    }
+
+    // ==================== 内部结构 ====================
+
+    /**
+     * 向量表中的一行
+     */
+    private static class Row {
+        private final String id;
+        private final String content;
+        private final Map<String, Object> metadata;
+        private final float[] embedding;
+
+        private Row(String id, String content, Map<String, Object> metadata, float[] embedding) {
+            this.id = id;
+            this.content = content;
+            this.metadata = metadata;
+            this.embedding = embedding;
+        }
+
+        static Row of(ResultSet rs) throws SQLException {
+            String metadataJson = rs.getString("metadata");
+            Map<String, Object> metadata = metadataJson != null
+                    ? new HashMap<>(JSON.parseObject(metadataJson))
+                    : new HashMap<>();
+            return new Row(rs.getString("id"), rs.getString("content"), metadata,
+                    new PGvector(rs.getString("embedding")).toArray());
+        }
+    }
+
+    /**
+     * 索引快照：向量索引 + 节点对应的文档内容
+     */
+    private static class Snapshot {
+        private final VectorIndex index;
+        private final List<String> ids = new ArrayList<>();
+        private final List<String> contents = new ArrayList<>();
+        private final List<Map<String, Object>> metadata = new ArrayList<>();
+        private final Map<String, Integer> idToNode = new HashMap<>();
+
+        Snapshot(VectorIndex index) {
+            this.index = index;
+        }
+
+        void add(ResultSet rs) throws SQLException {
+            add(Row.of(rs));
+        }
+
+        void add(Row row) {
+            int node = index.add(row.embedding);
+            ids.add(row.id);
+            contents.add(row.content);
+            metadata.add(row.metadata);
+            idToNode.put(row.id, node);
+        }
+
+        void remove(String id) {
+            Integer node = idToNode.remove(id);
+            if (node != null) {
+                index.markDeleted(node);
+                // 释放文档内容，节点本身仍保留用于图导航
+                contents.set(node, null);
+                metadata.set(node, null);
+            }
+        }
+
+        Document toDocument(int node, float score) {
+            Map<String, Object> documentMetadata = new HashMap<>(metadata.get(node));
+            documentMetadata.put(DocumentMetadata.DISTANCE.value(), 1 - score);
+            return Document.builder()
+                    .id(ids.get(node))
+                    .text(contents.get(node))
+                    .metadata(documentMetadata)
+                    .score((double) score)
+                    .build();
+        }
+    }
+}
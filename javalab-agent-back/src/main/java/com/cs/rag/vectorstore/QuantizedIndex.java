@@ -0,0 +1,248 @@
+package com.cs.rag.vectorstore;
+
+import com.cs.rag.config.VectorMirrorProperties;
+import com.cs.rag.utils.VectorUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 量化两阶段检索索引
+ *
+ * <p>检索流程:</p>
+ * <ol>
+ *   <li>粗排：对全部节点的量化编码做线性扫描，取相似度最高的 ef 个候选。
+ *       INT8 每维1字节，BINARY 每维1比特，扫描的数据量分别为原始 float 向量的 1/4 和 1/32</li>
+ *   <li>精排：对候选用全精度向量重新计算相似度，取前 k 个</li>
+ * </ol>
+ *
+ * <p>全精度向量只在精排时按候选随机访问，粗排阶段常驻缓存的只有量化编码。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+public class QuantizedIndex implements VectorIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int INT8_MAX = 127;
+
+    private final int dimensions;
+
+    private final VectorMirrorProperties.Quantization quantization;
+
+    /** BINARY 编码每个节点占用的 long 数量 */
+    private final int words;
+
+    /** 单位化向量存储区：节点 i 占用 [i * dimensions, (i + 1) * dimensions) */
+    private float[] vectors;
+
+    /** INT8 编码：节点 i 占用 [i * dimensions, (i + 1) * dimensions) */
+    private byte[] int8Codes;
+
+    /** INT8 编码的反量化系数 */
+    private float[] int8Scales;
+
+    /** BINARY 编码（符号位）：节点 i 占用 [i * words, (i + 1) * words) */
+    private long[] binaryCodes;
+
+    private boolean[] deleted;
+
+    private int size;
+
+    private int deletedCount;
+
+    public QuantizedIndex(int dimensions, VectorMirrorProperties.Quantization quantization) {
+        this.dimensions = dimensions;
+        this.quantization = quantization;
+        this.words = (dimensions + 63) >>> 6;
+        this.vectors = new float[INITIAL_CAPACITY * dimensions];
+        this.deleted = new boolean[INITIAL_CAPACITY];
+        if (quantization == VectorMirrorProperties.Quantization.BINARY) {
+            this.binaryCodes = new long[INITIAL_CAPACITY * words];
+        } else {
+            this.int8Codes = new byte[INITIAL_CAPACITY * dimensions];
+            this.int8Scales = new float[INITIAL_CAPACITY];
+        }
+    }
+
+    // ==================== 写操作 ====================
+
+    @Override
+    public int add(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("向量维度不匹配: 期望" + dimensions + ", 实际" + vector.length);
+        }
+        ensureCapacity(size + 1);
+        int node = size++;
+        float[] unit = VectorUtils.normalize(vector);
+        System.arraycopy(unit, 0, vectors, node * dimensions, dimensions);
+        if (quantization == VectorMirrorProperties.Quantization.BINARY) {
+            encodeBinary(unit, binaryCodes, node * words);
+        } else {
+            int8Scales[node] = encodeInt8(unit, int8Codes, node * dimensions);
+        }
+        return node;
+    }
+
+    @Override
+    public void markDeleted(int node) {
+        if (node >= 0 && node < size && !deleted[node]) {
+            deleted[node] = true;
+            deletedCount++;
+        }
+    }
+
+    // ==================== 读操作 ====================
+
+    /**
+     * 两阶段检索
+     *
+     * @param query 查询向量（内部会单位化）
+     * @param k 返回数量
+     * @param ef 粗排保留的候选数量，越大召回越高
+     * @return 按精确相似度降序排列的结果（不含已删除节点）
+     */
+    @Override
+    public List<Candidate> search(float[] query, int k, int ef) {
+        if (size == deletedCount) {
+            return new ArrayList<>();
+        }
+        float[] unit = VectorUtils.normalize(query);
+        TopScores coarse = quantization == VectorMirrorProperties.Quantization.BINARY
+                ? scanBinary(unit, Math.max(ef, k))
+                : scanInt8(unit, Math.max(ef, k));
+
+        TopScores exact = new TopScores(k);
+        for (int i = 0; i < coarse.size(); i++) {
+            int node = coarse.node(i);
+            exact.offer(node, similarity(unit, node));
+        }
+        return exact.toSortedList();
+    }
+
+    @Override
+    public float similarity(float[] unitQuery, int node) {
+        return VectorUtils.dot(unitQuery, 0, vectors, node * dimensions, dimensions);
+    }
+
+    @Override
+    public float[] vector(int node) {
+        return Arrays.copyOfRange(vectors, node * dimensions, (node + 1) * dimensions);
+    }
+
+    @Override
+    public boolean isDeleted(int node) {
+        return deleted[node];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int liveCount() {
+        return size - deletedCount;
+    }
+
+    @Override
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    // ==================== 内部实现 ====================
+
+    /**
+     * INT8 粗排：整数点积乘以节点的反量化系数（查询系数对所有节点相同，排序时可省略）
+     */
+    private TopScores scanInt8(float[] unitQuery, int count) {
+        byte[] queryCode = new byte[dimensions];
+        encodeInt8(unitQuery, queryCode, 0);
+        TopScores top = new TopScores(count);
+        for (int node = 0; node < size; node++) {
+            if (deleted[node]) {
+                continue;
+            }
+            float score = VectorUtils.dot(queryCode, 0, int8Codes, node * dimensions, dimensions) * int8Scales[node];
+            if (top.accepts(score)) {
+                top.offer(node, score);
+            }
+        }
+        return top;
+    }
+
+    /**
+     * BINARY 粗排：符号位一致的维度越多越相似，分数为 dimensions - 2 * 汉明距离
+     */
+    private TopScores scanBinary(float[] unitQuery, int count) {
+        long[] queryCode = new long[words];
+        encodeBinary(unitQuery, queryCode, 0);
+        TopScores top = new TopScores(count);
+        for (int node = 0; node < size; node++) {
+            if (deleted[node]) {
+                continue;
+            }
+            int offset = node * words;
+            int hamming = 0;
+            for (int w = 0; w < words; w++) {
+                hamming += Long.bitCount(queryCode[w] ^ binaryCodes[offset + w]);
+            }
+            float score = dimensions - 2 * hamming;
+            if (top.accepts(score)) {
+                top.offer(node, score);
+            }
+        }
+        return top;
+    }
+
+    /**
+     * 按向量自身的最大绝对值对称量化到 [-127, 127]
+     *
+     * @return 反量化系数
+     */
+    private float encodeInt8(float[] unit, byte[] target, int offset) {
+        float maxAbs = 0f;
+        for (float value : unit) {
+            maxAbs = Math.max(maxAbs, Math.abs(value));
+        }
+        if (maxAbs == 0f) {
+            return 0f;
+        }
+        float factor = INT8_MAX / maxAbs;
+        for (int i = 0; i < dimensions; i++) {
+            target[offset + i] = (byte) Math.round(unit[i] * factor);
+        }
+        return maxAbs / INT8_MAX;
+    }
+
+    private void encodeBinary(float[] unit, long[] target, int offset) {
+        for (int i = 0; i < dimensions; i++) {
+            if (unit[i] > 0f) {
+                target[offset + (i >>> 6)] |= 1L << (i & 63);
+            }
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= deleted.length) {
+            return;
+        }
+        int capacity = Math.max(required, deleted.length * 2);
+        // 单个数组最多容纳约 20 亿个元素，超出时直接失败而不是溢出
+        vectors = Arrays.copyOf(vectors, Math.multiplyExact(capacity, dimensions));
+        deleted = Arrays.copyOf(deleted, capacity);
+        if (quantization == VectorMirrorProperties.Quantization.BINARY) {
+            binaryCodes = Arrays.copyOf(binaryCodes, Math.multiplyExact(capacity, words));
+        } else {
+            int8Codes = Arrays.copyOf(int8Codes, Math.multiplyExact(capacity, dimensions));
+            int8Scales = Arrays.copyOf(int8Scales, capacity);
+        }
+    }
+}
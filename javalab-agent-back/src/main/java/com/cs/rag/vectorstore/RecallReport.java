@@ -0,0 +1,163 @@
+package com.cs.rag.vectorstore;
+
+import com.cs.rag.utils.VectorUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 向量索引召回率与耗时评估结果
+ *
+ * <p>从索引中均匀抽取有效节点的向量作为查询（或使用调用方给定的查询），分别执行索引检索和全量精确检索，
+ * 统计 Recall@K（排除查询节点自身）及两者的平均耗时。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+public class RecallReport {
+
+    private final int samples;
+
+    private final int topK;
+
+    private final int ef;
+
+    private final double recall;
+
+    private final double indexAvgMicros;
+
+    private final double exactAvgMicros;
+
+    private RecallReport(int samples, int topK, int ef, double recall, double indexAvgMicros, double exactAvgMicros) {
+        this.samples = samples;
+        this.topK = topK;
+        this.ef = ef;
+        this.recall = recall;
+        this.indexAvgMicros = indexAvgMicros;
+        this.exactAvgMicros = exactAvgMicros;
+    }
+
+    /**
+     * 执行评估，调用方需保证评估期间索引不被修改
+     *
+     * @param index 待评估索引
+     * @param sampleSize 抽样查询数
+     * @param topK 评估的返回数量
+     * @param ef 索引检索的候选集大小
+     * @return 评估结果
+     */
+    public static RecallReport evaluate(VectorIndex index, int sampleSize, int topK, int ef) {
+        int live = index.liveCount();
+        int samples = Math.min(sampleSize, live);
+        if (samples == 0 || live <= topK) {
+            return new RecallReport(0, topK, ef, 0, 0, 0);
+        }
+        int step = Math.max(1, index.size() / samples);
+        Accumulator accumulator = new Accumulator();
+        for (int node = 0; node < index.size() && accumulator.evaluated < samples; node += step) {
+            if (!index.isDeleted(node)) {
+                accumulator.measure(index, index.vector(node), node, topK, ef);
+            }
+        }
+        return accumulator.report(topK, ef);
+    }
+
+    /**
+     * 使用给定的查询向量执行评估（查询不必来自索引），调用方需保证评估期间索引不被修改
+     *
+     * @param index 待评估索引
+     * @param queries 查询向量（内部会单位化）
+     * @param topK 评估的返回数量
+     * @param ef 索引检索的候选集大小
+     * @return 评估结果
+     */
+    public static RecallReport evaluate(VectorIndex index, List<float[]> queries, int topK, int ef) {
+        if (queries.isEmpty() || index.liveCount() < topK) {
+            return new RecallReport(0, topK, ef, 0, 0, 0);
+        }
+        Accumulator accumulator = new Accumulator();
+        for (float[] query : queries) {
+            accumulator.measure(index, VectorUtils.normalize(query), -1, topK, ef);
+        }
+        return accumulator.report(topK, ef);
+    }
+
+    private static TopScores exactSearch(VectorIndex index, float[] unitQuery, int k) {
+        TopScores top = new TopScores(k);
+        for (int node = 0; node < index.size(); node++) {
+            if (!index.isDeleted(node)) {
+                top.offer(node, index.similarity(unitQuery, node));
+            }
+        }
+        return top;
+    }
+
+    /**
+     * 逐个查询累计命中数与耗时
+     */
+    private static final class Accumulator {
+        private long indexNanos;
+        private long exactNanos;
+        private long hits;
+        private int evaluated;
+
+        /**
+         * @param unitQuery 单位化后的查询向量
+         * @param self 查询向量所在节点，不计入结果；查询不在索引中时为 -1
+         */
+        void measure(VectorIndex index, float[] unitQuery, int self, int topK, int ef) {
+            int k = self >= 0 ? topK + 1 : topK;
+
+            long start = System.nanoTime();
+            List<VectorIndex.Candidate> approximate = index.search(unitQuery, k, ef);
+            indexNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            TopScores exact = exactSearch(index, unitQuery, k);
+            exactNanos += System.nanoTime() - start;
+
+            Set<Integer> expected = new HashSet<>();
+            for (VectorIndex.Candidate candidate : exact.toSortedList()) {
+                if (candidate.getNode() != self && expected.size() < topK) {
+                    expected.add(candidate.getNode());
+                }
+            }
+            int found = 0;
+            for (VectorIndex.Candidate candidate : approximate) {
+                if (candidate.getNode() != self && expected.contains(candidate.getNode())) {
+                    found++;
+                }
+            }
+            hits += found;
+            evaluated++;
+        }
+
+        RecallReport report(int topK, int ef) {
+            return new RecallReport(evaluated, topK, ef, (double) hits / ((long) evaluated * topK),
+                    indexNanos / 1000.0 / evaluated, exactNanos / 1000.0 / evaluated);
+        }
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    public double getRecall() {
+        return recall;
+    }
+
+    public double getIndexAvgMicros() {
+        return indexAvgMicros;
+    }
+
+    public double getExactAvgMicros() {
+        return exactAvgMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("samples=%d, Recall@%d=%.4f, ef=%d, 索引检索平均%.1fμs, 精确检索平均%.1fμs",
+                samples, topK, recall, ef, indexAvgMicros, exactAvgMicros);
+    }
+}
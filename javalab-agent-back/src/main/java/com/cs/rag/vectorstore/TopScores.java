@@ -0,0 +1,109 @@
+package com.cs.rag.vectorstore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 固定容量的 Top-N 收集器
+ *
+ * <p>基于原始类型数组的小顶堆，堆顶为当前最差结果，扫描大量节点时不产生装箱对象。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+class TopScores {
+
+    private final int[] nodes;
+
+    private final float[] scores;
+
+    private int size;
+
+    TopScores(int capacity) {
+        this.nodes = new int[capacity];
+        this.scores = new float[capacity];
+    }
+
+    /**
+     * 当前已收集数量
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * 新分数能否进入结果（未满，或优于当前最差结果）
+     */
+    boolean accepts(float score) {
+        return size < nodes.length || score > scores[0];
+    }
+
+    /**
+     * 尝试加入结果，已满且不优于堆顶时忽略
+     */
+    void offer(int node, float score) {
+        if (size < nodes.length) {
+            nodes[size] = node;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (score > scores[0]) {
+            nodes[0] = node;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * 已收集的节点编号（无序）
+     */
+    int node(int i) {
+        return nodes[i];
+    }
+
+    /**
+     * 按分数降序输出
+     */
+    List<VectorIndex.Candidate> toSortedList() {
+        List<VectorIndex.Candidate> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(new VectorIndex.Candidate(nodes[i], scores[i]));
+        }
+        result.sort((a, b) -> Float.compare(b.getScore(), a.getScore()));
+        return result;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= scores[i]) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                break;
+            }
+            int smallest = left + 1 < size && scores[left + 1] < scores[left] ? left + 1 : left;
+            if (scores[i] <= scores[smallest]) {
+                break;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int node = nodes[a];
+        nodes[a] = nodes[b];
+        nodes[b] = node;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
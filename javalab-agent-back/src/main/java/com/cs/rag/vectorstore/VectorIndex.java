@@ -0,0 +1,88 @@
+package com.cs.rag.vectorstore;
+
+import java.util.List;
+
+/**
+ * 进程内向量索引
+ *
+ * <p>所有实现均以单位化向量的点积作为相似度（等价于余弦相似度）。
+ * 实现类不要求线程安全：写操作需由调用方串行化，且写时不能有并发读。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+public interface VectorIndex {
+
+    /**
+     * 插入向量
+     *
+     * @param vector 原始向量（内部会单位化）
+     * @return 节点编号
+     */
+    int add(float[] vector);
+
+    /**
+     * 标记删除节点
+     *
+     * @param node 节点编号
+     */
+    void markDeleted(int node);
+
+    /**
+     * 近似最近邻检索
+     *
+     * @param query 查询向量（内部会单位化）
+     * @param k 返回数量
+     * @param ef 检索时的候选集大小，越大召回越高
+     * @return 按相似度降序排列的结果（不含已删除节点）
+     */
+    List<Candidate> search(float[] query, int k, int ef);
+
+    /**
+     * 计算单位化查询向量与节点的精确相似度
+     *
+     * @param unitQuery 单位化后的查询向量
+     * @param node 节点编号
+     * @return 相似度
+     */
+    float similarity(float[] unitQuery, int node);
+
+    /**
+     * 读取节点的单位化向量副本
+     *
+     * @param node 节点编号
+     * @return 单位化向量
+     */
+    float[] vector(int node);
+
+    boolean isDeleted(int node);
+
+    int size();
+
+    int liveCount();
+
+    int deletedCount();
+
+    int dimensions();
+
+    /**
+     * 检索候选：节点编号 + 相似度
+     */
+    class Candidate {
+        private final int node;
+        private final float score;
+
+        public Candidate(int node, float score) {
+            this.node = node;
+            this.score = score;
+        }
+
+        public int getNode() {
+            return node;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+}
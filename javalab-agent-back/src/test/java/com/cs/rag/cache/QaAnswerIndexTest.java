@@ -0,0 +1,115 @@
+package com.cs.rag.cache;
+
+import com.cs.rag.config.FaqFastPathProperties;
+import com.cs.rag.event.KnowledgeChangedEvent;
+import com.cs.rag.utils.QaDocumentSplitter;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * QA对答案索引：归一化精确匹配、检索第一名的相似度判定、知识库变更后重建
+ */
+class QaAnswerIndexTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    /** vector_store 中的QA对：{问题, 文档内容} */
+    private final List<String[]> rows = new ArrayList<>();
+
+    @Test
+    void exactQuestionIsMatchedAfterNormalization() throws Exception {
+        rows.add(new String[]{"HashMap 的原理？", qaContent("HashMap 的原理？", "数组加链表")});
+        rows.add(new String[]{"hashmap  的原理？", qaContent("hashmap 的原理？", "重复的问题")});
+        rows.add(new String[]{"格式不对", "没有答案标签"});
+        QaAnswerIndex index = index(true);
+
+        index.rebuild();
+
+        assertThat(index.size()).isEqualTo(1);
+        // 大小写、空白、全角字符归一化后匹配，重复问题保留第一条
+        assertThat(index.findByQuestion("  ＨａｓｈＭａｐ 的原理？ ")).isEqualTo("数组加链表");
+        assertThat(index.findByQuestion("格式不对")).isNull();
+        assertThat(index.findByQuestion("ArrayList 的原理？")).isNull();
+        assertThat(index.exactHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void topQaDocumentAboveThresholdIsDecisive() {
+        QaAnswerIndex index = index(true);
+        String content = qaContent("HashMap 的原理？", "数组加链表");
+
+        assertThat(index.findByDocuments(List.of(qaDocument(content, 0.97)))).isEqualTo("数组加链表");
+        assertThat(index.findByDocuments(List.of(qaDocument(content, 0.9)))).isNull();
+        assertThat(index.findByDocuments(List.of(Document.builder().text(content).score(0.99).build()))).isNull();
+        assertThat(index.findByDocuments(List.of())).isNull();
+        assertThat(index.similarityHitCount()).isEqualTo(1);
+        assertThat(index.servedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void knowledgeChangeRebuildsTheIndex() throws Exception {
+        QaAnswerIndex index = index(true);
+        index.rebuild();
+        assertThat(index.findByQuestion("HashMap 的原理？")).isNull();
+
+        rows.add(new String[]{"HashMap 的原理？", qaContent("HashMap 的原理？", "数组加链表")});
+        index.onKnowledgeChanged(KnowledgeChangedEvent.added(this, List.of("v1")));
+
+        assertThat(index.findByQuestion("HashMap 的原理？")).isEqualTo("数组加链表");
+    }
+
+    @Test
+    void disabledIndexIsNeverLoaded() throws Exception {
+        QaAnswerIndex index = index(false);
+
+        index.onApplicationReady();
+        index.onKnowledgeChanged(KnowledgeChangedEvent.added(this, List.of("v1")));
+
+        verify(jdbcTemplate, never()).query(anyString(), any(RowCallbackHandler.class));
+        assertThat(index.size()).isZero();
+    }
+
+    private QaAnswerIndex index(boolean enabled) {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (String[] row : rows) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString("question")).thenReturn(row[0]);
+                when(rs.getString("content")).thenReturn(row[1]);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        FaqFastPathProperties properties = new FaqFastPathProperties();
+        properties.setEnabled(enabled);
+        return new QaAnswerIndex(jdbcTemplate, properties);
+    }
+
+    private static String qaContent(String question, String answer) {
+        return "问题: " + question + "\n\n答案: " + answer;
+    }
+
+    private static Document qaDocument(String content, double score) {
+        return Document.builder()
+                .text(content)
+                .metadata(Map.of(QaDocumentSplitter.METADATA_CONTENT_TYPE, QaDocumentSplitter.CONTENT_TYPE_QA_PAIR))
+                .score(score)
+                .build();
+    }
+}
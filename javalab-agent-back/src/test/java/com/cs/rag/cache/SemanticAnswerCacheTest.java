@@ -0,0 +1,101 @@
+package com.cs.rag.cache;
+
+import com.cs.rag.config.AnswerCacheProperties;
+import com.cs.rag.event.KnowledgeChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 语义答案缓存：近似问题命中、按文档集合分桶、按答案单独过期、知识库变更失效
+ */
+class SemanticAnswerCacheTest {
+
+    private static final List<String> DOCS = List.of("d1", "d2");
+
+    private static final float[] QUESTION = {1f, 0f, 0f};
+
+    /** 与 QUESTION 的余弦相似度约 0.995 */
+    private static final float[] NEAR_DUPLICATE = {1f, 0.1f, 0f};
+
+    /** 与 QUESTION 的余弦相似度约 0.707 */
+    private static final float[] DIFFERENT = {1f, 1f, 0f};
+
+    @Test
+    void nearDuplicateQuestionWithSameDocumentsHits() {
+        SemanticAnswerCache cache = cache(Duration.ofMinutes(5), 16);
+        cache.put(QUESTION, DOCS, "答案");
+
+        // 文档顺序不影响分桶
+        assertThat(cache.lookup(NEAR_DUPLICATE, List.of("d2", "d1"))).isEqualTo("答案");
+        assertThat(cache.lookup(DIFFERENT, DOCS)).isNull();
+        assertThat(cache.lookup(QUESTION, List.of("d1"))).isNull();
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.missCount()).isEqualTo(2);
+    }
+
+    @Test
+    void mostSimilarAnswerWins() {
+        SemanticAnswerCache cache = cache(Duration.ofMinutes(5), 16);
+        cache.put(NEAR_DUPLICATE, DOCS, "近似问题的答案");
+        cache.put(QUESTION, DOCS, "原问题的答案");
+
+        assertThat(cache.lookup(QUESTION, DOCS)).isEqualTo("原问题的答案");
+    }
+
+    @Test
+    void emptyAnswerIsNotCached() {
+        SemanticAnswerCache cache = cache(Duration.ofMinutes(5), 16);
+        cache.put(QUESTION, DOCS, "");
+
+        assertThat(cache.lookup(QUESTION, DOCS)).isNull();
+        assertThat(cache.bucketCount()).isZero();
+    }
+
+    @Test
+    void eachAnswerExpiresOnItsOwnWhileTheBucketIsRefreshed() throws InterruptedException {
+        SemanticAnswerCache cache = cache(Duration.ofMillis(400), 16);
+        cache.put(QUESTION, DOCS, "旧答案");
+        Thread.sleep(250);
+        cache.put(DIFFERENT, DOCS, "新答案");
+        Thread.sleep(250);
+
+        // 旧答案已超过有效期；桶随第二次写入刷新，新答案仍可命中
+        assertThat(cache.lookup(QUESTION, DOCS)).isNull();
+        assertThat(cache.lookup(DIFFERENT, DOCS)).isEqualTo("新答案");
+    }
+
+    @Test
+    void oldestAnswerIsEvictedWhenBucketIsFull() {
+        SemanticAnswerCache cache = cache(Duration.ofMinutes(5), 2);
+        cache.put(QUESTION, DOCS, "第一个");
+        cache.put(DIFFERENT, DOCS, "第二个");
+        cache.put(new float[]{0f, 0f, 1f}, DOCS, "第三个");
+
+        assertThat(cache.lookup(QUESTION, DOCS)).isNull();
+        assertThat(cache.lookup(DIFFERENT, DOCS)).isEqualTo("第二个");
+        assertThat(cache.lookup(new float[]{0f, 0f, 1f}, DOCS)).isEqualTo("第三个");
+    }
+
+    @Test
+    void knowledgeChangeInvalidatesEverything() {
+        SemanticAnswerCache cache = cache(Duration.ofMinutes(5), 16);
+        cache.put(QUESTION, DOCS, "答案");
+
+        cache.onKnowledgeChanged(KnowledgeChangedEvent.added(this, List.of("v1")));
+
+        assertThat(cache.lookup(QUESTION, DOCS)).isNull();
+        assertThat(cache.invalidationCount()).isEqualTo(1);
+    }
+
+    private static SemanticAnswerCache cache(Duration ttl, int maxEntriesPerBucket) {
+        AnswerCacheProperties properties = new AnswerCacheProperties();
+        properties.setEnabled(true);
+        properties.setTtl(ttl);
+        properties.setMaxEntriesPerBucket(maxEntriesPerBucket);
+        return new SemanticAnswerCache(properties);
+    }
+}
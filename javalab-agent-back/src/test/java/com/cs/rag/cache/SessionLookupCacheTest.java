@@ -0,0 +1,174 @@
+package com.cs.rag.cache;
+
+import com.cs.rag.config.SessionCacheProperties;
+import com.cs.rag.entity.ChatSession;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 会话本地缓存：命中与加载、摘要更新、失效广播、加载期间失效、有效期
+ */
+class SessionLookupCacheTest {
+
+    private static final String SESSION_ID = "s-1";
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final Function<String, ChatSession> loader = sessionId -> {
+        loads.incrementAndGet();
+        return session(sessionId);
+    };
+
+    @Test
+    void secondLookupIsServedFromCacheAsACopy() {
+        SessionLookupCache cache = cache(Duration.ofMinutes(10));
+
+        ChatSession first = cache.get(SESSION_ID, loader);
+        ChatSession second = cache.get(SESSION_ID, loader);
+        second.setSummary("调用方修改");
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(first.getUserId()).isEqualTo(7L);
+        assertThat(cache.get(SESSION_ID, loader).getSummary()).isNull();
+        assertThat(cache.hitCount()).isEqualTo(2);
+        assertThat(cache.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void missingSessionIsNotCached() {
+        SessionLookupCache cache = cache(Duration.ofMinutes(10));
+        Function<String, ChatSession> missing = sessionId -> {
+            loads.incrementAndGet();
+            return null;
+        };
+
+        assertThat(cache.get(SESSION_ID, missing)).isNull();
+        assertThat(cache.get(SESSION_ID, missing)).isNull();
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void summaryUpdateReplacesTheEntryAndNotifiesOtherInstances() {
+        SessionLookupCache cache = cache(Duration.ofMinutes(10));
+        cache.put(session(SESSION_ID));
+        LocalDateTime summaryUntil = CREATED_AT.plusMinutes(5);
+
+        cache.onSummaryUpdated(SESSION_ID, "新摘要", summaryUntil);
+
+        ChatSession cached = cache.get(SESSION_ID, loader);
+        assertThat(cached.getSummary()).isEqualTo("新摘要");
+        assertThat(cached.getSummaryUntil()).isEqualTo(summaryUntil);
+        assertThat(loads.get()).isZero();
+        verify(redisTemplate).convertAndSend(eq(SessionLookupCache.INVALIDATION_CHANNEL), any(Object.class));
+    }
+
+    @Test
+    void invalidationIsBroadcastAndOnlyForeignMessagesEvict() {
+        SessionLookupCache cache = cache(Duration.ofMinutes(10));
+        cache.put(session(SESSION_ID));
+        cache.invalidate(SESSION_ID);
+        ArgumentCaptor<Object> published = ArgumentCaptor.forClass(Object.class);
+        verify(redisTemplate).convertAndSend(eq(SessionLookupCache.INVALIDATION_CHANNEL), published.capture());
+        assertThat(cache.size()).isZero();
+
+        // 收到自己发布的消息时忽略
+        cache.put(session(SESSION_ID));
+        cache.onRemoteInvalidation((String) published.getValue());
+        assertThat(cache.remoteInvalidationCount()).isZero();
+        assertThat(cache.size()).isEqualTo(1);
+
+        cache.onRemoteInvalidation("other-instance|" + SESSION_ID);
+        assertThat(cache.remoteInvalidationCount()).isEqualTo(1);
+        cache.get(SESSION_ID, loader);
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void loadRacingWithInvalidationIsNotCached() {
+        SessionLookupCache cache = cache(Duration.ofMinutes(10));
+        // 查询数据库期间会话被其他请求删除
+        Function<String, ChatSession> racingLoader = sessionId -> {
+            ChatSession loaded = loader.apply(sessionId);
+            cache.invalidate(sessionId);
+            return loaded;
+        };
+
+        assertThat(cache.get(SESSION_ID, racingLoader)).isNotNull();
+        cache.get(SESSION_ID, loader);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void entryExpiresAfterTtl() throws InterruptedException {
+        SessionLookupCache cache = cache(Duration.ofMillis(100));
+        cache.get(SESSION_ID, loader);
+
+        Thread.sleep(250);
+        cache.get(SESSION_ID, loader);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void publishFailureDoesNotBreakInvalidation() {
+        when(redisTemplate.convertAndSend(anyString(), any(Object.class))).thenThrow(new IllegalStateException("redis down"));
+        SessionLookupCache cache = cache(Duration.ofMinutes(10));
+        cache.put(session(SESSION_ID));
+
+        cache.invalidate(SESSION_ID);
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.invalidationCount()).isEqualTo(1);
+    }
+
+    @Test
+    void disabledCacheAlwaysLoads() {
+        SessionCacheProperties properties = new SessionCacheProperties();
+        properties.setEnabled(false);
+        SessionLookupCache cache = new SessionLookupCache(properties, null);
+
+        cache.put(session(SESSION_ID));
+        cache.get(SESSION_ID, loader);
+        cache.get(SESSION_ID, loader);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    private SessionLookupCache cache(Duration ttl) {
+        SessionCacheProperties properties = new SessionCacheProperties();
+        properties.setEnabled(true);
+        properties.setTtl(ttl);
+        return new SessionLookupCache(properties, redisTemplate);
+    }
+
+    private static ChatSession session(String sessionId) {
+        return ChatSession.builder()
+                .id(sessionId)
+                .userId(7L)
+                .title("HashMap")
+                .createdAt(CREATED_AT)
+                .updatedAt(CREATED_AT)
+                .deleted(0)
+                .build();
+    }
+}
@@ -0,0 +1,312 @@
+package com.cs.rag.ollama;
+
+import com.cs.rag.config.OllamaPoolProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Ollama 实例池路由与熔断测试
+ *
+ * <p>每个实例是一个本地 HttpServer，按 Ollama 协议响应 /api/chat（NDJSON 流）和 /api/embed，
+ * 可切换为始终返回 500，或在收到请求后挂起直到放行。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+class OllamaBackendPoolTest {
+
+    private static final String ANSWER = "t0t1t2";
+
+    private final List<StubOllama> stubs = new ArrayList<>();
+
+    @AfterEach
+    void stopStubs() {
+        stubs.forEach(StubOllama::stop);
+    }
+
+    @Test
+    void routesToBackendWithFewestInFlightRequests() throws Exception {
+        StubOllama a = stub(true);
+        StubOllama b = stub(true);
+        OllamaBackendPool pool = pool(3, Duration.ofSeconds(30), a, b);
+        RoutingChatModel chatModel = new RoutingChatModel(pool, null);
+        RoutingEmbeddingModel embeddingModel = new RoutingEmbeddingModel(pool);
+        CountDownLatch gate = new CountDownLatch(1);
+        a.hold(gate);
+        b.hold(gate);
+
+        List<CompletableFuture<String>> answers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            answers.add(collect(chatModel.stream(new Prompt("hi"))));
+        }
+        await().atMost(5, TimeUnit.SECONDS).until(() -> a.chatRequests.get() + b.chatRequests.get() == 4);
+        assertThat(a.chatRequests.get()).isEqualTo(2);
+        assertThat(b.chatRequests.get()).isEqualTo(2);
+        assertThat(backend(pool, a).inFlight()).isEqualTo(2);
+        assertThat(backend(pool, b).inFlight()).isEqualTo(2);
+
+        gate.countDown();
+        for (CompletableFuture<String> answer : answers) {
+            assertThat(answer.get(5, TimeUnit.SECONDS)).isEqualTo(ANSWER);
+        }
+        assertDrained(pool);
+        assertThat(backend(pool, a).requestCount()).isEqualTo(2);
+        assertThat(backend(pool, b).requestCount()).isEqualTo(2);
+
+        // a 上挂起一个生成时，后续请求都落到空闲的 b，而不是轮流分配
+        CountDownLatch secondGate = new CountDownLatch(1);
+        a.hold(secondGate);
+        CompletableFuture<String> held = collect(chatModel.stream(new Prompt("hi")));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> a.chatRequests.get() == 3);
+        for (int i = 0; i < 3; i++) {
+            assertThat(embeddingModel.embed("q" + i)).containsExactly(0.1f, 0.2f);
+        }
+        assertThat(a.embedRequests.get()).isZero();
+        assertThat(b.embedRequests.get()).isEqualTo(3);
+
+        secondGate.countDown();
+        assertThat(held.get(5, TimeUnit.SECONDS)).isEqualTo(ANSWER);
+        assertDrained(pool);
+    }
+
+    @Test
+    void failsOverToAnotherBackendBeforeFirstChunk() throws Exception {
+        StubOllama failing = stub(false);
+        StubOllama healthy = stub(true);
+        OllamaBackendPool pool = pool(3, Duration.ofSeconds(30), failing, healthy);
+        RoutingChatModel chatModel = new RoutingChatModel(pool, null);
+
+        assertThat(collect(chatModel.stream(new Prompt("hi"))).get(5, TimeUnit.SECONDS)).isEqualTo(ANSWER);
+
+        assertThat(failing.chatRequests.get()).isEqualTo(1);
+        assertThat(healthy.chatRequests.get()).isEqualTo(1);
+        assertThat(backend(pool, failing).failureCount()).isEqualTo(1);
+        assertThat(backend(pool, failing).state(System.nanoTime())).isEqualTo(OllamaBackend.State.CLOSED);
+        assertThat(backend(pool, healthy).chunkCount()).isPositive();
+        assertDrained(pool);
+    }
+
+    @Test
+    void ejectsBackendAfterFailureThresholdAndClosesAfterSuccessfulProbe() {
+        StubOllama failing = stub(false);
+        StubOllama healthy = stub(true);
+        Duration openDuration = Duration.ofMillis(300);
+        OllamaBackendPool pool = pool(2, openDuration, failing, healthy);
+        RoutingEmbeddingModel embeddingModel = new RoutingEmbeddingModel(pool);
+        OllamaBackend ejected = backend(pool, failing);
+
+        // 失败的请求换实例重试，调用方始终拿到结果
+        for (int i = 0; i < 4 && ejected.circuitOpenCount() == 0; i++) {
+            assertThat(embeddingModel.embed("q")).containsExactly(0.1f, 0.2f);
+        }
+        assertThat(ejected.failureCount()).isEqualTo(2);
+        assertThat(ejected.state(System.nanoTime())).isEqualTo(OllamaBackend.State.OPEN);
+
+        // 熔断期间不再分配请求
+        int failingRequests = failing.embedRequests.get();
+        for (int i = 0; i < 5; i++) {
+            embeddingModel.embed("q");
+        }
+        assertThat(failing.embedRequests.get()).isEqualTo(failingRequests);
+
+        // 到期后放行一个探测请求，探测失败重新熔断
+        await().atMost(2, TimeUnit.SECONDS)
+                .until(() -> ejected.state(System.nanoTime()) == OllamaBackend.State.HALF_OPEN);
+        assertThat(embeddingModel.embed("probe")).containsExactly(0.1f, 0.2f);
+        assertThat(failing.embedRequests.get()).isEqualTo(failingRequests + 1);
+        assertThat(ejected.circuitOpenCount()).isEqualTo(2);
+        assertThat(ejected.state(System.nanoTime())).isEqualTo(OllamaBackend.State.OPEN);
+
+        // 实例恢复后探测成功，重新参与路由
+        failing.healthy = true;
+        await().atMost(2, TimeUnit.SECONDS)
+                .until(() -> ejected.state(System.nanoTime()) == OllamaBackend.State.HALF_OPEN);
+        embeddingModel.embed("probe");
+        assertThat(failing.embedRequests.get()).isEqualTo(failingRequests + 2);
+        assertThat(ejected.state(System.nanoTime())).isEqualTo(OllamaBackend.State.CLOSED);
+        assertThat(ejected.failureCount()).isEqualTo(3);
+        assertDrained(pool);
+    }
+
+    @Test
+    void cancelledStreamReleasesBackendWithoutCountingFailure() {
+        StubOllama slow = stub(true);
+        slow.chunks = 50;
+        OllamaBackendPool pool = pool(3, Duration.ofSeconds(30), slow);
+        RoutingChatModel chatModel = new RoutingChatModel(pool, null);
+        OllamaBackend backend = backend(pool, slow);
+
+        Disposable subscription = chatModel.stream(new Prompt("hi")).subscribe();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> backend.chunkCount() > 0);
+        assertThat(backend.inFlight()).isEqualTo(1);
+        subscription.dispose();
+
+        assertDrained(pool);
+        assertThat(backend.requestCount()).isZero();
+        assertThat(backend.failureCount()).isZero();
+    }
+
+    // ==================== 测试工具 ====================
+
+    private StubOllama stub(boolean healthy) {
+        StubOllama stub = new StubOllama(healthy);
+        stubs.add(stub);
+        return stub;
+    }
+
+    private static OllamaBackendPool pool(int failureThreshold, Duration openDuration, StubOllama... stubs) {
+        OllamaPoolProperties properties = new OllamaPoolProperties();
+        properties.setFailureThreshold(failureThreshold);
+        properties.setOpenDuration(openDuration);
+        List<OllamaBackend> backends = new ArrayList<>();
+        for (StubOllama stub : stubs) {
+            OllamaApi ollamaApi = new OllamaApi(stub.baseUrl());
+            OllamaOptions options = OllamaOptions.builder().model("m").build();
+            backends.add(new OllamaBackend(stub.baseUrl(),
+                    OllamaChatModel.builder().ollamaApi(ollamaApi).defaultOptions(options).build(),
+                    OllamaEmbeddingModel.builder().ollamaApi(ollamaApi).defaultOptions(options).build()));
+        }
+        return new OllamaBackendPool("test", backends, properties);
+    }
+
+    private static OllamaBackend backend(OllamaBackendPool pool, StubOllama stub) {
+        return pool.getBackends().stream()
+                .filter(backend -> backend.getBaseUrl().equals(stub.baseUrl()))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static CompletableFuture<String> collect(Flux<ChatResponse> stream) {
+        return stream.map(response -> response.getResult().getOutput().getContent())
+                .reduce("", String::concat)
+                .toFuture();
+    }
+
+    private static void assertDrained(OllamaBackendPool pool) {
+        await().atMost(5, TimeUnit.SECONDS)
+                .until(() -> pool.getBackends().stream().allMatch(backend -> backend.inFlight() == 0));
+    }
+
+    /**
+     * 本地 Ollama 桩服务
+     */
+    private static final class StubOllama {
+
+        private final HttpServer server;
+
+        private final AtomicInteger chatRequests = new AtomicInteger();
+
+        private final AtomicInteger embedRequests = new AtomicInteger();
+
+        /** false 时所有请求返回 500 */
+        private volatile boolean healthy;
+
+        /** 非空时对话请求挂起到放行后再输出 */
+        private volatile CountDownLatch gate;
+
+        /** 对话输出的片段数（前三个为 t0 t1 t2，之后为空片段） */
+        private volatile int chunks = 3;
+
+        StubOllama(boolean healthy) {
+            this.healthy = healthy;
+            try {
+                server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/api/chat", this::chat);
+            server.createContext("/api/embed", this::embed);
+            server.start();
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        void hold(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        private void chat(HttpExchange exchange) throws IOException {
+            exchange.getRequestBody().readAllBytes();
+            chatRequests.incrementAndGet();
+            if (!healthy) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            CountDownLatch held = gate;
+            try {
+                if (held != null) {
+                    held.await(10, TimeUnit.SECONDS);
+                }
+                exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream body = exchange.getResponseBody();
+                for (int i = 0; i < chunks; i++) {
+                    body.write(chunk(i < 3 ? "t" + i : "", false));
+                    body.flush();
+                    Thread.sleep(20);
+                }
+                body.write(chunk("", true));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // 客户端取消
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void embed(HttpExchange exchange) throws IOException {
+            exchange.getRequestBody().readAllBytes();
+            embedRequests.incrementAndGet();
+            if (!healthy) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = "{\"model\":\"m\",\"embeddings\":[[0.1,0.2]]}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        }
+
+        private static byte[] chunk(String content, boolean done) {
+            return ("{\"model\":\"m\",\"created_at\":\"2024-01-01T00:00:00Z\",\"message\":{\"role\":\"assistant\",\"content\":\""
+                    + content + "\"},\"done\":" + done + "}\n").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
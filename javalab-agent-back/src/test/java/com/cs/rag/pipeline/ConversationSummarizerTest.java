@@ -0,0 +1,220 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.config.ConversationSummaryProperties;
+import com.cs.rag.config.GenerationLimiterProperties;
+import com.cs.rag.config.PromptBudgetProperties;
+import com.cs.rag.entity.ChatMessage;
+import com.cs.rag.entity.ChatSession;
+import com.cs.rag.service.ChatMessageService;
+import com.cs.rag.service.ChatSessionService;
+import com.cs.rag.service.PromptService;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 滚动会话摘要：积压超出最近消息窗口的轮次不丢失，失败或分批合并时 summary_until 只推进到已合并的消息
+ */
+class ConversationSummarizerTest {
+
+    private static final String SESSION_ID = "s-1";
+
+    private static final Long USER_ID = 7L;
+
+    private static final LocalDateTime SUMMARY_UNTIL = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    /** summary_until 之后的问答轮数，远超最近消息窗口 */
+    private static final int TURNS = 15;
+
+    private final ConversationSummaryProperties properties = new ConversationSummaryProperties();
+
+    private final ChatModel chatModel = mock(ChatModel.class);
+
+    private final ChatSessionService chatSessionService = mock(ChatSessionService.class);
+
+    private final ChatMessageService chatMessageService = mock(ChatMessageService.class);
+
+    private final PromptService promptService = mock(PromptService.class);
+
+    /** 会话消息（时间正序） */
+    private final List<ChatMessage> messages = new ArrayList<>();
+
+    /** 每次合并交给LLM的对话原文 */
+    private final List<String> conversations = new ArrayList<>();
+
+    private ChatSession session = ChatSession.builder()
+            .id(SESSION_ID).userId(USER_ID).summary("旧摘要").summaryUntil(SUMMARY_UNTIL).build();
+
+    @Test
+    void backlogBeyondTheRecentWindowIsFoldedFromSummaryUntil() {
+        ConversationSummarizer summarizer = summarizer(100_000);
+
+        summarizer.onAssistantReply(SESSION_ID, USER_ID);
+
+        // 除最近两轮外全部合并，最早一轮也在其中
+        assertThat(conversations).hasSize(1);
+        assertThat(questionsIn(conversations.get(0))).containsExactlyElementsOf(questions(0, TURNS - 2));
+        assertThat(session.getSummaryUntil()).isEqualTo(answerTime(TURNS - 3));
+        assertThat(summarizer.updateCount()).isEqualTo(1);
+    }
+
+    @Test
+    void tokenCapFoldsTheBacklogInOrderAcrossUpdates() {
+        // 每轮约十几个 Token，每次只能合并两三轮
+        ConversationSummarizer summarizer = summarizer(40);
+
+        for (int i = 0; i < TURNS; i++) {
+            summarizer.onAssistantReply(SESSION_ID, USER_ID);
+        }
+
+        assertThat(conversations.size()).isGreaterThan(1);
+        List<String> folded = new ArrayList<>();
+        conversations.forEach(conversation -> folded.addAll(questionsIn(conversation)));
+        assertThat(folded).containsExactlyElementsOf(questions(0, TURNS - 2));
+        assertThat(session.getSummaryUntil()).isEqualTo(answerTime(TURNS - 3));
+    }
+
+    @Test
+    void failedUpdateDoesNotAdvanceSummaryUntil() {
+        ConversationSummarizer summarizer = summarizer(100_000);
+        AtomicInteger calls = new AtomicInteger();
+        when(chatModel.call(any(Prompt.class))).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("ollama down");
+            }
+            return new ChatResponse(List.of(new Generation(new AssistantMessage("新摘要"))));
+        });
+
+        summarizer.onAssistantReply(SESSION_ID, USER_ID);
+        assertThat(summarizer.failureCount()).isEqualTo(1);
+        assertThat(session.getSummaryUntil()).isEqualTo(SUMMARY_UNTIL);
+
+        summarizer.onAssistantReply(SESSION_ID, USER_ID);
+        assertThat(questionsIn(conversations.get(conversations.size() - 1)))
+                .containsExactlyElementsOf(questions(0, TURNS - 2));
+        assertThat(session.getSummaryUntil()).isEqualTo(answerTime(TURNS - 3));
+    }
+
+    @Test
+    void nothingIsFoldedWhileOnlyRecentTurnsRemain() {
+        ConversationSummarizer summarizer = summarizer(100_000);
+        // summary_until 之后只剩最近两轮
+        messages.subList(0, messages.size() - 4).clear();
+
+        summarizer.onAssistantReply(SESSION_ID, USER_ID);
+
+        assertThat(conversations).isEmpty();
+        assertThat(session.getSummaryUntil()).isEqualTo(SUMMARY_UNTIL);
+    }
+
+    private ConversationSummarizer summarizer(int maxFoldTokens) {
+        for (int i = 0; i < TURNS; i++) {
+            messages.add(message(2L * i, ChatMessage.ROLE_USER, "问题" + i + " 请解释一下这个知识点", questionTime(i)));
+            messages.add(message(2L * i + 1, ChatMessage.ROLE_ASSISTANT, "回答" + i + " 这是一个简短的回答", answerTime(i)));
+        }
+        properties.setEnabled(true);
+        properties.setRecentTurns(2);
+        properties.setMaxFoldTokens(maxFoldTokens);
+
+        when(chatSessionService.getById(SESSION_ID)).thenAnswer(invocation -> session);
+        when(chatSessionService.updateSummary(eq(SESSION_ID), anyString(), any())).thenAnswer(invocation -> {
+            session = ChatSession.builder().id(SESSION_ID).userId(USER_ID)
+                    .summary(invocation.getArgument(1)).summaryUntil(invocation.getArgument(2)).build();
+            return true;
+        });
+        when(chatMessageService.getRecentMessages(eq(SESSION_ID), eq(USER_ID), anyInt())).thenAnswer(invocation -> {
+            int limit = invocation.getArgument(2);
+            return messages.stream()
+                    .sorted(Comparator.comparing(ChatMessage::getCreatedAt).reversed())
+                    .limit(limit)
+                    .toList();
+        });
+        when(chatMessageService.getMessagesBetween(eq(SESSION_ID), eq(USER_ID), any(), any(), anyInt()))
+                .thenAnswer(invocation -> {
+                    LocalDateTime after = invocation.getArgument(2);
+                    LocalDateTime before = invocation.getArgument(3);
+                    int limit = invocation.getArgument(4);
+                    return messages.stream()
+                            .filter(message -> after == null || message.getCreatedAt().isAfter(after))
+                            .filter(message -> before == null || message.getCreatedAt().isBefore(before))
+                            .limit(limit)
+                            .toList();
+                });
+        when(promptService.getConversationSummaryPrompt(anyMap())).thenAnswer(invocation -> {
+            Map<String, ?> variables = invocation.getArgument(0);
+            conversations.add((String) variables.get("conversation"));
+            return "合并摘要";
+        });
+        when(chatModel.call(any(Prompt.class)))
+                .thenReturn(new ChatResponse(List.of(new Generation(new AssistantMessage("新摘要")))));
+
+        GenerationLimiterProperties limiterProperties = new GenerationLimiterProperties();
+        limiterProperties.setEnabled(false);
+        ConversationSummarizer summarizer = new ConversationSummarizer(properties, chatModel);
+        ReflectionTestUtils.setField(summarizer, "chatSessionService", chatSessionService);
+        ReflectionTestUtils.setField(summarizer, "chatMessageService", chatMessageService);
+        ReflectionTestUtils.setField(summarizer, "promptService", promptService);
+        ReflectionTestUtils.setField(summarizer, "tokenCounter", new TokenCounter(new PromptBudgetProperties()));
+        ReflectionTestUtils.setField(summarizer, "conversationSummaryScheduler", Schedulers.immediate());
+        ReflectionTestUtils.setField(summarizer, "generationLimiter", new GenerationLimiter(limiterProperties));
+        return summarizer;
+    }
+
+    private static ChatMessage message(Long id, String role, String content, LocalDateTime createdAt) {
+        return ChatMessage.builder()
+                .id(id)
+                .sessionId(SESSION_ID)
+                .userId(USER_ID)
+                .role(role)
+                .content(content)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    private static LocalDateTime questionTime(int turn) {
+        return SUMMARY_UNTIL.plusMinutes(2L * turn + 1);
+    }
+
+    private static LocalDateTime answerTime(int turn) {
+        return SUMMARY_UNTIL.plusMinutes(2L * turn + 2);
+    }
+
+    private static List<String> questions(int from, int to) {
+        List<String> questions = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            questions.add("问题" + i);
+        }
+        return questions;
+    }
+
+    private static List<String> questionsIn(String conversation) {
+        List<String> questions = new ArrayList<>();
+        for (String line : conversation.split("\n")) {
+            if (line.startsWith("用户: ")) {
+                questions.add(line.substring("用户: ".length()).split(" ")[0]);
+            }
+        }
+        return questions;
+    }
+}
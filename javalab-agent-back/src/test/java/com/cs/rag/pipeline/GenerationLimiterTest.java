@@ -0,0 +1,158 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.common.ErrorCode;
+import com.cs.rag.config.GenerationLimiterProperties;
+import com.cs.rag.constant.RagConstant;
+import com.cs.rag.exception.BusinessException;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * LLM生成并发限制：按用户轮转出队、队列已满拒绝、取消与出错时归还名额
+ */
+class GenerationLimiterTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    /** 各请求开始生成的顺序 */
+    private final List<String> started = new CopyOnWriteArrayList<>();
+
+    @Test
+    void queuedRequestsAreGrantedRoundRobinAcrossUsers() {
+        GenerationLimiter limiter = limiter(1, 10);
+        Sinks.Many<String> holder = Sinks.many().unicast().onBackpressureBuffer();
+        limiter.guard(1L, "a-0", () -> holder.asFlux()).subscribe();
+
+        // 用户1连续提问三次，之后用户2、用户3各提问一次
+        limiter.guard(1L, "a-1", () -> immediate("a-1")).subscribe();
+        limiter.guard(1L, "a-2", () -> immediate("a-2")).subscribe();
+        limiter.guard(1L, "a-3", () -> immediate("a-3")).subscribe();
+        List<String> userTwoFrames = new CopyOnWriteArrayList<>();
+        limiter.guard(2L, "b-1", () -> immediate("b-1")).subscribe(userTwoFrames::add);
+        List<String> userThreeFrames = new CopyOnWriteArrayList<>();
+        limiter.guard(3L, "c-1", () -> immediate("c-1")).subscribe(userThreeFrames::add);
+        assertThat(limiter.queueDepth()).isEqualTo(5);
+
+        // 后提问的用户只排在用户1的第一个请求之后
+        await().atMost(TIMEOUT).until(() -> !userTwoFrames.isEmpty() && !userThreeFrames.isEmpty());
+        assertThat(userTwoFrames.get(0)).isEqualTo(queueFrame(2));
+        assertThat(userThreeFrames.get(0)).isEqualTo(queueFrame(3));
+
+        holder.tryEmitComplete();
+
+        await().atMost(TIMEOUT).until(() -> started.size() == 5);
+        assertThat(started).containsExactly("a-1", "b-1", "c-1", "a-2", "a-3");
+        assertThat(limiter.queueDepth()).isZero();
+        await().atMost(TIMEOUT).until(() -> limiter.inFlight() == 0);
+        assertThat(limiter.admittedCount()).isEqualTo(6);
+    }
+
+    @Test
+    void requestIsRejectedWhenQueueIsFull() {
+        GenerationLimiter limiter = limiter(1, 2);
+        limiter.guard(1L, "a-0", Flux::never).subscribe();
+        limiter.guard(2L, "b-0", Flux::never).subscribe();
+        limiter.guard(3L, "c-0", Flux::never).subscribe();
+
+        List<String> frames = limiter.guard(4L, "d-0", () -> immediate("d-0"))
+                .collectList()
+                .block(TIMEOUT);
+
+        assertThat(frames).containsExactly(RagConstant.ERROR_PREFIX + ErrorCode.TOO_MANY_REQUESTS.getMessage());
+        assertThat(started).isEmpty();
+        assertThatThrownBy(limiter::checkAdmission).isInstanceOf(BusinessException.class);
+        assertThat(limiter.rejectedCount()).isEqualTo(2);
+        assertThat(limiter.queueDepth()).isEqualTo(2);
+    }
+
+    @Test
+    void cancelledGenerationReleasesItsSlot() {
+        GenerationLimiter limiter = limiter(1, 10);
+        Disposable running = limiter.guard(1L, "a-0", Flux::never).subscribe();
+        limiter.guard(2L, "b-0", () -> immediate("b-0")).subscribe();
+        assertThat(limiter.inFlight()).isEqualTo(1);
+        assertThat(limiter.queueDepth()).isEqualTo(1);
+
+        running.dispose();
+
+        await().atMost(TIMEOUT).until(() -> started.contains("b-0"));
+        await().atMost(TIMEOUT).until(() -> limiter.inFlight() == 0);
+        assertThat(limiter.queueDepth()).isZero();
+    }
+
+    @Test
+    void cancelWhileQueuedLeavesTheQueueWithoutTakingASlot() {
+        GenerationLimiter limiter = limiter(1, 10);
+        Disposable running = limiter.guard(1L, "a-0", Flux::never).subscribe();
+        Disposable waiting = limiter.guard(2L, "b-0", () -> immediate("b-0")).subscribe();
+
+        waiting.dispose();
+
+        assertThat(limiter.queueDepth()).isZero();
+        assertThat(limiter.abandonedCount()).isEqualTo(1);
+        running.dispose();
+        assertThat(limiter.inFlight()).isZero();
+        assertThat(started).isEmpty();
+    }
+
+    @Test
+    void failedGenerationReleasesItsSlot() {
+        GenerationLimiter limiter = limiter(1, 10);
+        Sinks.Many<String> holder = Sinks.many().unicast().onBackpressureBuffer();
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        limiter.guard(1L, "a-0", () -> holder.asFlux()).subscribe(frame -> { }, errors::add);
+        limiter.guard(2L, "b-0", () -> immediate("b-0")).subscribe();
+
+        holder.tryEmitError(new IllegalStateException("ollama down"));
+
+        assertThat(errors).hasSize(1);
+        await().atMost(TIMEOUT).until(() -> started.contains("b-0"));
+        await().atMost(TIMEOUT).until(() -> limiter.inFlight() == 0);
+    }
+
+    @Test
+    void blockingCallSharesSlotsWithStreamingGenerations() {
+        GenerationLimiter limiter = limiter(1, 10);
+        Disposable running = limiter.guard(1L, "a-0", Flux::never).subscribe();
+
+        Thread summarizer = new Thread(() -> limiter.call(2L, () -> started.add("summary")));
+        summarizer.start();
+        await().atMost(TIMEOUT).until(() -> limiter.queueDepth() == 1);
+        assertThat(started).isEmpty();
+
+        running.dispose();
+
+        await().atMost(TIMEOUT).until(() -> started.contains("summary"));
+        await().atMost(TIMEOUT).until(() -> limiter.inFlight() == 0);
+    }
+
+    private Flux<String> immediate(String label) {
+        return Flux.defer(() -> {
+            started.add(label);
+            return Flux.just(label);
+        });
+    }
+
+    private static String queueFrame(int position) {
+        return RagConstant.QUEUE_POSITION_PREFIX + position + RagConstant.QUEUE_POSITION_SUFFIX;
+    }
+
+    private static GenerationLimiter limiter(int maxConcurrent, int maxQueueSize) {
+        GenerationLimiterProperties properties = new GenerationLimiterProperties();
+        properties.setEnabled(true);
+        properties.setMaxConcurrent(maxConcurrent);
+        properties.setMaxQueueSize(maxQueueSize);
+        properties.setPositionInterval(Duration.ofMillis(20));
+        return new GenerationLimiter(properties);
+    }
+}
@@ -0,0 +1,64 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.config.LatencyBudgetProperties;
+import com.cs.rag.constant.RagConstant;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 首片段预算：超时与客户端断开分别通知
+ */
+class LatencyBudgetTest {
+
+    private final AtomicInteger timeouts = new AtomicInteger();
+
+    private final AtomicInteger upstreamCancellations = new AtomicInteger();
+
+    @Test
+    void firstTokenTimeoutReturnsHintAndNotifiesTimeout() {
+        LatencyBudget budget = budget(Duration.ofMillis(50));
+
+        List<String> frames = budget.guardFirstToken(
+                        Flux.<String>never().doOnCancel(upstreamCancellations::incrementAndGet),
+                        "s-1", timeouts::incrementAndGet)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(frames).containsExactly(RagConstant.FIRST_TOKEN_TIMEOUT_MESSAGE);
+        assertThat(timeouts.get()).isEqualTo(1);
+        assertThat(upstreamCancellations.get()).isEqualTo(1);
+        assertThat(budget.degradationCount(LatencyBudget.STAGE_FIRST_TOKEN)).isEqualTo(1);
+    }
+
+    @Test
+    void clientCancelIsNotReportedAsTimeout() {
+        LatencyBudget budget = budget(Duration.ofSeconds(30));
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+
+        Disposable subscription = budget.guardFirstToken(
+                        upstream.asFlux().doOnCancel(upstreamCancellations::incrementAndGet),
+                        "s-1", timeouts::incrementAndGet)
+                .subscribe();
+        upstream.tryEmitNext("Hash");
+        subscription.dispose();
+
+        assertThat(upstreamCancellations.get()).isEqualTo(1);
+        assertThat(timeouts.get()).isZero();
+        assertThat(budget.degradationCount(LatencyBudget.STAGE_FIRST_TOKEN)).isZero();
+    }
+
+    private static LatencyBudget budget(Duration firstToken) {
+        LatencyBudgetProperties properties = new LatencyBudgetProperties();
+        properties.setEnabled(true);
+        properties.setFirstToken(firstToken);
+        return new LatencyBudget(properties);
+    }
+}
@@ -0,0 +1,192 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.cache.SessionListCache;
+import com.cs.rag.config.MessageWriteBehindProperties;
+import com.cs.rag.entity.ChatMessage;
+import com.cs.rag.mapper.ChatMessageMapper;
+import com.cs.rag.mapper.ChatSessionMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 消息异步批量写入：批量合并、写入失败重试、关闭时写完队列
+ */
+class MessageWriteBehindTest {
+
+    private static final Long USER_ID = 7L;
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final ChatMessageMapper messageMapper = mock(ChatMessageMapper.class);
+
+    private final ChatSessionMapper sessionMapper = mock(ChatSessionMapper.class);
+
+    /** 已写入数据库的消息ID */
+    private final Set<Long> persisted = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger batchInserts = new AtomicInteger();
+
+    private MessageWriteBehind writeBehind;
+
+    @AfterEach
+    void tearDown() {
+        if (writeBehind != null) {
+            writeBehind.stop();
+        }
+    }
+
+    @Test
+    void asyncMessagesAreWrittenInBatchesWithOneSessionUpdatePerBatch() {
+        batchInsertSucceeds();
+        writeBehind = start(asyncProperties());
+
+        for (int i = 0; i < 40; i++) {
+            writeBehind.save(message("s-" + (i % 2), i));
+        }
+
+        await().atMost(TIMEOUT).until(() -> persisted.size() == 40);
+        assertThat(batchInserts.get()).isLessThan(40);
+        assertThat(writeBehind.batchCount()).isEqualTo(batchInserts.get());
+        // 每批同一会话只更新一次
+        assertThat(writeBehind.sessionTouchCount()).isLessThanOrEqualTo(2L * batchInserts.get());
+        assertThat(writeBehind.flushedCount()).isEqualTo(40);
+        assertThat(writeBehind.unflushed("s-0", USER_ID)).isEmpty();
+    }
+
+    @Test
+    void failedMessagesAreRequeuedUntilTheDatabaseRecovers() {
+        when(messageMapper.insertBatch(anyList())).thenThrow(new IllegalStateException("db down"));
+        // 每条消息前两次写入失败，第三次成功
+        Map<Long, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        when(messageMapper.insert(any(ChatMessage.class))).thenAnswer(invocation -> {
+            ChatMessage message = invocation.getArgument(0);
+            if (attempts.computeIfAbsent(message.getId(), id -> new AtomicInteger()).incrementAndGet() < 3) {
+                throw new IllegalStateException("db down");
+            }
+            persisted.add(message.getId());
+            return 1;
+        });
+        writeBehind = start(asyncProperties());
+
+        ChatMessage message = message("s-1", 0);
+        writeBehind.save(message);
+        // 重试期间仍可读到
+        assertThat(writeBehind.unflushed("s-1", USER_ID)).extracting(ChatMessage::getId).contains(message.getId());
+
+        await().atMost(TIMEOUT).until(() -> persisted.contains(message.getId()));
+        assertThat(writeBehind.retryCount()).isEqualTo(2);
+        assertThat(writeBehind.failureCount()).isZero();
+        await().atMost(TIMEOUT).until(() -> writeBehind.unflushed("s-1", USER_ID).isEmpty());
+    }
+
+    @Test
+    void messageIsReportedAsFailedAfterMaxRetries() {
+        when(messageMapper.insertBatch(anyList())).thenThrow(new IllegalStateException("db down"));
+        when(messageMapper.insert(any(ChatMessage.class))).thenThrow(new IllegalStateException("db down"));
+        writeBehind = start(asyncProperties());
+
+        writeBehind.save(message("s-1", 0));
+
+        await().atMost(TIMEOUT).until(() -> writeBehind.failureCount() == 1);
+        assertThat(writeBehind.retryCount()).isEqualTo(2);
+        assertThat(writeBehind.unflushed("s-1", USER_ID)).isEmpty();
+    }
+
+    @Test
+    void flushBeforeAckSurfacesTheErrorToTheCaller() {
+        when(messageMapper.insertBatch(anyList())).thenThrow(new IllegalStateException("db down"));
+        when(messageMapper.insert(any(ChatMessage.class))).thenThrow(new IllegalStateException("db down"));
+        MessageWriteBehindProperties properties = asyncProperties();
+        properties.setDurability(MessageWriteBehindProperties.Durability.FLUSH_BEFORE_ACK);
+        writeBehind = start(properties);
+
+        assertThatThrownBy(() -> writeBehind.save(message("s-1", 0))).hasMessage("db down");
+        assertThat(writeBehind.retryCount()).isZero();
+        assertThat(writeBehind.failureCount()).isEqualTo(1);
+    }
+
+    @Test
+    void stopWritesEverythingStillQueued() {
+        // 每批写入较慢，关闭时队列中仍有多批消息
+        when(messageMapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(100);
+            List<ChatMessage> messages = invocation.getArgument(0);
+            messages.forEach(message -> persisted.add(message.getId()));
+            batchInserts.incrementAndGet();
+            return messages.size();
+        });
+        sessionTimesSucceed();
+        MessageWriteBehindProperties properties = asyncProperties();
+        properties.setBatchSize(5);
+        properties.setAckTimeout(Duration.ofMillis(50));
+        writeBehind = start(properties);
+
+        for (int i = 0; i < 60; i++) {
+            writeBehind.save(message("s-1", i));
+        }
+        writeBehind.stop();
+
+        assertThat(persisted).hasSize(60);
+        assertThat(writeBehind.queueDepth()).isZero();
+        assertThat(writeBehind.unflushed("s-1", USER_ID)).isEmpty();
+    }
+
+    private MessageWriteBehind start(MessageWriteBehindProperties properties) {
+        MessageWriteBehind created = new MessageWriteBehind(properties, messageMapper, sessionMapper,
+                mock(SessionListCache.class), new SimpleMeterRegistry());
+        created.start();
+        return created;
+    }
+
+    private void batchInsertSucceeds() {
+        when(messageMapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            List<ChatMessage> messages = invocation.getArgument(0);
+            messages.forEach(message -> persisted.add(message.getId()));
+            batchInserts.incrementAndGet();
+            return messages.size();
+        });
+        sessionTimesSucceed();
+    }
+
+    private void sessionTimesSucceed() {
+        when(sessionMapper.updateSessionTimes(anyMap())).thenReturn(List.of());
+    }
+
+    private static MessageWriteBehindProperties asyncProperties() {
+        MessageWriteBehindProperties properties = new MessageWriteBehindProperties();
+        properties.setEnabled(true);
+        properties.setDurability(MessageWriteBehindProperties.Durability.ASYNC);
+        properties.setFlushInterval(Duration.ofMillis(50));
+        properties.setMaxRetries(2);
+        properties.setRetryBackoff(Duration.ofMillis(20));
+        return properties;
+    }
+
+    private static ChatMessage message(String sessionId, int index) {
+        return ChatMessage.builder()
+                .sessionId(sessionId)
+                .userId(USER_ID)
+                .role("user")
+                .content("消息" + index)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,167 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.config.CoalescingProperties;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * 生成合并：订阅者加入、离开，以及发起者断开后才加入的请求
+ */
+class RequestCoalescerTest {
+
+    private static final String KEY = RequestCoalescer.generationKey("hashmap 原理", List.of("d1", "d2"));
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Test
+    void concurrentRequestsShareOneUpstream() {
+        RequestCoalescer coalescer = coalescer();
+        Upstream upstream = new Upstream();
+
+        RequestCoalescer.SharedGeneration first = coalescer.generation(KEY, upstream);
+        List<String> firstFrames = new CopyOnWriteArrayList<>();
+        first.frames().subscribe(firstFrames::add);
+        upstream.emit("Hash");
+
+        RequestCoalescer.SharedGeneration second = coalescer.generation(KEY, upstream);
+        List<String> secondFrames = new CopyOnWriteArrayList<>();
+        AtomicReference<Boolean> secondCompleted = new AtomicReference<>(false);
+        second.frames().subscribe(secondFrames::add, error -> { }, () -> secondCompleted.set(true));
+        upstream.emit("Map");
+        upstream.complete();
+
+        assertThat(second).isSameAs(first);
+        assertThat(upstream.subscriptions.get()).isEqualTo(1);
+        // 后加入的请求先收到已生成的片段
+        assertThat(firstFrames).containsExactly("Hash", "Map");
+        assertThat(secondFrames).containsExactly("Hash", "Map");
+        assertThat(secondCompleted.get()).isTrue();
+        assertThat(first.text()).isEqualTo("HashMap");
+        assertThat(coalescer.generationCoalescedCount()).isEqualTo(1);
+
+        // 上游结束后移出合并表，之后的相同问题重新生成
+        coalescer.generation(KEY, upstream).frames().subscribe();
+        assertThat(upstream.subscriptions.get()).isEqualTo(2);
+    }
+
+    @Test
+    void upstreamIsCancelledOnlyWhenLastSubscriberLeaves() {
+        RequestCoalescer coalescer = coalescer();
+        Upstream upstream = new Upstream();
+
+        Disposable first = coalescer.generation(KEY, upstream).frames().subscribe();
+        Disposable second = coalescer.generation(KEY, upstream).frames().subscribe();
+        first.dispose();
+        assertThat(upstream.cancellations.get()).isZero();
+
+        second.dispose();
+        assertThat(upstream.cancellations.get()).isEqualTo(1);
+    }
+
+    @Test
+    void lateJoinerIsNotCancelledWhenLeaderLeavesFirst() {
+        RequestCoalescer coalescer = coalescer();
+        Upstream upstream = new Upstream();
+
+        RequestCoalescer.SharedGeneration leader = coalescer.generation(KEY, upstream);
+        Disposable leaderSubscription = leader.frames().subscribe();
+        upstream.emit("Hash");
+        // 跟随者已取得共享生成，尚未订阅时发起者断开
+        RequestCoalescer.SharedGeneration follower = coalescer.generation(KEY, upstream);
+        leaderSubscription.dispose();
+
+        List<String> frames = new CopyOnWriteArrayList<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        follower.frames().subscribe(frames::add, error::set);
+        upstream.emit("Map");
+        upstream.complete();
+
+        assertThat(follower).isSameAs(leader);
+        assertThat(error.get()).isNull();
+        assertThat(upstream.cancellations.get()).isZero();
+        assertThat(frames).containsExactly("Hash", "Map");
+    }
+
+    @Test
+    void requestAfterAllSubscribersLeftStartsFreshGeneration() {
+        RequestCoalescer coalescer = coalescer();
+        Upstream upstream = new Upstream();
+
+        RequestCoalescer.SharedGeneration cancelled = coalescer.generation(KEY, upstream);
+        cancelled.frames().subscribe().dispose();
+        assertThat(upstream.cancellations.get()).isEqualTo(1);
+
+        RequestCoalescer.SharedGeneration fresh = coalescer.generation(KEY, upstream);
+        List<String> frames = new CopyOnWriteArrayList<>();
+        fresh.frames().subscribe(frames::add);
+        upstream.emit("new");
+
+        assertThat(fresh).isNotSameAs(cancelled);
+        assertThat(cancelled.subscriberCount()).isZero();
+        assertThat(upstream.subscriptions.get()).isEqualTo(2);
+        await().atMost(TIMEOUT).until(() -> frames.contains("new"));
+    }
+
+    @Test
+    void disabledCoalescingGivesEachRequestItsOwnGeneration() {
+        CoalescingProperties properties = new CoalescingProperties();
+        properties.setEnabled(false);
+        RequestCoalescer coalescer = new RequestCoalescer(properties);
+        Upstream upstream = new Upstream();
+
+        RequestCoalescer.SharedGeneration first = coalescer.generation(KEY, upstream);
+        RequestCoalescer.SharedGeneration second = coalescer.generation(KEY, upstream);
+        first.frames().subscribe();
+        second.frames().subscribe();
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(upstream.subscriptions.get()).isEqualTo(2);
+    }
+
+    private static RequestCoalescer coalescer() {
+        CoalescingProperties properties = new CoalescingProperties();
+        properties.setEnabled(true);
+        return new RequestCoalescer(properties);
+    }
+
+    /**
+     * 可手动推送片段的上游生成，记录订阅与取消次数；每次订阅使用新的 Sink
+     */
+    private static final class Upstream implements Function<StringBuffer, Flux<String>> {
+        private final AtomicInteger subscriptions = new AtomicInteger();
+        private final AtomicInteger cancellations = new AtomicInteger();
+        private volatile Sinks.Many<String> sink;
+        private volatile StringBuffer text;
+
+        @Override
+        public Flux<String> apply(StringBuffer text) {
+            return Flux.defer(() -> {
+                subscriptions.incrementAndGet();
+                this.text = text;
+                sink = Sinks.many().unicast().onBackpressureBuffer();
+                return sink.asFlux();
+            }).doOnCancel(cancellations::incrementAndGet);
+        }
+
+        void emit(String chunk) {
+            text.append(chunk);
+            sink.tryEmitNext(chunk);
+        }
+
+        void complete() {
+            sink.tryEmitComplete();
+        }
+    }
+}
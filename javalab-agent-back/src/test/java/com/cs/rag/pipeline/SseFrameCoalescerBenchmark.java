@@ -0,0 +1,198 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.config.SseCoalescingProperties;
+import org.apache.catalina.Context;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.startup.Tomcat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * SSE写出合并基准：每个流的CPU耗时、Token吞吐量、写出次数
+ *
+ * <p>在嵌入式 Tomcat + Spring MVC 上运行同一批流，客户端通过本地 HTTP 连接读取完整响应体：</p>
+ * <ul>
+ *   <li>native：控制器直接返回 Flux&lt;ServerSentEvent&gt;，由 Spring MVC 逐事件写出（未接入本组件时的行为）</li>
+ *   <li>off / on：经 {@link SseFrameCoalescer} 写出，分别关闭和开启合并</li>
+ * </ul>
+ *
+ * <p>断言三种方式的响应体逐字节一致。默认不执行，通过系统属性开启：</p>
+ * <pre>
+ * mvn -o test -Dtest=SseFrameCoalescerBenchmark -Dbench=sse -Dbench.streams=300 -Dbench.tokens=400 -Dbench.gaps=5,20
+ * </pre>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+class SseFrameCoalescerBenchmark {
+
+    /** 片段取自典型回答，包含换行、代码块和以 "[" 开头的片段 */
+    private static final String[] TOKENS = {"Java", " 的", " Hash", "Map", " 在", " JDK", "8", " 中", "使用",
+            "数组", "+", "链表", "/", "红黑树", "。", "\n", "\n\n", "```", "java", " ", "[", "docs", "]"};
+
+    private static final com.sun.management.OperatingSystemMXBean OS =
+            (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+    private static final SseFrameCoalescer ENABLED = coalescer(true);
+
+    private static final SseFrameCoalescer DISABLED = coalescer(false);
+
+    @Test
+    @EnabledIfSystemProperty(named = "bench", matches = "sse")
+    void coalescing() throws Exception {
+        int streams = Integer.getInteger("bench.streams", 300);
+        int tokens = Integer.getInteger("bench.tokens", 400);
+
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("sse-bench").toString());
+        tomcat.setPort(0);
+        AnnotationConfigWebApplicationContext web = new AnnotationConfigWebApplicationContext();
+        web.register(BenchConfig.class);
+        Context context = tomcat.addContext("", null);
+        Wrapper servlet = Tomcat.addServlet(context, "dispatcher", new DispatcherServlet(web));
+        servlet.setAsyncSupported(true);
+        servlet.setLoadOnStartup(1);
+        context.addServletMappingDecoded("/", "dispatcher");
+        tomcat.getConnector();
+        tomcat.start();
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String base = "http://127.0.0.1:" + tomcat.getConnector().getLocalPort();
+        try {
+            // 预热
+            for (String mode : new String[]{"native", "off", "on"}) {
+                run(client, base, mode, 20, 50, Duration.ofMillis(5));
+            }
+            for (String gapMillis : System.getProperty("bench.gaps", "5,20").split(",")) {
+                Duration gap = Duration.ofMillis(Long.parseLong(gapMillis.trim()));
+                System.out.printf("%nstreams=%d tokens=%d gap=%dms%n", streams, tokens, gap.toMillis());
+                Result nativeResult = run(client, base, "native", streams, tokens, gap);
+                Result off = run(client, base, "off", streams, tokens, gap);
+                Result on = run(client, base, "on", streams, tokens, gap);
+                System.out.println("native: " + nativeResult);
+                System.out.println("off   : " + off);
+                System.out.println("on    : " + on);
+                boolean identical = nativeResult.bodies.equals(off.bodies) && nativeResult.bodies.equals(on.bodies);
+                System.out.println("bytes identical: " + identical);
+                assertThat(off.bodies).isEqualTo(nativeResult.bodies);
+                assertThat(on.bodies).isEqualTo(nativeResult.bodies);
+            }
+        } finally {
+            tomcat.stop();
+            tomcat.destroy();
+            web.close();
+        }
+    }
+
+    private static Result run(HttpClient client, String base, String mode, int streams, int tokens,
+                              Duration gap) throws Exception {
+        SseFrameCoalescer coalescer = "on".equals(mode) ? ENABLED : DISABLED;
+        long writesBefore = coalescer.framesOutCount();
+        System.gc();
+        long cpuStart = OS.getProcessCpuTime();
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<byte[]>>> responses = new ArrayList<>(streams);
+        for (int i = 0; i < streams; i++) {
+            URI uri = URI.create(base + "/" + ("native".equals(mode) ? "native" : "coalesced")
+                    + "?enabled=" + "on".equals(mode) + "&tokens=" + tokens + "&seed=" + i + "&gap=" + gap.toMillis());
+            responses.add(client.sendAsync(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofByteArray()));
+        }
+        Result result = new Result();
+        for (CompletableFuture<HttpResponse<byte[]>> response : responses) {
+            byte[] body = response.get().body();
+            result.bodies.add(Arrays.toString(body).hashCode() + ":" + body.length);
+        }
+        long wallNanos = System.nanoTime() - start;
+        long cpuNanos = OS.getProcessCpuTime() - cpuStart;
+        result.cpuMillisPerStream = cpuNanos / 1e6 / streams;
+        result.tokensPerSecond = (double) streams * tokens / (wallNanos / 1e9);
+        // Spring MVC 对 Flux 返回值逐事件写出并刷新：事件数 = 会话ID帧 + 片段数
+        result.writes = "native".equals(mode) ? (long) streams * (tokens + 1) : coalescer.framesOutCount() - writesBefore;
+        result.wallMillis = wallNanos / 1e6;
+        return result;
+    }
+
+    /**
+     * 一个对话流：会话ID控制帧 + tokens 个随机片段，片段间隔 gap
+     */
+    private static Flux<ServerSentEvent<String>> stream(int tokens, long seed, Duration gap) {
+        Random random = new Random(seed);
+        List<String> frames = new ArrayList<>(tokens + 1);
+        frames.add("[SESSION_ID:bench]");
+        for (int i = 0; i < tokens; i++) {
+            frames.add(TOKENS[random.nextInt(TOKENS.length)]);
+        }
+        return Flux.fromIterable(frames).delayElements(gap).map(frame -> ServerSentEvent.builder(frame).build());
+    }
+
+    private static SseFrameCoalescer coalescer(boolean enabled) {
+        SseCoalescingProperties properties = new SseCoalescingProperties();
+        properties.setEnabled(enabled);
+        return new SseFrameCoalescer(properties);
+    }
+
+    @Configuration
+    @EnableWebMvc
+    static class BenchConfig {
+        @Bean
+        BenchController benchController() {
+            return new BenchController();
+        }
+    }
+
+    @RestController
+    static class BenchController {
+        @GetMapping(value = "/native", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        Flux<ServerSentEvent<String>> nativeEvents(@RequestParam int tokens, @RequestParam long seed,
+                                                   @RequestParam long gap) {
+            return stream(tokens, seed, Duration.ofMillis(gap));
+        }
+
+        @GetMapping(value = "/coalesced", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        SseEmitter coalesced(@RequestParam boolean enabled, @RequestParam int tokens, @RequestParam long seed,
+                             @RequestParam long gap) {
+            return (enabled ? ENABLED : DISABLED).write(stream(tokens, seed, Duration.ofMillis(gap)));
+        }
+    }
+
+    private static final class Result {
+        /** 响应体摘要（哈希 + 长度），避免在内存中保留全部响应体 */
+        private final List<String> bodies = new ArrayList<>();
+        private double cpuMillisPerStream;
+        private double tokensPerSecond;
+        private long writes;
+        private double wallMillis;
+
+        @Override
+        public String toString() {
+            return String.format("cpu/stream=%.1fms tokens/s=%.0f writes=%d wall=%.0fms",
+                    cpuMillisPerStream, tokensPerSecond, writes, wallMillis);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.config.SseCoalescingProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * SSE写出合并：开启与关闭时的响应体都与 Spring MVC 直接返回 Flux&lt;ServerSentEvent&gt; 时逐字节一致
+ */
+class SseFrameCoalescerTest {
+
+    /** 事件覆盖控制帧、换行、空白、代码块和带ID的续传事件 */
+    private static List<ServerSentEvent<String>> events() {
+        String[] frames = {"[SESSION_ID:s-1]", "Java", " 的", " Hash", "Map", "\n", "\n\n", "```java\nint a;", " ",
+                "[", "docs", "]", "结束。", "", "[QUEUE:2]", "a\r\nb"};
+        List<ServerSentEvent<String>> events = new ArrayList<>();
+        for (int i = 0; i < frames.length; i++) {
+            ServerSentEvent.Builder<String> builder = ServerSentEvent.builder(frames[i]);
+            if (i % 3 == 0) {
+                builder.id("s-1:" + i);
+            }
+            events.add(builder.build());
+        }
+        events.add(ServerSentEvent.<String>builder().comment("keepalive").build());
+        return events;
+    }
+
+    @Test
+    void coalescedBodyMatchesSpringEncodingByteForByte() throws Exception {
+        SseFrameCoalescer enabled = coalescer(true);
+        SseFrameCoalescer disabled = coalescer(false);
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(new StreamController(enabled, disabled)).build();
+
+        byte[] expected = body(mvc, "/native");
+        byte[] coalesced = body(mvc, "/coalesced");
+        byte[] passthrough = body(mvc, "/passthrough");
+
+        assertThat(expected).isNotEmpty();
+        assertThat(coalesced).isEqualTo(expected);
+        assertThat(passthrough).isEqualTo(expected);
+        // 未启用时每个事件单独写出；启用时同一窗口内的片段一次写出
+        assertThat(disabled.framesOutCount()).isEqualTo(disabled.framesInCount()).isEqualTo(events().size());
+        assertThat(enabled.framesInCount()).isEqualTo(events().size());
+        assertThat(enabled.framesOutCount()).isLessThan(enabled.framesInCount());
+    }
+
+    @Test
+    void slowStreamIsWrittenPerEventWithoutDelay() throws Exception {
+        SseFrameCoalescer enabled = coalescer(true);
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(new StreamController(enabled, enabled)).build();
+
+        byte[] body = body(mvc, "/slow");
+
+        assertThat(new String(body, "UTF-8")).isEqualTo("data:a\n\ndata:b\n\ndata:c\n\n");
+        assertThat(enabled.framesOutCount()).isEqualTo(3);
+    }
+
+    private static SseFrameCoalescer coalescer(boolean enabled) {
+        SseCoalescingProperties properties = new SseCoalescingProperties();
+        properties.setEnabled(enabled);
+        properties.setWindow(Duration.ofMillis(30));
+        return new SseFrameCoalescer(properties);
+    }
+
+    private static byte[] body(MockMvc mvc, String path) throws Exception {
+        MvcResult result = mvc.perform(get(path).accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5000);
+        return result.getResponse().getContentAsByteArray();
+    }
+
+    @RestController
+    static class StreamController {
+        private final SseFrameCoalescer enabled;
+        private final SseFrameCoalescer disabled;
+
+        StreamController(SseFrameCoalescer enabled, SseFrameCoalescer disabled) {
+            this.enabled = enabled;
+            this.disabled = disabled;
+        }
+
+        @GetMapping(value = "/native", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        Flux<ServerSentEvent<String>> nativeEvents() {
+            return Flux.fromIterable(events());
+        }
+
+        @GetMapping(value = "/coalesced", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        SseEmitter coalesced() {
+            return enabled.write(Flux.fromIterable(events()));
+        }
+
+        @GetMapping(value = "/passthrough", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        SseEmitter passthrough() {
+            return disabled.write(Flux.fromIterable(events()));
+        }
+
+        @GetMapping(value = "/slow", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        SseEmitter slow() {
+            return enabled.write(Flux.just("a", "b", "c")
+                    .delayElements(Duration.ofMillis(80))
+                    .map(frame -> ServerSentEvent.builder(frame).build()));
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.cs.rag.pipeline;
+
+import com.cs.rag.config.StreamReplayProperties;
+import com.cs.rag.constant.RagConstant;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.codec.ServerSentEvent;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 可续传对话流：断线后携带 Last-Event-ID 重连，从本地缓冲区或 Redis 续传
+ */
+class StreamReplayBufferTest {
+
+    private static final Long USER_ID = 7L;
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Test
+    void reconnectMidStreamResumesAfterLastEventId() {
+        StreamReplayBuffer buffer = new StreamReplayBuffer(properties(), null);
+        Sinks.Many<String> llm = Sinks.many().unicast().onBackpressureBuffer();
+
+        List<ServerSentEvent<String>> firstConnection = new CopyOnWriteArrayList<>();
+        Disposable client = buffer.open(USER_ID, llm.asFlux()).subscribe(firstConnection::add);
+        emit(llm, "[SESSION_ID:s-1]", "Hash", "Map");
+        await().atMost(TIMEOUT).until(() -> firstConnection.size() == 3);
+        // 客户端断开，生成继续写入缓冲区
+        client.dispose();
+        emit(llm, " 使用", "数组");
+
+        String lastEventId = firstConnection.get(2).id();
+        List<ServerSentEvent<String>> resumed = new CopyOnWriteArrayList<>();
+        buffer.resume(lastEventId, USER_ID).subscribe(resumed::add);
+        emit(llm, "。");
+        llm.tryEmitComplete();
+
+        await().atMost(TIMEOUT).until(() -> resumed.size() == 3);
+        assertThat(data(resumed)).containsExactly(" 使用", "数组", "。");
+        String streamId = lastEventId.substring(0, lastEventId.lastIndexOf(':'));
+        assertThat(ids(resumed)).containsExactly(streamId + ":3", streamId + ":4", streamId + ":5");
+        assertThat(buffer.resumedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void resumeIsRejectedForAnotherUserOrUnknownStream() {
+        StreamReplayBuffer buffer = new StreamReplayBuffer(properties(), null);
+        Sinks.Many<String> llm = Sinks.many().unicast().onBackpressureBuffer();
+        List<ServerSentEvent<String>> events = new CopyOnWriteArrayList<>();
+        buffer.open(USER_ID, llm.asFlux()).subscribe(events::add);
+        emit(llm, "[SESSION_ID:s-1]");
+        await().atMost(TIMEOUT).until(() -> events.size() == 1);
+
+        String expired = RagConstant.ERROR_PREFIX + RagConstant.STREAM_EXPIRED_MESSAGE;
+        assertThat(data(buffer.resume(events.get(0).id(), 8L).collectList().block(TIMEOUT))).containsExactly(expired);
+        assertThat(data(buffer.resume("missing:0", USER_ID).collectList().block(TIMEOUT))).containsExactly(expired);
+        assertThat(buffer.resumeMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    void reconnectOnAnotherInstanceResumesFromRedisWithoutDuplicates() {
+        FakeRedis redis = new FakeRedis();
+        StreamReplayBuffer origin = new StreamReplayBuffer(properties(), redis.template);
+        StreamReplayBuffer other = new StreamReplayBuffer(properties(), redis.template);
+        Sinks.Many<String> llm = Sinks.many().unicast().onBackpressureBuffer();
+
+        List<ServerSentEvent<String>> firstConnection = new CopyOnWriteArrayList<>();
+        Disposable client = origin.open(USER_ID, llm.asFlux()).subscribe(firstConnection::add);
+        emit(llm, "[SESSION_ID:s-1]", "a", "b");
+        await().atMost(TIMEOUT).until(() -> firstConnection.size() == 3 && redis.size() == 3);
+        client.dispose();
+        String lastEventId = firstConnection.get(0).id();
+
+        // 与 Spring MVC 一样逐个请求，且消费慢于轮询：多次轮询之间读取位置必须已经前移
+        List<ServerSentEvent<String>> resumed = new CopyOnWriteArrayList<>();
+        other.resume(lastEventId, USER_ID).subscribe(new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(ServerSentEvent<String> event) {
+                resumed.add(event);
+                Schedulers.parallel().schedule(() -> request(1), 60, TimeUnit.MILLISECONDS);
+            }
+        });
+        // 续传开始后生成仍在进行：若干次轮询之后才写入后续片段并结束
+        await().atMost(TIMEOUT).until(() -> !resumed.isEmpty());
+        await().pollDelay(Duration.ofMillis(150)).until(() -> true);
+        emit(llm, "c", "d");
+        llm.tryEmitComplete();
+
+        await().atMost(TIMEOUT).until(() -> resumed.size() >= 4 && redis.done());
+        await().during(Duration.ofMillis(300)).atMost(TIMEOUT).until(() -> resumed.size() == 4);
+        assertThat(data(resumed)).containsExactly("a", "b", "c", "d");
+        String streamId = lastEventId.substring(0, lastEventId.lastIndexOf(':'));
+        assertThat(ids(resumed)).containsExactly(streamId + ":1", streamId + ":2", streamId + ":3", streamId + ":4");
+        assertThat(other.redisResumedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void redisWritesAreBatchedOffTheGenerationThread() {
+        FakeRedis redis = new FakeRedis();
+        StreamReplayBuffer buffer = new StreamReplayBuffer(properties(), redis.template);
+        Sinks.Many<String> llm = Sinks.many().unicast().onBackpressureBuffer();
+        buffer.open(USER_ID, llm.asFlux()).subscribe();
+
+        for (int i = 0; i < 200; i++) {
+            llm.tryEmitNext("t" + i);
+        }
+        llm.tryEmitComplete();
+
+        await().atMost(TIMEOUT).until(redis::done);
+        assertThat(redis.size()).isEqualTo(200);
+        assertThat(redis.frames()).startsWith("t0", "t1", "t2").endsWith("t199");
+        assertThat(redis.pushes.get()).isLessThan(200);
+        assertThat(redis.pushThreads).doesNotContain(Thread.currentThread().getName());
+    }
+
+    private static StreamReplayProperties properties() {
+        StreamReplayProperties properties = new StreamReplayProperties();
+        properties.setEnabled(true);
+        properties.setMaxFrames(1000);
+        properties.setResumeGracePeriod(Duration.ofSeconds(5));
+        properties.setRedisEnabled(true);
+        properties.setRedisPollInterval(Duration.ofMillis(20));
+        properties.setRedisFlushInterval(Duration.ofMillis(20));
+        return properties;
+    }
+
+    private static void emit(Sinks.Many<String> sink, String... frames) {
+        for (String frame : frames) {
+            sink.tryEmitNext(frame);
+        }
+    }
+
+    private static List<String> data(List<ServerSentEvent<String>> events) {
+        return events.stream().map(ServerSentEvent::data).toList();
+    }
+
+    private static List<String> ids(List<ServerSentEvent<String>> events) {
+        return events.stream().map(ServerSentEvent::id).toList();
+    }
+
+    /**
+     * 内存中的 Redis 列表与哈希，记录批量写入次数和执行线程
+     */
+    @SuppressWarnings("unchecked")
+    private static final class FakeRedis {
+        private final RedisTemplate<String, Object> template = mock(RedisTemplate.class);
+        private final Map<String, List<Object>> lists = new ConcurrentHashMap<>();
+        private final Map<String, Map<Object, Object>> hashes = new ConcurrentHashMap<>();
+        private final AtomicInteger pushes = new AtomicInteger();
+        private final List<String> pushThreads = new CopyOnWriteArrayList<>();
+
+        FakeRedis() {
+            ListOperations<String, Object> listOps = mock(ListOperations.class);
+            HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+            when(template.opsForList()).thenReturn(listOps);
+            when(template.opsForHash()).thenReturn(hashOps);
+            when(listOps.rightPushAll(anyString(), anyCollection())).thenAnswer(invocation -> {
+                pushes.incrementAndGet();
+                pushThreads.add(Thread.currentThread().getName());
+                List<Object> list = lists.computeIfAbsent(invocation.getArgument(0), key -> new CopyOnWriteArrayList<>());
+                list.addAll((Collection<Object>) invocation.getArgument(1));
+                return (long) list.size();
+            });
+            when(listOps.range(anyString(), anyLong(), anyLong())).thenAnswer(invocation -> {
+                List<Object> list = lists.getOrDefault(invocation.getArgument(0), List.of());
+                int start = (int) Math.min((long) invocation.getArgument(1), list.size());
+                return new ArrayList<>(list.subList(start, list.size()));
+            });
+            when(hashOps.entries(anyString())).thenAnswer(invocation ->
+                    Map.copyOf(hashes.getOrDefault(invocation.getArgument(0), Map.of())));
+            when(hashOps.hasKey(anyString(), any())).thenAnswer(invocation ->
+                    hashes.getOrDefault(invocation.getArgument(0), Map.of()).containsKey(invocation.getArgument(1)));
+            org.mockito.Mockito.doAnswer(invocation -> {
+                hashes.computeIfAbsent(invocation.getArgument(0), key -> new ConcurrentHashMap<>())
+                        .put(invocation.getArgument(1), invocation.getArgument(2));
+                return null;
+            }).when(hashOps).put(anyString(), any(), any());
+        }
+
+        int size() {
+            return lists.values().stream().mapToInt(List::size).sum();
+        }
+
+        List<Object> frames() {
+            return lists.values().iterator().next();
+        }
+
+        boolean done() {
+            return hashes.values().stream().anyMatch(hash -> hash.containsKey("done"));
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.cs.rag.service.impl;
+
+import com.cs.rag.entity.ChatMessage;
+import com.cs.rag.entity.ChatSession;
+import com.cs.rag.exception.BusinessException;
+import com.cs.rag.mapper.ChatMessageMapper;
+import com.cs.rag.pipeline.MessageWriteBehind;
+import com.cs.rag.pojo.vo.ChatMessagePageVO;
+import com.cs.rag.pojo.vo.ChatMessageVO;
+import com.cs.rag.pojo.vo.ChatSessionPageVO;
+import com.cs.rag.pojo.vo.ChatSessionVO;
+import com.cs.rag.service.ChatMessageService;
+import com.cs.rag.service.ChatSessionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 会话列表与历史消息的键集分页：时间相同的行跨页时不重复、不遗漏
+ */
+class HistoryPagingTest {
+
+    private static final Long USER_ID = 7L;
+
+    private static final String SESSION_ID = "s-1";
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    /** 小于同一时间的行数，保证游标落在时间相同的行之间 */
+    private static final int PAGE_SIZE = 3;
+
+    private static final Comparator<ChatSession> SESSION_ORDER = Comparator
+            .comparing(ChatSession::getUpdatedAt).thenComparing(ChatSession::getId).reversed();
+
+    private static final Comparator<ChatMessage> MESSAGE_ORDER = Comparator
+            .comparing(ChatMessage::getCreatedAt).thenComparing(ChatMessage::getId);
+
+    private final ChatSessionService chatSessionService = mock(ChatSessionService.class);
+
+    private final ChatMessageService chatMessageService = mock(ChatMessageService.class);
+
+    private final RagServiceImpl ragService = new RagServiceImpl(mock(VectorStore.class), mock(ChatModel.class));
+
+    @Test
+    void sessionPagesVisitEveryRowOnceWhenUpdatedAtTies() {
+        List<ChatSession> sessions = sessions();
+        stubSessionPages(sessions);
+
+        List<String> visited = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ChatSessionPageVO page = ragService.getSessionPage(USER_ID, cursor, PAGE_SIZE);
+            assertThat(page.getSessions()).hasSizeLessThanOrEqualTo(PAGE_SIZE);
+            page.getSessions().stream().map(ChatSessionVO::getId).forEach(visited::add);
+            cursor = page.getNextCursor();
+            assertThat(cursor == null).isEqualTo(!page.isHasMore());
+            pages++;
+        } while (cursor != null);
+
+        assertThat(visited).containsExactlyElementsOf(
+                sessions.stream().sorted(SESSION_ORDER).map(ChatSession::getId).toList());
+        assertThat(pages).isEqualTo((sessions.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
+
+    @Test
+    void historyPagesVisitEveryMessageOnceWhenCreatedAtTies() {
+        List<ChatMessage> messages = messages(20);
+        stubMessagePages(messages);
+
+        List<Long> visited = new ArrayList<>();
+        String cursor = null;
+        do {
+            ChatMessagePageVO page = ragService.getHistoryPage(SESSION_ID, USER_ID, cursor, PAGE_SIZE);
+            // 每页按时间正序，向前翻页时插到已读消息之前
+            visited.addAll(0, page.getMessages().stream().map(ChatMessageVO::getId).toList());
+            cursor = page.getNextCursor();
+            assertThat(cursor == null).isEqualTo(!page.isHasMore());
+        } while (cursor != null);
+
+        assertThat(visited).containsExactlyElementsOf(
+                messages.stream().sorted(MESSAGE_ORDER).map(ChatMessage::getId).toList());
+    }
+
+    @Test
+    void invalidCursorIsRejected() {
+        stubSessionPages(sessions());
+        stubMessagePages(messages(5));
+
+        assertThatThrownBy(() -> ragService.getSessionPage(USER_ID, "not-a-cursor", PAGE_SIZE))
+                .isInstanceOf(BusinessException.class);
+        assertThatThrownBy(() -> ragService.getHistoryPage(SESSION_ID, USER_ID, "not-a-cursor", PAGE_SIZE))
+                .isInstanceOf(BusinessException.class);
+    }
+
+    @Test
+    void fullHistoryCrossesBatchesAndAppendsUnflushedMessages() {
+        List<ChatMessage> persisted = messages(10);
+        ChatMessageMapper mapper = mock(ChatMessageMapper.class);
+        when(mapper.selectPageAfter(anyString(), anyLong(), any(), any(), anyInt())).thenAnswer(invocation -> {
+            LocalDateTime afterCreatedAt = invocation.getArgument(2);
+            Long afterId = invocation.getArgument(3);
+            int limit = invocation.getArgument(4);
+            return persisted.stream()
+                    .filter(message -> afterCreatedAt == null || MESSAGE_ORDER.compare(message,
+                            message(afterId, afterCreatedAt)) > 0)
+                    .sorted(MESSAGE_ORDER)
+                    .limit(limit)
+                    .toList();
+        });
+        // 最后一条在读取期间已写入数据库，另一条仍在队列中
+        ChatMessage flushed = persisted.get(persisted.size() - 1);
+        ChatMessage queued = message(100L, BASE.plusMinutes(10));
+        MessageWriteBehind writeBehind = mock(MessageWriteBehind.class);
+        when(writeBehind.unflushed(SESSION_ID, USER_ID)).thenReturn(List.of(queued, flushed));
+        ChatMessageServiceImpl messageService = new ChatMessageServiceImpl();
+        ReflectionTestUtils.setField(messageService, "chatMessageMapper", mapper);
+        ReflectionTestUtils.setField(messageService, "messageWriteBehind", writeBehind);
+
+        Iterator<ChatMessage> iterator = messageService.iterateMessagesBySessionId(SESSION_ID, USER_ID, PAGE_SIZE);
+        // 第一批在调用时读取
+        verify(mapper, times(1)).selectPageAfter(anyString(), anyLong(), any(), any(), anyInt());
+
+        List<Long> visited = new ArrayList<>();
+        iterator.forEachRemaining(message -> visited.add(message.getId()));
+
+        List<Long> expected = new ArrayList<>(persisted.stream().sorted(MESSAGE_ORDER).map(ChatMessage::getId).toList());
+        expected.add(queued.getId());
+        assertThat(visited).containsExactlyElementsOf(expected);
+    }
+
+    /**
+     * 构造会话：每 7 个会话的 updated_at 相同
+     */
+    private static List<ChatSession> sessions() {
+        Random random = new Random(42L);
+        List<ChatSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 17; i++) {
+            LocalDateTime time = BASE.plusMinutes(i / 7);
+            sessions.add(ChatSession.builder()
+                    .id(new UUID(random.nextLong(), random.nextLong()).toString())
+                    .userId(USER_ID)
+                    .title("会话" + i)
+                    .createdAt(time)
+                    .updatedAt(time)
+                    .build());
+        }
+        return sessions;
+    }
+
+    /**
+     * 构造消息：每 7 条消息的 created_at 相同，ID 与时间顺序无关
+     */
+    private static List<ChatMessage> messages(int count) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(message((long) (i * 37 % 101), BASE.plusMinutes(i / 7)));
+        }
+        return messages;
+    }
+
+    private static ChatMessage message(Long id, LocalDateTime createdAt) {
+        return ChatMessage.builder()
+                .id(id)
+                .sessionId(SESSION_ID)
+                .userId(USER_ID)
+                .role(ChatMessage.ROLE_USER)
+                .content("消息" + id)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    /**
+     * 按 (updated_at, id) 倒序、行比较 &lt; 游标模拟会话分页查询
+     */
+    private void stubSessionPages(List<ChatSession> sessions) {
+        when(chatSessionService.getSessionPage(any(), any(), any(), anyInt())).thenAnswer(invocation -> {
+            LocalDateTime beforeUpdatedAt = invocation.getArgument(1);
+            String beforeId = invocation.getArgument(2);
+            int limit = invocation.getArgument(3);
+            ChatSession before = ChatSession.builder().id(beforeId).updatedAt(beforeUpdatedAt).build();
+            return sessions.stream()
+                    .filter(session -> beforeUpdatedAt == null || SESSION_ORDER.compare(session, before) > 0)
+                    .sorted(SESSION_ORDER)
+                    .limit(limit)
+                    .toList();
+        });
+        ReflectionTestUtils.setField(ragService, "chatSessionService", chatSessionService);
+    }
+
+    /**
+     * 按 (created_at, id) 倒序、行比较 &lt; 游标模拟历史消息分页查询
+     */
+    private void stubMessagePages(List<ChatMessage> messages) {
+        when(chatMessageService.getMessagesBefore(any(), any(), any(), any(), anyInt())).thenAnswer(invocation -> {
+            LocalDateTime beforeCreatedAt = invocation.getArgument(2);
+            Long beforeId = invocation.getArgument(3);
+            int limit = invocation.getArgument(4);
+            return messages.stream()
+                    .filter(message -> beforeCreatedAt == null
+                            || MESSAGE_ORDER.compare(message, message(beforeId, beforeCreatedAt)) < 0)
+                    .sorted(MESSAGE_ORDER.reversed())
+                    .limit(limit)
+                    .toList();
+        });
+        ReflectionTestUtils.setField(ragService, "chatMessageService", chatMessageService);
+    }
+}
@@ -0,0 +1,220 @@
+package com.cs.rag.vectorstore;
+
+import com.cs.rag.config.VectorMirrorProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * pgvector 内存镜像：加载前与带过滤条件时回退、写入后增量同步、删除过多时全量重建
+ */
+class MirrorVectorStoreTest {
+
+    private static final int DIM = 3;
+
+    private final VectorStore delegate = mock(VectorStore.class);
+
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    /** vector_store 表：ID -> {内容, 向量} */
+    private final Map<String, Object[]> table = new LinkedHashMap<>();
+
+    private final VectorMirrorProperties properties = new VectorMirrorProperties();
+
+    private int fullLoads;
+
+    @Test
+    void searchFallsBackToPgvectorUntilLoadedAndForFilters() {
+        String x = insert("x轴", 1f, 0f, 0f);
+        MirrorVectorStore store = store();
+        when(embeddingModel.embed("x")).thenReturn(new float[]{1f, 0f, 0f});
+
+        store.similaritySearch(search("x", 1));
+        verify(delegate, times(1)).similaritySearch(any(SearchRequest.class));
+
+        store.reload();
+        assertThat(store.isReady()).isTrue();
+        assertThat(ids(store.similaritySearch(search("x", 1)))).containsExactly(x);
+        store.similaritySearch(SearchRequest.builder().query("x").topK(1).filterExpression("source == 'a.md'").build());
+        verify(delegate, times(2)).similaritySearch(any(SearchRequest.class));
+    }
+
+    @Test
+    void resultsAreRankedAndCutAtTheSimilarityThreshold() {
+        String x = insert("x轴", 1f, 0f, 0f);
+        String nearX = insert("接近x轴", 1f, 0.2f, 0f);
+        insert("y轴", 0f, 1f, 0f);
+        MirrorVectorStore store = loaded();
+        when(embeddingModel.embed("x")).thenReturn(new float[]{1f, 0f, 0f});
+
+        List<Document> documents = store.similaritySearch(SearchRequest.builder()
+                .query("x").topK(3).similarityThreshold(0.5).build());
+
+        assertThat(ids(documents)).containsExactly(x, nearX);
+        assertThat(documents.get(0).getText()).isEqualTo("x轴");
+        assertThat(documents.get(0).getScore()).isGreaterThan(documents.get(1).getScore());
+    }
+
+    @Test
+    void addedAndUpdatedRowsAreSyncedAfterWrite() {
+        insert("x轴", 1f, 0f, 0f);
+        MirrorVectorStore store = loaded();
+        when(embeddingModel.embed("y")).thenReturn(new float[]{0f, 1f, 0f});
+
+        String y = insert("y轴", 0f, 1f, 0f);
+        store.add(List.of(Document.builder().id(y).text("y轴").build()));
+
+        verify(delegate).add(anyList());
+        assertThat(store.liveCount()).isEqualTo(2);
+        assertThat(ids(store.similaritySearch(search("y", 1)))).containsExactly(y);
+
+        // 同一ID重新写入时替换旧向量
+        table.put(y, new Object[]{"新的y轴", "[0,0,1]"});
+        store.add(List.of(Document.builder().id(y).text("新的y轴").build()));
+
+        when(embeddingModel.embed("z")).thenReturn(new float[]{0f, 0f, 1f});
+        List<Document> updated = store.similaritySearch(search("z", 1));
+        assertThat(store.liveCount()).isEqualTo(2);
+        assertThat(ids(updated)).containsExactly(y);
+        assertThat(updated.get(0).getText()).isEqualTo("新的y轴");
+        assertThat(fullLoads).isEqualTo(1);
+    }
+
+    @Test
+    void deletedRowsDisappearAndCompactionReloads() {
+        properties.setCompactionRatio(0.3);
+        String x = insert("x轴", 1f, 0f, 0f);
+        insert("y轴", 0f, 1f, 0f);
+        insert("z轴", 0f, 0f, 1f);
+        MirrorVectorStore store = loaded();
+        when(embeddingModel.embed("x")).thenReturn(new float[]{1f, 0f, 0f});
+        when(delegate.delete(anyList())).thenReturn(Optional.of(true));
+
+        table.remove(x);
+        store.delete(List.of(x));
+
+        assertThat(ids(store.similaritySearch(search("x", 3)))).doesNotContain(x);
+        assertThat(store.liveCount()).isEqualTo(2);
+        // 1/3 的节点已删除，超过 compactionRatio 后全量重建
+        assertThat(fullLoads).isEqualTo(2);
+    }
+
+    @Test
+    void failedIncrementalSyncFallsBackToFullReload() {
+        insert("x轴", 1f, 0f, 0f);
+        MirrorVectorStore store = loaded();
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class)))
+                .thenThrow(new IllegalStateException("db down"));
+
+        String y = insert("y轴", 0f, 1f, 0f);
+        store.add(List.of(Document.builder().id(y).text("y轴").build()));
+
+        assertThat(fullLoads).isEqualTo(2);
+        assertThat(store.liveCount()).isEqualTo(2);
+    }
+
+    @Test
+    void failedInitialLoadKeepsUsingPgvector() {
+        insert("x轴", 1f, 0f, 0f);
+        MirrorVectorStore store = store();
+        doAnswer(invocation -> {
+            throw new IllegalStateException("db down");
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        store.reload();
+        store.similaritySearch(search("x", 1));
+
+        assertThat(store.isReady()).isFalse();
+        verify(delegate).similaritySearch(any(SearchRequest.class));
+        verify(embeddingModel, never()).embed(anyString());
+    }
+
+    private MirrorVectorStore loaded() {
+        MirrorVectorStore store = store();
+        store.reload();
+        return store;
+    }
+
+    private MirrorVectorStore store() {
+        properties.setEnabled(true);
+        properties.setIndexType(VectorMirrorProperties.IndexType.HNSW);
+        // 全量加载：逐行回调
+        doAnswer(invocation -> {
+            fullLoads++;
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (String id : new ArrayList<>(table.keySet())) {
+                handler.processRow(resultSet(id));
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        // 增量同步：按ID回查
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenAnswer(invocation -> {
+            RowMapper<?> mapper = invocation.getArgument(1);
+            Object[] arguments = invocation.getArguments();
+            List<Object> rows = new ArrayList<>();
+            for (Object id : Arrays.copyOfRange(arguments, 2, arguments.length)) {
+                if (table.containsKey(id)) {
+                    rows.add(mapper.mapRow(resultSet((String) id), rows.size()));
+                }
+            }
+            return rows;
+        });
+        return new MirrorVectorStore(delegate, embeddingModel, jdbcTemplate, properties, DIM);
+    }
+
+    private String insert(String content, float... embedding) {
+        String id = UUID.randomUUID().toString();
+        StringBuilder vector = new StringBuilder("[");
+        for (int i = 0; i < embedding.length; i++) {
+            vector.append(i > 0 ? "," : "").append(embedding[i]);
+        }
+        table.put(id, new Object[]{content, vector.append("]").toString()});
+        return id;
+    }
+
+    private ResultSet resultSet(String id) throws Exception {
+        Object[] row = table.get(id);
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("id")).thenReturn(id);
+        when(rs.getString("content")).thenReturn((String) row[0]);
+        when(rs.getString("metadata")).thenReturn("{\"source\":\"a.md\"}");
+        when(rs.getString("embedding")).thenReturn((String) row[1]);
+        return rs;
+    }
+
+    private static SearchRequest search(String query, int topK) {
+        return SearchRequest.builder().query(query).topK(topK).build();
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).toList();
+    }
+}
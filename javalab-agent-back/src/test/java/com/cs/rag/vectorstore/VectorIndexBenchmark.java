@@ -0,0 +1,179 @@
+package com.cs.rag.vectorstore;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.cs.rag.config.VectorMirrorProperties;
+import com.cs.rag.constant.RagConstant;
+import com.cs.rag.utils.QaDocumentSplitter;
+import com.cs.rag.utils.VectorUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.ai.document.Document;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * 进程内向量索引召回率与耗时基准
+ *
+ * <p>对 hnsw / int8 / binary 三种索引分别统计 Recall@TOP_K 与单次检索平均耗时，并与全量精确检索对比。
+ * 默认不执行，通过系统属性开启：</p>
+ * <pre>
+ * # 合成语料：n 条高斯聚类向量，查询为同分布的新向量
+ * mvn -o test -Dtest=VectorIndexBenchmark -Dbench=vector -Dbench.n=100000
+ *
+ * # java_lab_qa.md：问答对全文作为语料、问题作为查询，需要可访问的 Ollama 嵌入模型
+ * mvn -o test -Dtest=VectorIndexBenchmark -Dbench=vector-qa -Dbench.ollama=http://localhost:11434
+ * </pre>
+ *
+ * <p>可选参数：bench.dim（1024）、bench.clusters（200）、bench.queries（200）、bench.seed（42）、
+ * bench.types（hnsw,int8,binary）、bench.ef（hnsw 检索候选集，64）、bench.rerank（量化粗排候选数，逗号分隔，100,500）、
+ * bench.model（嵌入模型，默认与 application.yml 一致）。surefire 已添加 jdk.incubator.vector 模块，
+ * 输出第一行标明是否使用 SIMD。</p>
+ *
+ * @author caoshuai
+ * @since 1.0
+ */
+class VectorIndexBenchmark {
+
+    private static final int TOP_K = RagConstant.TOP_K;
+
+    @Test
+    @EnabledIfSystemProperty(named = "bench", matches = "vector")
+    void synthetic() {
+        int n = Integer.getInteger("bench.n", 100_000);
+        int dim = Integer.getInteger("bench.dim", 1024);
+        int clusters = Integer.getInteger("bench.clusters", 200);
+        int queryCount = Integer.getInteger("bench.queries", 200);
+        long seed = Long.getLong("bench.seed", 42L);
+        Random random = new Random(seed);
+
+        float[][] centers = new float[clusters][];
+        for (int c = 0; c < clusters; c++) {
+            centers[c] = gaussian(random, dim, null, 1f);
+        }
+        List<float[]> queries = new ArrayList<>(queryCount);
+        for (int i = 0; i < queryCount; i++) {
+            queries.add(gaussian(random, dim, centers[random.nextInt(clusters)], 0.5f));
+        }
+        // 语料不整体保存，每个索引按同一种子重新生成，内存中同时只有一份索引数据
+        Corpus corpus = consumer -> {
+            Random corpusRandom = new Random(seed + 1);
+            for (int i = 0; i < n; i++) {
+                consumer.accept(gaussian(corpusRandom, dim, centers[corpusRandom.nextInt(clusters)], 0.5f));
+            }
+        };
+        run(String.format("synthetic n=%d dim=%d clusters=%d", n, dim, clusters), dim, corpus, queries);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "bench", matches = "vector-qa")
+    void javaLabQa() throws IOException, InterruptedException {
+        String baseUrl = System.getProperty("bench.ollama", "http://localhost:11434");
+        String model = System.getProperty("bench.model", "turingdance/gte-large-zh:latest");
+        String text = new ClassPathResource("rag/java_lab_qa.md").getContentAsString(StandardCharsets.UTF_8);
+        List<Document> documents = QaDocumentSplitter.split(List.of(new Document(text)));
+
+        List<String> contents = new ArrayList<>();
+        List<String> questions = new ArrayList<>();
+        for (Document document : documents) {
+            contents.add(document.getText());
+            questions.add(String.valueOf(document.getMetadata().get(QaDocumentSplitter.METADATA_QUESTION)));
+        }
+        List<float[]> corpus = embed(baseUrl, model, contents);
+        run(String.format("java_lab_qa.md chunks=%d model=%s", contents.size(), model),
+                corpus.get(0).length, corpus::forEach, embed(baseUrl, model, questions));
+    }
+
+    /**
+     * 对同一语料逐一构建 bench.types 指定的索引并评估，评估完一种再构建下一种
+     */
+    private static void run(String title, int dim, Corpus corpus, List<float[]> queries) {
+        int ef = Integer.getInteger("bench.ef", 64);
+        List<String> types = List.of(System.getProperty("bench.types", "hnsw,int8,binary").split(","));
+        System.out.printf("%n== %s, queries=%d, simd=%s%n", title, queries.size(), VectorUtils.isSimdEnabled());
+
+        if (types.contains("hnsw")) {
+            long start = System.nanoTime();
+            HnswIndex hnsw = new HnswIndex(dim, 16, 200);
+            corpus.forEach(hnsw::add);
+            System.out.printf("hnsw build %.1fs%n", (System.nanoTime() - start) / 1e9);
+            report("hnsw   ef=" + ef, hnsw, queries, ef);
+        }
+
+        for (VectorMirrorProperties.Quantization quantization : VectorMirrorProperties.Quantization.values()) {
+            if (!types.contains(quantization.name().toLowerCase())) {
+                continue;
+            }
+            QuantizedIndex index = new QuantizedIndex(dim, quantization);
+            corpus.forEach(index::add);
+            for (String rerank : System.getProperty("bench.rerank", "100,500").split(",")) {
+                int candidates = Integer.parseInt(rerank.trim());
+                report(String.format("%-6s rerank=%d", quantization.name().toLowerCase(), candidates),
+                        index, queries, candidates);
+            }
+        }
+    }
+
+    private static void report(String label, VectorIndex index, List<float[]> queries, int ef) {
+        // 先完整执行一轮预热，避免 JIT 编译计入耗时
+        RecallReport.evaluate(index, queries, TOP_K, ef);
+        RecallReport report = RecallReport.evaluate(index, queries, TOP_K, ef);
+        System.out.printf("%-20s Recall@%d=%.4f  index %8.1fus  exact %8.1fus%n", label, TOP_K,
+                report.getRecall(), report.getIndexAvgMicros(), report.getExactAvgMicros());
+    }
+
+    /**
+     * 可重复遍历的语料
+     */
+    private interface Corpus {
+        void forEach(Consumer<float[]> consumer);
+    }
+
+    private static float[] gaussian(Random random, int dim, float[] center, float sigma) {
+        float[] vector = new float[dim];
+        for (int i = 0; i < dim; i++) {
+            vector[i] = (center != null ? center[i] : 0f) + (float) random.nextGaussian() * sigma;
+        }
+        return vector;
+    }
+
+    /**
+     * 调用 Ollama /api/embed 批量计算向量
+     */
+    private static List<float[]> embed(String baseUrl, String model, List<String> inputs)
+            throws IOException, InterruptedException {
+        JSONObject body = new JSONObject();
+        body.put("model", model);
+        body.put("input", inputs);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/embed"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toJSONString()))
+                .build();
+        HttpResponse<String> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Ollama 嵌入请求失败: " + response.statusCode() + " " + response.body());
+        }
+        JSONArray embeddings = JSON.parseObject(response.body()).getJSONArray("embeddings");
+        List<float[]> vectors = new ArrayList<>(embeddings.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            JSONArray values = embeddings.getJSONArray(i);
+            float[] vector = new float[values.size()];
+            for (int j = 0; j < vector.length; j++) {
+                vector[j] = values.getFloatValue(j);
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,94 @@
+package com.cs.rag.vectorstore;
+
+import com.cs.rag.config.VectorMirrorProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 进程内向量索引召回率：固定种子的聚类向量上与全量精确检索对比
+ */
+class VectorIndexRecallTest {
+
+    private static final int N = 2000;
+
+    private static final int DIM = 64;
+
+    private static final int CLUSTERS = 20;
+
+    private static final int TOP_K = 5;
+
+    private static final long SEED = 42L;
+
+    @Test
+    void hnswRecall() {
+        RecallReport report = evaluate(new HnswIndex(DIM, 8, 64), 16);
+        assertThat(report.getSamples()).isEqualTo(50);
+        assertThat(report.getRecall()).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void int8QuantizedRecall() {
+        RecallReport report = evaluate(new QuantizedIndex(DIM, VectorMirrorProperties.Quantization.INT8), 20);
+        assertThat(report.getRecall()).isGreaterThanOrEqualTo(0.98);
+    }
+
+    @Test
+    void binaryQuantizedRecall() {
+        RecallReport report = evaluate(new QuantizedIndex(DIM, VectorMirrorProperties.Quantization.BINARY), 60);
+        assertThat(report.getRecall()).isGreaterThanOrEqualTo(0.8);
+    }
+
+    @Test
+    void deletedNodesAreNeverReturned() {
+        VectorIndex[] indexes = {new HnswIndex(DIM, 16, 200),
+                new QuantizedIndex(DIM, VectorMirrorProperties.Quantization.INT8)};
+        for (VectorIndex index : indexes) {
+            Random random = new Random(SEED);
+            float[][] centers = centers(random);
+            for (int i = 0; i < N; i++) {
+                index.add(gaussian(random, centers[random.nextInt(CLUSTERS)], 1f));
+            }
+            float[] query = index.vector(7);
+            index.markDeleted(7);
+
+            List<VectorIndex.Candidate> results = index.search(query, TOP_K, 100);
+
+            assertThat(results).hasSize(TOP_K).noneMatch(candidate -> candidate.getNode() == 7);
+            assertThat(index.liveCount()).isEqualTo(N - 1);
+        }
+    }
+
+    private static RecallReport evaluate(VectorIndex index, int ef) {
+        Random random = new Random(SEED);
+        float[][] centers = centers(random);
+        for (int i = 0; i < N; i++) {
+            index.add(gaussian(random, centers[random.nextInt(CLUSTERS)], 1f));
+        }
+        List<float[]> queries = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            queries.add(gaussian(random, centers[random.nextInt(CLUSTERS)], 1f));
+        }
+        return RecallReport.evaluate(index, queries, TOP_K, ef);
+    }
+
+    private static float[][] centers(Random random) {
+        float[][] centers = new float[CLUSTERS][];
+        for (int c = 0; c < CLUSTERS; c++) {
+            centers[c] = gaussian(random, null, 1f);
+        }
+        return centers;
+    }
+
+    private static float[] gaussian(Random random, float[] center, float sigma) {
+        float[] vector = new float[DIM];
+        for (int i = 0; i < DIM; i++) {
+            vector[i] = (center == null ? 0f : center[i]) + (float) random.nextGaussian() * sigma;
+        }
+        return vector;
+    }
+}
@@ -15,6 +15,17 @@ export const getUserSessions = (userId) => {
   return apiClient.post('/v1/ai/rag/sessions', { userId })
 }
 
+/**
+ * 分页获取用户的会话列表（按游标向后翻页）
+ * @param {number} userId - 用户ID
+ * @param {string|null} cursor - 上一页返回的 nextCursor，为空时取首页
+ * @param {number} pageSize - 每页条数
+ * @returns {Promise} { sessions, nextCursor, hasMore }，sessions 按最近活动倒序
+ */
+export const getUserSessionPage = (userId, cursor = null, pageSize = 20) => {
+  return apiClient.post('/v1/ai/rag/sessions/page', { userId, cursor, pageSize })
+}
+
 /**
  * 获取会话的历史消息
  * @param {string} sessionId - 会话ID
@@ -26,6 +37,18 @@ export const getSessionHistory = (sessionId, userId = 1) => {
   return apiClient.post('/v1/ai/rag/history', { sessionId, userId })
 }
 
+/**
+ * 分页获取会话的历史消息（按游标向前翻页）
+ * @param {string} sessionId - 会话ID
+ * @param {number} userId - 用户ID（用于权限校验）
+ * @param {string|null} cursor - 上一页返回的 nextCursor，为空时取最新一页
+ * @param {number} pageSize - 每页条数
+ * @returns {Promise} { messages, nextCursor, hasMore }，messages 按时间正序
+ */
+export const getSessionHistoryPage = (sessionId, userId = 1, cursor = null, pageSize = 50) => {
+  return apiClient.post('/v1/ai/rag/history/page', { sessionId, userId, cursor, pageSize })
+}
+
 /**
  * 删除会话（逻辑删除）
  * @param {string} sessionId - 会话ID
@@ -37,11 +60,18 @@ export const deleteSession = (sessionId, userId = 1) => {
   return apiClient.post('/v1/ai/rag/sessions/delete', { sessionId, userId })
 }
 
+/** 断线续传最大重试次数 */
+const MAX_RESUME_RETRIES = 3
+
+/** 断线续传重试间隔（毫秒），按重试次数递增 */
+const RESUME_RETRY_DELAY_MS = 1000
+
 /**
  * 发送RAG对话消息（POST方式，支持SSE流式响应）
  *
  * 使用 fetch + ReadableStream 处理 SSE 流式响应，
  * 相比 EventSource（仅支持GET），POST方式更安全且支持更长的消息内容。
+ * 后端开启续传时每条消息带事件ID，网络中断后携带 Last-Event-ID 自动重连，从断点继续接收。
  *
  * @param {Object} params - 请求参数
  * @param {string} params.message - 用户消息
@@ -75,67 +105,94 @@ export const sendChatMessage = (params, callbacks) => {
     headers.Authorization = `Bearer ${token}`
   }
 
-  // 发起 POST 请求
-  fetch('/api/v1/ai/rag', {
-    method: 'POST',
-    headers,
-    body: JSON.stringify({ message, sessionId, userId }),
-    signal: controller.signal,
-  })
-    .then(async (response) => {
-      // 检查响应状态
-      if (!response.ok) {
-        // 40100/40101 是后端自定义错误码（直接作为 HTTP status 返回）
-        // 这里给出更明确的错误，便于前端提示用户先登录
-        if (response.status === 40100 || response.status === 40101 || response.status === 401) {
-          throw new Error('未登录或无权限，请先登录后再重试')
-        }
-        throw new Error(`HTTP error! status: ${response.status}`)
-      }
-
-      // 使用 ReadableStream 读取 SSE 响应
-      const reader = response.body.getReader()
-      const decoder = new TextDecoder()
-      let buffer = '' // 缓冲区，用于处理不完整的数据块
-      let eventBuffer = [] // 缓冲区，用于处理 SSE 事件的多行数据
-
-      while (true) {
-        const { done, value } = await reader.read()
-
-        if (done) {
-          // 处理缓冲区中剩余的数据
-          if (buffer) {
-            processLine(buffer, eventBuffer, onMessage)
+  // 最后收到的事件ID（后端开启续传时每条消息带 id），断线后据此续传
+  const stream = { lastEventId: '', pendingEventId: '' }
+  let retries = 0
+
+  const connect = () => {
+    const requestHeaders = stream.lastEventId
+      ? { ...headers, 'Last-Event-ID': stream.lastEventId }
+      : headers
+
+    // 发起 POST 请求
+    fetch('/api/v1/ai/rag', {
+      method: 'POST',
+      headers: requestHeaders,
+      body: JSON.stringify({ message, sessionId, userId }),
+      signal: controller.signal,
+    })
+      .then(async (response) => {
+        // 检查响应状态
+        if (!response.ok) {
+          // 40100/40101 是后端自定义错误码（直接作为 HTTP status 返回）
+          // 这里给出更明确的错误，便于前端提示用户先登录
+          if (response.status === 40100 || response.status === 40101 || response.status === 401) {
+            throw new Error('未登录或无权限，请先登录后再重试')
           }
-          // 发送剩余的事件数据
-          if (eventBuffer.length > 0) {
-            onMessage?.(eventBuffer.join(''))
+          // 429: 模型生成队列已满
+          if (response.status === 429) {
+            throw new Error('当前咨询人数较多，请稍后重试')
           }
-          onComplete?.()
-          break
+          throw new Error(`HTTP error! status: ${response.status}`)
         }
 
-        // 解码数据并添加到缓冲区
-        buffer += decoder.decode(value, { stream: true })
+        // 使用 ReadableStream 读取 SSE 响应
+        const reader = response.body.getReader()
+        const decoder = new TextDecoder()
+        let buffer = '' // 缓冲区，用于处理不完整的数据块
+        let eventBuffer = [] // 缓冲区，用于处理 SSE 事件的多行数据
+
+        while (true) {
+          const { done, value } = await reader.read()
+
+          if (done) {
+            // 处理缓冲区中剩余的数据
+            if (buffer) {
+              processLine(buffer, eventBuffer, onMessage, stream)
+            }
+            // 发送剩余的事件数据
+            if (eventBuffer.length > 0) {
+              onMessage?.(eventBuffer.join(''))
+            }
+            onComplete?.()
+            break
+          }
+
+          // 收到数据说明连接正常，重置重连次数
+          retries = 0
 
-        // 按换行符分割，处理完整的消息
-        const lines = buffer.split('\n')
-        // 保留最后一个可能不完整的行
-        buffer = lines.pop() || ''
+          // 解码数据并添加到缓冲区
+          buffer += decoder.decode(value, { stream: true })
 
-        // 处理每一行
-        for (const line of lines) {
-          processLine(line, eventBuffer, onMessage)
+          // 按换行符分割，处理完整的消息
+          const lines = buffer.split('\n')
+          // 保留最后一个可能不完整的行
+          buffer = lines.pop() || ''
+
+          // 处理每一行
+          for (const line of lines) {
+            processLine(line, eventBuffer, onMessage, stream)
+          }
+        }
+      })
+      .catch((error) => {
+        // 忽略用户主动取消的错误
+        if (error.name === 'AbortError') {
+          return
+        }
+        // 网络中断（fetch/读取流抛出 TypeError）且已收到事件ID时，携带 Last-Event-ID 续传
+        if (error instanceof TypeError && stream.lastEventId && retries < MAX_RESUME_RETRIES) {
+          retries++
+          console.warn(`SSE连接中断，第${retries}次续传:`, stream.lastEventId)
+          setTimeout(connect, RESUME_RETRY_DELAY_MS * retries)
+          return
         }
-      }
-    })
-    .catch((error) => {
-      // 忽略用户主动取消的错误
-      if (error.name !== 'AbortError') {
         console.error('SSE请求错误:', error)
         onError?.(error)
-      }
-    })
+      })
+  }
+
+  connect()
 
   return controller
 }
@@ -145,8 +202,9 @@ export const sendChatMessage = (params, callbacks) => {
  * @param {string} line - 数据行
  * @param {string[]} eventBuffer - 事件数据缓存
  * @param {Function} onMessage - 消息回调
+ * @param {Object} stream - 连接状态，记录最后收到的事件ID
  */
-function processLine(line, eventBuffer, onMessage) {
+function processLine(line, eventBuffer, onMessage, stream) {
   // 处理 CR 回车符（兼容 Windows 换行 \r\n）
   const cleanLine = line.endsWith('\r') ? line.slice(0, -1) : line
 
@@ -160,6 +218,16 @@ function processLine(line, eventBuffer, onMessage) {
       onMessage?.(fullMessage)
       eventBuffer.length = 0 // 清空缓存
     }
+    if (stream.pendingEventId) {
+      stream.lastEventId = stream.pendingEventId
+      stream.pendingEventId = ''
+    }
+    return
+  }
+
+  // 记录事件ID（id: xxx），事件分发后才作为续传位置，避免断线时跳过未处理的事件
+  if (cleanLine.startsWith('id:')) {
+    stream.pendingEventId = cleanLine.slice(3).trim()
     return
   }
 
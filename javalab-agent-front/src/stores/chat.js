@@ -1,6 +1,6 @@
 import { defineStore } from 'pinia'
 import { ref, computed } from 'vue'
-import { getUserSessions, getSessionHistory, deleteSession } from '../api/chat'
+import { getUserSessionPage, getSessionHistoryPage, deleteSession } from '../api/chat'
 import { useUserStore } from './user'
 
 export const useChatStore = defineStore('chat', () => {
@@ -28,6 +28,24 @@ export const useChatStore = defineStore('chat', () => {
   // 是否是新对话（尚未发送消息）
   const isNewConversation = ref(false)
 
+  // 历史消息分页游标（为空表示没有更早的消息）
+  const historyCursor = ref(null)
+
+  // 是否还有更早的历史消息
+  const hasMoreHistory = ref(false)
+
+  // 是否正在加载更早的历史消息
+  const isLoadingHistory = ref(false)
+
+  // 会话列表分页游标（为空表示没有更多会话）
+  const sessionCursor = ref(null)
+
+  // 是否还有更多会话
+  const hasMoreSessions = ref(false)
+
+  // 是否正在加载更多会话
+  const isLoadingSessions = ref(false)
+
   const currentConversation = computed(() => {
     return conversations.value.find(conv => conv.id === currentConversationId.value)
   })
@@ -48,6 +66,8 @@ export const useChatStore = defineStore('chat', () => {
     // 标记为新对话，不设置 ID（等待后端返回）
     currentConversationId.value = null
     messages.value = []
+    historyCursor.value = null
+    hasMoreHistory.value = false
     isNewConversation.value = true
 
     // 清除 localStorage 中的当前会话ID
@@ -212,24 +232,34 @@ export const useChatStore = defineStore('chat', () => {
   }
 
   /**
-   * 从数据库加载会话的历史消息
+   * 转换后端消息格式为前端格式
+   * @param {Object} msg - 后端消息
+   * @returns {Object} 前端消息
+   */
+  const toFrontendMessage = (msg) => ({
+    id: msg.id || generateMessageId(),
+    sender: msg.role === 'user' ? 'user' : 'assistant',
+    content: msg.content,
+    timestamp: msg.createdAt || new Date().toISOString() // 字段名与后端 ChatMessage.createdAt 对应
+  })
+
+  /**
+   * 从数据库加载会话最新一页的历史消息
    * @param {string} sessionId - 会话ID
    */
   const loadConversationMessagesFromDB = async (sessionId) => {
+    historyCursor.value = null
+    hasMoreHistory.value = false
     try {
       const userStore = useUserStore()
       const userId = userStore.userInfo?.id || 1
       
-      const response = await getSessionHistory(sessionId, userId)
-      const dbMessages = response.data || []
+      const response = await getSessionHistoryPage(sessionId, userId)
+      const page = response.data || {}
       
-      // 转换后端消息格式为前端格式
-      messages.value = dbMessages.map(msg => ({
-        id: msg.id || generateMessageId(),
-        sender: msg.role === 'user' ? 'user' : 'assistant',
-        content: msg.content,
-        timestamp: msg.createdAt || new Date().toISOString() // 字段名与后端 ChatMessage.createdAt 对应
-      }))
+      messages.value = (page.messages || []).map(toFrontendMessage)
+      historyCursor.value = page.nextCursor || null
+      hasMoreHistory.value = !!page.hasMore
     } catch (error) {
       console.error('加载会话历史失败:', error)
       messages.value = []
@@ -237,35 +267,112 @@ export const useChatStore = defineStore('chat', () => {
   }
 
   /**
-   * 从数据库加载用户的会话列表
+   * 加载更早一页的历史消息，插入到消息列表头部
+   * @returns {Promise<boolean>} 是否加载到了新消息
+   */
+  const loadOlderMessages = async () => {
+    if (!hasMoreHistory.value || isLoadingHistory.value || !currentConversationId.value) {
+      return false
+    }
+    const sessionId = currentConversationId.value
+    isLoadingHistory.value = true
+    try {
+      const userStore = useUserStore()
+      const userId = userStore.userInfo?.id || 1
+      
+      const response = await getSessionHistoryPage(sessionId, userId, historyCursor.value)
+      // 加载期间切换了会话，丢弃结果
+      if (sessionId !== currentConversationId.value) {
+        return false
+      }
+      const page = response.data || {}
+      const older = (page.messages || []).map(toFrontendMessage)
+      
+      messages.value = [...older, ...messages.value]
+      historyCursor.value = page.nextCursor || null
+      hasMoreHistory.value = !!page.hasMore
+      return older.length > 0
+    } catch (error) {
+      console.error('加载更早的历史消息失败:', error)
+      return false
+    } finally {
+      isLoadingHistory.value = false
+    }
+  }
+
+  /**
+   * 转换后端会话格式为前端格式
+   * 注意：后端字段名是 createdAt/updatedAt（驼峰命名）
+   * @param {Object} session - 后端会话
+   * @returns {Object} 前端会话
+   */
+  const toFrontendConversation = (session) => ({
+    id: session.id,
+    title: session.title || '新对话',
+    createdAt: session.createdAt || null,
+    updatedAt: session.updatedAt || null
+  })
+
+  /**
+   * 从数据库加载用户会话列表的首页
    */
   const loadConversationsFromDB = async () => {
+    sessionCursor.value = null
+    hasMoreSessions.value = false
     try {
       const userStore = useUserStore()
       const userId = userStore.userInfo?.id || 1
       
-      const response = await getUserSessions(userId)
-      const dbSessions = response.data || []
+      const response = await getUserSessionPage(userId)
+      const page = response.data || {}
       
-      // 转换后端会话格式为前端格式
-      // 注意：后端字段名是 createdAt/updatedAt（驼峰命名）
-      conversations.value = dbSessions.map(session => ({
-        id: session.id,
-        title: session.title || '新对话',
-        createdAt: session.createdAt || null,
-        updatedAt: session.updatedAt || null
-      }))
+      conversations.value = (page.sessions || []).map(toFrontendConversation)
+      sessionCursor.value = page.nextCursor || null
+      hasMoreSessions.value = !!page.hasMore
     } catch (error) {
       console.error('加载会话列表失败:', error)
       conversations.value = []
     }
   }
 
+  /**
+   * 加载下一页会话，追加到会话列表末尾
+   */
+  const loadMoreConversations = async () => {
+    if (!hasMoreSessions.value || isLoadingSessions.value) {
+      return
+    }
+    isLoadingSessions.value = true
+    try {
+      const userStore = useUserStore()
+      const userId = userStore.userInfo?.id || 1
+      
+      const response = await getUserSessionPage(userId, sessionCursor.value)
+      const page = response.data || {}
+      
+      // 翻页期间有会话因新消息移到首页时可能重复出现，按ID去重
+      const loadedIds = new Set(conversations.value.map(conv => conv.id))
+      const more = (page.sessions || [])
+        .filter(session => !loadedIds.has(session.id))
+        .map(toFrontendConversation)
+      
+      conversations.value = [...conversations.value, ...more]
+      sessionCursor.value = page.nextCursor || null
+      hasMoreSessions.value = !!page.hasMore
+    } catch (error) {
+      console.error('加载更多会话失败:', error)
+    } finally {
+      isLoadingSessions.value = false
+    }
+  }
+
   /**
    * 清空当前会话的消息
    */
   const clearMessages = () => {
     messages.value = []
+    historyCursor.value = null
+    hasMoreHistory.value = false
   }
 
   const toggleSidebar = () => {
@@ -309,6 +416,10 @@ export const useChatStore = defineStore('chat', () => {
     sidebarCollapsed,
     shouldFocusInput,
     isNewConversation,
+    hasMoreHistory,
+    isLoadingHistory,
+    hasMoreSessions,
+    isLoadingSessions,
     currentConversation,
     createConversation,
     setCurrentSessionId,
@@ -323,6 +434,8 @@ export const useChatStore = defineStore('chat', () => {
     toggleSidebar,
     focusInput,
     initialize,
-    loadConversationsFromDB
+    loadConversationsFromDB,
+    loadMoreConversations,
+    loadOlderMessages
   }
 })
@@ -109,7 +109,9 @@ CREATE TABLE public.chat_session (
                                      title character varying(255),
                                      created_at timestamp without time zone DEFAULT CURRENT_TIMESTAMP,
                                      updated_at timestamp without time zone DEFAULT CURRENT_TIMESTAMP,
-                                     deleted smallint DEFAULT 0
+                                     deleted smallint DEFAULT 0 NOT NULL,
+                                     summary text,
+                                     summary_until timestamp without time zone
 );
 COMMENT ON TABLE "public"."chat_session" IS '对话会话表';
 COMMENT ON COLUMN "public"."chat_session"."id" IS '会话ID (UUID)';
@@ -118,10 +120,21 @@ COMMENT ON COLUMN "public"."chat_session"."title" IS '会话标题';
 COMMENT ON COLUMN "public"."chat_session"."created_at" IS '创建时间';
 COMMENT ON COLUMN "public"."chat_session"."updated_at" IS '更新时间';
 COMMENT ON COLUMN "public"."chat_session"."deleted" IS '逻辑删除标记: 0-未删除, 1-已删除';
+COMMENT ON COLUMN "public"."chat_session"."summary" IS '滚动会话摘要 (概括 summary_until 及之前的问答)';
+COMMENT ON COLUMN "public"."chat_session"."summary_until" IS '摘要已覆盖的最后一条消息的创建时间';
+-- 已有数据库升级:
+-- ALTER TABLE public.chat_session ADD COLUMN IF NOT EXISTS summary text;
+-- ALTER TABLE public.chat_session ADD COLUMN IF NOT EXISTS summary_until timestamp without time zone;
 
 ALTER TABLE "public"."chat_session" ADD CONSTRAINT "chat_session_pkey" PRIMARY KEY ("id");
 
-CREATE INDEX idx_chat_session_user_id ON public.chat_session USING btree (user_id);
+-- 会话列表键集分页：部分索引只包含未删除会话，按用户定位后按 (updated_at, id) 倒序读取
+-- 谓词与 selectPageByUserId 的条件写法一致，旧数据中 deleted 为空的会话同样视为未删除
+-- 全量会话列表（/rag/sessions）同样按游标逐页读取该索引，因此可删除旧的 idx_chat_session_user_id
+CREATE INDEX idx_chat_session_user_active ON public.chat_session USING btree (user_id, updated_at DESC, id DESC) WHERE COALESCE(deleted, 0) = 0;
+-- 已有数据库升级（无需先补齐空值）:
+-- CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_session_user_active ON public.chat_session USING btree (user_id, updated_at DESC, id DESC) WHERE COALESCE(deleted, 0) = 0;
+-- DROP INDEX CONCURRENTLY IF EXISTS idx_chat_session_user_id;
 
 
 -- ============================================
@@ -135,7 +148,8 @@ CREATE TABLE public.chat_message (
                                      content text,
                                      embedding public.vector(1024),
                                      created_at timestamp without time zone DEFAULT CURRENT_TIMESTAMP,
-                                     user_id bigint NOT NULL
+                                     user_id bigint NOT NULL,
+                                     truncated smallint DEFAULT 0
 );
 COMMENT ON TABLE "public"."chat_message" IS '对话消息表';
 COMMENT ON COLUMN "public"."chat_message"."id" IS '消息ID';
@@ -145,12 +159,19 @@ COMMENT ON COLUMN "public"."chat_message"."role" IS '消息角色: user(用户),
 COMMENT ON COLUMN "public"."chat_message"."content" IS '消息内容';
 COMMENT ON COLUMN "public"."chat_message"."created_at" IS '创建时间';
 COMMENT ON COLUMN public.chat_message.embedding IS '向量嵌入 (用于语义检索，预留字段)';
+COMMENT ON COLUMN "public"."chat_message"."truncated" IS '回复截断标记: 0-完整, 1-客户端断开后截断保存';
+-- 已有数据库升级:
+-- ALTER TABLE public.chat_message ADD COLUMN IF NOT EXISTS truncated smallint DEFAULT 0;
 
 
 ALTER TABLE "public"."chat_message" ADD CONSTRAINT "chat_message_pkey" PRIMARY KEY ("id");
 
 CREATE INDEX idx_chat_message_user_id ON public.chat_message USING btree (user_id);
 CREATE INDEX idx_chat_message_session_id ON public.chat_message USING btree (session_id);
+-- 历史消息键集分页与滑动窗口查询：按会话、用户定位后按 (created_at, id) 倒序读取
+CREATE INDEX idx_chat_message_session_user_time ON public.chat_message USING btree (session_id, user_id, created_at DESC, id DESC);
+-- 已有数据库升级:
+-- CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_message_session_user_time ON public.chat_message USING btree (session_id, user_id, created_at DESC, id DESC);
 
 -- ============================================
 -- 用户反馈表 (tb_user_feedback) - 用于收集用户反馈并由管理员处理